@@ -0,0 +1,524 @@
+package newhash;
+
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.*;
+
+/**
+ * Hash table based implementation of the {@code Map} interface using bucketized cuckoo hashing,
+ * as an alternative engine to the Robin Hood {@link OpenHashMap} for maps that are read far more
+ * than they are written, whose lookups look at two buckets at most.  It permits null values and
+ * the null key, and makes no guarantees as to the order of the map.
+ *
+ * <p>The table is divided into buckets of {@link #BUCKET_SLOTS} slots, whose keys and values
+ * take a 64 byte cache line with compressed references, and the hash of each key is stored with
+ * it, as in {@code OpenHashMap}.  Every key is in one of two buckets, both derived from its
+ * stored hash: its first bucket, from the highest bits, and the {@link #otherBucket(int, int)
+ * other bucket}, which is the first bucket with some more of its bits flipped.  So a lookup
+ * compares the hash with the eight stored in each of the two buckets, and the key only with
+ * those whose hashes are equal.
+ *
+ * <p>An insertion takes a free slot in either bucket if there is one.  Otherwise it searches
+ * breadth first for the shortest path of mappings, each of which can move to its other bucket,
+ * ending at a free slot, visiting at most {@link #MAX_SEARCH} buckets, and moves each mapping
+ * along it.  With two buckets of eight slots for each key, such a path nearly always exists
+ * until the table is over 99% full, so load factors well above 90% are allowed.  If there is
+ * none, the table is doubled.  Keys whose hash codes collide outright share both buckets however
+ * large the table, so if more than two buckets of them are put while the table is less than
+ * half as full as its load factor allows, the key that does not fit goes into a {@code stash}
+ * map instead, much as {@code OpenHashMap} does with long runs, and its first bucket is marked
+ * for lookups to look there.
+ *
+ * <p>Removal just empties the mapping's slot, so nothing moves and there are no tombstones.  As
+ * the hashes are kept, resizing does not call {@code hashCode()} on the keys in the table.
+ *
+ * <p>By default the table is allowed to be 9/10 full, against 2/3 for {@code OpenHashMap}, and
+ * it needs the same 12 bytes per slot with compressed references, so it takes less memory at
+ * every load.  The serial form is that of {@code OpenHashMap}: the size, then each key and
+ * value.
+ *
+ * <p><strong>Note that this implementation is not synchronized.</strong> The iterators of its
+ * collection views are <i>fail-fast</i> in the same way as those of {@code OpenHashMap}.
+ *
+ * @param <K> the type of keys maintained by this map
+ * @param <V> the type of mapped values
+ *
+ * @see OpenHashMap
+ * @see HopscotchHashMap
+ */
+public class CuckooHashMap<K,V> extends SlotHashMap<K,V>
+    implements Map<K,V>, java.io.Serializable, Cloneable
+{
+  /**
+   * The load factor used when none is given.
+   */
+  public static final float DEFAULT_LOAD_FACTOR = 0.9f;
+
+  /**
+   * The largest allowed load factor.  Above it the search for a free slot fails often enough
+   * that tables are doubled well before the load factor would.
+   */
+  public static final float MAXIMUM_LOAD_FACTOR = 0.97f;
+
+  /**
+   * The number of slots of a bucket, and its log<sub>2</sub>.
+   */
+  static final int BUCKET_SLOTS = 8;
+  static final int BUCKET_SHIFT = 3;
+
+  /**
+   * The most buckets an insertion looks at for a free slot, enough for every path of up to
+   * three moves.
+   */
+  static final int MAX_SEARCH = 512;
+
+  /**
+   * The odd multiplier whose product with a hash gives the bits of the other bucket that differ
+   * from the first.
+   */
+  private static final int OTHER_BUCKET_MULTIPLIER = 0x85EBCA6B;
+
+  /**
+   * The initial capacity used by the no-args constructor, and the smallest.  MUST be a power of
+   * two.
+   */
+  private static final int MINIMUM_CAPACITY = 32;
+
+  /**
+   * The largest capacity, the same as that of {@code OpenHashMap}.
+   */
+  private static final int MAXIMUM_CAPACITY = 1 << 28;
+
+  /**
+   * The hash of the key in each slot, or {@link OpenHashMap#EMPTY_HASH} if the slot is empty.
+   * Its length is a power of two.
+   */
+  transient int[] hashes;
+
+  /**
+   * The mappings whose keys did not fit in either of their buckets, by masked key, or null if
+   * there are none.
+   */
+  transient HashMap<Object,Object> stash;
+
+  /**
+   * A bit for each bucket, set if it is the first bucket of a key in <tt>stash</tt>, or null if
+   * <tt>stash</tt> is.  Bits are not cleared as keys leave <tt>stash</tt>, but tables are
+   * rebuilt without them.
+   */
+  transient long[] stashed;
+
+  /**
+   * 32 less the log<sub>2</sub> of the number of buckets, so that shifting a hash right by it
+   * leaves the first bucket.
+   */
+  transient int bucketShift;
+
+  /**
+   * The proportion of the slots that may hold mappings.
+   *
+   * @serial
+   */
+  private final float loadFactor;
+
+  /**
+   * Constructs a new, empty map with the default expected maximum size and load factor.
+   */
+  public CuckooHashMap() {
+    this.loadFactor = DEFAULT_LOAD_FACTOR;
+    init(MINIMUM_CAPACITY);
+  }
+
+  /**
+   * Constructs a new, empty map that can hold the given number of mappings without resizing its
+   * table for its load factor.
+   *
+   * @param expectedMaxSize the expected maximum size of the map
+   * @throws IllegalArgumentException if {@code expectedMaxSize} is negative
+   */
+  public CuckooHashMap(int expectedMaxSize) {
+    this(expectedMaxSize, DEFAULT_LOAD_FACTOR);
+  }
+
+  /**
+   * Constructs a new, empty map with the given load factor, that can hold the given number of
+   * mappings without resizing its table for its load factor.
+   *
+   * @param expectedMaxSize the expected maximum size of the map
+   * @param loadFactor the proportion of the slots that may hold mappings, from more than 0 up
+   *        to {@link #MAXIMUM_LOAD_FACTOR}
+   * @throws IllegalArgumentException if {@code expectedMaxSize} is negative or
+   *         {@code loadFactor} is out of range
+   */
+  public CuckooHashMap(int expectedMaxSize, float loadFactor) {
+    if (expectedMaxSize < 0)
+      throw new IllegalArgumentException("expectedMaxSize is negative: " + expectedMaxSize);
+    if (!(loadFactor > 0 && loadFactor <= MAXIMUM_LOAD_FACTOR))
+      throw new IllegalArgumentException("Illegal load factor: " + loadFactor);
+    this.loadFactor = loadFactor;
+    init(capacityFor(expectedMaxSize));
+  }
+
+  /**
+   * Constructs a new map containing the mappings in the specified map.
+   *
+   * @param m the map whose mappings are to be placed into this map
+   * @throws NullPointerException if the specified map is null
+   */
+  @SuppressWarnings("this-escape") // putMappings and its hooks are final or package-private
+  public CuckooHashMap(Map<? extends K, ? extends V> m) {
+    this(m.size());
+    putMappings(m);
+  }
+
+  /**
+   * Returns the smallest capacity whose load factor allows the given number of mappings.
+   */
+  private int capacityFor(int expectedMaxSize) {
+    int capacity = MINIMUM_CAPACITY;
+    while (capacity < MAXIMUM_CAPACITY && maxLoad(capacity) < expectedMaxSize)
+      capacity <<= 1;
+    return capacity;
+  }
+
+  /**
+   * Returns the number of mappings a table of the given capacity may hold.
+   */
+  private int maxLoad(int capacity) {
+    return (int) (capacity * (double) loadFactor);
+  }
+
+  /**
+   * Initializes an empty table of the given capacity, a power of two of at least
+   * {@link #MINIMUM_CAPACITY}.
+   */
+  private void init(int capacity) {
+    hashes = new int[capacity];
+    table = new Object[capacity << 1];
+    bucketShift = 32 - Integer.numberOfTrailingZeros(capacity >>> BUCKET_SHIFT);
+  }
+
+  /**
+   * Returns the load factor of this map.
+   *
+   * @return the proportion of the slots that may hold mappings
+   */
+  public float getLoadFactor() {
+    return loadFactor;
+  }
+
+  /**
+   * Returns the hash stored for a masked key: the high half of its hash code multiplied by
+   * 2<sup>64</sup> divided by the golden ratio, as for {@link HopscotchHashMap#hash(Object)},
+   * or {@link OpenHashMap#ZERO_HASH} in place of {@link OpenHashMap#EMPTY_HASH}.
+   */
+  static int hash(Object maskedKey) {
+    final int h = (int) ((maskedKey.hashCode() * 0x9E3779B97F4A7C15L) >>> 32);
+    return h != OpenHashMap.EMPTY_HASH ? h : OpenHashMap.ZERO_HASH;
+  }
+
+  @Override
+  final long hashOf(Object maskedKey) {
+    return hash(maskedKey);
+  }
+
+  /**
+   * Returns the first bucket of a hash.
+   */
+  private int firstBucket(int hash) {
+    return hash >>> bucketShift;
+  }
+
+  /**
+   * Returns the other bucket of a key with the given hash, given one of its two buckets: the
+   * bucket with the bits that the top bits of the hash times another multiplier give flipped.
+   * The lowest of them is always flipped, so the two buckets always differ, and flipping the
+   * same bits of the other bucket gives back the first.
+   */
+  private int otherBucket(int bucket, int hash) {
+    return bucket ^ (((hash * OTHER_BUCKET_MULTIPLIER) >>> bucketShift) | 1);
+  }
+
+  /**
+   * Returns the slot holding a masked key with the given hash, or else {@link #OVERFLOW_SLOT}
+   * if it is in <tt>stash</tt>, or {@link #NO_SLOT}.  This is the probe of every lookup, which
+   * compares the hash with those stored in the key's two buckets, and looks in <tt>stash</tt>
+   * only if the first bucket is marked.
+   */
+  @Override
+  final int slotOf(Object maskedKey, long wideHash) {
+    final int hash = (int) wideHash;
+    final int[] hashes = this.hashes;
+    final Object[] tab = table;
+    final int first = firstBucket(hash);
+    for (int i = first << BUCKET_SHIFT, end = i + BUCKET_SLOTS; i < end; i++) {
+      if (hashes[i] == hash) {
+        final Object item = tab[i << 1];
+        if (item == maskedKey || maskedKey.equals(item))
+          return i;
+      }
+    }
+    for (int i = otherBucket(first, hash) << BUCKET_SHIFT, end = i + BUCKET_SLOTS; i < end; i++) {
+      if (hashes[i] == hash) {
+        final Object item = tab[i << 1];
+        if (item == maskedKey || maskedKey.equals(item))
+          return i;
+      }
+    }
+    final long[] stashed = this.stashed;
+    if (stashed != null && (stashed[first >>> 6] & (1L << first)) != 0
+        && stash.containsKey(maskedKey))
+      return OVERFLOW_SLOT;
+    return NO_SLOT;
+  }
+
+  @Override
+  final HashMap<Object,Object> overflowMap() {
+    return stash;
+  }
+
+  @Override
+  final void overflowEmptied() {
+    stash = null;
+    stashed = null;
+  }
+
+  /**
+   * Empties slot {@code slot}.  Nothing else moves.
+   */
+  @Override
+  final void clearSlot(int slot) {
+    hashes[slot] = OpenHashMap.EMPTY_HASH;
+    table[slot << 1] = null;
+    table[(slot << 1) + 1] = null;
+  }
+
+  /**
+   * Returns the first free slot of a bucket, or -1 if it is full.
+   */
+  private static int freeSlot(int[] hashes, int bucket) {
+    for (int i = bucket << BUCKET_SHIFT, end = i + BUCKET_SLOTS; i < end; i++) {
+      if (hashes[i] == OpenHashMap.EMPTY_HASH)
+        return i;
+    }
+    return -1;
+  }
+
+  /**
+   * Puts a mapping whose masked key is known not to be in the map into a free slot of one of its
+   * buckets, first making room if both are full.  Returns {@code false} if there is no room,
+   * in which case nothing has moved.
+   */
+  private boolean place(Object maskedKey, int hash, Object value) {
+    final int first = firstBucket(hash);
+    int free = freeSlot(hashes, first);
+    if (free < 0) {
+      final int other = otherBucket(first, hash);
+      if ((free = freeSlot(hashes, other)) < 0 && (free = makeRoom(first, other)) < 0)
+        return false;
+    }
+    hashes[free] = hash;
+    table[free << 1] = maskedKey;
+    table[(free << 1) + 1] = value;
+    return true;
+  }
+
+  /**
+   * Frees a slot of one of the given two full buckets, by searching breadth first from them for
+   * the nearest bucket with a free slot that a mapping can reach by moving to its other bucket,
+   * each mapping on the way moving on to make room for the one before it.  Buckets already on a
+   * path are not visited again along it, so no slot is moved out of twice.  Returns the slot
+   * freed, or -1 if no free slot is found within {@link #MAX_SEARCH} buckets, in which case
+   * nothing has moved.
+   */
+  private int makeRoom(int first, int second) {
+    final int[] hashes = this.hashes;
+    final Object[] tab = table;
+    // The buckets visited, and for each the index of the one it was reached from, shifted
+    // left, with the slot whose mapping would move, or -1 for the two it started from
+    final int[] buckets = new int[MAX_SEARCH];
+    final int[] from = new int[MAX_SEARCH];
+    buckets[0] = first;
+    buckets[1] = second;
+    from[0] = from[1] = -1;
+    int tail = 2;
+    for (int head = 0; head < tail; head++) {
+      final int bucket = buckets[head];
+      for (int j = 0; j < BUCKET_SLOTS; j++) {
+        final int slot = (bucket << BUCKET_SHIFT) + j;
+        final int other = otherBucket(bucket, hashes[slot]);
+        if (onPath(buckets, from, head, other))
+          continue;
+        int free = freeSlot(hashes, other);
+        if (free >= 0) {
+          // Move each mapping on the path into the slot the next one left, from the last
+          int vacated = slot;
+          for (int node = head; ; ) {
+            hashes[free] = hashes[vacated];
+            tab[free << 1] = tab[vacated << 1];
+            tab[(free << 1) + 1] = tab[(vacated << 1) + 1];
+            if (from[node] < 0)
+              return vacated;
+            free = vacated;
+            final int parent = from[node] >>> BUCKET_SHIFT;
+            vacated = (buckets[parent] << BUCKET_SHIFT) + (from[node] & (BUCKET_SLOTS - 1));
+            node = parent;
+          }
+        }
+        if (tail < MAX_SEARCH) {
+          buckets[tail] = other;
+          from[tail++] = (head << BUCKET_SHIFT) | j;
+        }
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Returns whether a bucket is on the path of a search from one of its first two buckets to the
+   * given one, inclusive.
+   */
+  private static boolean onPath(int[] buckets, int[] from, int node, int bucket) {
+    while (buckets[node] != bucket) {
+      if (from[node] < 0)
+        return false;
+      node = from[node] >>> BUCKET_SHIFT;
+    }
+    return true;
+  }
+
+  /**
+   * Puts a mapping into <tt>stash</tt>, and marks its first bucket.
+   */
+  private void putStash(Object maskedKey, int hash, Object value) {
+    if (stash == null) {
+      stash = new HashMap<>();
+      stashed = new long[Math.max(1, hashes.length >>> (BUCKET_SHIFT + 6))];
+    }
+    stash.put(maskedKey, value);
+    final int first = firstBucket(hash);
+    stashed[first >>> 6] |= 1L << first;
+  }
+
+  /**
+   * Inserts a mapping whose masked key is known not to be in the map, first doubling the table
+   * if the load factor does not allow another mapping.  If no slot can be freed for the key, the
+   * table is doubled once more, unless it is less than half as full as the load factor allows,
+   * when its buckets must be full of keys with colliding hash codes that doubling would not
+   * separate, and the mapping goes into <tt>stash</tt>.
+   */
+  @Override
+  final void insert(Object maskedKey, long wideHash, Object value) {
+    final int hash = (int) wideHash;
+    if (size >= maxLoad(hashes.length) && hashes.length < MAXIMUM_CAPACITY)
+      resize(hashes.length << 1);
+    if (!place(maskedKey, hash, value)) {
+      if (size >= maxLoad(hashes.length) >>> 1 && hashes.length < MAXIMUM_CAPACITY) {
+        resize(hashes.length << 1);
+        if (!place(maskedKey, hash, value))
+          putStash(maskedKey, hash, value);
+      } else {
+        putStash(maskedKey, hash, value);
+      }
+    }
+    size++;
+    modCount++;
+  }
+
+  /**
+   * Moves every mapping, including those in <tt>stash</tt>, into a new table of the given
+   * capacity.  Those that do not fit in their buckets there go into <tt>stash</tt>.  The hashes
+   * of the keys in the table are kept, so only those in <tt>stash</tt> are hashed again.
+   */
+  private void resize(int capacity) {
+    final int[] oldHashes = hashes;
+    final Object[] oldTab = table;
+    final HashMap<Object,Object> oldStash = stash;
+    init(capacity);
+    stash = null;
+    stashed = null;
+    for (int j = 0; j < oldHashes.length; j++) {
+      final int hash = oldHashes[j];
+      if (hash != OpenHashMap.EMPTY_HASH && !place(oldTab[j << 1], hash, oldTab[(j << 1) + 1]))
+        putStash(oldTab[j << 1], hash, oldTab[(j << 1) + 1]);
+    }
+    if (oldStash != null) {
+      for (Map.Entry<Object,Object> e : oldStash.entrySet()) {
+        final int hash = hash(e.getKey());
+        if (!place(e.getKey(), hash, e.getValue()))
+          putStash(e.getKey(), hash, e.getValue());
+      }
+    }
+  }
+
+  @Override
+  final void reserve(int expectedMaxSize) {
+    if (expectedMaxSize > maxLoad(hashes.length)) {
+      final int capacity = capacityFor(expectedMaxSize);
+      if (capacity > hashes.length)
+        resize(capacity);
+    }
+  }
+
+  /**
+   * Removes all of the mappings from this map.  The map will be empty after this call returns.
+   */
+  public void clear() {
+    modCount++;
+    Arrays.fill(hashes, OpenHashMap.EMPTY_HASH);
+    Arrays.fill(table, null);
+    stash = null;
+    stashed = null;
+    size = 0;
+  }
+
+  /**
+   * Returns a shallow copy of this map: the keys and values themselves are not cloned.
+   *
+   * @return a shallow copy of this map
+   */
+  public Object clone() {
+    CuckooHashMap<?,?> m = (CuckooHashMap<?,?>) super.clone();
+    m.hashes = hashes.clone();
+    if (stash != null) {
+      m.stash = new HashMap<>(stash);
+      m.stashed = stashed.clone();
+    }
+    return m;
+  }
+
+  @java.io.Serial
+  private static final long serialVersionUID = 1L;
+
+  /**
+   * Saves the state of the map to a stream (i.e., serializes it).
+   *
+   * @serialData The <i>size</i> of the map (the number of key-value mappings) is emitted
+   *          (int), followed by the key (Object) and value (Object) for each mapping, in no
+   *          particular order.
+   */
+  @java.io.Serial
+  private void writeObject(ObjectOutputStream s) throws java.io.IOException {
+    // Write out the load factor
+    s.defaultWriteObject();
+
+    writeMappings(s);
+  }
+
+  /**
+   * Reconstitutes the map from a stream (i.e., deserializes it).
+   */
+  @java.io.Serial
+  private void readObject(ObjectInputStream s)
+      throws java.io.IOException, ClassNotFoundException {
+    s.defaultReadObject();
+    if (!(loadFactor > 0 && loadFactor <= MAXIMUM_LOAD_FACTOR))
+      throw new java.io.InvalidObjectException("Illegal load factor: " + loadFactor);
+    final int n = s.readInt();
+    if (n < 0)
+      throw new java.io.StreamCorruptedException("Illegal mappings count: " + n);
+    init(capacityFor(n));
+
+    readMappings(s, n);
+  }
+}
@@ -0,0 +1,465 @@
+package newhash;
+
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.*;
+
+/**
+ * Hash table based implementation of the {@code Map} interface using hopscotch hashing, as an
+ * alternative engine to the Robin Hood {@link OpenHashMap} whose lookups are bounded in the
+ * worst case rather than on average.  It permits null values and the null key, and makes no
+ * guarantees as to the order of the map.
+ *
+ * <p>Every key is kept within the {@link #NEIGHBOURHOOD} slots starting at its home slot, and
+ * each slot has a <i>hop bitmap</i> with a bit set for each slot of its neighbourhood holding a
+ * key whose home it is.  The bitmap shares a {@code long} with the hash of the key the slot
+ * holds.  So a lookup reads the bitmap of the key's home and compares the hash with only those
+ * of the mappings whose bits are set, most often in the same cache line, and the key with those
+ * whose hashes are equal: it never looks more than {@code NEIGHBOURHOOD - 1} slots past the
+ * home, and a miss nearly never loads a key.
+ *
+ * <p>An insertion takes the empty slot nearest the home, and if that is outside the
+ * neighbourhood, moves the empty slot back by moving into it a mapping whose own neighbourhood
+ * includes it, until the empty slot is within the home's neighbourhood.  If no mapping can be
+ * moved, the table is too crowded around that home, and is doubled.  Keys whose hash codes
+ * collide outright share a home however large the table, so if more than a neighbourhood of
+ * them are put while the table is less than half as full as its load factor allows, the key
+ * that does not fit goes into an {@code overflow} map instead, much as {@code OpenHashMap}
+ * does with long runs, and its home is marked for lookups to look there.
+ *
+ * <p>Removal just empties the mapping's slot and clears its bit, so nothing moves and there are
+ * no tombstones.
+ *
+ * <p>By default the table is allowed to be 4/5 full, against 2/3 for {@code OpenHashMap}.  With
+ * a bitmap and a hash, and a key and a value reference, for each slot it needs 16 bytes per slot
+ * with compressed references, against 12 for {@code OpenHashMap}, so it takes less memory from
+ * the loads at which {@code OpenHashMap} would have doubled its table.  The serial form is that
+ * of {@code OpenHashMap}: the size, then each key and value.
+ *
+ * <p><strong>Note that this implementation is not synchronized.</strong> The iterators of its
+ * collection views are <i>fail-fast</i> in the same way as those of {@code OpenHashMap}.
+ *
+ * @param <K> the type of keys maintained by this map
+ * @param <V> the type of mapped values
+ *
+ * @see OpenHashMap
+ * @see SwissHashMap
+ */
+public class HopscotchHashMap<K,V> extends SlotHashMap<K,V>
+    implements Map<K,V>, java.io.Serializable, Cloneable
+{
+  /**
+   * The load factor used when none is given.
+   */
+  public static final float DEFAULT_LOAD_FACTOR = 0.8f;
+
+  /**
+   * The largest allowed load factor.  Above it nearly full neighbourhoods become common enough
+   * that tables are doubled for them well before the load factor would.
+   */
+  public static final float MAXIMUM_LOAD_FACTOR = 0.95f;
+
+  /**
+   * The number of slots from its home within which a key is kept, one for each bit of a hop
+   * bitmap but the highest, which is {@link #OVERFLOW_HOME}.
+   */
+  static final int NEIGHBOURHOOD = 31;
+
+  /**
+   * The bit of a hop bitmap that marks the slot as the home of a key in <tt>overflow</tt>.
+   * Bits are not cleared as keys leave <tt>overflow</tt>, but tables are rebuilt without them.
+   */
+  static final int OVERFLOW_HOME = 1 << NEIGHBOURHOOD;
+
+  /**
+   * The initial capacity used by the no-args constructor, and the smallest, which holds a whole
+   * neighbourhood.  MUST be a power of two.
+   */
+  private static final int MINIMUM_CAPACITY = 32;
+
+  /**
+   * The largest capacity, the same as that of {@code OpenHashMap}.
+   */
+  private static final int MAXIMUM_CAPACITY = 1 << 28;
+
+  /**
+   * The hop bitmap of each slot in the low 32 bits, and the hash of the key the slot holds, if
+   * any, in the high 32 bits.  Bit {@code j} of the bitmap of slot {@code i} is set if slot
+   * {@code i + j}, wrapping around the end of the table, holds a key whose home is slot
+   * {@code i}.  Its length is a power of two.
+   */
+  transient long[] hops;
+
+  /**
+   * The mappings whose keys did not fit in the neighbourhood of their home, by masked key, or
+   * null if there are none.
+   */
+  transient HashMap<Object,Object> overflow;
+
+  /**
+   * 32 less the log<sub>2</sub> of the capacity, so that shifting a hash right by it leaves the
+   * home slot.
+   */
+  transient int homeShift;
+
+  /**
+   * The proportion of the slots that may hold mappings.
+   *
+   * @serial
+   */
+  private final float loadFactor;
+
+  /**
+   * Constructs a new, empty map with the default expected maximum size and load factor.
+   */
+  public HopscotchHashMap() {
+    this.loadFactor = DEFAULT_LOAD_FACTOR;
+    init(MINIMUM_CAPACITY);
+  }
+
+  /**
+   * Constructs a new, empty map that can hold the given number of mappings without resizing its
+   * table for its load factor.
+   *
+   * @param expectedMaxSize the expected maximum size of the map
+   * @throws IllegalArgumentException if {@code expectedMaxSize} is negative
+   */
+  public HopscotchHashMap(int expectedMaxSize) {
+    this(expectedMaxSize, DEFAULT_LOAD_FACTOR);
+  }
+
+  /**
+   * Constructs a new, empty map with the given load factor, that can hold the given number of
+   * mappings without resizing its table for its load factor.
+   *
+   * @param expectedMaxSize the expected maximum size of the map
+   * @param loadFactor the proportion of the slots that may hold mappings, from more than 0 up
+   *        to {@link #MAXIMUM_LOAD_FACTOR}
+   * @throws IllegalArgumentException if {@code expectedMaxSize} is negative or
+   *         {@code loadFactor} is out of range
+   */
+  public HopscotchHashMap(int expectedMaxSize, float loadFactor) {
+    if (expectedMaxSize < 0)
+      throw new IllegalArgumentException("expectedMaxSize is negative: " + expectedMaxSize);
+    if (!(loadFactor > 0 && loadFactor <= MAXIMUM_LOAD_FACTOR))
+      throw new IllegalArgumentException("Illegal load factor: " + loadFactor);
+    this.loadFactor = loadFactor;
+    init(capacityFor(expectedMaxSize));
+  }
+
+  /**
+   * Constructs a new map containing the mappings in the specified map.
+   *
+   * @param m the map whose mappings are to be placed into this map
+   * @throws NullPointerException if the specified map is null
+   */
+  @SuppressWarnings("this-escape") // putMappings and its hooks are final or package-private
+  public HopscotchHashMap(Map<? extends K, ? extends V> m) {
+    this(m.size());
+    putMappings(m);
+  }
+
+  /**
+   * Returns the smallest capacity whose load factor allows the given number of mappings.
+   */
+  private int capacityFor(int expectedMaxSize) {
+    int capacity = MINIMUM_CAPACITY;
+    while (capacity < MAXIMUM_CAPACITY && maxLoad(capacity) < expectedMaxSize)
+      capacity <<= 1;
+    return capacity;
+  }
+
+  /**
+   * Returns the number of mappings a table of the given capacity may hold.
+   */
+  private int maxLoad(int capacity) {
+    return (int) (capacity * (double) loadFactor);
+  }
+
+  /**
+   * Initializes an empty table of the given capacity, a power of two of at least
+   * {@link #MINIMUM_CAPACITY}.
+   */
+  private void init(int capacity) {
+    hops = new long[capacity];
+    table = new Object[capacity << 1];
+    homeShift = 32 - Integer.numberOfTrailingZeros(capacity);
+  }
+
+  /**
+   * Returns the load factor of this map.
+   *
+   * @return the proportion of the slots that may hold mappings
+   */
+  public float getLoadFactor() {
+    return loadFactor;
+  }
+
+  /**
+   * Returns the hash of a masked key: the high half of its hash code multiplied by
+   * 2<sup>64</sup> divided by the golden ratio, whose highest bits are its
+   * {@link #home(int) home}, as for {@link SwissHashMap#hash(Object)}.
+   */
+  static int hash(Object maskedKey) {
+    return (int) ((maskedKey.hashCode() * 0x9E3779B97F4A7C15L) >>> 32);
+  }
+
+  @Override
+  final long hashOf(Object maskedKey) {
+    return hash(maskedKey);
+  }
+
+  /**
+   * Returns the home slot of a hash.
+   */
+  private int home(int hash) {
+    return hash >>> homeShift;
+  }
+
+  /**
+   * Returns the hash of the key in slot {@code i}, which holds a mapping.
+   */
+  private static int hashAt(long[] hops, int i) {
+    return (int) (hops[i] >>> 32);
+  }
+
+  /**
+   * Sets the hash of the key in slot {@code i}, keeping its bitmap.
+   */
+  private static void setHashAt(long[] hops, int i, int hash) {
+    hops[i] = (hops[i] & 0xFFFFFFFFL) | ((long) hash << 32);
+  }
+
+  /**
+   * Returns where the masked key is: its slot of the table if it is there, otherwise
+   * {@link #OVERFLOW_SLOT} or {@link #NO_SLOT}.  This is the probe of every lookup, which only
+   * compares the hash with those of the mappings that the hop bitmap of its home marks.
+   */
+  @Override
+  final int slotOf(Object maskedKey, long wideHash) {
+    final int hash = (int) wideHash;
+    final long[] hops = this.hops;
+    final Object[] tab = table;
+    final int mask = hops.length - 1;
+    final int home = home(hash);
+    final int bitmap = (int) hops[home];
+    for (int bits = bitmap & ~OVERFLOW_HOME; bits != 0; bits &= bits - 1) {
+      final int i = (home + Integer.numberOfTrailingZeros(bits)) & mask;
+      if (hashAt(hops, i) == hash) {
+        final Object item = tab[i << 1];
+        if (item == maskedKey || maskedKey.equals(item))
+          return i;
+      }
+    }
+    if (bitmap < 0 && overflow != null && overflow.containsKey(maskedKey))
+      return OVERFLOW_SLOT;
+    return NO_SLOT;
+  }
+
+  @Override
+  final HashMap<Object,Object> overflowMap() {
+    return overflow;
+  }
+
+  @Override
+  final void overflowEmptied() {
+    overflow = null;
+  }
+
+  /**
+   * Empties slot {@code slot} and clears its bit in the hop bitmap of its home.  Nothing else
+   * moves.
+   */
+  @Override
+  final void clearSlot(int slot) {
+    final int home = home(hashAt(hops, slot));
+    hops[home] &= ~(1L << ((slot - home) & (hops.length - 1)));
+    hops[slot] &= 0xFFFFFFFFL;
+    table[slot << 1] = null;
+    table[(slot << 1) + 1] = null;
+  }
+
+  /**
+   * Puts a mapping whose masked key is known not to be in the map into the neighbourhood of its
+   * home, moving other mappings within their own neighbourhoods to make room.  Returns
+   * {@code false} if there is no room, in which case some mappings may have moved, but the
+   * table is otherwise as it was.
+   */
+  private boolean place(Object maskedKey, int hash, Object value) {
+    final long[] hops = this.hops;
+    final Object[] tab = table;
+    final int mask = hops.length - 1;
+    final int home = home(hash);
+
+    // The nearest empty slot, however far
+    int free = home, distance = 0;
+    while (tab[free << 1] != null) {
+      if (++distance > mask)
+        return false;
+      free = (free + 1) & mask;
+    }
+
+    // Move the empty slot back into the neighbourhood of the home, each time by moving into it
+    // the mapping nearest its own home among those it can take
+    while (distance >= NEIGHBOURHOOD) {
+      int back = NEIGHBOURHOOD - 1;
+      for (; back > 0; back--) {
+        final int bucket = (free - back) & mask;
+        final int movable = (int) hops[bucket] & ((1 << back) - 1);
+        if (movable != 0) {
+          final int offset = Integer.numberOfTrailingZeros(movable);
+          final int from = (bucket + offset) & mask;
+          tab[free << 1] = tab[from << 1];
+          tab[(free << 1) + 1] = tab[(from << 1) + 1];
+          tab[from << 1] = null;
+          tab[(from << 1) + 1] = null;
+          setHashAt(hops, free, hashAt(hops, from));
+          hops[from] &= 0xFFFFFFFFL;
+          hops[bucket] ^= (1L << offset) | (1L << back);
+          distance -= back - offset;
+          free = from;
+          break;
+        }
+      }
+      if (back == 0)
+        return false;
+    }
+    tab[free << 1] = maskedKey;
+    tab[(free << 1) + 1] = value;
+    setHashAt(hops, free, hash);
+    hops[home] |= 1L << distance;
+    return true;
+  }
+
+  /**
+   * Puts a mapping into <tt>overflow</tt>, and marks its home.
+   */
+  private void putOverflow(Object maskedKey, int hash, Object value) {
+    if (overflow == null)
+      overflow = new HashMap<>();
+    overflow.put(maskedKey, value);
+    hops[home(hash)] |= 1L << NEIGHBOURHOOD;
+  }
+
+  /**
+   * Inserts a mapping whose masked key is known not to be in the map, first doubling the table
+   * if the load factor does not allow another mapping.  If the key does not fit in its
+   * neighbourhood, the table is doubled once more, unless it is less than half as full as the
+   * load factor allows, when the neighbourhood must be full of keys with colliding hash codes
+   * that doubling would not separate, and the mapping goes into <tt>overflow</tt>.
+   */
+  @Override
+  final void insert(Object maskedKey, long wideHash, Object value) {
+    final int hash = (int) wideHash;
+    if (size >= maxLoad(hops.length) && hops.length < MAXIMUM_CAPACITY)
+      resize(hops.length << 1);
+    if (!place(maskedKey, hash, value)) {
+      if (size >= maxLoad(hops.length) >>> 1 && hops.length < MAXIMUM_CAPACITY) {
+        resize(hops.length << 1);
+        if (!place(maskedKey, hash, value))
+          putOverflow(maskedKey, hash, value);
+      } else {
+        putOverflow(maskedKey, hash, value);
+      }
+    }
+    size++;
+    modCount++;
+  }
+
+  /**
+   * Moves every mapping, including those in <tt>overflow</tt>, into a new table of the given
+   * capacity.  Those that do not fit in their neighbourhoods there go into <tt>overflow</tt>.
+   * The hashes of the keys in the table are kept, so only those in <tt>overflow</tt> are hashed
+   * again.
+   */
+  private void resize(int capacity) {
+    final long[] oldHops = hops;
+    final Object[] oldTab = table;
+    final HashMap<Object,Object> oldOverflow = overflow;
+    init(capacity);
+    overflow = null;
+    for (int j = 0; j < oldHops.length; j++) {
+      final Object key = oldTab[j << 1];
+      if (key != null) {
+        final int hash = hashAt(oldHops, j);
+        if (!place(key, hash, oldTab[(j << 1) + 1]))
+          putOverflow(key, hash, oldTab[(j << 1) + 1]);
+      }
+    }
+    if (oldOverflow != null) {
+      for (Map.Entry<Object,Object> e : oldOverflow.entrySet()) {
+        final int hash = hash(e.getKey());
+        if (!place(e.getKey(), hash, e.getValue()))
+          putOverflow(e.getKey(), hash, e.getValue());
+      }
+    }
+  }
+
+  @Override
+  final void reserve(int expectedMaxSize) {
+    if (expectedMaxSize > maxLoad(hops.length)) {
+      final int capacity = capacityFor(expectedMaxSize);
+      if (capacity > hops.length)
+        resize(capacity);
+    }
+  }
+
+  /**
+   * Removes all of the mappings from this map.  The map will be empty after this call returns.
+   */
+  public void clear() {
+    modCount++;
+    Arrays.fill(hops, 0L);
+    Arrays.fill(table, null);
+    overflow = null;
+    size = 0;
+  }
+
+  /**
+   * Returns a shallow copy of this map: the keys and values themselves are not cloned.
+   *
+   * @return a shallow copy of this map
+   */
+  public Object clone() {
+    HopscotchHashMap<?,?> m = (HopscotchHashMap<?,?>) super.clone();
+    m.hops = hops.clone();
+    if (overflow != null)
+      m.overflow = new HashMap<>(overflow);
+    return m;
+  }
+
+  @java.io.Serial
+  private static final long serialVersionUID = 1L;
+
+  /**
+   * Saves the state of the map to a stream (i.e., serializes it).
+   *
+   * @serialData The <i>size</i> of the map (the number of key-value mappings) is emitted
+   *          (int), followed by the key (Object) and value (Object) for each mapping, in no
+   *          particular order.
+   */
+  @java.io.Serial
+  private void writeObject(ObjectOutputStream s) throws java.io.IOException {
+    // Write out the load factor
+    s.defaultWriteObject();
+
+    writeMappings(s);
+  }
+
+  /**
+   * Reconstitutes the map from a stream (i.e., deserializes it).
+   */
+  @java.io.Serial
+  private void readObject(ObjectInputStream s)
+      throws java.io.IOException, ClassNotFoundException {
+    s.defaultReadObject();
+    if (!(loadFactor > 0 && loadFactor <= MAXIMUM_LOAD_FACTOR))
+      throw new java.io.InvalidObjectException("Illegal load factor: " + loadFactor);
+    final int n = s.readInt();
+    if (n < 0)
+      throw new java.io.StreamCorruptedException("Illegal mappings count: " + n);
+    init(capacityFor(n));
+
+    readMappings(s, n);
+  }
+}
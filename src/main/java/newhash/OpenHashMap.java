@@ -1,9 +1,3 @@
-// TODO This does not cope with poorly distributed key hash values as HashMap does in virtue of
-//  using Tree buckets when the buckets are large.  It may be possible to check everywhere if the
-//  key (or value?) were a tree-node, in which case use the bucket instead of looking at
-//  successive slots.  This is probably would not work exactly the same because the criteria for
-//  creating a bucket would be an excessively large probe count (as opposed to excessively large
-//  bucket).
 /*
  * Copyright (c) 2000, 2022, Oracle and/or its affiliates. All rights reserved.
  * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
@@ -38,9 +32,15 @@ import java.lang.reflect.Array;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.function.BiConsumer;
 import java.util.function.BiFunction;
 import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.IntConsumer;
+import java.util.stream.Stream;
 
 // TODO document sources:
 //  https://github.com/goossaert/hashmap/blob/master/backshift_hashmap.cc seems to do the trick I thought of that with robin-hood don't need to look past the 1st entry with a greater probing distance
@@ -215,8 +215,6 @@ at least the can't-be-null JEP is previewed.
 public class OpenHashMap<K,V> extends AbstractMap<K,V>
     implements Map<K,V>, java.io.Serializable, Cloneable
 {
-  static final boolean NO_PRIMITIVE = true; // supporting primitive // TODO remove this and all uses when it is no longer needed to enable compiling and debugging by IntelliJ
-
   /**
    * The initial capacity used by the no-args constructor.
    * MUST be a power of two.  The value 32 corresponds to the
@@ -244,10 +242,6 @@ public class OpenHashMap<K,V> extends AbstractMap<K,V>
    */
   private static final int MAXIMUM_CAPACITY = 1 << 28; // TODO don't know what this should be now.  IdentityHashMap's "29" may be influenced by the 2 cells per key/value pair in IdentityHashMap.
 
-  /**
-   * The table, resized as necessary. Length MUST always be a power of two.
-   */
-  transient MaskedHashKeyValue/*TODO make null-restricted: ! */[] table; // non-private to simplify nested class access
   /**
    * A linear-probe hash table containing only hashes of keys.  A hashed key at index X will
    * have a matching key at
@@ -256,8 +250,16 @@ public class OpenHashMap<K,V> extends AbstractMap<K,V>
    * will be faster than a normal HashMap because a typical level 1 cpu cache cache-line fetch
    * will allow the linear probing to check 16 hashKeys, and if that does not suffice cpu
    * prefetching will grab the next cache-line all because there is no object dereferencing.
+   * An empty slot holds {@link #EMPTY_HASH}, see {@link #maskHash(Object)}.
    * Resized as necessary. Length MUST always be a power of two.
    */
+  transient int[] hashedKeyTable; // non-private to simplify nested class access
+
+  /**
+   * The table of alternating keys and values, resized as necessary.  Its length is always twice
+   * that of <tt>hashedKeyTable</tt>.  A null key marks an empty slot.
+   */
+  transient Object[] table; // non-private to simplify nested class access
 
   /**
    * The number of key-value mappings contained in this identity hash map.
@@ -271,6 +273,187 @@ public class OpenHashMap<K,V> extends AbstractMap<K,V>
    */
   transient int modCount;
 
+  /**
+   * Whether growing the table is spread over later mutating operations rather than done by the
+   * put that crosses the load threshold.
+   *
+   * @serial
+   */
+  private boolean incrementalResize;
+
+  /**
+   * The table length from which a resize migrates the mappings on the common
+   * {@link ForkJoinPool} rather than in the calling thread.
+   *
+   * @serial
+   */
+  private int parallelResizeThreshold = DEFAULT_PARALLEL_RESIZE_THRESHOLD;
+
+  /**
+   * The default for <tt>parallelResizeThreshold</tt>.  Below this the cost of forking tasks and
+   * the sequential fix up of chunk boundaries is not repaid.
+   */
+  private static final int DEFAULT_PARALLEL_RESIZE_THRESHOLD = 1 << 22;
+
+  /**
+   * The load below which a removal halves the table, or 0 if the table never shrinks by itself.
+   *
+   * @serial
+   */
+  private float shrinkLoadFactor;
+
+  /**
+   * The smallest number of old slots migrated by one task of a parallel resize.
+   */
+  private static final int MIN_TRANSFER_CHUNK = 1 << 16;
+
+  /**
+   * The hashes of the table being emptied by an incremental resize, or null when no incremental
+   * resize is in progress.  Its runs are either wholly migrated (and so empty) or untouched.
+   */
+  transient int[] oldHashedKeyTable;
+
+  /**
+   * The keys and values of the table being emptied by an incremental resize, or null.  In
+   * {@link #beginLazyInsert(DuplicateKeyPolicy) lazy insert mode} it is {@link #LAZY_LOG}, so
+   * that the checks for a resize in progress, which lookups and insertions only make once they
+   * have missed in the table, also catch the mode.
+   */
+  transient Object[] oldTable;
+
+  /**
+   * What <tt>oldTable</tt> is in lazy insert mode.  It holds nothing: the log is in
+   * <tt>lazyHashes</tt>, <tt>lazyKeys</tt> and <tt>lazyValues</tt>.
+   */
+  private static final Object[] LAZY_LOG = new Object[0];
+
+  /**
+   * The table in lazy insert mode, a single empty slot that every lookup misses at.  It is never
+   * written to, so all maps share it.
+   */
+  private static final int[] LAZY_HASHES = new int[1];
+  private static final Object[] LAZY_TABLE = new Object[2];
+
+  /**
+   * The log of lazy insert mode: the stored hashes, masked keys and values of the mappings in
+   * the order they were put, and how many there are.
+   */
+  private transient int[] lazyHashes;
+  private transient Object[] lazyKeys;
+  private transient Object[] lazyValues;
+  private transient int lazyCount;
+
+  /**
+   * What building the index does with keys put more than once in lazy insert mode.
+   */
+  private transient DuplicateKeyPolicy lazyDuplicates;
+
+  /**
+   * The least length the index is built with: that of the table when lazy insert mode began, or
+   * what {@link #ensureCapacity(int)} asked for since.
+   */
+  private transient int lazyCapacity;
+
+  /**
+   * The next slot of <tt>oldHashedKeyTable</tt> to migrate.  Always an empty slot between calls
+   * to {@link #migrate(int)}.
+   */
+  private transient int migrationIndex;
+
+  /**
+   * The number of slots of <tt>oldHashedKeyTable</tt> still to be migrated.
+   */
+  private transient int migrationRemaining;
+
+  /**
+   * The minimum number of old slots migrated by each mutating operation during an incremental
+   * resize.  Migrating more than 2 slots per insertion guarantees that migration finishes before
+   * the new table reaches its own load threshold.
+   */
+  private static final int MIGRATION_STEP = 16;
+
+  /**
+   * What an insertion does when it leaves a mapping more than <tt>maxProbeLength</tt> slots from
+   * its home.
+   *
+   * @serial
+   */
+  private LongProbePolicy longProbePolicy = LongProbePolicy.RESEED;
+
+  /**
+   * The furthest, in slots, that an insertion may leave a mapping from its home before the
+   * <tt>longProbePolicy</tt> is applied.
+   *
+   * @serial
+   */
+  private int maxProbeLength = DEFAULT_MAX_PROBE_LENGTH;
+
+  /**
+   * The default for <tt>maxProbeLength</tt>.  Well distributed keys stay within about 20 slots
+   * of home even for tables of millions of slots at the 2/3 maximum load.
+   */
+  private static final int DEFAULT_MAX_PROBE_LENGTH = 32;
+
+  /**
+   * Told the probe length of every insertion that exceeds <tt>maxProbeLength</tt>, or null.
+   */
+  private transient IntConsumer longProbeListener;
+
+  /**
+   * The number of insertions that have exceeded <tt>maxProbeLength</tt>.
+   */
+  private transient long longProbeCount;
+
+  /**
+   * The size of the map when the table was last grown or re-seeded because of a long probe.
+   * The next time is put off until the size has doubled, so keys that no table can spread,
+   * such as keys that all have the same hash, cost amortized constant time per insertion rather
+   * than a rebuild each.
+   */
+  private transient int longProbeRebuildSize;
+
+  /**
+   * Mixed into the stored hash of every key, see {@link #maskHash(int, int, HashMixer)}.  Zero,
+   * meaning no seed, unless the map is seeded by its {@link HashSeeding} or has been re-seeded.
+   */
+  transient int hashSeed;
+
+  /**
+   * How the stored hash of every key is derived from its hash code.
+   *
+   * @serial
+   */
+  private HashMixer hashMixer = HashMixer.XOR_SHIFT;
+
+  /**
+   * Whether the table is sized to the expected number of mappings rather than to a power of two,
+   * see {@link #setCompactSizing(boolean)}.
+   *
+   * @serial
+   */
+  private boolean compactSizing;
+
+  /**
+   * Where <tt>hashSeed</tt> comes from.
+   *
+   * @serial
+   */
+  private HashSeeding hashSeeding = HashSeeding.NONE;
+
+  /**
+   * The mappings moved out of the table by the {@link LongProbePolicy#OVERFLOW OVERFLOW} policy,
+   * keyed by masked key, or null if there are none.  A key is in the table or here, never both.
+   */
+  transient HashMap<Object,Object> overflow;
+
+  /**
+   * A bit for each slot of the table, set if the slot is the home of a key in <tt>overflow</tt>,
+   * or null if <tt>overflow</tt> is.  Only lookups that miss in the table for a key whose home is
+   * marked go on to look in <tt>overflow</tt>.  Bits are not cleared as keys leave
+   * <tt>overflow</tt>, but are recomputed whenever the table is replaced.
+   */
+  transient long[] overflowHomes;
+
   /**
    * Value representing null keys inside tables.
    */
@@ -290,8 +473,204 @@ public class OpenHashMap<K,V> extends AbstractMap<K,V>
     return (key == NULL_KEY ? null : key);
   }
 
-  static int itemUnmaskedKeyHash(MaskedHashKeyValue item) {
-    return item.key == NULL_KEY ? 0 : item.maskedHash;
+  /**
+   * The value of <tt>hashedKeyTable</tt> for a slot that does not hold a key.
+   */
+  static final int EMPTY_HASH = 0;
+
+  /**
+   * Stored in place of a key hash that would otherwise be {@link #EMPTY_HASH}, so an empty slot can
+   * be recognised from <tt>hashedKeyTable</tt> alone.  Keys with this hash and keys with a zero
+   * hash simply collide.
+   */
+  static final int ZERO_HASH = Integer.MIN_VALUE + 1;
+
+  /**
+   * Odd multipliers, so multiplying by them is a bijection on ints that spreads low bits upwards,
+   * and their inverses modulo 2<sup>32</sup>.  Folding the high half down in between makes the
+   * high bits of a hash code matter to the low bits of the index as well.
+   */
+  private static final int SEED_MULTIPLIER = 0x9E3779B9;
+  private static final int SEED_MULTIPLIER_INVERSE = 0x144CBC89;
+  private static final int SEED_MULTIPLIER_2 = 0x85EBCA6B;
+  private static final int SEED_MULTIPLIER_2_INVERSE = 0xA5CB9243;
+
+  /**
+   * Returns the hash stored in <tt>hashedKeyTable</tt> for a masked key.
+   */
+  final int maskHash(Object maskedKey) {
+    return maskHash(maskedKey.hashCode(), hashSeed, hashMixer);
+  }
+
+  /**
+   * Returns the hash stored for a key with the given {@code hashCode()}.  The hash code is
+   * scrambled by the seed, if there is one, and then by the mixer.  Both are bijections, so
+   * stored hashes still tell keys apart exactly as well as their hash codes do and the hash code
+   * can be recovered without calling {@code hashCode()} again.
+   */
+  static int maskHash(int h, int seed, HashMixer mixer) {
+    if (seed != 0) {
+      h = (h ^ seed) * SEED_MULTIPLIER;
+      h = (h ^ (h >>> 16)) * SEED_MULTIPLIER_2;
+    }
+    h = mixer.mix(h);
+    return h != EMPTY_HASH ? h : ZERO_HASH;
+  }
+
+  /**
+   * Returns the {@code hashCode()} of a masked key, given its stored hash.
+   */
+  static int maskedKeyHash(int maskedHash, Object maskedKey, int seed, HashMixer mixer) {
+    if (maskedHash == ZERO_HASH)
+      return maskedKey.hashCode();
+    int h = mixer.unmix(maskedHash);
+    if (seed == 0)
+      return h;
+    h *= SEED_MULTIPLIER_2_INVERSE;
+    return ((h ^ (h >>> 16)) * SEED_MULTIPLIER_INVERSE) ^ seed;
+  }
+
+  /**
+   * Returns the {@code hashCode()} of the key as the user sees it, given its stored hash.
+   */
+  final int itemUnmaskedKeyHash(int maskedHash, Object maskedKey) {
+    return (maskedKey == NULL_KEY) ? 0
+        : maskedKeyHash(maskedHash, maskedKey, hashSeed, hashMixer);
+  }
+
+  /**
+   * How the hash stored for a key is derived from its {@code hashCode()}.  The home slot of a
+   * key is the low bits of its stored hash, as many as the table length needs, so a mixer
+   * decides how much of the hash code reaches the index.  Mixing once when the hash is stored
+   * means that probing, which works out the home of every mapping it passes, only ever masks.
+   *
+   * <p>Every mixer is a bijection on ints, so distinct hash codes stay distinct and the hash
+   * code of a key can be recovered from its stored hash.
+   *
+   * @see #setHashMixer(HashMixer)
+   */
+  public enum HashMixer {
+    /**
+     * Folds the high half of the hash code onto the low half, as {@code HashMap} does.  This is
+     * the cheapest mixer, and lets sequential hash codes fill consecutive slots, but tables
+     * smaller than 2<sup>16</sup> only see the xor of the two halves and tables larger than
+     * that see some high bits unmixed.
+     */
+    XOR_SHIFT,
+
+    /**
+     * Multiplies by 2<sup>32</sup> divided by the golden ratio and keeps the top bits of the
+     * product, which depend on all the bits of the hash code.  The product is stored bit
+     * reversed, so that the top log2(length) bits are the ones that form the index.
+     */
+    FIBONACCI,
+
+    /**
+     * The 32 bit finalizer of MurmurHash3, in which every bit of the hash code affects every
+     * bit of the result with probability close to a half.  This is the most expensive mixer,
+     * and the one least sensitive to patterns in the hash codes.
+     */
+    MURMUR3;
+
+    private static final int GOLDEN_RATIO = 0x9E3779B9;
+    private static final int GOLDEN_RATIO_INVERSE = 0x144CBC89;
+    private static final int MURMUR_C1 = 0x85EBCA6B;
+    private static final int MURMUR_C1_INVERSE = 0xA5CB9243;
+    private static final int MURMUR_C2 = 0xC2B2AE35;
+    private static final int MURMUR_C2_INVERSE = 0x7ED1B41D;
+
+    int mix(int h) {
+      switch (this) {
+        case FIBONACCI:
+          return Integer.reverse(h * GOLDEN_RATIO);
+        case MURMUR3:
+          h = (h ^ (h >>> 16)) * MURMUR_C1;
+          h = (h ^ (h >>> 13)) * MURMUR_C2;
+          return h ^ (h >>> 16);
+        default:
+          return h ^ (h >>> 16);
+      }
+    }
+
+    /**
+     * Returns the hash code that {@link #mix(int)} maps to {@code h}.
+     */
+    int unmix(int h) {
+      switch (this) {
+        case FIBONACCI:
+          return Integer.reverse(h) * GOLDEN_RATIO_INVERSE;
+        case MURMUR3:
+          h = (h ^ (h >>> 16)) * MURMUR_C2_INVERSE;
+          h = (h ^ (h >>> 13) ^ (h >>> 26)) * MURMUR_C1_INVERSE;
+          return h ^ (h >>> 16);
+        default:
+          return h ^ (h >>> 16);
+      }
+    }
+  }
+
+  /**
+   * Where the seed scrambled into the stored hash of every key comes from.  Without a seed the
+   * home slot of a key follows from its hash code alone, so keys whose hash codes were chosen to
+   * collide, such as Strings taken from HTTP headers or JSON field names, can be made to form
+   * long Robin Hood runs in any map.  With a random seed the same keys land in unrelated slots in
+   * another process or another map.
+   *
+   * <p>Whatever the seeding, the {@link LongProbePolicy#RESEED RESEED} policy picks a new random
+   * seed for a map that meets an abnormally long probe.
+   *
+   * @see #setHashSeeding(HashSeeding)
+   */
+  public enum HashSeeding {
+    /**
+     * No seed until the long probe policy re-seeds the map, which saves the scrambling of each
+     * hash code.
+     */
+    NONE,
+
+    /**
+     * A random seed chosen once per process and shared by all the maps that use it, so that their
+     * tables keep the same layout when mappings are copied from one to another.
+     */
+    PER_PROCESS,
+
+    /**
+     * A random seed for each map, so that what is learned about the layout of one map says
+     * nothing about another.
+     */
+    PER_INSTANCE;
+
+    /**
+     * Returns the seed for a map, never 0.
+     */
+    int seed() {
+      switch (this) {
+        case PER_PROCESS:
+          return ProcessSeed.SEED;
+        case PER_INSTANCE:
+          return randomSeed(0);
+        default:
+          return 0;
+      }
+    }
+  }
+
+  /**
+   * Holds the seed of {@link HashSeeding#PER_PROCESS}, chosen the first time it is needed.
+   */
+  private static final class ProcessSeed {
+    static final int SEED = randomSeed(0);
+  }
+
+  /**
+   * Returns a random seed that is neither 0, which means no seed, nor {@code oldSeed}.
+   */
+  static int randomSeed(int oldSeed) {
+    int seed;
+    do {
+      seed = ThreadLocalRandom.current().nextInt();
+    } while (seed == 0 || seed == oldSeed);
+    return seed;
   }
 
   // TODO consider supporting a LinkedOpenHashMap
@@ -335,22 +714,45 @@ public class OpenHashMap<K,V> extends AbstractMap<K,V>
                 Integer.highestOneBit(expectedMaxSize + (expectedMaxSize << 1));
   }
 
+  /**
+   * Returns the capacity for the given expected maximum size under the sizing of this map: that
+   * of {@link #capacity(int)} or, with {@link #setCompactSizing(boolean) compact sizing}, the
+   * smallest length between MINIMUM_CAPACITY and MAXIMUM_CAPACITY, inclusive, that is greater
+   * than (3 * expectedMaxSize)/2, if there is one.
+   */
+  private int capacityFor(int expectedMaxSize) {
+    if (!compactSizing)
+      return capacity(expectedMaxSize);
+    long length = 3L * expectedMaxSize / 2 + 1;
+    return (int) Math.max(MINIMUM_CAPACITY, Math.min(MAXIMUM_CAPACITY, length));
+  }
+
+  /**
+   * Returns the capacity that a table of the given length grows to: twice the length, or one and
+   * a half times it with compact sizing, but no more than MAXIMUM_CAPACITY.
+   */
+  private int grownCapacity(int length) {
+    return Math.min(MAXIMUM_CAPACITY, compactSizing ? length + (length >> 1) : length << 1);
+  }
+
   /**
    * Initializes object to be an empty map with the specified initial
-   * capacity, which is assumed to be a power of two between
-   * MINIMUM_CAPACITY and MAXIMUM_CAPACITY inclusive.
+   * capacity, which is assumed to be between MINIMUM_CAPACITY and
+   * MAXIMUM_CAPACITY inclusive.
    */
   private void init(int initCapacity) {
-    assert (initCapacity & -initCapacity) == initCapacity; // power of 2
     assert initCapacity >= MINIMUM_CAPACITY;
     assert initCapacity <= MAXIMUM_CAPACITY;
 
-    table = MaskedHashKeyValue.createEmptyFilledArray(initCapacity);
+    hashedKeyTable = new int[initCapacity];
+    table = new Object[initCapacity << 1];
   }
 
   /**
    * Constructs a new identity hash map containing the keys-value mappings
-   * in the specified map.
+   * in the specified map.  A copy of another {@code OpenHashMap} reuses its
+   * stored hashes, and its table too when that is long enough, see
+   * {@link #putAll(Map)}.
    *
    * @param m the map whose mappings are to be placed into this map
    * @throws NullPointerException if the specified map is null
@@ -361,12 +763,29 @@ public class OpenHashMap<K,V> extends AbstractMap<K,V>
     putAll(m);
   }
 
+  /**
+   * Returns a builder for a map of about {@code expectedSize} mappings, which collects the
+   * mappings and then lays out the table in one go rather than putting them one at a time.
+   *
+   * @param expectedSize the expected number of mappings
+   * @return a builder for a map
+   * @throws IllegalArgumentException if {@code expectedSize} is negative
+   * @see Builder
+   */
+  public static <K,V> Builder<K,V> builder(int expectedSize) {
+    return new Builder<>(expectedSize);
+  }
+
   /**
    * Returns the number of key-value mappings in this identity hash map.
+   * In {@link #beginLazyInsert(DuplicateKeyPolicy) lazy insert mode} this
+   * builds the index first.
    *
    * @return the number of key-value mappings in this map
    */
   public int size() {
+    if (oldTable == LAZY_LOG)
+      buildIndex();
     return size;
   }
 
@@ -378,29 +797,130 @@ public class OpenHashMap<K,V> extends AbstractMap<K,V>
    *         mappings
    */
   public boolean isEmpty() {
+    if (oldTable == LAZY_LOG)
+      buildIndex();
     return size == 0;
   }
 
   /**
-   * Returns index for Object x.
+   * Returns the home index of a stored hash.  The hash was already mixed, by the map's
+   * {@link HashMixer}, when it was stored.  For a power of two length that is the low bits of
+   * the hash.  Otherwise it is Lemire's multiply-high range reduction of the hash, which depends
+   * on its high bits, so the hash is first multiplied by 2<sup>64</sup> divided by the golden
+   * ratio to spread its low bits upwards.  A 32 bit multiplier would do for a few thousand
+   * sequential hashes, but leaves millions of them unevenly spread.
    */
-  static int getIndex(int hashCode, int length) { // TODO rename to just "indexOf"
-    // TODO it seems wrong when the size is 2^24 to ignore the 1st byte and when the size is 2^8
-    //  to ignore the 1st and 3rd byte.  One would think the size would be included in the
-    //  expression in a way to account for this.  It may make sense for the index computation to
-    //  be more elaborate for open addressing.  IdentityHashMap.hash ensures tha hash is even
-    //  which this should not do.
-    //  Consider passing a shift such that, at least, when table size is greater than 2^16 fewer
-    //  bits are shifted since they will already be effectively used by the modulo.  The shift would be the table capacity (or that -1 or something) -- Hmm, this is something like (2^32 - length) when length > 2^16.
-    return (hashCode ^ (hashCode >>> 16 )) & (length - 1); // TODO test that using '&' is actually faster than the elvis-op that is used by IdentityHashMap
+  static int getIndex(int maskedHash, int length) { // TODO rename to just "indexOf"
+    if (isPowerOfTwo(length))
+      return maskedHash & (length - 1);
+    long spread = ((maskedHash & 0xFFFFFFFFL) * GOLDEN_RATIO_64) >>> 32;
+    return (int) ((spread * length) >>> 32);
   }
 
+  /**
+   * 2<sup>64</sup> divided by the golden ratio, see {@link #getIndex(int, int)}.
+   */
+  private static final long GOLDEN_RATIO_64 = 0x9E3779B97F4A7C15L;
+
   /**
    * Circularly traverses table of size len.
    */
   private static int nextKeyIndex(int i, int len) {
-    return (i + 1) & (len - 1); // TODO this didn't work, when it didn't work the max size was causing anomalies, so that could h
-    // return (i + 1 < len ? i + 1 : 0);
+    return i + 1 < len ? i + 1 : 0;
+  }
+
+  /**
+   * Where {@link #slotOf(Object, int)} found a key when it is not in the table: not at all, in
+   * <tt>overflow</tt>, or, for {@code OLD_SLOT - i} and less, in slot {@code i} of the old table
+   * of an incremental resize.
+   */
+  private static final int NO_SLOT = -1;
+  private static final int OVERFLOW_SLOT = -2;
+  private static final int OLD_SLOT = -3;
+
+  /**
+   * Returns where the masked key is: its slot of the table if it is there, otherwise
+   * {@link #OVERFLOW_SLOT}, an {@link #OLD_SLOT old table slot} or {@link #NO_SLOT}.  This is the
+   * probe of every lookup.  It stops at an empty slot or at the first mapping nearer its home than
+   * the key would be, since a Robin Hood insertion of the key would have displaced that mapping.
+   * So a miss costs about as much as a hit, rather than the length of the rest of the run, and
+   * the slot it stops at is where the key would be inserted.
+   *
+   * <p>Keeping the largest displacement in the table, and stopping that many slots past the
+   * key's home so as to compare stored hashes without working out how far from home each mapping
+   * passed is, does not pay: hits cost the same, as a probe costs what loading the slot does, and
+   * misses run on to the end of the run and cost up to a third more.  See
+   * {@code ProbeBoundBenchmark}.
+   */
+  private int slotOf(Object maskedKey, int hash) {
+    final int[] hashes = hashedKeyTable;
+    final Object[] tab = table;
+    final int len = hashes.length;
+    int i = getIndex(hash, len);
+    for (int wantedKeyHops = 0; ; wantedKeyHops++, i = nextKeyIndex(i, len)) {
+      final int maskedHash = hashes[i];
+      if (maskedHash == hash) {
+        Object item = tab[i << 1];
+        if (item == maskedKey || maskedKey.equals(item))
+          return i;
+      }
+      if (maskedHash == EMPTY_HASH || wantedKeyHops > getHops(i, len, getIndex(maskedHash, len)))
+        break;
+    }
+    if (oldTable != null) {
+      if (oldTable == LAZY_LOG) {
+        buildIndex();
+        return slotOf(maskedKey, hash);
+      }
+      if ((i = oldTableIndexOf(maskedKey, hash)) >= 0)
+        return OLD_SLOT - i;
+    }
+    if (isOverflowHome(hash) && overflow.containsKey(maskedKey))
+      return OVERFLOW_SLOT;
+    return NO_SLOT;
+  }
+
+  /**
+   * Returns the value at a slot found by {@link #slotOf(Object, int)}.
+   */
+  private Object valueAt(int slot, Object maskedKey) {
+    if (slot >= 0)
+      return table[(slot << 1) + 1];
+    if (slot == OVERFLOW_SLOT)
+      return overflow.get(maskedKey);
+    return oldTable[((OLD_SLOT - slot) << 1) + 1];
+  }
+
+  /**
+   * Replaces the value at a slot found by {@link #slotOf(Object, int)}.
+   */
+  private void setValueAt(int slot, Object maskedKey, Object value) {
+    if (slot >= 0)
+      table[(slot << 1) + 1] = value;
+    else if (slot == OVERFLOW_SLOT)
+      overflow.put(maskedKey, value);
+    else
+      oldTable[((OLD_SLOT - slot) << 1) + 1] = value;
+  }
+
+  /**
+   * Removes the mapping at a slot found by {@link #slotOf(Object, int)}.
+   */
+  private void removeAt(int slot, Object maskedKey) {
+    if (slot == OVERFLOW_SLOT) {
+      removeOverflow(maskedKey);
+      return;
+    }
+    modCount++;
+    size--;
+    if (slot >= 0) {
+      clearSlot(hashedKeyTable, table, slot);
+      closeDeletion(hashedKeyTable, table, slot);
+      shrinkIfSparse();
+    } else {
+      clearSlot(oldHashedKeyTable, oldTable, OLD_SLOT - slot);
+      closeDeletion(oldHashedKeyTable, oldTable, OLD_SLOT - slot);
+    }
   }
 
   /**
@@ -423,23 +943,8 @@ public class OpenHashMap<K,V> extends AbstractMap<K,V>
   @SuppressWarnings("unchecked")
   public V get(Object key) {
     Object k = maskNull(key);
-    final int hash = k.hashCode();
-    MaskedHashKeyValue[] tab = table;
-    int len = tab.length;
-
-    int i = getIndex(hash, len);
-    for (int wantedKeyHops = 0; ; wantedKeyHops++, i = nextKeyIndex(i, len)) {
-      int maskedHash = tab[i].maskedHash;
-      if (maskedHash == hash && k.equals(tab[i].key))
-        return (V) tab[i].value;
-      if (tab[i].key == null)
-        return null;
-      final int desiredIndexForCurrentKey = getIndex(maskedHash, len);
-      final int currKeyHops = getHops(i, len, desiredIndexForCurrentKey);
-      if (wantedKeyHops > currKeyHops ) {
-        return null;
-      }
-    }
+    final int slot = slotOf(k, maskHash(k));
+    return slot == NO_SLOT ? null : (V) valueAt(slot, k);
   }
 
   /**
@@ -455,17 +960,50 @@ public class OpenHashMap<K,V> extends AbstractMap<K,V>
   // TODO look at all occurrences of Objects.equals.  Should probably only be used for values
   public boolean containsKey(Object key) {
     Object k = maskNull(key);
-    final int hash = k.hashCode();
-    MaskedHashKeyValue[] tab = table;
-    int len = tab.length;
-    int i = getIndex(hash, len);
-    while (true) {
-      MaskedHashKeyValue item = tab[i];
-      if (item.maskedHash == hash && Objects.equals(item.key, k))
-        return true;
-      if (item.key == null)
-        return false;
-      i = nextKeyIndex(i, len);
+    return slotOf(k, maskHash(k)) != NO_SLOT;
+  }
+
+  /**
+   * Looks up each of the given keys, as {@link #get(Object)} does, and stores the value each is
+   * mapped to, or {@code null}, at the same index of {@code values}.
+   *
+   * <p>The keys are looked up one after another.  Hashing a batch of keys and loading their home
+   * slots in one pass, then the keys in those slots in a second, so that the cache misses of a
+   * table much larger than the cache overlap as prefetching would make them, was measured no
+   * faster, and up to a third slower for keys present: the lookups of a loop do not depend on
+   * one another, so the processor already overlaps the misses of consecutive ones.  See
+   * {@code BulkOpsBenchmark}.
+   *
+   * @param keys the keys to look up
+   * @param values the array to store the values in, at least as long as {@code keys}
+   * @throws IllegalArgumentException if {@code values} is shorter than {@code keys}
+   */
+  @SuppressWarnings("unchecked")
+  public void getAll(Object[] keys, V[] values) {
+    if (values.length < keys.length)
+      throw new IllegalArgumentException("Fewer values than keys: " + values.length);
+    for (int j = 0; j < keys.length; j++) {
+      final Object k = maskNull(keys[j]);
+      final int slot = slotOf(k, maskHash(k));
+      values[j] = slot == NO_SLOT ? null : (V) valueAt(slot, k);
+    }
+  }
+
+  /**
+   * Tests whether each of the given keys is in this map, as {@link #containsKey(Object)} does,
+   * and stores the answer for each at the same index of {@code found}.
+   *
+   * @param keys the keys to look up
+   * @param found the array to store the answers in, at least as long as {@code keys}
+   * @throws IllegalArgumentException if {@code found} is shorter than {@code keys}
+   * @see #getAll(Object[], Object[])
+   */
+  public void containsAll(Object[] keys, boolean[] found) {
+    if (found.length < keys.length)
+      throw new IllegalArgumentException("Fewer answers than keys: " + found.length);
+    for (int j = 0; j < keys.length; j++) {
+      final Object k = maskNull(keys[j]);
+      found[j] = slotOf(k, maskHash(k)) != NO_SLOT;
     }
   }
 
@@ -480,14 +1018,14 @@ public class OpenHashMap<K,V> extends AbstractMap<K,V>
    * @see     #containsKey(Object)
    */
   public boolean containsValue(Object value) {
-    MaskedHashKeyValue[] tab = table;
-    for (int i = 0; i < tab.length; i++) {
-      MaskedHashKeyValue item = tab[i];
-      if (item.value == value && item.key != null)
+    completeResize();
+    Object[] tab = table;
+    for (int i = 1; i < tab.length; i += 2) {
+      if (Objects.equals(tab[i], value) && tab[i - 1] != null)
         return true;
     }
 
-    return false;
+    return overflow != null && overflow.containsValue(value);
   }
 
   /**
@@ -500,19 +1038,8 @@ public class OpenHashMap<K,V> extends AbstractMap<K,V>
    */
   private boolean containsMapping(Object key, Object value) {
     Object k = maskNull(key);
-    final int hash = k.hashCode();
-    MaskedHashKeyValue[] tab = table;
-    int len = tab.length;
-    int i = getIndex(hash, len);
-    // TODO here (and probably other places as well, should quit when numHops inequality is satisfied (as in get())
-    while (true) {
-      MaskedHashKeyValue item = tab[i];
-      if (item.maskedHash == hash && item.key.equals(k))
-        return item.value == value;
-      if (item.key == null)
-        return false;
-      i = nextKeyIndex(i, len);
-    }
+    final int slot = slotOf(k, maskHash(k));
+    return slot != NO_SLOT && Objects.equals(valueAt(slot, k), value);
   }
 
   /**
@@ -533,103 +1060,466 @@ public class OpenHashMap<K,V> extends AbstractMap<K,V>
    */
   @SuppressWarnings("unchecked")
   public V put(K key, V value) {
-    return (V) putVal(maskNull(key), value, table, true, true, false, true);
+    Object k = maskNull(key);
+    return (V) putHashed(k, maskHash(k), value);
+  }
+
+  /**
+   * Does the work of {@link #put(Object, Object)} for a masked key whose stored hash is known.
+   */
+  private Object putHashed(Object k, int hash, Object value) {
+    if (overflowHomes != null && isOverflowHome(hash) && overflow.containsKey(k))
+      return overflow.put(k, value);
+    if (oldTable != null) {
+      if (oldTable == LAZY_LOG) {
+        append(k, hash, value);
+        return null;
+      }
+      migrate(MIGRATION_STEP);
+      int i;
+      if (oldTable != null && (i = oldTableIndexOf(k, hash)) >= 0) {
+        Object oldValue = oldTable[(i << 1) + 1];
+        oldTable[(i << 1) + 1] = value;
+        return oldValue;
+      }
+    }
+    return putVal(k, hash, value, true, true);
   }
 
   // TODO is the overhead of calling this as a separate method plus the boolean param checks large
   //  enough to justify inlining this where it is called?
-Object putVal(Object maskedKey, Object value, MaskedHashKeyValue[] tab, boolean checkKeyCanBePresentAlready, boolean tableMayNeedResizing, boolean isCopying, boolean allowResize) {
-  int hash = maskedKey.hashCode();
+Object putVal(Object maskedKey, int hash, Object value, boolean checkKeyCanBePresentAlready, boolean tableMayNeedResizing) {
+  int[] hashes = hashedKeyTable;
+  Object[] tab = table;
   // TODO: decided it was better to optimize for the table-doesn't-grow vs the table-grows case since having
   //  2 loops in the doesn't-grow case seems like it would be more wasteful than redoing work
   //  when table-grows since growing is relatively rare.
-  int origIndex = getIndex(hash, tab.length);
     retryAfterResize:
     for (;;) {
-      final int len = tab.length;
+      final int len = hashes.length;
       int i = getIndex(hash, len);
+      final int home = i;
       // A "Hop" is a probe after the initial index determined by the hash.
       // "inserting" includes the initial item AND an item which has been swapped out and thus
       // needs to be re-inserted
       int insertingKeyHops = 0;
+      int longestHops = 0;
 
-      int numKeyNotValue = 0; // TODO for debugging only.  Remove
-
-      MaskedHashKeyValue item;
-      for (Object currKey; (currKey = (item = tab[i]).key) != null;
+      for (int currHash; (currHash = hashes[i]) != EMPTY_HASH;
            i = nextKeyIndex(i, len)) {
-        // TODO look at jmh output size of table.  It seems high.
-//        try {
-//          if (++numKeyNotValue < 30 && tab[i].key != null && !tab[i].key.equals(tab[i].value)) {
-//            System.out.println("capacity:" + tab.length + " size:" + this.size);
-//            System.out.println("key!=value  i:" + i + " key:" + tab[i].key + " value:" + tab[i].value);
-//          }
-//        } catch (NullPointerException e) {
-//          System.out.println("capacity:" + tab.length + " size:" + this.size);
-//          System.out.println("NPE i:" + i);
-//          System.out.println("NPE tab[i]" + tab[i]);
-//          System.out.println("NPE tab[i].key" + tab[i].key);
-//          throw e;
-//        }
-
-        if (checkKeyCanBePresentAlready && item.maskedHash == hash && currKey.equals(maskedKey)) {
-          Object oldValue = item.value;
-          tab[i] = new MaskedHashKeyValue(hash, maskedKey, value);
+        final int keyIndex = i << 1;
+        if (checkKeyCanBePresentAlready && currHash == hash && maskedKey.equals(tab[keyIndex])) {
+          Object oldValue = tab[keyIndex + 1];
+          tab[keyIndex + 1] = value;
           return oldValue;
         }
 
-        final int currHash = item.maskedHash;
         int desiredIndexForCurrentKey = getIndex(currHash, len);
         int currKeyHops = getHops(i, len, desiredIndexForCurrentKey);
         if (insertingKeyHops > currKeyHops) {
-          // TODO Does the "primitive" facility (or the null-restricted value facility) have a
-          //  mechanism to assign some/all of its fields to variables such that making a copy of
-          //  the primitive is not required?  Or will java just optimize away this intermediary
-          //  assignment?
+          if (insertingKeyHops > longestHops)
+            longestHops = insertingKeyHops;
           // Swap
-          tab[i] = new MaskedHashKeyValue(hash, maskedKey, value);
+          final Object currKey = tab[keyIndex];
+          final Object currValue = tab[keyIndex + 1];
+          hashes[i] = hash;
+          tab[keyIndex] = maskedKey;
+          tab[keyIndex + 1] = value;
           hash = currHash;
           maskedKey = currKey;
-          value = item.value;
+          value = currValue;
           insertingKeyHops = currKeyHops;
+          // Once something has been displaced the inserted key can't be further along the run
+          checkKeyCanBePresentAlready = false;
         }
         insertingKeyHops++;
-
-        // TODO this is for debugging only.  Remove it
-        if (insertingKeyHops > 10) {
-          System.out.println("insertingKeyHops:" + insertingKeyHops + " origIndex:" + origIndex);
-
-          List<Object[]> arrayInfo = new ArrayList<>();
-          arrayInfo.add(new String[]{"i", "want-i", "probes", "hash", "key", "value"});
-          for (int x = origIndex - 1; x < origIndex + 20; x++) {
-            final int wantedIndex = getIndex(tab[x].maskedHash, tab.length);
-            int probes = 1+getHops(x, tab.length, wantedIndex);
-            arrayInfo.add(new Object[]{x, wantedIndex, probes, tab[x].maskedHash, tab[x].key, tab[x].value});
-          }
-          printTabularData(System.out, arrayInfo);
-          System.exit(42);
-        }
-
-      }
+      }
 
       final int s = size + 1;
       // Use optimized form of 3 * s.
-      // Next capacity is 2 * current capacity.
+      // Next capacity is 2 * current capacity, or 1.5 * with compact sizing.
       if (tableMayNeedResizing) {
-        if (s + (s << 1) > len << 1 && resize(len << 1)) {
+        if (s + (s << 1) > len << 1 && grow(grownCapacity(len))) {
+          // The swaps so far were made in the old table, and may have left a mapping too far from
+          // home there which the new table inherits
+          if (longestHops > maxProbeLength && longProbePolicy == LongProbePolicy.OVERFLOW
+              && oldTable == null)
+            overflowLongProbes();
+          hashes = hashedKeyTable;
           tab = table;
           continue retryAfterResize;
         }
       }
-      tab[i] = new MaskedHashKeyValue(hash, maskedKey, value);
-      if (!isCopying) // TODO do something about the number of these boolean params
-        modCount++;
-      if (allowResize)
-        size = s;
+      hashes[i] = hash;
+      tab[i << 1] = maskedKey;
+      tab[(i << 1) + 1] = value;
+      modCount++;
+      size = s;
+      if (insertingKeyHops > longestHops)
+        longestHops = insertingKeyHops;
+      if (longestHops > maxProbeLength)
+        longProbe(home, longestHops);
       return null;
     }
   }
 
+  /**
+   * What an insertion does when it leaves a mapping further from its home slot than the
+   * {@link #setMaxProbeLength(int) maximum probe length}.  Every lookup of that mapping, and every
+   * miss that passes it, then has to probe at least as far.
+   *
+   * <p>Whatever the policy, mappings that are still too far from home are moved into a secondary
+   * {@link HashMap}, where keys that share a hash code are kept in a tree ordered by
+   * {@link Comparable} when they implement it.  Lookups that miss in the table only consult it
+   * for keys whose home slot is marked as having overflowed.
+   *
+   * @see #setLongProbePolicy(LongProbePolicy)
+   */
+  public enum LongProbePolicy {
+    /**
+     * Double the table ahead of the load threshold, which shortens runs caused by keys whose
+     * hashes collide only in their low bits.  This is done at most once per doubling of the size,
+     * and in between the mapping overflows.
+     */
+    GROW,
+
+    /**
+     * Rebuild the table at the same capacity, mixing a new random seed into every stored hash.
+     * This breaks up runs caused by hash codes that are badly distributed (or deliberately
+     * chosen) for the unseeded index, without using any more memory.  This is done at most once
+     * per doubling of the size, and in between the mapping overflows.
+     */
+    RESEED,
+
+    /**
+     * Always move the mapping that went past the maximum probe length into the secondary map, so
+     * the table itself never holds a mapping further from home than that.
+     */
+    OVERFLOW
+  }
+
+  /**
+   * Applies the long probe policy after an insertion left a mapping {@code probeLength} slots
+   * from its home.  Growing and re-seeding are done at most once per doubling of the size, and
+   * in between the mapping is moved to <tt>overflow</tt> instead, much as {@code HashMap} turns a
+   * bin into a tree when resizing has not helped.
+   *
+   * @param home the home slot of the insertion that was too long, where its run starts
+   * @param probeLength the furthest the insertion left a mapping from its home
+   */
+  private void longProbe(int home, int probeLength) {
+    longProbeCount++;
+    final IntConsumer listener = longProbeListener;
+    if (listener != null)
+      listener.accept(probeLength);
+    switch (longProbePolicy) {
+      case GROW -> {
+        if (size >= longProbeRebuildSize << 1) {
+          longProbeRebuildSize = size;
+          grow(grownCapacity(hashedKeyTable.length));
+        } else {
+          overflowFrom(home);
+        }
+      }
+      case RESEED -> {
+        if (size >= longProbeRebuildSize << 1) {
+          longProbeRebuildSize = size;
+          reseed();
+        } else {
+          overflowFrom(home);
+        }
+      }
+      case OVERFLOW -> overflowFrom(home);
+    }
+  }
+
+  /**
+   * Rebuilds the table at the same capacity with a new random hash seed.  The hash codes of the
+   * keys are recovered from their stored hashes, so {@code hashCode()} is not called again.
+   * Mappings already in <tt>overflow</tt> stay there, as putting back keys that share a hash
+   * would rebuild the long runs they were taken out of.
+   */
+  private void reseed() {
+    remix(randomSeed(hashSeed), hashMixer);
+  }
+
+  /**
+   * Rebuilds the table at the same capacity with the stored hashes recomputed for the given seed
+   * and mixer, from the hash codes recovered from the current ones.
+   */
+  private void remix(int seed, HashMixer mixer) {
+    completeResize();
+    final int oldSeed = hashSeed;
+    final HashMixer oldMixer = hashMixer;
+    final int[] oldHashes = hashedKeyTable;
+    final Object[] oldTab = table;
+    final int len = oldHashes.length;
+    int[] newHashes = new int[len];
+    Object[] newTable = new Object[len << 1];
+    for (int j = 0; j < len; j++) {
+      final int maskedHash = oldHashes[j];
+      if (maskedHash != EMPTY_HASH) {
+        final Object maskedKey = oldTab[j << 1];
+        insertAbsent(newHashes, newTable,
+            maskHash(maskedKeyHash(maskedHash, maskedKey, oldSeed, oldMixer), seed, mixer),
+            maskedKey, oldTab[(j << 1) + 1]);
+      }
+    }
+    modCount++;
+    hashSeed = seed;
+    hashMixer = mixer;
+    hashedKeyTable = newHashes;
+    table = newTable;
+    markOverflowHomes();
+  }
+
+  /**
+   * Moves one mapping of the run starting at {@code home} that is more than
+   * <tt>maxProbeLength</tt> slots from its own home into <tt>overflow</tt>.
+   *
+   * <p>An insertion into a Robin Hood run shifts the mappings after the inserted one along by a
+   * slot.  Taking out the first of them that ended up too far from home and closing the gap
+   * shifts the rest back again, so one removal is enough for every mapping in the table to be
+   * within <tt>maxProbeLength</tt> of home again.
+   */
+  private void overflowFrom(int home) {
+    final int[] hashes = hashedKeyTable;
+    final Object[] tab = table;
+    final int len = hashes.length;
+    for (int i = home, maskedHash; (maskedHash = hashes[i]) != EMPTY_HASH;
+         i = nextKeyIndex(i, len)) {
+      if (getHops(i, len, getIndex(maskedHash, len)) > maxProbeLength) {
+        addOverflow(maskedHash, tab[i << 1], tab[(i << 1) + 1]);
+        clearSlot(hashes, tab, i);
+        closeDeletion(hashes, tab, i);
+        return;
+      }
+    }
+  }
+
+  /**
+   * Moves every mapping more than <tt>maxProbeLength</tt> slots from its home into
+   * <tt>overflow</tt>.  Used after rebuilding the table without applying the long probe policy to
+   * each insertion, where runs can merge into longer ones than any single insertion makes.
+   */
+  private void overflowLongProbes() {
+    final int[] hashes = hashedKeyTable;
+    final Object[] tab = table;
+    final int len = hashes.length;
+    // Start at an empty slot, so that every run is visited from its first slot
+    int i = 0;
+    while (hashes[i] != EMPTY_HASH)
+      i++;
+    for (int n = 0; n < len; ) {
+      final int maskedHash = hashes[i];
+      if (maskedHash != EMPTY_HASH && getHops(i, len, getIndex(maskedHash, len)) > maxProbeLength) {
+        addOverflow(maskedHash, tab[i << 1], tab[(i << 1) + 1]);
+        clearSlot(hashes, tab, i);
+        // Closing the gap moves the next mapping of the run into this slot, so look at it again
+        closeDeletion(hashes, tab, i);
+      } else {
+        n++;
+        i = nextKeyIndex(i, len);
+      }
+    }
+  }
+
+  /**
+   * Puts a mapping taken out of the table into <tt>overflow</tt>, and marks its home.
+   */
+  private void addOverflow(int maskedHash, Object maskedKey, Object value) {
+    final int len = hashedKeyTable.length;
+    if (overflow == null) {
+      overflow = new HashMap<>();
+      overflowHomes = new long[(len + 63) >>> 6];
+    }
+    overflow.put(maskedKey, value);
+    final int home = getIndex(maskedHash, len);
+    overflowHomes[home >>> 6] |= 1L << home;
+  }
+
+  /**
+   * Returns whether a key with the given stored hash may be in <tt>overflow</tt>.
+   */
+  private boolean isOverflowHome(int maskedHash) {
+    final long[] homes = overflowHomes;
+    if (homes == null)
+      return false;
+    final int home = getIndex(maskedHash, hashedKeyTable.length);
+    return (homes[home >>> 6] & (1L << home)) != 0;
+  }
+
+  /**
+   * Recomputes <tt>overflowHomes</tt> for a new table.  The keys in <tt>overflow</tt> are hashed
+   * again, which costs little next to rehashing the table.
+   */
+  private void markOverflowHomes() {
+    if (overflow == null)
+      return;
+    final int len = hashedKeyTable.length;
+    final long[] homes = new long[(len + 63) >>> 6];
+    for (Object maskedKey : overflow.keySet()) {
+      final int home = getIndex(maskHash(maskedKey), len);
+      homes[home >>> 6] |= 1L << home;
+    }
+    overflowHomes = homes;
+  }
+
+  /**
+   * Sets what an insertion does when it leaves a mapping more than the
+   * {@link #setMaxProbeLength(int) maximum probe length} from its home.  The default is
+   * {@link LongProbePolicy#RESEED RESEED}.
+   *
+   * @param longProbePolicy the policy
+   * @throws NullPointerException if {@code longProbePolicy} is null
+   */
+  public void setLongProbePolicy(LongProbePolicy longProbePolicy) {
+    this.longProbePolicy = Objects.requireNonNull(longProbePolicy);
+  }
+
+  /**
+   * Returns what an insertion does when it leaves a mapping too far from its home.
+   *
+   * @return the long probe policy
+   * @see #setLongProbePolicy(LongProbePolicy)
+   */
+  public LongProbePolicy getLongProbePolicy() {
+    return longProbePolicy;
+  }
+
+  /**
+   * Sets how many slots from its home an insertion may leave a mapping before the
+   * {@link #setLongProbePolicy(LongProbePolicy) long probe policy} is applied.
+   *
+   * @param maxProbeLength the maximum probe length, at least 1
+   * @throws IllegalArgumentException if {@code maxProbeLength} is less than 1
+   */
+  public void setMaxProbeLength(int maxProbeLength) {
+    if (maxProbeLength < 1)
+      throw new IllegalArgumentException("Illegal maximum probe length: " + maxProbeLength);
+    this.maxProbeLength = maxProbeLength;
+  }
+
+  /**
+   * Returns how many slots from its home an insertion may leave a mapping.
+   *
+   * @return the maximum probe length
+   * @see #setMaxProbeLength(int)
+   */
+  public int getMaxProbeLength() {
+    return maxProbeLength;
+  }
+
+  /**
+   * Sets a listener told the probe length of every insertion that exceeds the
+   * {@link #setMaxProbeLength(int) maximum probe length}, before the long probe policy is
+   * applied.  It is called by the inserting thread and must not modify this map.
+   *
+   * @param longProbeListener the listener, or null for none
+   */
+  public void setLongProbeListener(IntConsumer longProbeListener) {
+    this.longProbeListener = longProbeListener;
+  }
+
+  /**
+   * Returns the number of insertions that have exceeded the
+   * {@link #setMaxProbeLength(int) maximum probe length}.
+   *
+   * @return the number of insertions that have exceeded the maximum probe length
+   */
+  public long getLongProbeCount() {
+    return longProbeCount;
+  }
+
+  /**
+   * Sets how the home slots of keys are derived from their hash codes.  The default is
+   * {@link HashMixer#XOR_SHIFT XOR_SHIFT}.  Changing the mixer of a map that is not empty
+   * rehashes it, from the stored hashes rather than by calling {@code hashCode()}.
+   *
+   * @param hashMixer the mixer
+   * @throws NullPointerException if {@code hashMixer} is null
+   */
+  public void setHashMixer(HashMixer hashMixer) {
+    Objects.requireNonNull(hashMixer);
+    if (hashMixer == this.hashMixer)
+      return;
+    remix(hashSeed, hashMixer);
+    if (longProbePolicy == LongProbePolicy.OVERFLOW)
+      overflowLongProbes();
+  }
+
+  /**
+   * Returns how the home slots of keys are derived from their hash codes.
+   *
+   * @return the hash mixer
+   * @see #setHashMixer(HashMixer)
+   */
+  public HashMixer getHashMixer() {
+    return hashMixer;
+  }
+
+  /**
+   * Sets where the seed scrambled into the stored hash of every key comes from.  The default is
+   * {@link HashSeeding#NONE NONE}.  A map that may be filled with keys an attacker chooses should
+   * be seeded, preferably as soon as it is constructed, since setting a seed rehashes a map that
+   * is not empty, from the stored hashes rather than by calling {@code hashCode()}.  Every call
+   * with {@link HashSeeding#PER_INSTANCE PER_INSTANCE} picks a new seed.  A deserialized map is
+   * seeded afresh according to the seeding it was serialized with.
+   *
+   * @param hashSeeding the seeding
+   * @throws NullPointerException if {@code hashSeeding} is null
+   */
+  public void setHashSeeding(HashSeeding hashSeeding) {
+    Objects.requireNonNull(hashSeeding);
+    this.hashSeeding = hashSeeding;
+    int seed = hashSeeding.seed();
+    if (seed == hashSeed)
+      return;
+    remix(seed, hashMixer);
+    if (longProbePolicy == LongProbePolicy.OVERFLOW)
+      overflowLongProbes();
+  }
+
+  /**
+   * Returns where the seed scrambled into the stored hash of every key comes from.
+   *
+   * @return the seeding
+   * @see #setHashSeeding(HashSeeding)
+   */
+  public HashSeeding getHashSeeding() {
+    return hashSeeding;
+  }
+
+  /**
+   * Sets whether the table is sized compactly.  Normally the table length is a power of two, so
+   * that the home slot of a key is the low bits of its stored hash, and the table doubles when it
+   * grows; a map sized for a little over a million mappings has 2<sup>21</sup> slots, and is then
+   * only half full.  With compact sizing the table is given just the length the mappings need at
+   * the maximum load of 2/3, and grows by half, so that on average a large map wastes much less
+   * of its table.  The home slot in a table whose length is not a power of two is the high half of
+   * the stored hash, multiplied to spread its low bits, times the length.  That costs a
+   * multiplication more per probed slot, and growing such a table Robin Hood inserts every
+   * mapping rather than copying the runs across in order.
+   *
+   * <p>The sizing applies from the next time the table is resized; {@link #trimToSize()} or
+   * {@link #ensureCapacity(int)} resize it at once.
+   *
+   * @param compactSizing whether to size the table compactly
+   */
+  public void setCompactSizing(boolean compactSizing) {
+    this.compactSizing = compactSizing;
+  }
+
+  /**
+   * Returns whether the table is sized compactly.
+   *
+   * @return whether the table is sized compactly
+   * @see #setCompactSizing(boolean)
+   */
+  public boolean isCompactSizing() {
+    return compactSizing;
+  }
+
   /**
    * Print stats of the table to the a stream.
    * @param out a stream
@@ -639,7 +1529,7 @@ Object putVal(Object maskedKey, Object value, MaskedHashKeyValue[] tab, boolean
     long size = heapSize();
     long bytesPer = (this.size != 0) ? size / this.size() : 0;
     out.printf("    heap size: %d(bytes), avg bytes per entry: %d, table len: %d%n\n",
-        size, bytesPer, (table != null) ? table.length : 0);
+        size, bytesPer, (hashedKeyTable != null) ? hashedKeyTable.length : 0);
   }
 
   private void printStats(PrintStream out, String label, int[] data, int max){
@@ -680,11 +1570,7 @@ Object putVal(Object maskedKey, Object value, MaskedHashKeyValue[] tab, boolean
   // Returns a histogram array of the number of rehashs needed to find each key.
   private long heapSize () {
     long acc = objectSizeMaybe(this);
-    return acc + objectSizeMaybe(table);
-    // TODO when table.length == 262144 objectSizeMaybe(table) returns 4194320.
-    //  (4194320 / 262144) == 16.  16 / 3 fields == 5 bytes per field instead of 4.
-    //  I'm hoping that the final version of null-restricted Value objects this will be closer to 4.
-    //  The Object overhead of table should be negligible for such a large table.
+    return acc + objectSizeMaybe(hashedKeyTable) + objectSizeMaybe(table);
   }
 
   private long objectSizeMaybe (Object o){
@@ -711,7 +1597,7 @@ Object putVal(Object maskedKey, Object value, MaskedHashKeyValue[] tab, boolean
   }
 
   public void dumpAllData(PrintStream out) {
-    dump(out, 0, table.length);
+    dump(out, 0, hashedKeyTable.length);
   }
 
   public void dumpStats(PrintStream out) {
@@ -719,14 +1605,17 @@ Object putVal(Object maskedKey, Object value, MaskedHashKeyValue[] tab, boolean
   }
 
   public void dump(PrintStream out, int startIndex, int len) {
+    completeResize();
     try {
-      MaskedHashKeyValue[] tab = table; // TODO remove var if don't make a dump that takes a table param (eg for the traversal table)
-      out.println("size: " + size + " capacity:" + tab.length);
+      final int[] hashes = hashedKeyTable; // TODO remove vars if don't make a dump that takes a table param (eg for the traversal table)
+      final Object[] tab = table;
+      final int capacity = hashes.length;
+      out.println("size: " + size + " capacity:" + capacity);
       dumpSizeStats(out);
       startIndex = Math.max(startIndex, 0);
       int[] probesHistogram = new int[64];
       int maxProbes = 0;
-      len = Math.min(len, tab.length);
+      len = Math.min(len, capacity);
       List<Object[]> arrayInfo;
       if (len > 0) {
         arrayInfo = new ArrayList<>();
@@ -737,12 +1626,12 @@ Object putVal(Object maskedKey, Object value, MaskedHashKeyValue[] tab, boolean
 
       int maxProbeIndex = -1;
       int numNonEmptyItems = 0;
-      for (int i = 0; i < tab.length; i++) {
-        final int wantedIndex = getIndex(tab[i].maskedHash, tab.length);
+      for (int i = 0; i < capacity; i++) {
+        final int wantedIndex = getIndex(hashes[i], capacity);
         int probes = 0;
-        if (tab[i].key != null) {
+        if (hashes[i] != EMPTY_HASH) {
           numNonEmptyItems++;
-          probes = 1+getHops(i, tab.length, wantedIndex);
+          probes = 1+getHops(i, capacity, wantedIndex);
           if (i % 5_000_000 == 10) {
             System.out.println("1st loop i:" +i);
           }
@@ -757,7 +1646,7 @@ Object putVal(Object maskedKey, Object value, MaskedHashKeyValue[] tab, boolean
           probesHistogram[probes]++;
         }
         if (i >= startIndex && i < startIndex + len) {
-          arrayInfo.add(new Object[]{i, wantedIndex, probes, tab[i].maskedHash, tab[i].key, tab[i].value});
+          arrayInfo.add(new Object[]{i, wantedIndex, probes, hashes[i], tab[i << 1], tab[(i << 1) + 1]});
         }
       }
 
@@ -765,9 +1654,9 @@ Object putVal(Object maskedKey, Object value, MaskedHashKeyValue[] tab, boolean
       arrayInfo.add(new Object[]{"--", "--", "--", "--", "--", "--"});
       // Look for fishy stuff around the place where the num-probes is greatest
       for (int i = Math.max(maxProbeIndex - (maxProbes+2), 0); i < Math.min(maxProbeIndex + maxProbes +2, 300); i++) {
-        final int wantedIndex = getIndex(tab[i].maskedHash, tab.length);
-        int probes = 1+getHops(i, tab.length, wantedIndex);
-        arrayInfo.add(new Object[]{i, wantedIndex, probes, tab[i].maskedHash, tab[i].key, tab[i].value});
+        final int wantedIndex = getIndex(hashes[i], capacity);
+        int probes = 1+getHops(i, capacity, wantedIndex);
+        arrayInfo.add(new Object[]{i, wantedIndex, probes, hashes[i], tab[i << 1], tab[(i << 1) + 1]});
       }
 
       out.println("numNonEmptyItems:" + numNonEmptyItems);
@@ -811,24 +1700,22 @@ Object putVal(Object maskedKey, Object value, MaskedHashKeyValue[] tab, boolean
   }
 
   static int getHops(int i, int len, int desiredIndexForCurrentKey) {
-    return (i + len - desiredIndexForCurrentKey) & (len - 1);
+    int hops = i - desiredIndexForCurrentKey;
+    return hops < 0 ? hops + len : hops;
   }
 
   /**
    * Resizes the table if necessary to hold given capacity.
    *
-   * @param newCapacity the new capacity, must be a power of two.
+   * @param newCapacity the new capacity
    * @return whether a resize did in fact take place
    */
   private boolean resize(int newCapacity) {
-    // TODO comment out assertions
-    assert (newCapacity & -newCapacity) == newCapacity : "Should be power of 2";
+    completeResize();
 
-    // TODO just for debugging, remove
-    System.out.println("Resizing  size:" + this.size + " len:" + this.table.length);
-
-    MaskedHashKeyValue[] oldTable = table;
-    int oldLength = oldTable.length;
+    int[] oldHashes = hashedKeyTable;
+    Object[] oldTable = table;
+    int oldLength = oldHashes.length;
     if (oldLength == MAXIMUM_CAPACITY) { // can't expand any further
       if (size == MAXIMUM_CAPACITY - 1)
         throw new IllegalStateException("Capacity exhausted.");
@@ -837,18 +1724,1159 @@ Object putVal(Object maskedKey, Object value, MaskedHashKeyValue[] tab, boolean
     if (oldLength >= newCapacity)
       return false;
 
-    MaskedHashKeyValue[] newTable = MaskedHashKeyValue.createEmptyFilledArray(newCapacity);
+    int[] newHashes = new int[newCapacity];
+    Object[] newTable = new Object[newCapacity << 1];
+    if (!isPowerOfTwo(oldLength) || !isPowerOfTwo(newCapacity))
+      reinsert(oldHashes, oldTable, newHashes, newTable);
+    else if (oldLength >= parallelResizeThreshold && ForkJoinPool.getCommonPoolParallelism() > 1)
+      parallelTransfer(oldHashes, oldTable, newHashes, newTable, ForkJoinPool.commonPool());
+    else
+      transfer(oldHashes, oldTable, newHashes, newTable);
+    hashedKeyTable = newHashes;
+    table = newTable;
+    markOverflowHomes();
+    return true;
+  }
+
+  /**
+   * Replaces the table with a smaller one.  Unlike growing, the home indexes in the smaller table
+   * are not in the same order as in the old one, so each mapping is Robin Hood inserted.
+   *
+   * @param newCapacity the new capacity, large enough for the mappings
+   */
+  private void shrink(int newCapacity) {
+    completeResize();
+    final int[] oldHashes = hashedKeyTable;
+    final Object[] oldTab = table;
+    assert newCapacity < oldHashes.length && size < newCapacity;
+
+    int[] newHashes = new int[newCapacity];
+    Object[] newTable = new Object[newCapacity << 1];
+    reinsert(oldHashes, oldTab, newHashes, newTable);
+    modCount++;
+    hashedKeyTable = newHashes;
+    table = newTable;
+    markOverflowHomes();
+    if (longProbePolicy == LongProbePolicy.OVERFLOW)
+      overflowLongProbes();
+  }
+
+  /**
+   * Halves the table after a removal if the load has fallen below the
+   * {@link #setShrinkLoadFactor(float) shrink load factor}.  Tables of the default capacity or
+   * less are left alone, as is a table that is still being grown incrementally.
+   */
+  private void shrinkIfSparse() {
+    final int len = hashedKeyTable.length;
+    if (size < shrinkLoadFactor * len && len > DEFAULT_CAPACITY && oldTable == null)
+      shrink(len >> 1);
+  }
+
+  /**
+   * Grows the table, if necessary, so that it can hold the given number of mappings without
+   * resizing again.  Like the {@link #OpenHashMap(int) expectedMaxSize} constructor, this avoids
+   * the repeated resizes of filling a map one mapping at a time.  In
+   * {@link #beginLazyInsert(DuplicateKeyPolicy) lazy insert mode} it sizes the log, and the index
+   * is built at least this large.
+   *
+   * @param expectedMaxSize the expected maximum size of the map
+   * @throws IllegalArgumentException if {@code expectedMaxSize} is negative
+   */
+  public void ensureCapacity(int expectedMaxSize) {
+    if (expectedMaxSize < 0)
+      throw new IllegalArgumentException("expectedMaxSize is negative: "
+          + expectedMaxSize);
+    if (oldTable == LAZY_LOG) {
+      ensureLogCapacity(expectedMaxSize);
+      lazyCapacity = Math.max(lazyCapacity, capacityFor(expectedMaxSize));
+    } else if (resize(capacityFor(expectedMaxSize))) {
+      modCount++;
+    }
+  }
+
+  /**
+   * Shrinks the table to the smallest capacity that holds the current mappings.  A map that
+   * once held many more mappings than it does now keeps its large table, which every iteration
+   * and {@code containsValue} still has to scan, until this is called.
+   */
+  public void trimToSize() {
+    completeResize();
+    int newCapacity = capacityFor(size);
+    if (newCapacity < hashedKeyTable.length)
+      shrink(newCapacity);
+  }
+
+  /**
+   * Sets the load below which removing a mapping halves the table.  The default, 0, means the
+   * table never shrinks by itself.  The factor is at most 1/4, so that a halved table is at
+   * most half full and has to take a good many insertions before it reaches the 2/3 load that
+   * makes it grow again, and the grown table is back above the factor.  A map with a shrink load
+   * factor also drops back to the default capacity when it is cleared.
+   *
+   * @param shrinkLoadFactor the load below which the table is halved, from 0 to 0.25
+   * @throws IllegalArgumentException if {@code shrinkLoadFactor} is not between 0 and 0.25
+   */
+  public void setShrinkLoadFactor(float shrinkLoadFactor) {
+    if (!(shrinkLoadFactor >= 0 && shrinkLoadFactor <= 0.25f))
+      throw new IllegalArgumentException("Illegal shrink load factor: " + shrinkLoadFactor);
+    this.shrinkLoadFactor = shrinkLoadFactor;
+  }
+
+  /**
+   * Returns the load below which removing a mapping halves the table.
+   *
+   * @return the load below which removing a mapping halves the table
+   * @see #setShrinkLoadFactor(float)
+   */
+  public float getShrinkLoadFactor() {
+    return shrinkLoadFactor;
+  }
 
-    for (int j = 0; j < oldLength; j++) {
-      MaskedHashKeyValue oldElem = oldTable[j]; // TODO be consistent using either "elem" or "item", drop one of them.
-      if (oldElem.key != null) {
-        putVal(oldElem.key, oldElem.value, newTable, false, false, true, false); // TODO oldElem has hash so don't re-compute it here
+  /**
+   * Doubles the capacity of the table, migrating the mappings with up to {@code parallelism}
+   * threads.  A resize started by an insertion only migrates in parallel for tables of at least
+   * {@link #setParallelResizeThreshold(int) the parallel resize threshold}; this method allows a
+   * very large map to be grown ahead of a bulk load with whatever parallelism suits the caller.
+   * A table whose length is not a power of two, which {@link #setCompactSizing(boolean) compact
+   * sizing} gives, is always migrated in the calling thread.
+   *
+   * @param parallelism the number of threads to migrate with, 1 to migrate in the calling thread
+   * @throws IllegalArgumentException if {@code parallelism} is less than 1
+   * @throws IllegalStateException if the table is already at its maximum capacity
+   */
+  public void rehash(int parallelism) {
+    if (parallelism < 1)
+      throw new IllegalArgumentException("Illegal parallelism: " + parallelism);
+    completeResize();
+    int[] oldHashes = hashedKeyTable;
+    Object[] oldTable = table;
+    int oldLength = oldHashes.length;
+    if (oldLength == MAXIMUM_CAPACITY)
+      throw new IllegalStateException("Capacity exhausted.");
+
+    int[] newHashes = new int[oldLength << 1];
+    Object[] newTable = new Object[oldLength << 2];
+    if (!isPowerOfTwo(oldLength)) {
+      reinsert(oldHashes, oldTable, newHashes, newTable);
+    } else if (parallelism == 1) {
+      transfer(oldHashes, oldTable, newHashes, newTable);
+    } else {
+      ForkJoinPool pool = new ForkJoinPool(parallelism);
+      try {
+        parallelTransfer(oldHashes, oldTable, newHashes, newTable, pool);
+      } finally {
+        pool.shutdown();
       }
     }
+    modCount++;
+    hashedKeyTable = newHashes;
     table = newTable;
+    markOverflowHomes();
+  }
+
+  /**
+   * Sets the table length from which a resize started by an insertion migrates the mappings on
+   * the common {@link ForkJoinPool}, if that has more than one thread.
+   *
+   * @param parallelResizeThreshold the table length, {@code Integer.MAX_VALUE} to always resize
+   *        in the calling thread
+   * @throws IllegalArgumentException if {@code parallelResizeThreshold} is not positive
+   */
+  public void setParallelResizeThreshold(int parallelResizeThreshold) {
+    if (parallelResizeThreshold <= 0)
+      throw new IllegalArgumentException("Illegal threshold: " + parallelResizeThreshold);
+    this.parallelResizeThreshold = parallelResizeThreshold;
+  }
+
+  /**
+   * Returns the table length from which a resize migrates the mappings in parallel.
+   *
+   * @return the table length from which a resize migrates the mappings in parallel
+   * @see #setParallelResizeThreshold(int)
+   */
+  public int getParallelResizeThreshold() {
+    return parallelResizeThreshold;
+  }
+
+  /**
+   * Moves every mapping of a table into an empty table that is at least as large, using the
+   * stored hashes rather than calling {@code hashCode()} again.
+   *
+   * <p>The old table is walked once, starting just after an empty slot, so the mappings of each
+   * Robin Hood run are met in the order of their home indexes.  Because both lengths must be
+   * powers of two the home index in the new table keeps the low bits of the old one, so the mappings also
+   * arrive in home index order for the new table and each one can go in the first empty slot at
+   * or after its new home without displacing anything.
+   *
+   * @param oldHashes the hashes of the table being emptied, which must have an empty slot
+   * @param oldTable the keys and values of the table being emptied
+   * @param newHashes the hashes of the new table, all {@link #EMPTY_HASH}
+   * @param newTable the keys and values of the new table, all null
+   */
+  static void transfer(int[] oldHashes, Object[] oldTable, int[] newHashes, Object[] newTable) {
+    assert isPowerOfTwo(oldHashes.length) && isPowerOfTwo(newHashes.length);
+    int start = 0;
+    while (oldHashes[start] != EMPTY_HASH)
+      start++;
+    transfer(oldHashes, oldTable, newHashes, newTable, start, oldHashes.length);
+  }
+
+  /**
+   * Moves every mapping of a table into an empty table of any length by Robin Hood inserting it,
+   * for when the home indexes in the new table are not in the same order as in the old one.
+   */
+  static void reinsert(int[] oldHashes, Object[] oldTable, int[] newHashes, Object[] newTable) {
+    for (int j = 0; j < oldHashes.length; j++) {
+      final int hash = oldHashes[j];
+      if (hash != EMPTY_HASH)
+        insertAbsent(newHashes, newTable, hash, oldTable[j << 1], oldTable[(j << 1) + 1]);
+    }
+  }
+
+  private static boolean isPowerOfTwo(int length) {
+    return (length & (length - 1)) == 0;
+  }
+
+  /**
+   * Does the work of {@link #transfer(int[], Object[], int[], Object[])} for the {@code n} old
+   * slots from {@code from}, which must be an empty slot.
+   */
+  static void transfer(int[] oldHashes, Object[] oldTable, int[] newHashes, Object[] newTable,
+                       int from, int n) {
+    final int oldLength = oldHashes.length;
+    final int newLength = newHashes.length;
+    assert newLength >= oldLength;
+
+    for (int m = 0, j = from; m < n; m++, j = nextKeyIndex(j, oldLength)) {
+      final int hash = oldHashes[j];
+      if (hash != EMPTY_HASH) {
+        int i = getIndex(hash, newLength);
+        while (newHashes[i] != EMPTY_HASH)
+          i = nextKeyIndex(i, newLength);
+        newHashes[i] = hash;
+        newTable[i << 1] = oldTable[j << 1];
+        newTable[(i << 1) + 1] = oldTable[(j << 1) + 1];
+      }
+    }
+  }
+
+  /**
+   * Does the work of {@link #transfer(int[], Object[], int[], Object[])} on a pool.
+   *
+   * <p>The old table is cut into chunks that each start at an empty slot, so no Robin Hood run
+   * wraps from one chunk into the next.  The mappings of a chunk of {@code n} slots from
+   * {@code s} have their homes in the new table in the ranges of {@code n} slots from {@code s},
+   * {@code s + oldLength}, {@code s + 2 * oldLength} and so on (wrapping round the end of the
+   * table), which no other chunk's mappings have homes in.  Each range gets a subset of the
+   * chunk's mappings in the same order, so none lands further from the start of its range than
+   * it was from the start of the chunk, and no mapping leaves its range.  So each chunk can be
+   * moved by its own task without any locking, and the result is the same table that a single
+   * thread would have built.
+   *
+   * @param oldHashes the hashes of the table being emptied, which must have an empty slot
+   * @param oldTable the keys and values of the table being emptied
+   * @param newHashes the hashes of the new table, all {@link #EMPTY_HASH}
+   * @param newTable the keys and values of the new table, all null
+   * @param pool the pool to run the chunk tasks on
+   */
+  static void parallelTransfer(int[] oldHashes, Object[] oldTable, int[] newHashes,
+                               Object[] newTable, ForkJoinPool pool) {
+    final int oldLength = oldHashes.length;
+    final int chunks = Math.min(pool.getParallelism() << 2, oldLength / MIN_TRANSFER_CHUNK);
+    int start = 0;
+    while (oldHashes[start] != EMPTY_HASH)
+      start++;
+    if (chunks <= 1) {
+      transfer(oldHashes, oldTable, newHashes, newTable, start, oldLength);
+      return;
+    }
+
+    // Chunk boundaries, each moved forward to an empty slot, as offsets from start
+    int[] bounds = new int[chunks + 1];
+    int count = 1;
+    for (int c = 1; c < chunks; c++) {
+      int offset = Math.max((int) ((long) oldLength * c / chunks), bounds[count - 1] + 1);
+      while (offset < oldLength && oldHashes[(start + offset) & (oldLength - 1)] != EMPTY_HASH)
+        offset++;
+      if (offset >= oldLength)
+        break;
+      bounds[count++] = offset;
+    }
+    bounds[count] = oldLength;
+    pool.invoke(new TransferTask(oldHashes, oldTable, newHashes, newTable, start, bounds, 0, count));
+  }
+
+  /**
+   * Moves a range of the chunks of a {@link #parallelTransfer}, splitting it until there is a
+   * single chunk per task.
+   */
+  @SuppressWarnings("serial") // never serialized
+  static final class TransferTask extends RecursiveAction {
+    @java.io.Serial
+    private static final long serialVersionUID = 1L;
+
+    final int[] oldHashes;
+    final Object[] oldTable;
+    final int[] newHashes;
+    final Object[] newTable;
+    final int start;     // an empty slot of the old table, where chunk 0 starts
+    final int[] bounds;  // chunk boundaries as offsets from start
+    final int lo, hi;    // the chunks to move
+
+    TransferTask(int[] oldHashes, Object[] oldTable, int[] newHashes, Object[] newTable,
+                 int start, int[] bounds, int lo, int hi) {
+      this.oldHashes = oldHashes;
+      this.oldTable = oldTable;
+      this.newHashes = newHashes;
+      this.newTable = newTable;
+      this.start = start;
+      this.bounds = bounds;
+      this.lo = lo;
+      this.hi = hi;
+    }
+
+    @Override
+    protected void compute() {
+      if (hi - lo > 1) {
+        int mid = (lo + hi) >>> 1;
+        invokeAll(new TransferTask(oldHashes, oldTable, newHashes, newTable, start, bounds, lo, mid),
+                  new TransferTask(oldHashes, oldTable, newHashes, newTable, start, bounds, mid, hi));
+      } else {
+        transfer(oldHashes, oldTable, newHashes, newTable,
+            (start + bounds[lo]) & (oldHashes.length - 1), bounds[lo + 1] - bounds[lo]);
+      }
+    }
+  }
+
+  /**
+   * Lays out {@code n} mappings, given as masked keys, values and stored hashes in the order
+   * they were added, in this map's table, which must be empty, and sets the size.  This is how
+   * {@link Builder} builds a map, and how lazy insert mode builds its index.  The table is split into a power of two number of equal ranges
+   * of home indexes, one or more per task of the pool if there is one and the table length is a
+   * power of two, and just one otherwise.  The mappings are moved so that each partition's are
+   * together, in the order they were added, and each partition is laid out in its own range by
+   * its own task, with Robin Hood insertion.  A mapping that a run pushes past the end of its
+   * partition's range is put aside, and once every partition is laid out those are Robin Hood
+   * inserted into the whole table, which fixes up the runs that cross the boundaries.
+   *
+   * <p>The long probe policy is applied to the lay out as a whole, since applying it to each
+   * insertion would rebuild the table part way through.  A mapping carried more than the
+   * maximum probe length from its home stops the lay out, which starts again with a new seed or
+   * a longer table as the policy says.  After that, and from the start with
+   * {@link LongProbePolicy#OVERFLOW OVERFLOW}, such mappings are put in overflow.  So clustered
+   * hash codes cost at most one more lay out, and leave no probe longer than the maximum, rather
+   * than a lay out quadratic in the size of the clusters and runs as long.  Unlike a resize, a
+   * lay out starts from hash codes that nothing has checked yet.
+   *
+   * @param keyHashes the stored hashes, which are recomputed in place when the map is reseeded
+   * @param lastWins whether a key added more than once keeps the value added last, rather than
+   *        the first
+   * @param pool the pool to lay out on, or null to lay out in the calling thread
+   * @return the first masked key found more than once, unless {@code lastWins}, or null
+   */
+  final Object layOutAll(int[] keyHashes, Object[] keys, Object[] values, int n,
+                         boolean lastWins, ForkJoinPool pool) {
+    final int chunks = buildChunks(pool, n);
+    boolean mayRebuild = longProbePolicy != LongProbePolicy.OVERFLOW;
+    for (;;) {
+      final int[] hashes = hashedKeyTable;
+      final Object[] tab = table;
+      final int len = hashes.length;
+      final int partitions = pool == null || !isPowerOfTwo(len) ? 1
+          : Math.max(1, Integer.highestOneBit(Math.min(buildTasks(pool), len / Builder.MIN_BUILD_CHUNK)));
+      final int shift = Integer.numberOfTrailingZeros(len / partitions);
+      final boolean overflowLong = !mayRebuild;
+      final int maxProbe = maxProbeLength;
+
+      final Builder.Spill[] spills = new Builder.Spill[partitions];
+      if (partitions == 1) { // already in order
+        spills[0] = Builder.layOut(hashes, tab, 0, len, keyHashes, keys, values, 0, n, lastWins,
+            maxProbe, overflowLong);
+      } else {
+        // Count each chunk's mappings by partition, then where they go, partition by partition
+        final int[] counts = new int[chunks * partitions];
+        runTasks(pool, chunks, c -> {
+          for (int i = (int) ((long) n * c / chunks), end = (int) ((long) n * (c + 1) / chunks);
+               i < end; i++)
+            counts[c * partitions + (getIndex(keyHashes[i], len) >>> shift)]++;
+        });
+        final int[] starts = new int[partitions + 1];
+        for (int p = 0, at = 0; p < partitions; p++) {
+          starts[p] = at;
+          for (int c = 0; c < chunks; c++) {
+            final int k = counts[c * partitions + p];
+            counts[c * partitions + p] = at;
+            at += k;
+          }
+        }
+        starts[partitions] = n;
+
+        final int[] sortedHashes = new int[n];
+        final Object[] sortedKeys = new Object[n];
+        final Object[] sortedValues = new Object[n];
+        runTasks(pool, chunks, c -> {
+          for (int i = (int) ((long) n * c / chunks), end = (int) ((long) n * (c + 1) / chunks);
+               i < end; i++) {
+            final int hash = keyHashes[i];
+            final int at = counts[c * partitions + (getIndex(hash, len) >>> shift)]++;
+            sortedHashes[at] = hash;
+            sortedKeys[at] = keys[i];
+            sortedValues[at] = values[i];
+          }
+        });
+
+        // Lay out each partition in its range, putting aside what runs off the end
+        runTasks(pool, partitions, p -> spills[p] = Builder.layOut(hashes, tab, p << shift,
+            (p + 1) << shift, sortedHashes, sortedKeys, sortedValues, starts[p], starts[p + 1],
+            lastWins, maxProbe, overflowLong));
+      }
+
+      int longest = 0;
+      for (Builder.Spill spill : spills)
+        longest = Math.max(longest, spill.longProbe);
+      if (longest == 0 || !mayRebuild) {
+        int size = 0;
+        Object duplicate = null;
+        HashMap<Object,Object> overflow = null;
+        for (Builder.Spill spill : spills) {
+          size += spill.distinct;
+          if (duplicate == null)
+            duplicate = spill.duplicate;
+          for (int j = 0; j < spill.count; j++)
+            longest = Math.max(longest,
+                insertAbsent(hashes, tab, spill.hashes[j], spill.keys[j], spill.values[j]));
+          if (spill.overflow != null) {
+            if (overflow == null)
+              overflow = spill.overflow;
+            else
+              overflow.putAll(spill.overflow);
+          }
+        }
+        // The runs that cross partitions can only be checked once they are joined up
+        if (longest <= maxProbe || !mayRebuild) {
+          this.size = size;
+          this.overflow = overflow;
+          markOverflowHomes();
+          if (longest > maxProbe) {
+            overflowLongProbes();
+            longProbeCount++;
+            if (longProbeListener != null)
+              longProbeListener.accept(longest);
+          }
+          if (!mayRebuild)
+            longProbeRebuildSize = size;
+          return duplicate;
+        }
+      }
+
+      // Start again with a new seed or a longer table
+      longProbeCount++;
+      if (longProbeListener != null)
+        longProbeListener.accept(longest);
+      mayRebuild = false;
+      if (longProbePolicy == LongProbePolicy.RESEED) {
+        final int oldSeed = hashSeed;
+        final int seed = randomSeed(oldSeed);
+        final HashMixer mixer = hashMixer;
+        runTasks(pool, chunks, c -> {
+          for (int i = (int) ((long) n * c / chunks), end = (int) ((long) n * (c + 1) / chunks);
+               i < end; i++)
+            keyHashes[i] = maskHash(maskedKeyHash(keyHashes[i], keys[i], oldSeed, mixer), seed, mixer);
+        });
+        hashSeed = seed;
+        init(len);
+      } else {
+        init(grownCapacity(len));
+      }
+    }
+  }
+
+  /**
+   * Returns the number of tasks worth forking to build a map on the pool, or 1 without one.
+   */
+  private static int buildTasks(ForkJoinPool pool) {
+    return pool == null ? 1 : pool.getParallelism() << 2;
+  }
+
+  /**
+   * Returns the number of chunks that {@code n} mappings are hashed and sorted in to build a map.
+   */
+  private static int buildChunks(ForkJoinPool pool, int n) {
+    return Math.max(1, Math.min(buildTasks(pool), n / Builder.MIN_BUILD_CHUNK));
+  }
+
+  /**
+   * Runs the action for each of {@code n} task indexes, on the pool if there is one.
+   */
+  private static void runTasks(ForkJoinPool pool, int n, IntConsumer action) {
+    if (pool == null || n == 1) {
+      for (int t = 0; t < n; t++)
+        action.accept(t);
+    } else {
+      pool.invoke(new Builder.BuildTask(action, 0, n));
+    }
+  }
+
+  /**
+   * Collects mappings and builds an {@code OpenHashMap} of them, sized for all of them at once so
+   * that no insertion resizes the table.  Where a key is added more than once the map keeps the
+   * value added last, as a sequence of {@code put}s would.  The map is built with the default
+   * settings, and the long probe policy is applied to the build as a whole, see
+   * {@link OpenHashMap#layOutAll layOutAll}.
+   *
+   * <p>With {@link #parallel()} the work is spread over a {@link ForkJoinPool}.  The keys are
+   * hashed in chunks, and each chunk counts its mappings by partition, a partition being one of
+   * a power of two number of equal ranges of home indexes.  The mappings are then moved so that
+   * each partition's are together, in the order they were added, and each partition is laid out
+   * in its own range of the table by its own task, with Robin Hood insertion.  A mapping that a
+   * run pushes past the end of its partition's range is put aside, and once every partition is
+   * laid out those are Robin Hood inserted into the whole table, which fixes up the runs that
+   * cross the boundaries.  With a table a third empty there are few of them.
+   *
+   * <p>A builder builds one map.  Without {@code parallel()} the same steps are run in the
+   * calling thread, with a single partition.
+   *
+   * @param <K> the type of keys
+   * @param <V> the type of values
+   * @see OpenHashMap#builder(int)
+   */
+  public static final class Builder<K,V> {
+    /**
+     * The fewest mappings worth a task of their own.
+     */
+    private static final int MIN_BUILD_CHUNK = 1 << 14;
+
+    private final int expectedSize;
+    private ForkJoinPool pool;
+    private Object[] keys;
+    private Object[] values;
+    private int count;
+
+    Builder(int expectedSize) {
+      if (expectedSize < 0)
+        throw new IllegalArgumentException("expectedSize is negative: " + expectedSize);
+      this.expectedSize = expectedSize;
+      int initial = Math.min(Math.max(expectedSize, 16), MAXIMUM_CAPACITY);
+      keys = new Object[initial];
+      values = new Object[initial];
+    }
+
+    /**
+     * Builds the map on the {@link ForkJoinPool#commonPool() common pool}.
+     *
+     * @return this builder
+     */
+    public Builder<K,V> parallel() {
+      return parallel(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Builds the map on the given pool.
+     *
+     * @param pool the pool to build the map on
+     * @return this builder
+     * @throws NullPointerException if {@code pool} is null
+     */
+    public Builder<K,V> parallel(ForkJoinPool pool) {
+      this.pool = Objects.requireNonNull(pool);
+      return this;
+    }
+
+    /**
+     * Adds a mapping.
+     *
+     * @param key the key
+     * @param value the value
+     * @return this builder
+     * @throws IllegalStateException if the map has been built
+     */
+    public Builder<K,V> add(K key, V value) {
+      ensureRoom(1);
+      keys[count] = key;
+      values[count++] = value;
+      return this;
+    }
+
+    /**
+     * Adds a mapping of each key to the value at the same index of {@code values}.
+     *
+     * @param keys the keys
+     * @param values the values, at least as many as there are keys
+     * @return this builder
+     * @throws IllegalArgumentException if {@code values} is shorter than {@code keys}
+     * @throws IllegalStateException if the map has been built
+     */
+    public Builder<K,V> addAll(K[] keys, V[] values) {
+      if (values.length < keys.length)
+        throw new IllegalArgumentException(
+            "values.length " + values.length + " < keys.length " + keys.length);
+      ensureRoom(keys.length);
+      System.arraycopy(keys, 0, this.keys, count, keys.length);
+      System.arraycopy(values, 0, this.values, count, keys.length);
+      count += keys.length;
+      return this;
+    }
+
+    /**
+     * Adds the mappings of a map.
+     *
+     * @param m the mappings to add
+     * @return this builder
+     * @throws IllegalStateException if the map has been built
+     */
+    public Builder<K,V> addAll(Map<? extends K, ? extends V> m) {
+      ensureRoom(m.size());
+      m.forEach(this::add);
+      return this;
+    }
+
+    /**
+     * Adds the mappings of a stream of entries, in encounter order.
+     *
+     * @param entries the mappings to add
+     * @return this builder
+     * @throws IllegalStateException if the map has been built
+     */
+    public Builder<K,V> addAll(Stream<? extends Map.Entry<? extends K, ? extends V>> entries) {
+      // toArray collects a parallel stream in parallel, and then the size is known
+      Object[] a = entries.toArray();
+      ensureRoom(a.length);
+      for (Object o : a) {
+        Map.Entry<?,?> e = (Map.Entry<?,?>) o;
+        keys[count] = e.getKey();
+        values[count++] = e.getValue();
+      }
+      return this;
+    }
+
+    private void ensureRoom(int n) {
+      if (keys == null)
+        throw new IllegalStateException("Already built");
+      if (n > keys.length - count) {
+        int length = (int) Math.min(Math.max((long) count + n, (long) keys.length << 1),
+            Integer.MAX_VALUE - 8);
+        if (length - count < n)
+          throw new OutOfMemoryError("Too many mappings");
+        keys = Arrays.copyOf(keys, length);
+        values = Arrays.copyOf(values, length);
+      }
+    }
+
+    /**
+     * Builds the map of the mappings added.
+     *
+     * @return the map
+     * @throws IllegalStateException if the map has been built
+     */
+    public OpenHashMap<K,V> build() {
+      if (keys == null)
+        throw new IllegalStateException("Already built");
+      final int n = count;
+      final Object[] keys = this.keys;
+      final Object[] values = this.values;
+      this.keys = this.values = null;
+
+      final OpenHashMap<K,V> map = new OpenHashMap<>(Math.max(expectedSize, n));
+      final int[] keyHashes = new int[n];
+      final int chunks = buildChunks(pool, n);
+      runTasks(pool, chunks, c -> {
+        for (int i = (int) ((long) n * c / chunks), end = (int) ((long) n * (c + 1) / chunks);
+             i < end; i++) {
+          final Object k = maskNull(keys[i]);
+          keys[i] = k;
+          keyHashes[i] = map.maskHash(k);
+        }
+      });
+      map.layOutAll(keyHashes, keys, values, n, true, pool);
+      return map;
+    }
+
+    /**
+     * Robin Hood inserts the mappings {@code from} to {@code to} of the sorted arrays, whose homes
+     * are all in the slots {@code lo} to {@code hi}, into those slots.  A key already there has
+     * its value replaced if {@code lastWins}, and is otherwise kept and noted as the spill's
+     * duplicate.  A mapping pushed to {@code hi} is put aside rather than going on into the next
+     * partition's range; a key missing from the range may be one of those.
+     *
+     * <p>A mapping carried more than {@code maxProbe} slots from its home stops the lay out, with
+     * the spill's <tt>longProbe</tt> set, unless {@code overflowLong}, when it is put in the
+     * spill's overflow instead.  As every mapping in the range is within {@code maxProbe} slots of
+     * its home, and runs only grow, a key carried that far is not in the range, and any earlier
+     * mapping of it was carried that far too.
+     */
+    private static Spill layOut(int[] hashes, Object[] tab, int lo, int hi,
+                                int[] sortedHashes, Object[] sortedKeys, Object[] sortedValues,
+                                int from, int to, boolean lastWins, int maxProbe,
+                                boolean overflowLong) {
+      final int len = hashes.length;
+      final Spill spill = new Spill();
+      int distinct = 0;
+      next:
+      for (int m = from; m < to; m++) {
+        int hash = sortedHashes[m];
+        Object key = sortedKeys[m];
+        Object value = sortedValues[m];
+        int i = getIndex(hash, len);
+        // Until a richer mapping is displaced the key may already be in the range
+        boolean mayBePresent = true;
+        for (int hops = 0; ; hops++, i++) {
+          if (hops > maxProbe) {
+            if (hops > spill.longProbe)
+              spill.longProbe = hops;
+            if (!overflowLong)
+              return spill;
+            if (spill.overflow == null)
+              spill.overflow = new HashMap<>();
+            if (mayBePresent && spill.overflow.containsKey(key)) {
+              if (lastWins)
+                spill.overflow.put(key, value);
+              else if (spill.duplicate == null)
+                spill.duplicate = key;
+              continue next;
+            }
+            if (mayBePresent)
+              distinct++;
+            spill.overflow.put(key, value);
+            continue next;
+          }
+          if (i == hi) {
+            if (mayBePresent && spill.replace(hash, key, value, lastWins))
+              continue next;
+            if (mayBePresent)
+              distinct++;
+            spill.add(hash, key, value);
+            continue next;
+          }
+          final int currHash = hashes[i];
+          if (currHash == EMPTY_HASH) {
+            if (mayBePresent)
+              distinct++;
+            hashes[i] = hash;
+            tab[i << 1] = key;
+            tab[(i << 1) + 1] = value;
+            continue next;
+          }
+          if (mayBePresent && currHash == hash && key.equals(tab[i << 1])) {
+            if (lastWins)
+              tab[(i << 1) + 1] = value;
+            else if (spill.duplicate == null)
+              spill.duplicate = key;
+            continue next;
+          }
+          final int currHops = getHops(i, len, getIndex(currHash, len));
+          if (hops > currHops) {
+            if (mayBePresent) {
+              mayBePresent = false;
+              distinct++;
+            }
+            final Object currKey = tab[i << 1];
+            final Object currValue = tab[(i << 1) + 1];
+            hashes[i] = hash;
+            tab[i << 1] = key;
+            tab[(i << 1) + 1] = value;
+            hash = currHash;
+            key = currKey;
+            value = currValue;
+            hops = currHops;
+          }
+        }
+      }
+      spill.distinct = distinct;
+      return spill;
+    }
+
+    /**
+     * The mappings of a partition that ran off the end of its range, how many keys the partition
+     * has in all and, unless the last value put wins, the first masked key found more than once.
+     * Also the furthest from home a mapping was carried past the maximum probe length, or 0, and
+     * the mappings that were put in overflow for it.
+     */
+    private static final class Spill {
+      int[] hashes = new int[8];
+      Object[] keys = new Object[8];
+      Object[] values = new Object[8];
+      int count;
+      int distinct;
+      Object duplicate;
+      int longProbe;
+      HashMap<Object,Object> overflow;
+
+      void add(int hash, Object key, Object value) {
+        if (count == hashes.length) {
+          hashes = Arrays.copyOf(hashes, count << 1);
+          keys = Arrays.copyOf(keys, count << 1);
+          values = Arrays.copyOf(values, count << 1);
+        }
+        hashes[count] = hash;
+        keys[count] = key;
+        values[count++] = value;
+      }
+
+      boolean replace(int hash, Object key, Object value, boolean lastWins) {
+        for (int j = 0; j < count; j++) {
+          if (hashes[j] == hash && key.equals(keys[j])) {
+            if (lastWins)
+              values[j] = value;
+            else if (duplicate == null)
+              duplicate = key;
+            return true;
+          }
+        }
+        return false;
+      }
+    }
+
+    /**
+     * Runs an action for a range of task indexes, splitting it until there is one per task.
+     */
+    @SuppressWarnings("serial") // never serialized
+    private static final class BuildTask extends RecursiveAction {
+      @java.io.Serial
+      private static final long serialVersionUID = 1L;
+
+      final IntConsumer action;
+      final int lo, hi;
+
+      BuildTask(IntConsumer action, int lo, int hi) {
+        this.action = action;
+        this.lo = lo;
+        this.hi = hi;
+      }
+
+      @Override
+      protected void compute() {
+        if (hi - lo > 1) {
+          int mid = (lo + hi) >>> 1;
+          invokeAll(new BuildTask(action, lo, mid), new BuildTask(action, mid, hi));
+        } else {
+          action.accept(lo);
+        }
+      }
+    }
+  }
+
+  /**
+   * Grows the table because an insertion crossed the load threshold.  Unless
+   * {@link #setIncrementalResize(boolean) incremental resizing} is on this is just
+   * {@link #resize(int)}.  Otherwise the new table is allocated empty and the current one
+   * becomes the old table, to be migrated by later calls to {@link #migrate(int)}.
+   *
+   * @param newCapacity the new capacity
+   * @return whether the table was in fact replaced
+   */
+  private boolean grow(int newCapacity) {
+    if (!incrementalResize)
+      return resize(newCapacity);
+    completeResize();
+
+    int[] oldHashes = hashedKeyTable;
+    int oldLength = oldHashes.length;
+    if (oldLength == MAXIMUM_CAPACITY) { // can't expand any further
+      if (size == MAXIMUM_CAPACITY - 1)
+        throw new IllegalStateException("Capacity exhausted.");
+      return false;
+    }
+
+    int start = 0;
+    while (oldHashes[start] != EMPTY_HASH)
+      start++;
+    oldHashedKeyTable = oldHashes;
+    oldTable = table;
+    migrationIndex = start;
+    migrationRemaining = oldLength;
+    hashedKeyTable = new int[newCapacity];
+    table = new Object[newCapacity << 1];
+    markOverflowHomes();
     return true;
   }
 
+  /**
+   * Moves the mappings of at least {@code slots} slots of the old table into the current table,
+   * continuing past the last of those slots to the end of its run so that no run of the old table
+   * is left partly migrated.  Ends the incremental resize when the whole old table is done.  In
+   * lazy insert mode it builds the index instead, so every operation that migrates before
+   * touching the table ends the mode.
+   */
+  private void migrate(int slots) {
+    if (oldTable == LAZY_LOG) {
+      buildIndex();
+      return;
+    }
+    final int[] oldHashes = oldHashedKeyTable;
+    final Object[] oldTab = oldTable;
+    final int oldLength = oldHashes.length;
+    final int[] hashes = hashedKeyTable;
+    final Object[] tab = table;
+    int j = migrationIndex;
+    int remaining = migrationRemaining;
+    for (; remaining > 0 && (slots > 0 || oldHashes[j] != EMPTY_HASH);
+         remaining--, slots--, j = nextKeyIndex(j, oldLength)) {
+      final int hash = oldHashes[j];
+      if (hash != EMPTY_HASH) {
+        insertAbsent(hashes, tab, hash, oldTab[j << 1], oldTab[(j << 1) + 1]);
+        clearSlot(oldHashes, oldTab, j);
+      }
+    }
+    if (remaining == 0) {
+      oldHashedKeyTable = null;
+      oldTable = null;
+      // Puts made during the resize did not see the mappings migrated in after them
+      if (longProbePolicy == LongProbePolicy.OVERFLOW)
+        overflowLongProbes();
+    } else {
+      migrationIndex = j;
+      migrationRemaining = remaining;
+    }
+  }
+
+  /**
+   * Finishes any incremental resize in progress, or builds the index in lazy insert mode.  Called
+   * by operations that visit every slot, so they only have one table to look at.
+   */
+  final void completeResize() {
+    if (oldTable != null)
+      migrate(Integer.MAX_VALUE);
+  }
+
+  /**
+   * Returns the slot of the old table of an incremental resize that holds the masked key, or -1.
+   * Must only be called while an incremental resize is in progress.
+   */
+  private int oldTableIndexOf(Object maskedKey, int hash) {
+    final int[] hashes = oldHashedKeyTable;
+    final Object[] tab = oldTable;
+    final int len = hashes.length;
+    int i = getIndex(hash, len);
+    for (int wantedKeyHops = 0; ; wantedKeyHops++, i = nextKeyIndex(i, len)) {
+      int maskedHash = hashes[i];
+      if (maskedHash == hash && maskedKey.equals(tab[i << 1]))
+        return i;
+      if (maskedHash == EMPTY_HASH
+          || wantedKeyHops > getHops(i, len, getIndex(maskedHash, len)))
+        return -1;
+    }
+  }
+
+  /**
+   * Robin Hood inserts a mapping whose key is known not to be in the table, which must have an
+   * empty slot.  Returns the furthest from its home that the insertion left a mapping.
+   */
+  static int insertAbsent(int[] hashes, Object[] tab, int hash, Object maskedKey, Object value) {
+    final int len = hashes.length;
+    int i = getIndex(hash, len);
+    int insertingKeyHops = 0;
+    int longestHops = 0;
+    for (int currHash; (currHash = hashes[i]) != EMPTY_HASH;
+         insertingKeyHops++, i = nextKeyIndex(i, len)) {
+      int currKeyHops = getHops(i, len, getIndex(currHash, len));
+      if (insertingKeyHops > currKeyHops) {
+        if (insertingKeyHops > longestHops)
+          longestHops = insertingKeyHops;
+        final Object currKey = tab[i << 1];
+        final Object currValue = tab[(i << 1) + 1];
+        hashes[i] = hash;
+        tab[i << 1] = maskedKey;
+        tab[(i << 1) + 1] = value;
+        hash = currHash;
+        maskedKey = currKey;
+        value = currValue;
+        insertingKeyHops = currKeyHops;
+      }
+    }
+    hashes[i] = hash;
+    tab[i << 1] = maskedKey;
+    tab[(i << 1) + 1] = value;
+    return Math.max(longestHops, insertingKeyHops);
+  }
+
+  /**
+   * Sets whether the table grows incrementally.  Normally the put that takes the map past its
+   * load threshold rehashes every mapping into a table twice the size before returning, which for
+   * very large maps is a long pause.  With incremental resizing that put only allocates the new
+   * table; every later put or remove then moves a bounded number of slots from the old table,
+   * and lookups consult both tables until the move is finished.  Operations that visit every
+   * mapping anyway, such as iteration, {@code containsValue} and the bulk operations, first finish
+   * any pending move.
+   *
+   * @param incrementalResize whether to grow the table incrementally
+   */
+  public void setIncrementalResize(boolean incrementalResize) {
+    if (!incrementalResize)
+      completeResize();
+    this.incrementalResize = incrementalResize;
+  }
+
+  /**
+   * Returns whether the table grows incrementally.
+   *
+   * @return whether the table grows incrementally
+   * @see #setIncrementalResize(boolean)
+   */
+  public boolean isIncrementalResize() {
+    return incrementalResize;
+  }
+
+  /**
+   * What building the index at the end of
+   * {@link #beginLazyInsert(DuplicateKeyPolicy) lazy insert mode} does with a key that was put
+   * more than once.
+   */
+  public enum DuplicateKeyPolicy {
+    /**
+     * Keep the value put last, as a sequence of {@code put}s would.
+     */
+    LAST_WINS,
+    /**
+     * Keep the value put first, as a sequence of {@code putIfAbsent}s would.
+     */
+    FIRST_WINS,
+    /**
+     * Keep the value put first, and once the index is built throw an
+     * {@link IllegalStateException} naming a key that was put more than once.
+     */
+    REJECT
+  }
+
+  /**
+   * Puts the map in lazy insert mode, for loading many mappings before reading any.  In this
+   * mode {@code put} and {@code putAll} only append each mapping, with its stored hash, to a log,
+   * and {@code put} returns {@code null} rather than looking for a previous value.  The first
+   * operation that reads the map ends the mode, be it a lookup, {@code size()} or an iteration,
+   * as does any other update, such as {@code putIfAbsent}, {@code merge} or {@code remove}: the
+   * index is then built from the log in one pass, in a table allocated once for every mapping
+   * in the log and at least as long as the map's table was, as {@link Builder} lays out its
+   * table.  Keys put more than once are resolved by the given policy, the mappings already in
+   * the map counting as put before any in the log.  So loading pays for neither the probing nor
+   * the resizes of inserting mappings one at a time.
+   *
+   * <p>The mode costs nothing once it has ended.  It is a state of the table references:
+   * lookups and insertions only check for it, as for an incremental resize in progress, once
+   * they have missed in the table, which is empty in lazy insert mode.  See
+   * {@code LoadQueryBenchmark}.  Building the index applies the long probe policy to the build
+   * as a whole rather than to each mapping: it reseeds or grows at most once, and leaves any
+   * mapping still too far from home in overflow.
+   *
+   * <p>Called in lazy insert mode this only changes the policy.  {@link #clear()} empties the log
+   * and leaves the map in the mode.
+   *
+   * @param duplicateKeyPolicy what building the index does with keys put more than once
+   * @throws NullPointerException if {@code duplicateKeyPolicy} is null
+   * @see #endLazyInsert()
+   */
+  public void beginLazyInsert(DuplicateKeyPolicy duplicateKeyPolicy) {
+    Objects.requireNonNull(duplicateKeyPolicy);
+    if (oldTable == LAZY_LOG) {
+      lazyDuplicates = duplicateKeyPolicy;
+      return;
+    }
+    completeResize();
+    final int[] hashes = hashedKeyTable;
+    final Object[] tab = table;
+    final int len = hashes.length;
+    // Room for as many mappings as the table holds before it grows
+    final int room = Math.max(size, len - len / 3);
+    lazyHashes = new int[room];
+    lazyKeys = new Object[room];
+    lazyValues = new Object[room];
+    lazyCount = 0;
+    for (int i = 0; i < len; i++) {
+      if (hashes[i] != EMPTY_HASH)
+        append(tab[i << 1], hashes[i], tab[(i << 1) + 1]);
+    }
+    if (overflow != null) {
+      for (Map.Entry<Object,Object> e : overflow.entrySet())
+        append(e.getKey(), maskHash(e.getKey()), e.getValue());
+    }
+    lazyDuplicates = duplicateKeyPolicy;
+    lazyCapacity = len;
+    modCount++;
+    size = 0;
+    overflow = null;
+    overflowHomes = null;
+    hashedKeyTable = LAZY_HASHES;
+    table = LAZY_TABLE;
+    oldTable = LAZY_LOG;
+  }
+
+  /**
+   * Ends lazy insert mode, building the index at once rather than on the next read.  Does
+   * nothing if the map is not in the mode.
+   *
+   * @throws IllegalStateException if the policy is {@link DuplicateKeyPolicy#REJECT REJECT} and
+   *         a key was put more than once; the map is built all the same, with the first value
+   *         of each key
+   * @see #beginLazyInsert(DuplicateKeyPolicy)
+   */
+  public void endLazyInsert() {
+    if (oldTable == LAZY_LOG)
+      buildIndex();
+  }
+
+  /**
+   * Returns whether the map is in lazy insert mode, that is whether it has mappings put since
+   * {@link #beginLazyInsert(DuplicateKeyPolicy)} that are not yet indexed.
+   *
+   * @return whether the map is in lazy insert mode
+   */
+  public boolean isLazyInsert() {
+    return oldTable == LAZY_LOG;
+  }
+
+  /**
+   * Appends a mapping to the log of lazy insert mode.
+   */
+  private void append(Object maskedKey, int hash, Object value) {
+    final int n = lazyCount;
+    if (n == lazyHashes.length)
+      ensureLogCapacity(n + 1);
+    lazyHashes[n] = hash;
+    lazyKeys[n] = maskedKey;
+    lazyValues[n] = value;
+    lazyCount = n + 1;
+  }
+
+  /**
+   * Grows the log of lazy insert mode, if necessary, to hold the given number of mappings.
+   */
+  private void ensureLogCapacity(int n) {
+    final int length = lazyHashes.length;
+    if (n <= length)
+      return;
+    final int newLength = (int) Math.min(Math.max((long) n, (long) length << 1),
+        Integer.MAX_VALUE - 8);
+    if (newLength < n)
+      throw new OutOfMemoryError("Too many mappings");
+    lazyHashes = Arrays.copyOf(lazyHashes, newLength);
+    lazyKeys = Arrays.copyOf(lazyKeys, newLength);
+    lazyValues = Arrays.copyOf(lazyValues, newLength);
+  }
+
+  /**
+   * Ends lazy insert mode by laying out the log in a new table, sized for all of it, with
+   * {@link #layOutAll layOutAll} in the calling thread.  The log is in the order the mappings
+   * were put, so the first of a key's mappings is the one laid out and each later one finds it.
+   */
+  private void buildIndex() {
+    final int n = lazyCount;
+    final int[] logHashes = lazyHashes;
+    final Object[] logKeys = lazyKeys;
+    final Object[] logValues = lazyValues;
+    final DuplicateKeyPolicy policy = lazyDuplicates;
+    final int length = Math.max(lazyCapacity, capacityFor(n));
+    oldTable = null;
+    lazyHashes = null;
+    lazyKeys = lazyValues = null;
+    lazyCount = 0;
+    lazyDuplicates = null;
+    init(length);
+
+    final Object duplicate = layOutAll(logHashes, logKeys, logValues, n,
+        policy == DuplicateKeyPolicy.LAST_WINS, null);
+    modCount++;
+    if (policy == DuplicateKeyPolicy.REJECT && duplicate != null)
+      throw new IllegalStateException("Duplicate key " + unmaskNull(duplicate));
+  }
+
   /**
    * Copies all of the mappings from the specified map to this map.
    * For each mapping in the specified map, if this map already
@@ -856,6 +2884,11 @@ Object putVal(Object maskedKey, Object value, MaskedHashKeyValue[] tab, boolean
    * its value is replaced with the value from the specified map;
    * otherwise, a new mapping is inserted into this map.
    *
+   * <p>When the specified map is another {@code OpenHashMap} its stored hashes are reused, so no
+   * key's {@code hashCode()} is called unless the two maps are seeded or mixed differently, in
+   * which case each hash code is recovered from the stored hash instead, see
+   * {@link #putAllFrom(OpenHashMap)}.
+   *
    * @param m mappings to be stored in this map
    * @throws NullPointerException if the specified map is null
    */
@@ -863,14 +2896,198 @@ Object putVal(Object maskedKey, Object value, MaskedHashKeyValue[] tab, boolean
     int n = m.size();
     if (n == 0)
       return;
-    if (n > size)
-      resize(capacity(n)); // conservatively pre-expand
+    if (m instanceof OpenHashMap<?,?> src && src != this) {
+      putAllFrom(src);
+      return;
+    }
+    if (oldTable == LAZY_LOG)
+      ensureLogCapacity(lazyCount + n);
+    else if (n > size)
+      resize(capacityFor(n)); // conservatively pre-expand
 
-    // TODO optimize setting of hashKey if m is a OpenHashMap?
     for (Entry<? extends K, ? extends V> e : m.entrySet())
       put(e.getKey(), e.getValue());
   }
 
+  /**
+   * Copies the mappings of another {@code OpenHashMap} without asking any key for its hash code
+   * again.  If this map is empty and both maps derive their stored hashes the same way, or this
+   * map is unseeded and can take the source's seed, the source's table is copied as it is when
+   * it is at least as long as this map's, and otherwise moved with
+   * {@link #transfer(int[], Object[], int[], Object[]) transfer}, as a resize would.
+   * Otherwise the source's runs are walked from an empty slot, so its mappings are inserted in
+   * the order of their home indexes, each with its stored hash, translated to this map's seed
+   * and mixer if those differ.  The source's overflow is copied along with its table, or its
+   * mappings inserted like any other.  In lazy insert mode the mappings are appended to the log,
+   * with their stored hashes.
+   */
+  private void putAllFrom(OpenHashMap<?,?> src) {
+    src.completeResize();
+    if (oldTable == LAZY_LOG) {
+      ensureLogCapacity(lazyCount + src.size);
+      forEachHashed(src, this::putHashed);
+      return;
+    }
+    final int[] srcHashes = src.hashedKeyTable;
+    final Object[] srcTab = src.table;
+    final int srcLength = srcHashes.length;
+    final int srcSeed = src.hashSeed;
+    final HashMixer srcMixer = src.hashMixer;
+
+    // An empty map that is only seeded by its long probe policy takes the source's seed, which
+    // already keeps the runs of these keys short
+    if (size == 0 && hashMixer == srcMixer
+        && (hashSeed == srcSeed || hashSeeding == HashSeeding.NONE)) {
+      completeResize();
+      hashSeed = srcSeed;
+      final int length = hashedKeyTable.length;
+      if (length <= srcLength && (compactSizing || isPowerOfTwo(srcLength))) {
+        hashedKeyTable = srcHashes.clone();
+        table = srcTab.clone();
+        overflow = src.overflow == null ? null : new HashMap<>(src.overflow);
+        overflowHomes = src.overflow == null ? null : src.overflowHomes.clone();
+        size = src.size;
+        modCount++;
+        return;
+      }
+      if (length > srcLength && isPowerOfTwo(length) && isPowerOfTwo(srcLength)) {
+        transfer(srcHashes, srcTab, hashedKeyTable, table);
+        overflow = src.overflow == null ? null : new HashMap<>(src.overflow);
+        overflowHomes = null;
+        markOverflowHomes();
+        size = src.size;
+        modCount++;
+        return;
+      }
+    }
+
+    if (src.size > size)
+      resize(capacityFor(src.size)); // conservatively pre-expand
+    forEachHashed(src, this::putHashed);
+  }
+
+  /**
+   * What {@link #forEachHashed} hands each mapping to.
+   */
+  private interface HashedMappingAction {
+    void accept(Object maskedKey, int hash, Object value);
+  }
+
+  /**
+   * Hands each mapping of another map, which must not be resizing, to the action with its stored
+   * hash translated to this map's seed and mixer, so that no key is asked for its hash code.
+   * The source's runs are walked from an empty slot, so the mappings come in the order of their
+   * home indexes, followed by the source's overflow.
+   */
+  private void forEachHashed(OpenHashMap<?,?> src, HashedMappingAction action) {
+    final int[] srcHashes = src.hashedKeyTable;
+    final Object[] srcTab = src.table;
+    final int srcLength = srcHashes.length;
+    final int srcSeed = src.hashSeed;
+    final HashMixer srcMixer = src.hashMixer;
+    int start = 0;
+    while (srcHashes[start] != EMPTY_HASH)
+      start++;
+    for (int m = 0, j = start; m < srcLength; m++, j = nextKeyIndex(j, srcLength)) {
+      int hash = srcHashes[j];
+      if (hash == EMPTY_HASH)
+        continue;
+      final Object k = srcTab[j << 1];
+      // Checked for every mapping, as an insertion may reseed this map
+      if (hashSeed != srcSeed || hashMixer != srcMixer)
+        hash = maskHash(maskedKeyHash(hash, k, srcSeed, srcMixer), hashSeed, hashMixer);
+      action.accept(k, hash, srcTab[(j << 1) + 1]);
+    }
+    if (src.overflow != null)
+      for (Entry<Object,Object> e : src.overflow.entrySet())
+        action.accept(e.getKey(), maskHash(e.getKey()), e.getValue());
+  }
+
+  /**
+   * Recomputes the value of a key that is in both maps of a {@link #mergeAll}.
+   */
+  interface KeyedRemapping<K,V> {
+    /**
+     * Returns the merged value, or null to remove the mapping.
+     *
+     * @param key the key, which may be null
+     * @param oldValue the value in the map being merged into
+     * @param value the value in the other map
+     */
+    V apply(K key, V oldValue, V value);
+  }
+
+  /**
+   * Merges each mapping of another map into this one as {@link #merge(Object, Object, BiFunction)}
+   * does, with the key as the first argument of the remapping function and the value in this map
+   * as the second.  As with {@link #putAll(Map)} the stored hashes of the other map are reused, so
+   * no key is asked for its hash code, and an empty map just copies the other.  The other map
+   * must not hold null values.
+   *
+   * @param m the mappings to merge into this map
+   * @param remappingFunction the function to recompute a value if a key is in both maps
+   * @throws ConcurrentModificationException if it is detected that the
+   *         remapping function modified this map
+   */
+  @SuppressWarnings("unchecked")
+  void mergeAll(OpenHashMap<? extends K, ? extends V> m,
+                KeyedRemapping<? super K, V> remappingFunction) {
+    Objects.requireNonNull(remappingFunction);
+    m.completeResize();
+    completeResize();
+    if (m.size == 0 || m == this)
+      return;
+    if (size == 0) {
+      putAllFrom(m);
+      return;
+    }
+    if (m.size > size)
+      resize(capacityFor(m.size)); // conservatively pre-expand
+    forEachHashed(m, (k, hash, value) -> mergeHashed(k, hash, value,
+        (oldValue, v) -> remappingFunction.apply((K) unmaskNull(k), oldValue, v)));
+  }
+
+  /**
+   * Maps each of the given keys to the value at the same index of {@code values}, as
+   * {@link #put(Object, Object)} does.  Each key is hashed and looked up once: the value of a key
+   * already in the map is replaced where the lookup found it, and any other key is inserted
+   * without being looked up again, which makes replacing the values of many keys present
+   * cheaper than calling {@code put} for each.  In
+   * {@link #beginLazyInsert(DuplicateKeyPolicy) lazy insert mode} the mappings are appended to the
+   * log, as {@code put} does.
+   *
+   * @param keys the keys to map
+   * @param values the values to map them to, at least as many as there are keys
+   * @throws IllegalArgumentException if {@code values} is shorter than {@code keys}
+   * @see #getAll(Object[], Object[])
+   */
+  public void putAll(K[] keys, V[] values) {
+    if (values.length < keys.length)
+      throw new IllegalArgumentException("Fewer values than keys: " + values.length);
+    if (oldTable == LAZY_LOG) {
+      ensureLogCapacity(lazyCount + keys.length);
+      for (int j = 0; j < keys.length; j++) {
+        final Object k = maskNull(keys[j]);
+        append(k, maskHash(k), values[j]);
+      }
+      return;
+    }
+    if (keys.length > size)
+      resize(capacityFor(keys.length)); // conservatively pre-expand
+    for (int j = 0; j < keys.length; j++) {
+      final Object k = maskNull(keys[j]);
+      final int hash = maskHash(k);
+      final int slot = slotOf(k, hash);
+      if (slot != NO_SLOT) {
+        setValueAt(slot, k, values[j]);
+      } else {
+        if (oldTable != null)
+          migrate(MIGRATION_STEP);
+        putVal(k, hash, values[j], false, true);
+      }
+    }
+  }
+
   // TODO fix comments.  Eg this was fixed to copy from HashMap and not use what was done for IdentityHashMap
   /**
    * Removes the mapping for the specified key from this map if present.
@@ -882,26 +3099,15 @@ Object putVal(Object maskedKey, Object value, MaskedHashKeyValue[] tab, boolean
    *         previously associated {@code null} with {@code key}.)
    */
   public V remove(Object key) {
+    if (oldTable != null)
+      migrate(MIGRATION_STEP);
     Object k = maskNull(key);
-    final int hash = k.hashCode();
-    MaskedHashKeyValue[] tab = table;
-    int len = tab.length;
-    int i = getIndex(hash, len);
-
-    while (true) {
-      MaskedHashKeyValue item = tab[i];
-      if (item.maskedHash == hash && item.key.equals(k)) {
-        modCount++;
-        size--;
-        @SuppressWarnings("unchecked") V oldValue = (V) item.value;
-        tab[i] = MaskedHashKeyValue.EMPTY;
-        closeDeletion(i);
-        return oldValue;
-      }
-      if (item.key == null)
-        return null;
-      i = nextKeyIndex(i, len);
-    }
+    final int slot = slotOf(k, maskHash(k));
+    if (slot == NO_SLOT)
+      return null;
+    @SuppressWarnings("unchecked") V oldValue = (V) valueAt(slot, k);
+    removeAt(slot, k);
+    return oldValue;
   }
 
   /**
@@ -913,61 +3119,68 @@ Object putVal(Object maskedKey, Object value, MaskedHashKeyValue[] tab, boolean
    *          mapping was in the map
    */
   private boolean removeMapping(Object key, Object value) {
+    if (oldTable != null)
+      migrate(MIGRATION_STEP);
     Object k = maskNull(key);
-    final int hash = k.hashCode();
-    MaskedHashKeyValue[] tab = table;
-    int len = tab.length;
-    int i = getIndex(hash, len);
+    final int slot = slotOf(k, maskHash(k));
+    if (slot == NO_SLOT || !Objects.equals(valueAt(slot, k), value))
+      return false;
+    removeAt(slot, k);
+    return true;
+  }
 
-    while (true) {
-      MaskedHashKeyValue item = tab[i];
-      if (item.maskedHash == hash && item.key.equals(k)) {
-        if (!Objects.equals(item.value, value))
-          return false;
-        modCount++;
-        size--;
-        tab[i] = MaskedHashKeyValue.EMPTY;
-        closeDeletion(i);
-        return true;
-      }
-      if (item.key == null)
-        return false;
-      i = nextKeyIndex(i, len);
+  /**
+   * Removes the mapping for a masked key known to be in <tt>overflow</tt>, returning its value.
+   */
+  private Object removeOverflow(Object maskedKey) {
+    modCount++;
+    size--;
+    Object oldValue = overflow.remove(maskedKey);
+    if (overflow.isEmpty()) {
+      overflow = null;
+      overflowHomes = null;
     }
+    return oldValue;
   }
 
   /**
-   * Rehash all possibly-colliding entries following a
-   * deletion. This preserves the linear-probe
-   * collision properties required by get, put, etc.
+   * Closes the gap left by a deletion by shifting the rest of its run back
+   * one slot.  In a Robin Hood table the mappings displaced past the deleted
+   * slot are exactly those that follow it up to the first empty slot or the
+   * first mapping in its home slot, so no mapping needs rehashing and each
+   * shifted one ends up one slot nearer its home.
    *
+   * @param hashes the hashes of the table holding the deleted slot
+   * @param tab the keys and values of the table holding the deleted slot
    * @param d the index of a newly empty deleted slot
    */
-  private void closeDeletion(int d) {
-    // Adapted from Knuth Section 6.4 Algorithm R
-    MaskedHashKeyValue[] tab = table;
-    int len = tab.length;
+  private static void closeDeletion(int[] hashes, Object[] tab, int d) {
+    int len = hashes.length;
+    int hash;
+    for (int i = nextKeyIndex(d, len);
+         (hash = hashes[i]) != EMPTY_HASH && getIndex(hash, len) != i;
+         d = i, i = nextKeyIndex(i, len))
+      moveSlot(hashes, tab, i, d);
+  }
 
-    // Look for items to swap into newly vacated slot
-    // starting at index immediately following deletion,
-    // and continuing until a null slot is seen, indicating
-    // the end of a run of possibly-colliding keys.
-    MaskedHashKeyValue item;
-    for (int i = nextKeyIndex(d, len); (item = tab[i]).key != null; i = nextKeyIndex(i, len)) {
-      // The following test triggers if the item at slot i (which
-      // hashes to be at slot r) should take the spot vacated by d.
-      // If so, we swap it in, and then continue with d now at the
-      // newly vacated i.  This process will terminate when we hit
-      // the null slot at the end of this run.
-      // The test is messy because we are using a circular table.
-      int hash = item.maskedHash;
-      int r = getIndex(hash, len);
-      if ((i < r && (r <= d || d <= i)) || (r <= d && d <= i)) {
-        tab[d] = tab[i];
-        tab[i] = MaskedHashKeyValue.EMPTY;
-        d = i;
-      }
-    }
+  /**
+   * Marks slot {@code i} as empty.
+   */
+  static void clearSlot(int[] hashes, Object[] tab, int i) {
+    hashes[i] = EMPTY_HASH;
+    tab[i << 1] = null;
+    tab[(i << 1) + 1] = null;
+  }
+
+  /**
+   * Moves the mapping in slot {@code from} into the empty slot {@code to}, leaving {@code from}
+   * empty.
+   */
+  static void moveSlot(int[] hashes, Object[] tab, int from, int to) {
+    hashes[to] = hashes[from];
+    tab[to << 1] = tab[from << 1];
+    tab[(to << 1) + 1] = tab[(from << 1) + 1];
+    clearSlot(hashes, tab, from);
   }
 
   /**
@@ -976,9 +3189,22 @@ Object putVal(Object maskedKey, Object value, MaskedHashKeyValue[] tab, boolean
    */
   public void clear() {
     modCount++;
-    MaskedHashKeyValue[] tab = table;
-    for (int i = 0; i < tab.length; i++) // TODO replace with Arrays.fill() if that works with primitive
-      tab[i] = MaskedHashKeyValue.EMPTY;
+    if (oldTable == LAZY_LOG) { // stays in lazy insert mode, with an empty log
+      Arrays.fill(lazyKeys, 0, lazyCount, null);
+      Arrays.fill(lazyValues, 0, lazyCount, null);
+      lazyCount = 0;
+      return;
+    }
+    oldHashedKeyTable = null;
+    oldTable = null;
+    overflow = null;
+    overflowHomes = null;
+    if (shrinkLoadFactor > 0 && hashedKeyTable.length > DEFAULT_CAPACITY) {
+      init(DEFAULT_CAPACITY);
+    } else if (size != 0) { // an empty table has nothing to fill
+      Arrays.fill(hashedKeyTable, EMPTY_HASH);
+      Arrays.fill(table, null);
+    }
     size = 0;
   }
 
@@ -1005,16 +3231,23 @@ Object putVal(Object maskedKey, Object value, MaskedHashKeyValue[] tab, boolean
     if (o == this) {
       return true;
     } else if (o instanceof OpenHashMap<?, ?> m) {
-      if (m.size() != size)
+      if (m.size() != size())
         return false;
 
-      MaskedHashKeyValue[] tab = m.table;
-      for (int i = 0; i < tab.length; i++) {
-        MaskedHashKeyValue item = tab[i];
-        // TODO is it better to have a local variable copy of the item or just use tab[i]?
-        if (item.key != null && !containsMapping(item.maskedHash, item.value))
+      m.completeResize();
+      final int[] hashes = m.hashedKeyTable;
+      final Object[] tab = m.table;
+      for (int i = 0; i < hashes.length; i++) {
+        if (hashes[i] != EMPTY_HASH
+            && !containsMapping(unmaskNull(tab[i << 1]), tab[(i << 1) + 1]))
           return false;
       }
+      if (m.overflow != null) {
+        for (Map.Entry<Object,Object> e : m.overflow.entrySet()) {
+          if (!containsMapping(unmaskNull(e.getKey()), e.getValue()))
+            return false;
+        }
+      }
       return true;
     } else if (o instanceof Map<?, ?> m) {
       return entrySet().equals(m.entrySet());
@@ -1043,14 +3276,20 @@ Object putVal(Object maskedKey, Object value, MaskedHashKeyValue[] tab, boolean
    * @see #equals(Object)
    */
   public int hashCode() {
+    completeResize();
     int result = 0;
-    MaskedHashKeyValue[] tab = table;
-    for (int i = 0; i < tab.length; i++) {
-      final MaskedHashKeyValue item = tab[i];
-      if (item.key != null) {
-        result += item.maskedHash ^ Objects.hashCode(item.value);
+    final int[] hashes = hashedKeyTable;
+    final Object[] tab = table;
+    for (int i = 0; i < hashes.length; i++) {
+      final int maskedHash = hashes[i];
+      if (maskedHash != EMPTY_HASH) {
+        result += itemUnmaskedKeyHash(maskedHash, tab[i << 1]) ^ Objects.hashCode(tab[(i << 1) + 1]);
       }
     }
+    if (overflow != null) {
+      for (Map.Entry<Object,Object> e : overflow.entrySet())
+        result += Objects.hashCode(unmaskNull(e.getKey())) ^ Objects.hashCode(e.getValue());
+    }
     return result;
   }
 
@@ -1061,10 +3300,18 @@ Object putVal(Object maskedKey, Object value, MaskedHashKeyValue[] tab, boolean
    * @return a shallow copy of this map
    */
   public Object clone() {
+    completeResize();
     try {
       OpenHashMap<?,?> m = (OpenHashMap<?,?>) super.clone();
       m.entrySet = null;
+      m.keySet = null;
+      m.values = null;
+      m.hashedKeyTable = hashedKeyTable.clone();
       m.table = table.clone();
+      if (overflow != null) {
+        m.overflow = new HashMap<>(overflow);
+        m.overflowHomes = overflowHomes.clone();
+      }
       return m;
     } catch (CloneNotSupportedException e) {
       throw new InternalError(e);
@@ -1072,123 +3319,126 @@ Object putVal(Object maskedKey, Object value, MaskedHashKeyValue[] tab, boolean
   }
 
   private abstract class OpenHashMapIterator<T> implements Iterator<T> {
-    int index = (size != 0 ? 0 : table.length); // current slot.
+    { completeResize(); } // iterate over a single table
+    final int[] hashes = hashedKeyTable;
+    final Object[] tab = table;
+    // Slots are visited from an empty one around to the slot before it, so
+    // that no run is split between the end and the start of the traversal,
+    // and the backward shift after a removal only moves mappings not yet seen.
+    final int start = firstEmptySlot(hashes);
+    int index = (size != 0 ? 0 : hashes.length); // slots visited from start.
     int expectedModCount = modCount; // to support fast-fail
     int lastReturnedIndex = -1;      // to allow remove()
     boolean indexValid; // To avoid unnecessary next computation
-    MaskedHashKeyValue[] traversalTable = table; // reference to main table or copy
+    Iterator<Map.Entry<Object,Object>> overflowIterator; // once past the last slot
+    Map.Entry<Object,Object> overflowEntry; // last returned from overflow, to allow remove()
 
     public boolean hasNext() {
-      MaskedHashKeyValue[] tab = traversalTable;
-      for (int i = index; i < tab.length; i++) {
-        Object key = tab[i].key;
-        if (key != null) {
+      int len = hashes.length;
+      for (int i = index; i < len; i++) {
+        if (hashes[slotAt(i)] != EMPTY_HASH) {
           index = i;
           return indexValid = true;
         }
       }
-      index = tab.length;
-      return false;
+      index = len;
+      if (overflowIterator == null) {
+        if (overflow == null)
+          return false;
+        overflowIterator = overflow.entrySet().iterator();
+      }
+      return overflowIterator.hasNext();
+    }
+
+    /**
+     * Returns the slot visited after {@code i} others.
+     */
+    private int slotAt(int i) {
+      int slot = start + i;
+      return slot < hashes.length ? slot : slot - hashes.length;
     }
+
+    /**
+     * Returns the slot of the next mapping, or -1 if it is the next mapping of
+     * <tt>overflow</tt>, which is then in <tt>overflowEntry</tt>.
+     */
     protected int nextIndex() {
       if (modCount != expectedModCount)
         throw new ConcurrentModificationException();
       if (!indexValid && !hasNext())
         throw new NoSuchElementException();
 
+      if (!indexValid) { // only overflow mappings are left
+        overflowEntry = overflowIterator.next();
+        lastReturnedIndex = -1;
+        return -1;
+      }
       indexValid = false;
-      lastReturnedIndex = index;
+      overflowEntry = null;
+      lastReturnedIndex = slotAt(index);
       index++;
       return lastReturnedIndex;
     }
 
     public void remove() {
+      if (overflowEntry != null) {
+        if (modCount != expectedModCount)
+          throw new ConcurrentModificationException();
+        overflowIterator.remove();
+        overflowEntry = null;
+        if (overflow != null && overflow.isEmpty()) {
+          overflow = null;
+          overflowHomes = null;
+        }
+        size--;
+        expectedModCount = ++modCount;
+        return;
+      }
       if (lastReturnedIndex == -1)
         throw new IllegalStateException();
       if (modCount != expectedModCount)
         throw new ConcurrentModificationException();
 
       expectedModCount = ++modCount;
-      int deletedSlot = lastReturnedIndex;
+      int d = lastReturnedIndex;
       lastReturnedIndex = -1;
-      // back up index to revisit new contents after deletion
-      index = deletedSlot;
+      // The shift moves the next mapping of the run, if any, into the
+      // deleted slot, so back up index to visit it.  The mappings before
+      // the deleted slot stay put, so none is returned twice.
+      index = d - start;
+      if (index < 0)
+        index += hashes.length;
       indexValid = false;
-
-      // Removal code proceeds as in closeDeletion except that
-      // it must catch the rare case where an element already
-      // seen is swapped into a vacant slot that will be later
-      // traversed by this iterator. We cannot allow future
-      // next() calls to return it again.  The likelihood of
-      // this occurring under 2/3 load factor is very slim, but
-      // when it does happen, we must make a copy of the rest of
-      // the table to use for the rest of the traversal. Since
-      // this can only happen when we are near the end of the table,
-      // even in these rare cases, this is not very expensive in
-      // time or space.
-
-      MaskedHashKeyValue[] tab = traversalTable;
-      int len = tab.length;
-
-      int d = deletedSlot;
-      Object key = tab[d];
-      tab[d] = MaskedHashKeyValue.EMPTY;
-
-      // If traversing a copy, remove in real table.
-      // We can skip gap-closure on copy.
-      // TODO it may not be safe to skip gap-closure for robin hood.  It at least merits trying to keep it to see if it makes the tests work.
-      if (tab != OpenHashMap.this.table) {
-        OpenHashMap.this.remove(key);
-        expectedModCount = modCount;
-        return;
-      }
-
       size--;
-
-      MaskedHashKeyValue item;
-      for (int i = nextKeyIndex(d, len); (item = tab[i]).key != null; i = nextKeyIndex(i, len)) {
-        int hash = item.maskedHash;
-        int r = getIndex(hash, len);
-        // See closeDeletion for explanation of this conditional
-        if ((i < r && (r <= d || d <= i)) ||
-            (r <= d && d <= i)) {
-
-          // If we are about to swap an already-seen element
-          // into a slot that may later be returned by next(),
-          // then clone the rest of table for use in future
-          // next() calls. It is OK that our copy will have
-          // a gap in the "wrong" place, since it will never
-          // be used for searching anyway.
-
-          if (i < deletedSlot && d >= deletedSlot &&
-              traversalTable == OpenHashMap.this.table) {
-            int remaining = len - deletedSlot;
-            MaskedHashKeyValue[] newTable = MaskedHashKeyValue.createEmptyFilledArray(remaining);
-            System.arraycopy(tab, deletedSlot,
-                newTable, 0, remaining);
-            traversalTable = newTable;
-            index = 0;
-          }
-
-          tab[d] = item;
-          tab[i] = MaskedHashKeyValue.EMPTY;
-          d = i;
-        }
-      }
+      clearSlot(hashes, tab, d);
+      closeDeletion(hashes, tab, d);
     }
   }
 
+  /**
+   * Returns the first empty slot of a table, which has one since it is never
+   * full.
+   */
+  private static int firstEmptySlot(int[] hashes) {
+    int i = 0;
+    while (hashes[i] != EMPTY_HASH)
+      i++;
+    return i;
+  }
+
   private class KeyIterator extends OpenHashMapIterator<K> {
     @SuppressWarnings("unchecked")
     public K next() {
-      return (K) unmaskNull(traversalTable[nextIndex()].key);
+      int i = nextIndex();
+      return (K) unmaskNull(i >= 0 ? tab[i << 1] : overflowEntry.getKey());
     }
   }
 
   private class ValueIterator extends OpenHashMapIterator<V> {
     @SuppressWarnings("unchecked")
     public V next() {
-      return (V) traversalTable[nextIndex()].value;
+      int i = nextIndex();
+      return (V) (i >= 0 ? tab[(i << 1) + 1] : overflowEntry.getValue());
     }
   }
 
@@ -1198,11 +3448,20 @@ Object putVal(Object maskedKey, Object value, MaskedHashKeyValue[] tab, boolean
     private Entry lastReturnedEntry;
 
     public Map.Entry<K,V> next() {
-      lastReturnedEntry = new Entry(nextIndex());
+      int i = nextIndex();
+      if (i < 0) {
+        lastReturnedEntry = null;
+        return new OverflowEntry(overflowEntry);
+      }
+      lastReturnedEntry = new Entry(i);
       return lastReturnedEntry;
     }
 
     public void remove() {
+      if (overflowEntry != null) {
+        super.remove();
+        return;
+      }
       lastReturnedIndex =
           ((null == lastReturnedEntry) ? -1 : lastReturnedEntry.index);
       super.remove();
@@ -1220,24 +3479,20 @@ Object putVal(Object maskedKey, Object value, MaskedHashKeyValue[] tab, boolean
       @SuppressWarnings("unchecked")
       public K getKey() {
         checkIndexForEntryUse();
-        return (K) unmaskNull(traversalTable[index].key);
+        return (K) unmaskNull(tab[index << 1]);
       }
 
       @SuppressWarnings("unchecked")
       public V getValue() {
         checkIndexForEntryUse();
-        return (V) traversalTable[index].value;
+        return (V) tab[(index << 1) + 1];
       }
 
       @SuppressWarnings("unchecked")
       public V setValue(V value) {
         checkIndexForEntryUse();
-        final MaskedHashKeyValue item = traversalTable[index];
-        V oldValue = (V) item.value;
-        traversalTable[index] = new MaskedHashKeyValue(item.maskedHash, item.key, value);
-        // if shadowing, force into main table
-        if (traversalTable != OpenHashMap.this.table)
-          put((K) traversalTable[index].key, value);
+        V oldValue = (V) tab[(index << 1) + 1];
+        tab[(index << 1) + 1] = value;
         return oldValue;
       }
 
@@ -1246,18 +3501,18 @@ Object putVal(Object maskedKey, Object value, MaskedHashKeyValue[] tab, boolean
           return true;
 
         return o instanceof Map.Entry<?, ?> e
-            && Objects.equals(e.getKey(), unmaskNull(traversalTable[index].key))
-            && Objects.equals(e.getValue(), traversalTable[index].value);
+            && Objects.equals(e.getKey(), unmaskNull(tab[index << 1]))
+            && Objects.equals(e.getValue(), tab[(index << 1) + 1]);
       }
 
       public int hashCode() {
-        final MaskedHashKeyValue item = traversalTable[index];
-        return itemUnmaskedKeyHash(item) ^ Objects.hashCode(item.value);
+        return itemUnmaskedKeyHash(hashes[index], tab[index << 1])
+            ^ Objects.hashCode(tab[(index << 1) + 1]);
       }
 
       public String toString() {
-        return (unmaskNull(traversalTable[index].key) + "="
-            + traversalTable[index].value);
+        return (unmaskNull(tab[index << 1]) + "="
+            + tab[(index << 1) + 1]);
       }
 
       private void checkIndexForEntryUse() {
@@ -1265,6 +3520,175 @@ Object putVal(Object maskedKey, Object value, MaskedHashKeyValue[] tab, boolean
           throw new IllegalStateException("Entry was removed");
       }
     }
+
+    /**
+     * An entry of <tt>overflow</tt> as the user sees it, with the null key unmasked.
+     */
+    private class OverflowEntry implements Map.Entry<K,V> {
+      private final Map.Entry<Object,Object> entry;
+
+      private OverflowEntry(Map.Entry<Object,Object> entry) {
+        this.entry = entry;
+      }
+
+      @SuppressWarnings("unchecked")
+      public K getKey() {
+        return (K) unmaskNull(entry.getKey());
+      }
+
+      @SuppressWarnings("unchecked")
+      public V getValue() {
+        return (V) entry.getValue();
+      }
+
+      @SuppressWarnings("unchecked")
+      public V setValue(V value) {
+        return (V) entry.setValue(value);
+      }
+
+      public boolean equals(Object o) {
+        return o instanceof Map.Entry<?, ?> e
+            && Objects.equals(e.getKey(), getKey())
+            && Objects.equals(e.getValue(), getValue());
+      }
+
+      public int hashCode() {
+        return Objects.hashCode(getKey()) ^ Objects.hashCode(getValue());
+      }
+
+      public String toString() {
+        return getKey() + "=" + getValue();
+      }
+    }
+  }
+
+  /**
+   * A cursor over the mappings of a map, which gives the key and value of
+   * the current mapping directly rather than as a {@code Map.Entry}, so
+   * that a traversal allocates nothing per mapping.  A cursor starts before
+   * the first mapping, and {@link #advance()} moves it to the next one:
+   *
+   * <pre> {@code
+   * OpenHashMap.MapCursor<K,V> c = map.cursor();
+   * while (c.advance()) {
+   *   if (c.value() == null)
+   *     c.remove();
+   * }}</pre>
+   *
+   * <p>Like an iterator, a cursor is fail-fast: if the map is structurally
+   * modified other than through the cursor's own {@code remove} method,
+   * its methods throw {@code ConcurrentModificationException}.
+   *
+   * @param <K> the type of keys
+   * @param <V> the type of mapped values
+   * @see #cursor()
+   */
+  public interface MapCursor<K,V> {
+    /**
+     * Moves to the next mapping, if there is one.
+     *
+     * @return {@code true} if the cursor is on a mapping, {@code false}
+     *         if the traversal is done
+     */
+    boolean advance();
+
+    /**
+     * Returns the key of the current mapping.
+     *
+     * @throws IllegalStateException if the cursor is not on a mapping
+     */
+    K key();
+
+    /**
+     * Returns the value of the current mapping.
+     *
+     * @throws IllegalStateException if the cursor is not on a mapping
+     */
+    V value();
+
+    /**
+     * Replaces the value of the current mapping, which is not a structural
+     * modification.
+     *
+     * @return the previous value
+     * @throws IllegalStateException if the cursor is not on a mapping
+     */
+    V setValue(V value);
+
+    /**
+     * Removes the current mapping.  The cursor is then on no mapping until
+     * the next call to {@link #advance()}, which moves to the mapping that
+     * would have followed it.
+     *
+     * @throws IllegalStateException if the cursor is not on a mapping
+     */
+    void remove();
+  }
+
+  /**
+   * Returns a cursor over the mappings of this map, in the same order as
+   * the iterators of its views.  Unlike {@code entrySet().iterator()}, which
+   * returns a new entry for each mapping, the cursor reads the key and value
+   * of each mapping from the table as it is asked for them, so a traversal
+   * allocates only the cursor itself.
+   *
+   * @return a cursor positioned before the first mapping
+   */
+  public MapCursor<K,V> cursor() {
+    return new Cursor();
+  }
+
+  private final class Cursor extends OpenHashMapIterator<K>
+      implements MapCursor<K,V> {
+    public boolean advance() {
+      if (modCount != expectedModCount)
+        throw new ConcurrentModificationException();
+      if (!indexValid && !hasNext()) {
+        lastReturnedIndex = -1;
+        overflowEntry = null;
+        return false;
+      }
+      nextIndex();
+      return true;
+    }
+
+    public K next() {
+      if (!advance())
+        throw new NoSuchElementException();
+      return key();
+    }
+
+    @SuppressWarnings("unchecked")
+    public K key() {
+      checkCurrent();
+      int i = lastReturnedIndex;
+      return (K) unmaskNull(i >= 0 ? tab[i << 1] : overflowEntry.getKey());
+    }
+
+    @SuppressWarnings("unchecked")
+    public V value() {
+      checkCurrent();
+      int i = lastReturnedIndex;
+      return (V) (i >= 0 ? tab[(i << 1) + 1] : overflowEntry.getValue());
+    }
+
+    @SuppressWarnings("unchecked")
+    public V setValue(V value) {
+      checkCurrent();
+      int i = lastReturnedIndex;
+      if (i < 0)
+        return (V) overflowEntry.setValue(value);
+      V oldValue = (V) tab[(i << 1) + 1];
+      tab[(i << 1) + 1] = value;
+      return oldValue;
+    }
+
+    private void checkCurrent() {
+      if (modCount != expectedModCount)
+        throw new ConcurrentModificationException();
+      if (lastReturnedIndex < 0 && overflowEntry == null)
+        throw new IllegalStateException();
+    }
   }
 
   // Views
@@ -1329,7 +3753,7 @@ Object putVal(Object maskedKey, Object value, MaskedHashKeyValue[] tab, boolean
       return new KeyIterator();
     }
     public int size() {
-      return size;
+      return OpenHashMap.this.size();
     }
     public boolean contains(Object o) {
       return containsKey(o);
@@ -1370,15 +3794,16 @@ Object putVal(Object maskedKey, Object value, MaskedHashKeyValue[] tab, boolean
     }
     @SuppressWarnings("unchecked")
     public <T> T[] toArray(T[] a) {
+      completeResize();
       int expectedModCount = modCount;
       int size = size();
       if (a.length < size)
         a = (T[]) Array.newInstance(a.getClass().getComponentType(), size);
-      MaskedHashKeyValue[] tab = table;
+      Object[] tab = table;
       int ti = 0;
-      for (int si = 0; si < tab.length; si++ ) {
+      for (int si = 0; si < tab.length; si += 2) {
         Object key;
-        if ((key = tab[si].key) != null) { // key present ?
+        if ((key = tab[si]) != null) { // key present ?
           // more elements than expected -> concurrent modification from other thread
           if (ti >= size) {
             throw new ConcurrentModificationException();
@@ -1386,6 +3811,14 @@ Object putVal(Object maskedKey, Object value, MaskedHashKeyValue[] tab, boolean
           a[ti++] = (T) unmaskNull(key); // unmask key
         }
       }
+      if (overflow != null) {
+        for (Object key : overflow.keySet()) {
+          if (ti >= size) {
+            throw new ConcurrentModificationException();
+          }
+          a[ti++] = (T) unmaskNull(key);
+        }
+      }
       // fewer elements than expected or concurrent modification from other thread detected
       if (ti < size || expectedModCount != modCount) {
         throw new ConcurrentModificationException();
@@ -1437,7 +3870,7 @@ Object putVal(Object maskedKey, Object value, MaskedHashKeyValue[] tab, boolean
       return new ValueIterator();
     }
     public int size() {
-      return size;
+      return OpenHashMap.this.size();
     }
     public boolean contains(Object o) {
       return containsValue(o);
@@ -1459,19 +3892,28 @@ Object putVal(Object maskedKey, Object value, MaskedHashKeyValue[] tab, boolean
     }
     @SuppressWarnings("unchecked")
     public <T> T[] toArray(T[] a) {
+      completeResize();
       int expectedModCount = modCount;
       int size = size();
       if (a.length < size)
         a = (T[]) Array.newInstance(a.getClass().getComponentType(), size);
-      MaskedHashKeyValue[] tab = table;
+      Object[] tab = table;
       int ti = 0;
-      for (int si = 0; si < tab.length; si++) {
-        if (tab[si].key != null) { // key present ?
+      for (int si = 0; si < tab.length; si += 2) {
+        if (tab[si] != null) { // key present ?
           // more elements than expected -> concurrent modification from other thread
           if (ti >= size) {
             throw new ConcurrentModificationException();
           }
-          a[ti++] = (T) tab[si].value; // copy value
+          a[ti++] = (T) tab[si + 1]; // copy value
+        }
+      }
+      if (overflow != null) {
+        for (Object value : overflow.values()) {
+          if (ti >= size) {
+            throw new ConcurrentModificationException();
+          }
+          a[ti++] = (T) value;
         }
       }
       // fewer elements than expected or concurrent modification from other thread detected
@@ -1539,6 +3981,23 @@ Object putVal(Object maskedKey, Object value, MaskedHashKeyValue[] tab, boolean
       return entrySet = new EntrySet();
   }
 
+  /**
+   * Returns a spliterator over the mappings of this map like that of
+   * {@code entrySet()}, except that it hands the same mutable entry to
+   * every action, moved to each mapping in turn, rather than a new entry
+   * for each.  The entry is only valid during the call to the action, so
+   * an action must copy its key and value rather than keep the entry.  Its
+   * {@code setValue} method writes through to the map.  Each spliterator
+   * split from it has an entry of its own, so it may be traversed in
+   * parallel.
+   *
+   * @return a spliterator that reuses one entry for all the mappings it
+   *         traverses
+   */
+  public Spliterator<Map.Entry<K,V>> flyweightEntrySpliterator() {
+    return new EntrySpliterator<>(this, 0, -1, 0, 0, true);
+  }
+
   private class EntrySet extends AbstractSet<Map.Entry<K,V>> {
     public Iterator<Map.Entry<K,V>> iterator() {
       return new EntryIterator();
@@ -1552,7 +4011,7 @@ Object putVal(Object maskedKey, Object value, MaskedHashKeyValue[] tab, boolean
           && removeMapping(entry.getKey(), entry.getValue());
     }
     public int size() {
-      return size;
+      return OpenHashMap.this.size();
     }
     public void clear() {
       OpenHashMap.this.clear();
@@ -1581,20 +4040,29 @@ Object putVal(Object maskedKey, Object value, MaskedHashKeyValue[] tab, boolean
 
     @SuppressWarnings("unchecked")
     public <T> T[] toArray(T[] a) {
+      completeResize();
       int expectedModCount = modCount;
       int size = size();
       if (a.length < size)
         a = (T[]) Array.newInstance(a.getClass().getComponentType(), size);
-      MaskedHashKeyValue[] tab = table;
+      Object[] tab = table;
       int ti = 0;
-      for (int si = 0; si < tab.length; si++) {
+      for (int si = 0; si < tab.length; si += 2) {
         Object key;
-        if ((key = tab[si].key) != null) { // key present ?
+        if ((key = tab[si]) != null) { // key present ?
           // more elements than expected -> concurrent modification from other thread
           if (ti >= size) {
             throw new ConcurrentModificationException();
           }
-          a[ti++] = (T) new AbstractMap.SimpleEntry<>(unmaskNull(key), tab[si].value);
+          a[ti++] = (T) new AbstractMap.SimpleEntry<>(unmaskNull(key), tab[si + 1]);
+        }
+      }
+      if (overflow != null) {
+        for (Map.Entry<Object,Object> e : overflow.entrySet()) {
+          if (ti >= size) {
+            throw new ConcurrentModificationException();
+          }
+          a[ti++] = (T) new AbstractMap.SimpleEntry<>(unmaskNull(e.getKey()), e.getValue());
         }
       }
       // fewer elements than expected or concurrent modification from other thread detected
@@ -1628,6 +4096,7 @@ Object putVal(Object maskedKey, Object value, MaskedHashKeyValue[] tab, boolean
    */
   @java.io.Serial
   private void writeObject(ObjectOutputStream s) throws java.io.IOException {
+    completeResize();
     // Write out size (number of mappings) and any hidden stuff
     s.defaultWriteObject();
 
@@ -1635,12 +4104,18 @@ Object putVal(Object maskedKey, Object value, MaskedHashKeyValue[] tab, boolean
     s.writeInt(size);
 
     // Write out keys and values (alternating)
-    MaskedHashKeyValue[] tab = table;
-    for (int i = 0; i < tab.length; i++) {
-      Object key = tab[i].key;
+    Object[] tab = table;
+    for (int i = 0; i < tab.length; i += 2) {
+      Object key = tab[i];
       if (key != null) {
         s.writeObject(unmaskNull(key));
-        s.writeObject(tab[i].value);
+        s.writeObject(tab[i + 1]);
+      }
+    }
+    if (overflow != null) {
+      for (Map.Entry<Object,Object> e : overflow.entrySet()) {
+        s.writeObject(unmaskNull(e.getKey()));
+        s.writeObject(e.getValue());
       }
     }
   }
@@ -1653,17 +4128,32 @@ Object putVal(Object maskedKey, Object value, MaskedHashKeyValue[] tab, boolean
   private void readObject(ObjectInputStream s)
       throws java.io.IOException, ClassNotFoundException  {
     // Size (number of mappings) is written to the stream twice
-    // Read first size value and ignore it
-    s.readFields();
+    // Read first size value and ignore it, absent settings keep their defaults
+    ObjectInputStream.GetField fields = s.readFields();
+    incrementalResize = fields.get("incrementalResize", false);
+    parallelResizeThreshold = fields.get("parallelResizeThreshold",
+        DEFAULT_PARALLEL_RESIZE_THRESHOLD);
+    shrinkLoadFactor = fields.get("shrinkLoadFactor", 0f);
+    longProbePolicy = (LongProbePolicy) fields.get("longProbePolicy", LongProbePolicy.RESEED);
+    maxProbeLength = fields.get("maxProbeLength", DEFAULT_MAX_PROBE_LENGTH);
+    if (longProbePolicy == null || maxProbeLength < 1)
+      throw new java.io.StreamCorruptedException("Illegal long probe settings");
+    hashMixer = (HashMixer) fields.get("hashMixer", HashMixer.XOR_SHIFT);
+    if (hashMixer == null)
+      throw new java.io.StreamCorruptedException("Null hash mixer");
+    compactSizing = fields.get("compactSizing", false);
+    hashSeeding = (HashSeeding) fields.get("hashSeeding", HashSeeding.NONE);
+    if (hashSeeding == null)
+      throw new java.io.StreamCorruptedException("Null hash seeding");
+    hashSeed = hashSeeding.seed();
 
     // Read second size value, validate and assign to size field
     int size = s.readInt();
     if (size < 0)
       throw new java.io.StreamCorruptedException
           ("Illegal mappings count: " + size);
-    int cap = capacity(size);
+    int cap = capacityFor(size);
     // TODO serialization not correctly handled because can't access from outside java.util?: SharedSecrets.getJavaObjectInputStreamAccess().checkArray(s, Object[].class, cap*3);
-    this.size = size;
     init(cap);
 
     // Read the keys and values, and put the mappings in the table
@@ -1683,49 +4173,69 @@ Object putVal(Object maskedKey, Object value, MaskedHashKeyValue[] tab, boolean
   private void putForCreate(K key, V value)
       throws java.io.StreamCorruptedException
   {
-    if (putVal(maskNull(key), value, table, true, false, true, true) == null
-        && containsKey(unmaskNull(key))) {
+    if (containsKey(key)) {
       throw new java.io.StreamCorruptedException();
     }
+    Object k = maskNull(key);
+    putVal(k, maskHash(k), value, false, false);
   }
 
   @SuppressWarnings("unchecked")
   @Override
   public void forEach(BiConsumer<? super K, ? super V> action) {
     Objects.requireNonNull(action);
+    completeResize();
     int expectedModCount = modCount;
 
-    MaskedHashKeyValue[] t = table;
-    for (int index = 0; index < t.length; index++) {
-      Object k = t[index].key; // TODO is it better to assign t[index] to a local var, E, and use E?  If so look at all places in this file where the array lookup is done.
+    Object[] t = table;
+    for (int index = 0; index < t.length; index += 2) {
+      Object k = t[index];
       if (k != null) {
-        action.accept((K) unmaskNull(k), (V) t[index].value);
+        action.accept((K) unmaskNull(k), (V) t[index + 1]);
       }
 
       if (modCount != expectedModCount) {
         throw new ConcurrentModificationException();
       }
     }
+    if (overflow != null) {
+      for (Map.Entry<Object,Object> e : overflow.entrySet()) {
+        action.accept((K) unmaskNull(e.getKey()), (V) e.getValue());
+
+        if (modCount != expectedModCount) {
+          throw new ConcurrentModificationException();
+        }
+      }
+    }
   }
 
   @SuppressWarnings("unchecked")
   @Override
   public void replaceAll(BiFunction<? super K, ? super V, ? extends V> function) {
     Objects.requireNonNull(function);
+    completeResize();
     int expectedModCount = modCount;
 
-    MaskedHashKeyValue[] t = table;
-    for (int index = 0; index < t.length; index++) {
-      final MaskedHashKeyValue item = t[index];
-      Object k = item.key;
+    Object[] t = table;
+    for (int index = 0; index < t.length; index += 2) {
+      Object k = t[index];
       if (k != null) {
-        t[index] = new MaskedHashKeyValue(item.maskedHash, k, function.apply((K) unmaskNull(k), (V) t[index].value));
+        t[index + 1] = function.apply((K) unmaskNull(k), (V) t[index + 1]);
       }
 
       if (modCount != expectedModCount) {
         throw new ConcurrentModificationException();
       }
     }
+    if (overflow != null) {
+      for (Map.Entry<Object,Object> e : overflow.entrySet()) {
+        e.setValue(function.apply((K) unmaskNull(e.getKey()), (V) e.getValue()));
+
+        if (modCount != expectedModCount) {
+          throw new ConcurrentModificationException();
+        }
+      }
+    }
   }
   /**
    * {@inheritDoc}
@@ -1753,28 +4263,213 @@ Object putVal(Object maskedKey, Object value, MaskedHashKeyValue[] tab, boolean
   @Override
   public boolean replace(K key, V oldValue, V newValue) {
     Object k = maskNull(key);
-    int hash = k.hashCode();
-    MaskedHashKeyValue[] tab = table;
-    int len = tab.length;
-    int i = getIndex(hash, len);
+    final int slot = slotOf(k, maskHash(k));
+    if (slot == NO_SLOT || !Objects.equals(valueAt(slot, k), oldValue))
+      return false;
+    setValueAt(slot, k, newValue);
+    return true;
+  }
 
-    while (true) {
-      MaskedHashKeyValue item = tab[i];
-      if (item.maskedHash == hash && item.key.equals(k)) {
-        if (!Objects.equals(item.value, oldValue))
-          return false;
-        tab[i] = new MaskedHashKeyValue(hash, k, newValue);
-        return true;
-      }
-      if (item.key == null)
-        return false;
-      i = nextKeyIndex(i, len);
+  @SuppressWarnings("unchecked")
+  @Override
+  public V getOrDefault(Object key, V defaultValue) {
+    Object k = maskNull(key);
+    final int slot = slotOf(k, maskHash(k));
+    return slot == NO_SLOT ? defaultValue : (V) valueAt(slot, k);
+  }
+
+  @SuppressWarnings("unchecked")
+  @Override
+  public V putIfAbsent(K key, V value) {
+    if (oldTable != null)
+      migrate(MIGRATION_STEP);
+    Object k = maskNull(key);
+    final int hash = maskHash(k);
+    final int slot = slotOf(k, hash);
+    if (slot == NO_SLOT)
+      return (V) putVal(k, hash, value, false, true);
+    V oldValue = (V) valueAt(slot, k);
+    if (oldValue == null)
+      setValueAt(slot, k, value);
+    return oldValue;
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>The key is looked up once, whether it is present or not, and its {@code hashCode()} is only
+   * called once.
+   *
+   * @throws ConcurrentModificationException if it is detected that the
+   *         mapping function modified this map
+   */
+  @SuppressWarnings("unchecked")
+  @Override
+  public V computeIfAbsent(K key, Function<? super K, ? extends V> mappingFunction) {
+    Objects.requireNonNull(mappingFunction);
+    if (oldTable != null)
+      migrate(MIGRATION_STEP);
+    Object k = maskNull(key);
+    final int hash = maskHash(k);
+    int slot = slotOf(k, hash);
+    V oldValue;
+    if (slot != NO_SLOT && (oldValue = (V) valueAt(slot, k)) != null)
+      return oldValue;
+
+    final boolean resizing = oldTable != null;
+    final int mc = modCount;
+    V value = mappingFunction.apply(key);
+    if (mc != modCount)
+      throw new ConcurrentModificationException();
+    if (value == null)
+      return null;
+    if (resizing)
+      slot = slotOf(k, hash); // the function may have migrated the slot
+    if (slot == NO_SLOT)
+      putVal(k, hash, value, false, true);
+    else
+      setValueAt(slot, k, value);
+    return value;
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>The key is looked up once and its {@code hashCode()} is only called once.
+   *
+   * @throws ConcurrentModificationException if it is detected that the
+   *         remapping function modified this map
+   */
+  @SuppressWarnings("unchecked")
+  @Override
+  public V computeIfPresent(K key,
+                            BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+    Objects.requireNonNull(remappingFunction);
+    if (oldTable != null)
+      migrate(MIGRATION_STEP);
+    Object k = maskNull(key);
+    final int hash = maskHash(k);
+    int slot = slotOf(k, hash);
+    V oldValue;
+    if (slot == NO_SLOT || (oldValue = (V) valueAt(slot, k)) == null)
+      return null;
+
+    final boolean resizing = oldTable != null;
+    final int mc = modCount;
+    V value = remappingFunction.apply(key, oldValue);
+    if (mc != modCount)
+      throw new ConcurrentModificationException();
+    if (resizing)
+      slot = slotOf(k, hash);
+    if (value == null)
+      removeAt(slot, k);
+    else
+      setValueAt(slot, k, value);
+    return value;
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>The key is looked up once, whether it is present or not, and its {@code hashCode()} is only
+   * called once.
+   *
+   * @throws ConcurrentModificationException if it is detected that the
+   *         remapping function modified this map
+   */
+  @SuppressWarnings("unchecked")
+  @Override
+  public V compute(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+    Objects.requireNonNull(remappingFunction);
+    if (oldTable != null)
+      migrate(MIGRATION_STEP);
+    Object k = maskNull(key);
+    final int hash = maskHash(k);
+    int slot = slotOf(k, hash);
+    V oldValue = slot == NO_SLOT ? null : (V) valueAt(slot, k);
+
+    final boolean resizing = oldTable != null;
+    final int mc = modCount;
+    V value = remappingFunction.apply(key, oldValue);
+    if (mc != modCount)
+      throw new ConcurrentModificationException();
+    if (resizing)
+      slot = slotOf(k, hash);
+    if (slot == NO_SLOT) {
+      if (value != null)
+        putVal(k, hash, value, false, true);
+    } else if (value == null) {
+      removeAt(slot, k);
+    } else {
+      setValueAt(slot, k, value);
+    }
+    return value;
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>The key is looked up once, whether it is present or not, and its {@code hashCode()} is only
+   * called once.
+   *
+   * @throws ConcurrentModificationException if it is detected that the
+   *         remapping function modified this map
+   */
+  @SuppressWarnings("unchecked")
+  @Override
+  public V merge(K key, V value,
+                 BiFunction<? super V, ? super V, ? extends V> remappingFunction) {
+    Objects.requireNonNull(value);
+    Objects.requireNonNull(remappingFunction);
+    Object k = maskNull(key);
+    return (V) mergeHashed(k, maskHash(k), value, remappingFunction);
+  }
+
+  /**
+   * Does the work of {@link #merge(Object, Object, BiFunction)} for a masked key whose stored hash
+   * is known.
+   */
+  @SuppressWarnings("unchecked")
+  private Object mergeHashed(Object k, int hash, Object value,
+                             BiFunction<? super V, ? super V, ? extends V> remappingFunction) {
+    if (oldTable != null)
+      migrate(MIGRATION_STEP);
+    int slot = slotOf(k, hash);
+    if (slot == NO_SLOT) {
+      putVal(k, hash, value, false, true);
+      return value;
+    }
+    V oldValue = (V) valueAt(slot, k);
+    if (oldValue == null) {
+      setValueAt(slot, k, value);
+      return value;
     }
+
+    final boolean resizing = oldTable != null;
+    final int mc = modCount;
+    V newValue = remappingFunction.apply(oldValue, (V) value);
+    if (mc != modCount)
+      throw new ConcurrentModificationException();
+    if (resizing)
+      slot = slotOf(k, hash);
+    if (newValue == null)
+      removeAt(slot, k);
+    else
+      setValueAt(slot, k, newValue);
+    return newValue;
   }
 
   /**
    * Similar form as array-based Spliterators, but skips blank elements,
-   * and guestimates size as decreasing by half per split.
+   * and guestimates size as decreasing by half per split.  The spliterator
+   * that covers the end of the table also traverses <tt>overflow</tt>, after
+   * the last slot.
+   *
+   * <p>Blank slots are skipped one at a time.  Or-ing the stored hashes of
+   * eight slots together, to pass a block of empty slots on one branch, was
+   * measured no faster even at 5% load, nor was scanning the hashes rather
+   * than the keys: a pass is bound by loading the keys and values it hands
+   * out, not by the slots it skips.  See {@code ScanBenchmark}.
    */
   static class OpenHashMapSpliterator<K,V> {
     final OpenHashMap<K,V> map;
@@ -1782,6 +4477,7 @@ Object putVal(Object maskedKey, Object value, MaskedHashKeyValue[] tab, boolean
     int fence;             // -1 until first use; then one past last index
     int est;               // size estimate
     int expectedModCount;  // initialized when fence set
+    Iterator<Map.Entry<Object,Object>> overflowIterator; // once past the last slot
 
     OpenHashMapSpliterator(OpenHashMap<K,V> map, int origin,
                            int fence, int est, int expectedModCount) {
@@ -1795,9 +4491,10 @@ Object putVal(Object maskedKey, Object value, MaskedHashKeyValue[] tab, boolean
     final int getFence() { // initialize fence and size on first use
       int hi;
       if ((hi = fence) < 0) {
+        map.completeResize();
         est = map.size;
         expectedModCount = map.modCount;
-        hi = fence = map.table.length;
+        hi = fence = map.hashedKeyTable.length;
       }
       return hi;
     }
@@ -1806,6 +4503,17 @@ Object putVal(Object maskedKey, Object value, MaskedHashKeyValue[] tab, boolean
       getFence(); // force init
       return (long) est;
     }
+
+    /**
+     * Returns the iterator over the overflow mappings still to traverse, or
+     * null if there are none for this spliterator.
+     */
+    final Iterator<Map.Entry<Object,Object>> overflowIterator() {
+      if (overflowIterator == null && map.overflow != null
+          && fence == map.hashedKeyTable.length)
+        overflowIterator = map.overflow.entrySet().iterator();
+      return overflowIterator;
+    }
   }
 
   static final class KeySpliterator<K,V>
@@ -1828,13 +4536,18 @@ Object putVal(Object maskedKey, Object value, MaskedHashKeyValue[] tab, boolean
       if (action == null)
         throw new NullPointerException();
       int i, hi, mc; Object key;
-      OpenHashMap<K,V> m; MaskedHashKeyValue[] a;
-      if ((m = map) != null && (a = m.table) != null &&
-          (i = index) >= 0 && (index = hi = getFence()) <= a.length) {
+      OpenHashMap<K,V> m; Object[] a;
+      // The fence first, as building a lazily inserted index replaces the table
+      if ((m = map) != null && (hi = getFence()) >= 0 && (a = m.table) != null &&
+          (i = index) >= 0 && (index = hi) <= a.length >> 1) {
         for (; i < hi; i++) {
-          if ((key = a[i].key) != null)
+          if ((key = a[i << 1]) != null)
             action.accept((K)unmaskNull(key));
         }
+        Iterator<Map.Entry<Object,Object>> it = overflowIterator();
+        if (it != null)
+          while (it.hasNext())
+            action.accept((K)unmaskNull(it.next().getKey()));
         if (m.modCount == expectedModCount)
           return;
       }
@@ -1845,10 +4558,10 @@ Object putVal(Object maskedKey, Object value, MaskedHashKeyValue[] tab, boolean
     public boolean tryAdvance(Consumer<? super K> action) {
       if (action == null)
         throw new NullPointerException();
-      MaskedHashKeyValue[] a = map.table;
       int hi = getFence();
+      Object[] a = map.table;
       while (index < hi) {
-        Object key = a[index].key;
+        Object key = a[index << 1];
         index++;
         if (key != null) {
           action.accept((K) unmaskNull(key));
@@ -1857,6 +4570,13 @@ Object putVal(Object maskedKey, Object value, MaskedHashKeyValue[] tab, boolean
           return true;
         }
       }
+      Iterator<Map.Entry<Object,Object>> it = overflowIterator();
+      if (it != null && it.hasNext()) {
+        action.accept((K) unmaskNull(it.next().getKey()));
+        if (map.modCount != expectedModCount)
+          throw new ConcurrentModificationException();
+        return true;
+      }
       return false;
     }
 
@@ -1884,15 +4604,22 @@ Object putVal(Object maskedKey, Object value, MaskedHashKeyValue[] tab, boolean
       if (action == null)
         throw new NullPointerException();
       int i, hi, mc;
-      OpenHashMap<K,V> m; MaskedHashKeyValue[] a;
-      if ((m = map) != null && (a = m.table) != null &&
-          (i = index) >= 0 && (index = hi = getFence()) <= a.length) {
+      OpenHashMap<K,V> m; Object[] a;
+      // The fence first, as building a lazily inserted index replaces the table
+      if ((m = map) != null && (hi = getFence()) >= 0 && (a = m.table) != null &&
+          (i = index) >= 0 && (index = hi) <= a.length >> 1) {
         for (; i < hi; i++) {
-          if (a[i].key != null) {
-            @SuppressWarnings("unchecked") V v = (V)a[i].value;
+          if (a[i << 1] != null) {
+            @SuppressWarnings("unchecked") V v = (V)a[(i << 1) + 1];
             action.accept(v);
           }
         }
+        Iterator<Map.Entry<Object,Object>> it = overflowIterator();
+        if (it != null)
+          while (it.hasNext()) {
+            @SuppressWarnings("unchecked") V v = (V)it.next().getValue();
+            action.accept(v);
+          }
         if (m.modCount == expectedModCount)
           return;
       }
@@ -1902,19 +4629,27 @@ Object putVal(Object maskedKey, Object value, MaskedHashKeyValue[] tab, boolean
     public boolean tryAdvance(Consumer<? super V> action) {
       if (action == null)
         throw new NullPointerException();
-      MaskedHashKeyValue[] a = map.table;
       int hi = getFence();
+      Object[] a = map.table;
       while (index < hi) {
-        MaskedHashKeyValue elem = a[index];
-        @SuppressWarnings("unchecked") V v = (V)elem.value;
+        Object key = a[index << 1];
+        @SuppressWarnings("unchecked") V v = (V)a[(index << 1) + 1];
         index++;
-        if (elem.key != null) {
+        if (key != null) {
           action.accept(v);
           if (map.modCount != expectedModCount)
             throw new ConcurrentModificationException();
           return true;
         }
       }
+      Iterator<Map.Entry<Object,Object>> it = overflowIterator();
+      if (it != null && it.hasNext()) {
+        @SuppressWarnings("unchecked") V v = (V)it.next().getValue();
+        action.accept(v);
+        if (map.modCount != expectedModCount)
+          throw new ConcurrentModificationException();
+        return true;
+      }
       return false;
     }
 
@@ -1927,35 +4662,43 @@ Object putVal(Object maskedKey, Object value, MaskedHashKeyValue[] tab, boolean
   static final class EntrySpliterator<K,V>
       extends OpenHashMapSpliterator<K,V>
       implements Spliterator<Map.Entry<K,V>> {
+    // The entry handed to every action, or null to hand out a new one each time
+    private final FlyweightEntry<K,V> flyweight;
+
     EntrySpliterator(OpenHashMap<K,V> m, int origin, int fence, int est,
                      int expectedModCount) {
+      this(m, origin, fence, est, expectedModCount, false);
+    }
+
+    EntrySpliterator(OpenHashMap<K,V> m, int origin, int fence, int est,
+                     int expectedModCount, boolean reuseEntry) {
       super(m, origin, fence, est, expectedModCount);
+      this.flyweight = reuseEntry ? new FlyweightEntry<>() : null;
     }
 
     public EntrySpliterator<K,V> trySplit() {
       int hi = getFence(), lo = index, mid = ((lo + hi) >>> 1);
       return (lo >= mid) ? null :
           new EntrySpliterator<>(map, lo, index = mid, est >>>= 1,
-              expectedModCount);
+              expectedModCount, flyweight != null);
     }
 
     public void forEachRemaining(Consumer<? super Map.Entry<K, V>> action) {
       if (action == null)
         throw new NullPointerException();
       int i, hi, mc;
-      OpenHashMap<K,V> m; MaskedHashKeyValue[] a;
-      if ((m = map) != null && (a = m.table) != null &&
-          (i = index) >= 0 && (index = hi = getFence()) <= a.length) {
+      OpenHashMap<K,V> m; Object[] a;
+      // The fence first, as building a lazily inserted index replaces the table
+      if ((m = map) != null && (hi = getFence()) >= 0 && (a = m.table) != null &&
+          (i = index) >= 0 && (index = hi) <= a.length >> 1) {
         for (; i < hi; i++) {
-          if (a[i].key != null) {
-            @SuppressWarnings("unchecked") K k =
-                (K)unmaskNull(a[i].key);
-            @SuppressWarnings("unchecked") V v = (V)a[i].value;
-            action.accept
-                (new AbstractMap.SimpleImmutableEntry<>(k, v));
-
-          }
+          if (a[i << 1] != null)
+            action.accept(entryAt(a, i));
         }
+        Iterator<Map.Entry<Object,Object>> it = overflowIterator();
+        if (it != null)
+          while (it.hasNext())
+            action.accept(entryOf(it.next()));
         if (m.modCount == expectedModCount)
           return;
       }
@@ -1965,59 +4708,106 @@ Object putVal(Object maskedKey, Object value, MaskedHashKeyValue[] tab, boolean
     public boolean tryAdvance(Consumer<? super Map.Entry<K,V>> action) {
       if (action == null)
         throw new NullPointerException();
-      MaskedHashKeyValue[] a = map.table;
       int hi = getFence();
+      Object[] a = map.table;
       while (index < hi) {
-        Object key = a[index].key;
-        @SuppressWarnings("unchecked") V v = (V)a[index].value;
-        index++;
-        if (key != null) {
-          @SuppressWarnings("unchecked") K k =
-              (K)unmaskNull(key);
-          action.accept
-              (new AbstractMap.SimpleImmutableEntry<>(k, v));
+        int i = index++;
+        if (a[i << 1] != null) {
+          action.accept(entryAt(a, i));
           if (map.modCount != expectedModCount)
             throw new ConcurrentModificationException();
           return true;
         }
       }
+      Iterator<Map.Entry<Object,Object>> it = overflowIterator();
+      if (it != null && it.hasNext()) {
+        action.accept(entryOf(it.next()));
+        if (map.modCount != expectedModCount)
+          throw new ConcurrentModificationException();
+        return true;
+      }
       return false;
     }
 
+    /**
+     * Returns the entry for the mapping in slot {@code i} of the table.
+     */
+    private Map.Entry<K,V> entryAt(Object[] a, int i) {
+      FlyweightEntry<K,V> e = flyweight;
+      if (e == null) {
+        @SuppressWarnings("unchecked") K k = (K)unmaskNull(a[i << 1]);
+        @SuppressWarnings("unchecked") V v = (V)a[(i << 1) + 1];
+        return new AbstractMap.SimpleImmutableEntry<>(k, v);
+      }
+      e.tab = a;
+      e.index = i;
+      e.overflowEntry = null;
+      return e;
+    }
+
+    /**
+     * Returns the entry for a mapping of <tt>overflow</tt>.
+     */
+    private Map.Entry<K,V> entryOf(Map.Entry<Object,Object> overflowEntry) {
+      FlyweightEntry<K,V> e = flyweight;
+      if (e == null) {
+        @SuppressWarnings("unchecked") K k = (K)unmaskNull(overflowEntry.getKey());
+        @SuppressWarnings("unchecked") V v = (V)overflowEntry.getValue();
+        return new AbstractMap.SimpleImmutableEntry<>(k, v);
+      }
+      e.overflowEntry = overflowEntry;
+      return e;
+    }
+
     public int characteristics() {
       return (fence < 0 || est == map.size ? SIZED : 0) | Spliterator.DISTINCT;
     }
   }
 
-  static final /* TODO uncomment primitive*/ class MaskedHashKeyValue { // TODO restrict type by adding <K,V>
-    final int maskedHash;
-    final Object key;
-    // TODO rename to maskedKey, and parameters.
-    final Object value;
+  /**
+   * The entry that a spliterator from {@link #flyweightEntrySpliterator()}
+   * hands to every action, moved to each mapping in turn.  It reads the key
+   * and value from the table when asked for them, and writes
+   * {@code setValue} through to the map.
+   */
+  static final class FlyweightEntry<K,V> implements Map.Entry<K,V> {
+    Object[] tab;
+    int index;
+    Map.Entry<Object,Object> overflowEntry; // or null if the mapping is in tab
 
-    static final MaskedHashKeyValue EMPTY = new MaskedHashKeyValue(0, null, null) /* TODO uncomment MaskedHashKeyValue.default*/;
+    @SuppressWarnings("unchecked")
+    public K getKey() {
+      return (K) unmaskNull(overflowEntry != null
+          ? overflowEntry.getKey() : tab[index << 1]);
+    }
 
-    MaskedHashKeyValue(int maskedHash, Object key, Object value) {
-      this.maskedHash = maskedHash;
-      this.key = key;
-      this.value = value;
+    @SuppressWarnings("unchecked")
+    public V getValue() {
+      return (V) (overflowEntry != null
+          ? overflowEntry.getValue() : tab[(index << 1) + 1]);
     }
 
-    static MaskedHashKeyValue[] createEmptyFilledArray(int len) {
-      final MaskedHashKeyValue[] array = new MaskedHashKeyValue[len];
-      if (NO_PRIMITIVE) {
-        Arrays.fill(array, EMPTY);
-      }
-      return array;
+    @SuppressWarnings("unchecked")
+    public V setValue(V value) {
+      if (overflowEntry != null)
+        return (V) overflowEntry.setValue(value);
+      V oldValue = (V) tab[(index << 1) + 1];
+      tab[(index << 1) + 1] = value;
+      return oldValue;
+    }
+
+    public boolean equals(Object o) {
+      return o instanceof Map.Entry<?, ?> e
+          && Objects.equals(e.getKey(), getKey())
+          && Objects.equals(e.getValue(), getValue());
+    }
+
+    public int hashCode() {
+      return Objects.hashCode(getKey()) ^ Objects.hashCode(getValue());
     }
 
-    @Override
     public String toString() {
-      return "MaskedHashKeyValue{" +
-          "maskedHash=" + maskedHash +
-          ", key=" + key +
-          ", value=" + value +
-          '}';
+      return getKey() + "=" + getValue();
     }
   }
 
@@ -2086,17 +4876,8 @@ Reconsider the computation of the hash modulo equivalent. The current one does a
 
  */
 
-// TODO unlike HashMap this does not currently throw a ConcurrentModificationException for the compute* or merge functions.  I don't know why IdentityHashMap (from whence this implementation was derived) does not do this, so it needs to be investigated whether implementing CME in this class is feasible.
-
 // TODO BasicSerialization test is failing.
 
-// TODO Develop lazy add methods that wrap maps and sets
-//  Just append to a list|rope until any fetch is done.  More optimal to have a lazy mode and a
-//  non lazy mode in lazy mode it is legal to call put laserly and the modes are enforced by
-//  having the pointer to the data structure for example the pointer to the hash table array or
-//  the pointer to the rope you know and then catch it such that if cricket is never called in
-//  lazy mode there will be no cost for if checks
-
 // TODO The performance test should run multiple threads each with distinct keys and
 //  values.  I think the keys should be Strings since that is more common; it
 //  will also help to consume cache.  When lookup is done it should use
@@ -0,0 +1,275 @@
+package newhash;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.BiConsumer;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToIntFunction;
+import java.util.function.ToLongFunction;
+import java.util.stream.Collector;
+import java.util.stream.Collectors;
+
+/**
+ * {@link Collector}s that collect into {@link OpenHashMap}s, like {@link Collectors#toMap} and
+ * {@link Collectors#groupingBy}.  In a parallel stream the partial maps are merged by
+ * {@code OpenHashMap.mergeAll}, the smaller into the larger, reusing the stored hashes rather
+ * than asking each key for its hash code again; into an empty partial map the other is copied
+ * whole.
+ *
+ * <p>A collector is not told how many elements a stream has, so those that take an
+ * {@code expectedSize} size every map they create for that many keys, as
+ * {@link OpenHashMap#OpenHashMap(int)} does; a stream's
+ * {@link java.util.Spliterator#estimateSize() estimate} is a bound on it.  In a parallel stream
+ * each partial result is a map of its own, sized alike.  The others start small and grow.
+ */
+public final class OpenHashMapCollectors {
+
+  private OpenHashMapCollectors() {}
+
+  /**
+   * Returns a collector into an {@code OpenHashMap} of the keys and values the mapping functions
+   * give for each element, like {@link Collectors#toMap(Function, Function)}.
+   *
+   * @param keyMapper the function giving the key of an element
+   * @param valueMapper the function giving the value of an element, never null
+   * @return a collector into an {@code OpenHashMap}
+   * @throws IllegalStateException from the collection, if two elements have the same key
+   */
+  public static <T, K, U> Collector<T, ?, OpenHashMap<K, U>> toOpenHashMap(
+      Function<? super T, ? extends K> keyMapper, Function<? super T, ? extends U> valueMapper) {
+    Objects.requireNonNull(keyMapper);
+    Objects.requireNonNull(valueMapper);
+    BiConsumer<OpenHashMap<K, U>, T> accumulator = (map, element) -> {
+      K key = keyMapper.apply(element);
+      U value = Objects.requireNonNull(valueMapper.apply(element));
+      U oldValue = map.putIfAbsent(key, value);
+      if (oldValue != null)
+        throw duplicateKey(key, oldValue, value);
+    };
+    return Collector.of(OpenHashMap::new, accumulator,
+        OpenHashMapCollectors.<K, U>combiner((key, u, v) -> { throw duplicateKey(key, u, v); }),
+        Collector.Characteristics.IDENTITY_FINISH);
+  }
+
+  /**
+   * Returns a collector into an {@code OpenHashMap} of the keys and values the mapping functions
+   * give for each element, merging the values of equal keys with the merge function, like
+   * {@link Collectors#toMap(Function, Function, BinaryOperator)}.
+   *
+   * @param keyMapper the function giving the key of an element
+   * @param valueMapper the function giving the value of an element, never null
+   * @param mergeFunction the function merging the values of two elements with the same key, the
+   *        earlier first
+   * @return a collector into an {@code OpenHashMap}
+   */
+  public static <T, K, U> Collector<T, ?, OpenHashMap<K, U>> toOpenHashMap(
+      Function<? super T, ? extends K> keyMapper, Function<? super T, ? extends U> valueMapper,
+      BinaryOperator<U> mergeFunction) {
+    return toOpenHashMap(keyMapper, valueMapper, mergeFunction, OpenHashMap::new);
+  }
+
+  /**
+   * Returns a collector like {@link #toOpenHashMap(Function, Function, BinaryOperator)} whose maps
+   * are sized for {@code expectedSize} keys.
+   *
+   * @param keyMapper the function giving the key of an element
+   * @param valueMapper the function giving the value of an element, never null
+   * @param mergeFunction the function merging the values of two elements with the same key, the
+   *        earlier first
+   * @param expectedSize the number of keys each map is sized for
+   * @return a collector into an {@code OpenHashMap}
+   * @throws IllegalArgumentException if {@code expectedSize} is negative
+   */
+  public static <T, K, U> Collector<T, ?, OpenHashMap<K, U>> toOpenHashMap(
+      Function<? super T, ? extends K> keyMapper, Function<? super T, ? extends U> valueMapper,
+      BinaryOperator<U> mergeFunction, int expectedSize) {
+    return toOpenHashMap(keyMapper, valueMapper, mergeFunction, sized(expectedSize));
+  }
+
+  private static <T, K, U> Collector<T, ?, OpenHashMap<K, U>> toOpenHashMap(
+      Function<? super T, ? extends K> keyMapper, Function<? super T, ? extends U> valueMapper,
+      BinaryOperator<U> mergeFunction, Supplier<OpenHashMap<K, U>> supplier) {
+    Objects.requireNonNull(keyMapper);
+    Objects.requireNonNull(valueMapper);
+    Objects.requireNonNull(mergeFunction);
+    BiConsumer<OpenHashMap<K, U>, T> accumulator =
+        (map, element) -> map.merge(keyMapper.apply(element), valueMapper.apply(element),
+            mergeFunction);
+    return Collector.of(supplier, accumulator, combiner(mergeFunction),
+        Collector.Characteristics.IDENTITY_FINISH);
+  }
+
+  /**
+   * Returns a collector grouping the elements by the key the classifier gives each into lists,
+   * like {@link Collectors#groupingBy(Function)}.
+   *
+   * @param classifier the function giving the key of an element, never null
+   * @return a collector into an {@code OpenHashMap} of lists
+   */
+  public static <T, K> Collector<T, ?, OpenHashMap<K, List<T>>> groupingBy(
+      Function<? super T, ? extends K> classifier) {
+    return groupingBy(classifier, Collectors.toCollection(ArrayList::new));
+  }
+
+  /**
+   * Returns a collector grouping the elements by the key the classifier gives each and reducing
+   * each group with the downstream collector, like
+   * {@link Collectors#groupingBy(Function, Collector)}.
+   *
+   * @param classifier the function giving the key of an element, never null
+   * @param downstream the collector reducing each group
+   * @return a collector into an {@code OpenHashMap}
+   */
+  public static <T, K, A, D> Collector<T, ?, OpenHashMap<K, D>> groupingBy(
+      Function<? super T, ? extends K> classifier, Collector<? super T, A, D> downstream) {
+    return groupingBy(classifier, downstream, OpenHashMap::new);
+  }
+
+  /**
+   * Returns a collector like {@link #groupingBy(Function, Collector)} whose maps are sized for
+   * {@code expectedSize} keys.
+   *
+   * @param classifier the function giving the key of an element, never null
+   * @param downstream the collector reducing each group
+   * @param expectedSize the number of keys each map is sized for
+   * @return a collector into an {@code OpenHashMap}
+   * @throws IllegalArgumentException if {@code expectedSize} is negative
+   */
+  public static <T, K, A, D> Collector<T, ?, OpenHashMap<K, D>> groupingBy(
+      Function<? super T, ? extends K> classifier, Collector<? super T, A, D> downstream,
+      int expectedSize) {
+    return groupingBy(classifier, downstream, sized(expectedSize));
+  }
+
+  @SuppressWarnings("unchecked")
+  private static <T, K, A, D> Collector<T, ?, OpenHashMap<K, D>> groupingBy(
+      Function<? super T, ? extends K> classifier, Collector<? super T, A, D> downstream,
+      Supplier<OpenHashMap<K, A>> supplier) {
+    Objects.requireNonNull(classifier);
+    Supplier<A> downstreamSupplier = downstream.supplier();
+    BiConsumer<A, ? super T> downstreamAccumulator = downstream.accumulator();
+    Function<K, A> newContainer = key -> downstreamSupplier.get();
+    BiConsumer<OpenHashMap<K, A>, T> accumulator = (map, element) -> {
+      K key = Objects.requireNonNull(classifier.apply(element),
+          "element cannot be mapped to a null key");
+      downstreamAccumulator.accept(map.computeIfAbsent(key, newContainer), element);
+    };
+    BinaryOperator<OpenHashMap<K, A>> combiner = combiner(downstream.combiner());
+
+    if (downstream.characteristics().contains(Collector.Characteristics.IDENTITY_FINISH)) {
+      return (Collector<T, ?, OpenHashMap<K, D>>) (Collector<T, ?, ?>)
+          Collector.of(supplier, accumulator, combiner, Collector.Characteristics.IDENTITY_FINISH);
+    }
+    Function<A, D> downstreamFinisher = downstream.finisher();
+    Function<OpenHashMap<K, A>, OpenHashMap<K, D>> finisher = map -> {
+      // Each container is replaced by its result in place, as Collectors.groupingBy does
+      ((OpenHashMap<K, Object>) (OpenHashMap<K, ?>) map)
+          .replaceAll((key, container) -> downstreamFinisher.apply((A) container));
+      return (OpenHashMap<K, D>) (OpenHashMap<K, ?>) map;
+    };
+    return Collector.of(supplier, accumulator, combiner, finisher);
+  }
+
+  /**
+   * Returns a collector counting the elements with each key the classifier gives.
+   *
+   * @param classifier the function giving the key of an element, never null
+   * @return a collector into an {@code OpenHashMap} of counts
+   */
+  public static <T, K> Collector<T, ?, OpenHashMap<K, Long>> counting(
+      Function<? super T, ? extends K> classifier) {
+    return groupingBy(classifier, Collectors.counting());
+  }
+
+  /**
+   * Returns a collector like {@link #counting(Function)} whose maps are sized for
+   * {@code expectedSize} keys.
+   *
+   * @param classifier the function giving the key of an element, never null
+   * @param expectedSize the number of keys each map is sized for
+   * @return a collector into an {@code OpenHashMap} of counts
+   * @throws IllegalArgumentException if {@code expectedSize} is negative
+   */
+  public static <T, K> Collector<T, ?, OpenHashMap<K, Long>> counting(
+      Function<? super T, ? extends K> classifier, int expectedSize) {
+    return groupingBy(classifier, Collectors.counting(), expectedSize);
+  }
+
+  /**
+   * Returns a collector summing the given function of the elements with each key the classifier
+   * gives.
+   *
+   * @param classifier the function giving the key of an element, never null
+   * @param mapper the function giving the number to sum for an element
+   * @return a collector into an {@code OpenHashMap} of sums
+   */
+  public static <T, K> Collector<T, ?, OpenHashMap<K, Integer>> summingInt(
+      Function<? super T, ? extends K> classifier, ToIntFunction<? super T> mapper) {
+    return groupingBy(classifier, Collectors.summingInt(mapper));
+  }
+
+  /**
+   * Returns a collector summing the given function of the elements with each key the classifier
+   * gives.
+   *
+   * @param classifier the function giving the key of an element, never null
+   * @param mapper the function giving the number to sum for an element
+   * @return a collector into an {@code OpenHashMap} of sums
+   */
+  public static <T, K> Collector<T, ?, OpenHashMap<K, Long>> summingLong(
+      Function<? super T, ? extends K> classifier, ToLongFunction<? super T> mapper) {
+    return groupingBy(classifier, Collectors.summingLong(mapper));
+  }
+
+  /**
+   * Returns a collector summing the given function of the elements with each key the classifier
+   * gives, as {@link Collectors#summingDouble} does.
+   *
+   * @param classifier the function giving the key of an element, never null
+   * @param mapper the function giving the number to sum for an element
+   * @return a collector into an {@code OpenHashMap} of sums
+   */
+  public static <T, K> Collector<T, ?, OpenHashMap<K, Double>> summingDouble(
+      Function<? super T, ? extends K> classifier, ToDoubleFunction<? super T> mapper) {
+    return groupingBy(classifier, Collectors.summingDouble(mapper));
+  }
+
+  private static <K, V> Supplier<OpenHashMap<K, V>> sized(int expectedSize) {
+    if (expectedSize < 0)
+      throw new IllegalArgumentException("expectedSize is negative: " + expectedSize);
+    return () -> new OpenHashMap<>(expectedSize);
+  }
+
+  /**
+   * Returns a combiner that merges the smaller of two partial maps into the larger, keeping the
+   * value from the left one as the first argument of the merge function.
+   */
+  private static <K, V> BinaryOperator<OpenHashMap<K, V>> combiner(
+      BinaryOperator<V> mergeFunction) {
+    return combiner((key, u, v) -> mergeFunction.apply(u, v));
+  }
+
+  /**
+   * As {@link #combiner(BinaryOperator)}, with a merge function that is also given the key.
+   */
+  private static <K, V> BinaryOperator<OpenHashMap<K, V>> combiner(
+      OpenHashMap.KeyedRemapping<K, V> mergeFunction) {
+    return (left, right) -> {
+      if (left.size() >= right.size()) {
+        left.mergeAll(right, mergeFunction);
+        return left;
+      }
+      right.mergeAll(left, (key, r, l) -> mergeFunction.apply(key, l, r));
+      return right;
+    };
+  }
+
+  private static IllegalStateException duplicateKey(Object key, Object u, Object v) {
+    return new IllegalStateException(
+        String.format("Duplicate key %s (attempted merging values %s and %s)", key, u, v));
+  }
+}
@@ -0,0 +1,475 @@
+package newhash;
+
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.*;
+
+/**
+ * Hash table based implementation of the {@code Map} interface using open addressing with a
+ * pluggable {@link ProbeSequence}, as an alternative engine to the Robin Hood
+ * {@link OpenHashMap} for hash codes that cluster.  It permits null values and the null key, and
+ * makes no guarantees as to the order of the map.
+ *
+ * <p>The table is laid out as that of {@code OpenHashMap}: the stored hash of each key, mixed as
+ * by {@link OpenHashMap.HashMixer#XOR_SHIFT XOR_SHIFT}, in one array, and the keys and values in
+ * another, and the home slot of a key is the low bits of its stored hash.  From there a lookup
+ * follows the probe sequence of the map until it finds the key or an empty slot.  So keys whose
+ * hash codes fall in dense blocks, such as sequential ids from several ranges or timestamps on
+ * a coarse clock, fill consecutive homes, and linear probing merges their runs into long ones,
+ * while the other sequences jump out of them.
+ *
+ * <p>{@code OpenHashMap} keeps its runs in Robin Hood order and closes the gap a removal leaves
+ * by shifting the rest of the run back, which both rely on a mapping's probe sequence being the
+ * slots after its home.  Here mappings stay where they were inserted, in the first free slot of
+ * their sequence, and a removal leaves a {@link #DELETED_HASH tombstone} that lookups step over
+ * and insertions reuse, whatever the sequence.  With {@link ProbeSequence#LINEAR LINEAR}, a
+ * tombstone followed by an empty slot is emptied, as no lookup passes it.  When insertions have
+ * used up the empty slots the load factor allows, the table is rebuilt: at the same capacity if
+ * at most half of those slots hold mappings and the rest are tombstones, and otherwise at twice
+ * the capacity.  The hashes are kept, so rebuilding does not call {@code hashCode()}.
+ *
+ * <p>Keys whose hash codes collide outright share their whole probe sequence, however large the
+ * table, so unlike {@code OpenHashMap} this map has no defence against them.
+ *
+ * <p>The load factor is 2/3, as for {@code OpenHashMap}, so the two have tables of the same
+ * length for the same number of mappings.  The serial form is that of {@code OpenHashMap}: the
+ * size, then each key and value.
+ *
+ * <p><strong>Note that this implementation is not synchronized.</strong> The iterators of its
+ * collection views are <i>fail-fast</i> in the same way as those of {@code OpenHashMap}.
+ *
+ * @param <K> the type of keys maintained by this map
+ * @param <V> the type of mapped values
+ *
+ * @see OpenHashMap
+ * @see SwissHashMap
+ */
+public class ProbingHashMap<K,V> extends SlotHashMap<K,V>
+    implements Map<K,V>, java.io.Serializable, Cloneable
+{
+  /**
+   * The order in which a lookup visits the slots of the table, starting from the key's home
+   * slot.  Each is a permutation of the slots of a table whose length is a power of two, so
+   * every lookup ends at an empty slot if it does not find its key.
+   *
+   * @see ProbingHashMap#ProbingHashMap(int, ProbeSequence)
+   */
+  public enum ProbeSequence {
+    /**
+     * The slots after the home, one at a time, as {@code OpenHashMap} probes.  Each probe is
+     * likely in the cache line of the one before, but keys with nearby homes share their runs,
+     * and runs that meet merge into longer ones: primary clustering.
+     */
+    LINEAR(0),
+
+    /**
+     * The slots at the triangular numbers 1, 3, 6, 10... past the home, as {@code SwissHashMap}
+     * probes its groups.  The first few probes stay near the home, and keys with nearby homes
+     * soon take different paths, so runs do not merge, but keys with the same home still share
+     * theirs: secondary clustering.
+     */
+    TRIANGULAR(1),
+
+    /**
+     * Every s<sup>th</sup> slot past the home, where the stride s is an odd number taken from
+     * the high bits of the hash multiplied by another constant, so keys with the same home take
+     * different paths too.  Each probe after the first is most likely a cache miss.
+     */
+    DOUBLE_HASHING(0);
+
+    /**
+     * How much the stride grows after each probe.
+     */
+    final int strideIncrement;
+
+    ProbeSequence(int strideIncrement) {
+      this.strideIncrement = strideIncrement;
+    }
+
+    /**
+     * Returns the distance from the home to the second slot of the sequence for a stored hash,
+     * in a table of 2<sup>32 - strideShift</sup> slots.
+     */
+    int firstStride(int hash, int strideShift) {
+      return this == DOUBLE_HASHING ? ((hash * STRIDE_MULTIPLIER) >>> strideShift) | 1 : 1;
+    }
+
+    /**
+     * Returns how many probes after the first the sequence of a key with the given stored hash
+     * takes to reach slot {@code i} from its home, the displacement that {@code OpenHashMap}
+     * calls hops.  For {@code LINEAR} that is the distance, for {@code DOUBLE_HASHING} the
+     * distance divided by the stride, which is odd and so invertible modulo the length, and
+     * for {@code TRIANGULAR} it is counted by following the sequence.
+     */
+    int probes(int home, int i, int hash, int strideShift, int mask) {
+      final int distance = (i - home) & mask;
+      switch (this) {
+        case LINEAR:
+          return distance;
+        case DOUBLE_HASHING: {
+          final int stride = firstStride(hash, strideShift);
+          // Newton's iteration doubles the bits of the inverse that are right, from 3
+          int inverse = stride;
+          for (int n = 0; n < 4; n++)
+            inverse *= 2 - stride * inverse;
+          return (distance * inverse) & mask;
+        }
+        default: {
+          int k = 0;
+          for (int offset = 0; offset != distance; )
+            offset = (offset + ++k) & mask;
+          return k;
+        }
+      }
+    }
+  }
+
+  /**
+   * The default probe sequence.
+   */
+  public static final ProbeSequence DEFAULT_PROBE_SEQUENCE = ProbeSequence.TRIANGULAR;
+
+  /**
+   * The odd multiplier whose product with a stored hash gives the stride of
+   * {@link ProbeSequence#DOUBLE_HASHING DOUBLE_HASHING} in its high bits.
+   */
+  private static final int STRIDE_MULTIPLIER = 0x9E3779B9;
+
+  /**
+   * The value of <tt>hashes</tt> for a slot whose mapping was removed.  Stored hashes that would
+   * be this or {@link OpenHashMap#EMPTY_HASH} are {@link OpenHashMap#ZERO_HASH} instead.
+   */
+  static final int DELETED_HASH = Integer.MIN_VALUE;
+
+  /**
+   * The initial capacity used by the no-args constructor.  MUST be a power of two.
+   */
+  private static final int DEFAULT_CAPACITY = 32;
+
+  /**
+   * The smallest capacity.  MUST be a power of two.
+   */
+  private static final int MINIMUM_CAPACITY = 4;
+
+  /**
+   * The largest capacity, the same as that of {@code OpenHashMap}.
+   */
+  private static final int MAXIMUM_CAPACITY = 1 << 28;
+
+  /**
+   * The hash of the key in each slot, {@link OpenHashMap#EMPTY_HASH} if the slot is empty, or
+   * {@link #DELETED_HASH}.  Its length is a power of two.
+   */
+  transient int[] hashes;
+
+  /**
+   * The number of empty slots that insertions may still fill before the table is rebuilt.
+   */
+  transient int growthLeft;
+
+  /**
+   * 32 less the log<sub>2</sub> of the capacity, see {@link ProbeSequence#firstStride}.
+   */
+  transient int strideShift;
+
+  /**
+   * The probe sequence of every lookup.
+   *
+   * @serial
+   */
+  private final ProbeSequence probeSequence;
+
+  /**
+   * Constructs a new, empty map with the default expected maximum size and probe sequence.
+   */
+  public ProbingHashMap() {
+    this.probeSequence = DEFAULT_PROBE_SEQUENCE;
+    init(DEFAULT_CAPACITY);
+  }
+
+  /**
+   * Constructs a new, empty map with the default probe sequence, that can hold the given number
+   * of mappings without resizing its table.
+   *
+   * @param expectedMaxSize the expected maximum size of the map
+   * @throws IllegalArgumentException if {@code expectedMaxSize} is negative
+   */
+  public ProbingHashMap(int expectedMaxSize) {
+    this(expectedMaxSize, DEFAULT_PROBE_SEQUENCE);
+  }
+
+  /**
+   * Constructs a new, empty map with the given probe sequence, that can hold the given number
+   * of mappings without resizing its table.
+   *
+   * @param expectedMaxSize the expected maximum size of the map
+   * @param probeSequence the order in which lookups visit slots
+   * @throws IllegalArgumentException if {@code expectedMaxSize} is negative
+   * @throws NullPointerException if {@code probeSequence} is null
+   */
+  public ProbingHashMap(int expectedMaxSize, ProbeSequence probeSequence) {
+    if (expectedMaxSize < 0)
+      throw new IllegalArgumentException("expectedMaxSize is negative: " + expectedMaxSize);
+    this.probeSequence = Objects.requireNonNull(probeSequence);
+    init(capacityFor(expectedMaxSize));
+  }
+
+  /**
+   * Constructs a new map containing the mappings in the specified map.
+   *
+   * @param m the map whose mappings are to be placed into this map
+   * @throws NullPointerException if the specified map is null
+   */
+  @SuppressWarnings("this-escape") // putMappings and its hooks are final or package-private
+  public ProbingHashMap(Map<? extends K, ? extends V> m) {
+    this(m.size());
+    putMappings(m);
+  }
+
+  /**
+   * Returns the smallest capacity that allows the given number of mappings.
+   */
+  private static int capacityFor(int expectedMaxSize) {
+    int capacity = MINIMUM_CAPACITY;
+    while (capacity < MAXIMUM_CAPACITY && maxLoad(capacity) < expectedMaxSize)
+      capacity <<= 1;
+    return capacity;
+  }
+
+  /**
+   * Returns the number of mappings a table of the given capacity may hold, 2/3 of its slots.
+   */
+  private static int maxLoad(int capacity) {
+    return (int) (capacity * 2L / 3);
+  }
+
+  /**
+   * Initializes an empty table of the given capacity, a power of two.
+   */
+  private void init(int capacity) {
+    hashes = new int[capacity];
+    table = new Object[capacity << 1];
+    strideShift = 32 - Integer.numberOfTrailingZeros(capacity);
+    growthLeft = maxLoad(capacity);
+  }
+
+  /**
+   * Returns the probe sequence of this map.
+   *
+   * @return the order in which lookups visit slots
+   */
+  public ProbeSequence getProbeSequence() {
+    return probeSequence;
+  }
+
+  /**
+   * Returns the hash stored for a masked key: its hash code with the high half folded onto the
+   * low half, as {@code OpenHashMap} stores it by default, but never
+   * {@link OpenHashMap#EMPTY_HASH} or {@link #DELETED_HASH}.
+   */
+  static int hash(Object maskedKey) {
+    final int h = OpenHashMap.HashMixer.XOR_SHIFT.mix(maskedKey.hashCode());
+    return h != OpenHashMap.EMPTY_HASH && h != DELETED_HASH ? h : OpenHashMap.ZERO_HASH;
+  }
+
+  @Override
+  final long hashOf(Object maskedKey) {
+    return hash(maskedKey);
+  }
+
+  /**
+   * Returns the slot holding a masked key with the given hash, or {@link #NO_SLOT}.  This is
+   * the probe of every lookup, which follows the probe sequence from the key's home to the key
+   * or to an empty slot, stepping over tombstones.
+   */
+  @Override
+  final int slotOf(Object maskedKey, long wideHash) {
+    final int hash = (int) wideHash;
+    final int[] hashes = this.hashes;
+    final Object[] tab = table;
+    final int mask = hashes.length - 1;
+    final int increment = probeSequence.strideIncrement;
+    int i = hash & mask;
+    for (int stride = probeSequence.firstStride(hash, strideShift); ;
+         i = (i + stride) & mask, stride += increment) {
+      final int h = hashes[i];
+      if (h == hash) {
+        final Object item = tab[i << 1];
+        if (item == maskedKey || maskedKey.equals(item))
+          return i;
+      } else if (h == OpenHashMap.EMPTY_HASH) {
+        return NO_SLOT;
+      }
+    }
+  }
+
+  /**
+   * Returns the first empty slot or tombstone of the probe sequence of a hash.
+   */
+  private int insertionSlot(int hash) {
+    final int[] hashes = this.hashes;
+    final int mask = hashes.length - 1;
+    final int increment = probeSequence.strideIncrement;
+    int i = hash & mask;
+    for (int stride = probeSequence.firstStride(hash, strideShift);
+         hashes[i] != OpenHashMap.EMPTY_HASH && hashes[i] != DELETED_HASH;
+         i = (i + stride) & mask, stride += increment)
+      ;
+    return i;
+  }
+
+  /**
+   * Returns how many probes after the first a lookup of the key in slot {@code i} takes to find
+   * it, see {@link ProbeSequence#probes}.
+   */
+  int probeLength(int i) {
+    final int hash = hashes[i];
+    final int mask = hashes.length - 1;
+    return probeSequence.probes(hash & mask, i, hash, strideShift, mask);
+  }
+
+  /**
+   * Inserts a mapping whose masked key is known not to be in the map, first rebuilding the table
+   * if that would fill an empty slot the load factor does not allow.
+   */
+  @Override
+  final void insert(Object maskedKey, long wideHash, Object value) {
+    final int hash = (int) wideHash;
+    int i = insertionSlot(hash);
+    if (hashes[i] == OpenHashMap.EMPTY_HASH) {
+      if (growthLeft == 0) {
+        rebuild();
+        i = insertionSlot(hash);
+      }
+      growthLeft--;
+    }
+    hashes[i] = hash;
+    table[i << 1] = maskedKey;
+    table[(i << 1) + 1] = value;
+    size++;
+    modCount++;
+  }
+
+  /**
+   * Empties slot {@code i}, leaving a tombstone.  With linear probing, if the next slot is empty
+   * no lookup passes this one, so it is emptied instead, and so are the tombstones before it.
+   */
+  @Override
+  final void clearSlot(int i) {
+    final int[] hashes = this.hashes;
+    table[i << 1] = null;
+    table[(i << 1) + 1] = null;
+    hashes[i] = DELETED_HASH;
+    if (probeSequence == ProbeSequence.LINEAR) {
+      final int mask = hashes.length - 1;
+      while (hashes[i] == DELETED_HASH && hashes[(i + 1) & mask] == OpenHashMap.EMPTY_HASH) {
+        hashes[i] = OpenHashMap.EMPTY_HASH;
+        growthLeft++;
+        i = (i - 1) & mask;
+      }
+    }
+  }
+
+  /**
+   * Rebuilds the table once insertions have used up its empty slots: at the same capacity to
+   * clear the tombstones if they are at least half of the load, otherwise at twice the capacity.
+   */
+  private void rebuild() {
+    int capacity = hashes.length;
+    if (size >= maxLoad(capacity) >>> 1) {
+      if (capacity == MAXIMUM_CAPACITY)
+        throw new IllegalStateException("Capacity exhausted.");
+      capacity <<= 1;
+    }
+    resize(capacity);
+  }
+
+  /**
+   * Moves every mapping into a new table of the given capacity, which has room for them all,
+   * leaving the tombstones behind.
+   */
+  private void resize(int capacity) {
+    final int[] oldHashes = hashes;
+    final Object[] oldTab = table;
+    init(capacity);
+    final Object[] tab = table;
+    for (int j = 0; j < oldHashes.length; j++) {
+      final Object key = oldTab[j << 1];
+      if (key != null) {
+        final int hash = oldHashes[j];
+        final int i = insertionSlot(hash);
+        hashes[i] = hash;
+        tab[i << 1] = key;
+        tab[(i << 1) + 1] = oldTab[(j << 1) + 1];
+      }
+    }
+    growthLeft -= size;
+  }
+
+  @Override
+  final void reserve(int expectedMaxSize) {
+    if (expectedMaxSize > size + growthLeft) {
+      final int capacity = capacityFor(expectedMaxSize);
+      if (capacity > hashes.length)
+        resize(capacity);
+    }
+  }
+
+  /**
+   * Removes all of the mappings from this map.  The map will be empty after this call returns.
+   */
+  public void clear() {
+    modCount++;
+    Arrays.fill(hashes, OpenHashMap.EMPTY_HASH);
+    Arrays.fill(table, null);
+    size = 0;
+    growthLeft = maxLoad(hashes.length);
+  }
+
+  /**
+   * Returns a shallow copy of this map: the keys and values themselves are not cloned.
+   *
+   * @return a shallow copy of this map
+   */
+  public Object clone() {
+    ProbingHashMap<?,?> m = (ProbingHashMap<?,?>) super.clone();
+    m.hashes = hashes.clone();
+    return m;
+  }
+
+  @java.io.Serial
+  private static final long serialVersionUID = 1L;
+
+  /**
+   * Saves the state of the map to a stream (i.e., serializes it).
+   *
+   * @serialData The <i>size</i> of the map (the number of key-value mappings) is emitted
+   *          (int), followed by the key (Object) and value (Object) for each mapping, in no
+   *          particular order.
+   */
+  @java.io.Serial
+  private void writeObject(ObjectOutputStream s) throws java.io.IOException {
+    // Write out the probe sequence
+    s.defaultWriteObject();
+
+    writeMappings(s);
+  }
+
+  /**
+   * Reconstitutes the map from a stream (i.e., deserializes it).
+   */
+  @java.io.Serial
+  @SuppressWarnings("unchecked")
+  private void readObject(ObjectInputStream s)
+      throws java.io.IOException, ClassNotFoundException {
+    s.defaultReadObject();
+    if (probeSequence == null)
+      throw new java.io.InvalidObjectException("Null probe sequence");
+    final int n = s.readInt();
+    if (n < 0)
+      throw new java.io.StreamCorruptedException("Illegal mappings count: " + n);
+    init(capacityFor(n));
+
+    readMappings(s, n);
+  }
+}
@@ -0,0 +1,885 @@
+package newhash;
+
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.*;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * The part of the {@code Map} implementations whose mappings are in the slots of a table of
+ * alternating keys and values that the mappings do not leave until the table is rebuilt, as in
+ * {@link SwissHashMap}, {@link HopscotchHashMap}, {@link CuckooHashMap} and
+ * {@link ProbingHashMap}.  Each of them only finds, fills and empties slots, by the hooks
+ * {@link #slotOf(Object, long)}, {@link #insert(Object, long, Object)} and
+ * {@link #clearSlot(int)}; the operations of the {@code Map} interface, its collection views
+ * and their iterators, and the mappings of the serial form are here.
+ *
+ * <p>A null key in <tt>table</tt> marks a slot without a mapping, and keys are masked as by
+ * {@code OpenHashMap}.  A map may keep mappings that do not fit in the table in a
+ * {@link #overflowMap() HashMap} by masked key, which lookups look in when {@code slotOf}
+ * returns {@link #OVERFLOW_SLOT}, and which iterators visit after the last slot.
+ *
+ * <p>As nothing moves when a mapping is removed, iterators carry on over the table they started
+ * with, and the entries they return read and write the value in the slot their mapping was in.
+ *
+ * @param <K> the type of keys maintained by this map
+ * @param <V> the type of mapped values
+ */
+abstract class SlotHashMap<K,V> extends AbstractMap<K,V> {
+  /**
+   * Where {@link #slotOf(Object, long)} found a key when it is not in the table: not at all, or
+   * in the {@link #overflowMap() overflow map}.
+   */
+  static final int NO_SLOT = -1;
+  static final int OVERFLOW_SLOT = -2;
+
+  /**
+   * The table of alternating keys and values, with 2 entries for each slot.  A null key marks a
+   * slot without a mapping.
+   */
+  transient Object[] table;
+
+  /**
+   * The number of key-value mappings contained in this map, including those in the overflow
+   * map.
+   */
+  transient int size;
+
+  /**
+   * The number of modifications, to support fast-fail iterators
+   */
+  transient int modCount;
+
+  /**
+   * Returns the hash that {@link #slotOf(Object, long)} and
+   * {@link #insert(Object, long, Object)} take for a masked key.  A map that stores an
+   * {@code int} hash widens it, and those hooks narrow it back.
+   */
+  abstract long hashOf(Object maskedKey);
+
+  /**
+   * Returns the slot holding a masked key with the given hash, or else {@link #OVERFLOW_SLOT}
+   * or {@link #NO_SLOT}.  This is the probe of every lookup.
+   */
+  abstract int slotOf(Object maskedKey, long hash);
+
+  /**
+   * Inserts a mapping whose masked key is known not to be in the map, resizing the table or
+   * putting it in the overflow map as needed, and counts it in <tt>size</tt> and
+   * <tt>modCount</tt>.
+   */
+  abstract void insert(Object maskedKey, long hash, Object value);
+
+  /**
+   * Empties slot {@code i} of the table, which holds a mapping, and whatever else the map keeps
+   * for it.  The caller counts the removal.
+   */
+  abstract void clearSlot(int i);
+
+  /**
+   * Resizes the table, if it must, so that it can hold the given number of mappings without
+   * resizing again.
+   */
+  abstract void reserve(int expectedMaxSize);
+
+  /**
+   * Returns the mappings that did not fit in the table, by masked key, or null if there are
+   * none.  This map keeps none.
+   */
+  HashMap<Object,Object> overflowMap() {
+    return null;
+  }
+
+  /**
+   * Drops the overflow map, which its last mapping has just left.
+   */
+  void overflowEmptied() {
+  }
+
+  /**
+   * Use <tt>NULL_KEY</tt> of {@code OpenHashMap} for key if it is null.
+   */
+  static Object maskNull(Object key) {
+    return (key == null ? OpenHashMap.NULL_KEY : key);
+  }
+
+  /**
+   * Returns the value at a slot found by {@link #slotOf(Object, long)}.
+   */
+  final Object valueAt(int slot, Object maskedKey) {
+    return slot >= 0 ? table[(slot << 1) + 1] : overflowMap().get(maskedKey);
+  }
+
+  /**
+   * Replaces the value at a slot found by {@link #slotOf(Object, long)}.
+   */
+  final void setValueAt(int slot, Object maskedKey, Object value) {
+    if (slot >= 0)
+      table[(slot << 1) + 1] = value;
+    else
+      overflowMap().put(maskedKey, value);
+  }
+
+  /**
+   * Removes the mapping at a slot found by {@link #slotOf(Object, long)}.  Nothing moves, so
+   * iterators can carry on.
+   */
+  final void removeAt(int slot, Object maskedKey) {
+    modCount++;
+    size--;
+    if (slot >= 0) {
+      clearSlot(slot);
+    } else {
+      final HashMap<Object,Object> overflow = overflowMap();
+      overflow.remove(maskedKey);
+      if (overflow.isEmpty())
+        overflowEmptied();
+    }
+  }
+
+  /**
+   * Returns the number of key-value mappings in this map.
+   *
+   * @return the number of key-value mappings in this map
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Returns {@code true} if this map contains no key-value mappings.
+   *
+   * @return {@code true} if this map contains no key-value mappings
+   */
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  /**
+   * Returns the value to which the specified key is mapped, or {@code null} if this map
+   * contains no mapping for the key.
+   *
+   * @see #put(Object, Object)
+   */
+  @SuppressWarnings("unchecked")
+  public V get(Object key) {
+    final Object k = maskNull(key);
+    final int slot = slotOf(k, hashOf(k));
+    return slot != NO_SLOT ? (V) valueAt(slot, k) : null;
+  }
+
+  @SuppressWarnings("unchecked")
+  @Override
+  public V getOrDefault(Object key, V defaultValue) {
+    final Object k = maskNull(key);
+    final int slot = slotOf(k, hashOf(k));
+    return slot != NO_SLOT ? (V) valueAt(slot, k) : defaultValue;
+  }
+
+  /**
+   * Tests whether the specified object reference is a key in this map.
+   *
+   * @param key possible key
+   * @return {@code true} if the specified object reference is a key in this map
+   * @see #containsValue(Object)
+   */
+  public boolean containsKey(Object key) {
+    final Object k = maskNull(key);
+    return slotOf(k, hashOf(k)) != NO_SLOT;
+  }
+
+  /**
+   * Tests whether the specified object reference is a value in this map.
+   *
+   * @param value value whose presence in this map is to be tested
+   * @return {@code true} if this map maps one or more keys to the specified object reference
+   * @see #containsKey(Object)
+   */
+  public boolean containsValue(Object value) {
+    final Object[] tab = table;
+    for (int i = 1; i < tab.length; i += 2) {
+      if (Objects.equals(tab[i], value) && tab[i - 1] != null)
+        return true;
+    }
+    final HashMap<Object,Object> overflow = overflowMap();
+    return overflow != null && overflow.containsValue(value);
+  }
+
+  /**
+   * Associates the specified value with the specified key in this map.  If the map previously
+   * contained a mapping for the key, the old value is replaced.
+   *
+   * @param key the key with which the specified value is to be associated
+   * @param value the value to be associated with the specified key
+   * @return the previous value associated with {@code key}, or {@code null} if there was no
+   *         mapping for {@code key}.  (A {@code null} return can also indicate that the map
+   *         previously associated {@code null} with {@code key}.)
+   * @see Object#equals(Object)
+   * @see #get(Object)
+   * @see #containsKey(Object)
+   */
+  @SuppressWarnings("unchecked")
+  public V put(K key, V value) {
+    return (V) putMapping(maskNull(key), value);
+  }
+
+  /**
+   * Maps a masked key to a value, and returns its old value, as {@link #put(Object, Object)}.
+   */
+  final Object putMapping(Object maskedKey, Object value) {
+    final long hash = hashOf(maskedKey);
+    final int slot = slotOf(maskedKey, hash);
+    if (slot != NO_SLOT) {
+      final Object oldValue = valueAt(slot, maskedKey);
+      setValueAt(slot, maskedKey, value);
+      return oldValue;
+    }
+    insert(maskedKey, hash, value);
+    return null;
+  }
+
+  /**
+   * Copies all of the mappings from the specified map to this map.  These mappings will replace
+   * any mappings that this map had for any of the keys currently in the specified map.
+   *
+   * @param m mappings to be stored in this map
+   * @throws NullPointerException if the specified map is null
+   */
+  public void putAll(Map<? extends K, ? extends V> m) {
+    putMappings(m);
+  }
+
+  /**
+   * Puts all of the mappings of a map, as {@link #putAll(Map)}, for the constructors.
+   */
+  final void putMappings(Map<? extends K, ? extends V> m) {
+    reserve(m.size());
+    for (Map.Entry<? extends K, ? extends V> e : m.entrySet())
+      putMapping(maskNull(e.getKey()), e.getValue());
+  }
+
+  /**
+   * Removes the mapping for this key from this map if present.
+   *
+   * @param key key whose mapping is to be removed from the map
+   * @return the previous value associated with {@code key}, or {@code null} if there was no
+   *         mapping for {@code key}.  (A {@code null} return can also indicate that the map
+   *         previously associated {@code null} with {@code key}.)
+   */
+  @SuppressWarnings("unchecked")
+  public V remove(Object key) {
+    final Object k = maskNull(key);
+    final int slot = slotOf(k, hashOf(k));
+    if (slot == NO_SLOT)
+      return null;
+    final V oldValue = (V) valueAt(slot, k);
+    removeAt(slot, k);
+    return oldValue;
+  }
+
+  @Override
+  public boolean remove(Object key, Object value) {
+    final Object k = maskNull(key);
+    final int slot = slotOf(k, hashOf(k));
+    if (slot == NO_SLOT || !Objects.equals(valueAt(slot, k), value))
+      return false;
+    removeAt(slot, k);
+    return true;
+  }
+
+  @Override
+  public boolean replace(K key, V oldValue, V newValue) {
+    final Object k = maskNull(key);
+    final int slot = slotOf(k, hashOf(k));
+    if (slot == NO_SLOT || !Objects.equals(valueAt(slot, k), oldValue))
+      return false;
+    setValueAt(slot, k, newValue);
+    return true;
+  }
+
+  @SuppressWarnings("unchecked")
+  @Override
+  public V replace(K key, V value) {
+    final Object k = maskNull(key);
+    final int slot = slotOf(k, hashOf(k));
+    if (slot == NO_SLOT)
+      return null;
+    final V oldValue = (V) valueAt(slot, k);
+    setValueAt(slot, k, value);
+    return oldValue;
+  }
+
+  @SuppressWarnings("unchecked")
+  @Override
+  public V putIfAbsent(K key, V value) {
+    final Object k = maskNull(key);
+    final long hash = hashOf(k);
+    final int slot = slotOf(k, hash);
+    if (slot == NO_SLOT) {
+      insert(k, hash, value);
+      return null;
+    }
+    final V oldValue = (V) valueAt(slot, k);
+    if (oldValue == null)
+      setValueAt(slot, k, value);
+    return oldValue;
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>This method will, on a best-effort basis, throw a
+   * {@link ConcurrentModificationException} if it is detected that the mapping function
+   * modifies this map during computation.
+   *
+   * @throws ConcurrentModificationException if it is detected that the mapping function
+   *         modified this map
+   */
+  @SuppressWarnings("unchecked")
+  @Override
+  public V computeIfAbsent(K key, Function<? super K, ? extends V> mappingFunction) {
+    Objects.requireNonNull(mappingFunction);
+    final Object k = maskNull(key);
+    final long hash = hashOf(k);
+    final int slot = slotOf(k, hash);
+    V oldValue;
+    if (slot != NO_SLOT && (oldValue = (V) valueAt(slot, k)) != null)
+      return oldValue;
+
+    final int mc = modCount;
+    final V value = mappingFunction.apply(key);
+    if (mc != modCount)
+      throw new ConcurrentModificationException();
+    if (value == null)
+      return null;
+    if (slot != NO_SLOT)
+      setValueAt(slot, k, value);
+    else
+      insert(k, hash, value);
+    return value;
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>This method will, on a best-effort basis, throw a
+   * {@link ConcurrentModificationException} if it is detected that the remapping function
+   * modifies this map during computation.
+   *
+   * @throws ConcurrentModificationException if it is detected that the remapping function
+   *         modified this map
+   */
+  @SuppressWarnings("unchecked")
+  @Override
+  public V computeIfPresent(K key,
+                            BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+    Objects.requireNonNull(remappingFunction);
+    final Object k = maskNull(key);
+    final int slot = slotOf(k, hashOf(k));
+    final V oldValue;
+    if (slot == NO_SLOT || (oldValue = (V) valueAt(slot, k)) == null)
+      return null;
+
+    final int mc = modCount;
+    final V value = remappingFunction.apply(key, oldValue);
+    if (mc != modCount)
+      throw new ConcurrentModificationException();
+    if (value == null)
+      removeAt(slot, k);
+    else
+      setValueAt(slot, k, value);
+    return value;
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>This method will, on a best-effort basis, throw a
+   * {@link ConcurrentModificationException} if it is detected that the remapping function
+   * modifies this map during computation.
+   *
+   * @throws ConcurrentModificationException if it is detected that the remapping function
+   *         modified this map
+   */
+  @SuppressWarnings("unchecked")
+  @Override
+  public V compute(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+    Objects.requireNonNull(remappingFunction);
+    final Object k = maskNull(key);
+    final long hash = hashOf(k);
+    final int slot = slotOf(k, hash);
+    final V oldValue = slot != NO_SLOT ? (V) valueAt(slot, k) : null;
+
+    final int mc = modCount;
+    final V value = remappingFunction.apply(key, oldValue);
+    if (mc != modCount)
+      throw new ConcurrentModificationException();
+    if (value == null) {
+      if (slot != NO_SLOT)
+        removeAt(slot, k);
+    } else if (slot != NO_SLOT) {
+      setValueAt(slot, k, value);
+    } else {
+      insert(k, hash, value);
+    }
+    return value;
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>This method will, on a best-effort basis, throw a
+   * {@link ConcurrentModificationException} if it is detected that the remapping function
+   * modifies this map during computation.
+   *
+   * @throws ConcurrentModificationException if it is detected that the remapping function
+   *         modified this map
+   */
+  @SuppressWarnings("unchecked")
+  @Override
+  public V merge(K key, V value,
+                 BiFunction<? super V, ? super V, ? extends V> remappingFunction) {
+    Objects.requireNonNull(value);
+    Objects.requireNonNull(remappingFunction);
+    final Object k = maskNull(key);
+    final long hash = hashOf(k);
+    final int slot = slotOf(k, hash);
+    if (slot == NO_SLOT) {
+      insert(k, hash, value);
+      return value;
+    }
+    final V oldValue = (V) valueAt(slot, k);
+    if (oldValue == null) {
+      setValueAt(slot, k, value);
+      return value;
+    }
+
+    final int mc = modCount;
+    final V newValue = remappingFunction.apply(oldValue, value);
+    if (mc != modCount)
+      throw new ConcurrentModificationException();
+    if (newValue == null)
+      removeAt(slot, k);
+    else
+      setValueAt(slot, k, newValue);
+    return newValue;
+  }
+
+  @SuppressWarnings("unchecked")
+  @Override
+  public void forEach(BiConsumer<? super K, ? super V> action) {
+    Objects.requireNonNull(action);
+    final int expectedModCount = modCount;
+    final Object[] tab = table;
+    for (int i = 0; i < tab.length; i += 2) {
+      final Object k = tab[i];
+      if (k != null) {
+        action.accept((K) OpenHashMap.unmaskNull(k), (V) tab[i + 1]);
+        if (modCount != expectedModCount)
+          throw new ConcurrentModificationException();
+      }
+    }
+    final HashMap<Object,Object> overflow = overflowMap();
+    if (overflow != null) {
+      for (Map.Entry<Object,Object> e : overflow.entrySet()) {
+        action.accept((K) OpenHashMap.unmaskNull(e.getKey()), (V) e.getValue());
+        if (modCount != expectedModCount)
+          throw new ConcurrentModificationException();
+      }
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  @Override
+  public void replaceAll(BiFunction<? super K, ? super V, ? extends V> function) {
+    Objects.requireNonNull(function);
+    final int expectedModCount = modCount;
+    final Object[] tab = table;
+    for (int i = 0; i < tab.length; i += 2) {
+      final Object k = tab[i];
+      if (k != null) {
+        tab[i + 1] = function.apply((K) OpenHashMap.unmaskNull(k), (V) tab[i + 1]);
+        if (modCount != expectedModCount)
+          throw new ConcurrentModificationException();
+      }
+    }
+    final HashMap<Object,Object> overflow = overflowMap();
+    if (overflow != null) {
+      for (Map.Entry<Object,Object> e : overflow.entrySet()) {
+        e.setValue(function.apply((K) OpenHashMap.unmaskNull(e.getKey()), (V) e.getValue()));
+        if (modCount != expectedModCount)
+          throw new ConcurrentModificationException();
+      }
+    }
+  }
+
+  /**
+   * Returns a shallow copy of this map: the keys and values themselves are not cloned.  A map
+   * that keeps more than the table copies the rest of it too.
+   *
+   * @return a shallow copy of this map
+   */
+  public Object clone() {
+    try {
+      SlotHashMap<?,?> m = (SlotHashMap<?,?>) super.clone();
+      m.entrySet = null;
+      m.keySet = null;
+      m.values = null;
+      m.table = table.clone();
+      return m;
+    } catch (CloneNotSupportedException e) {
+      throw new InternalError(e);
+    }
+  }
+
+  private abstract class SlotIterator<T> implements Iterator<T> {
+    final Object[] tab = table;
+    int index;                       // the next slot to look at
+    int lastReturnedIndex = -1;      // to allow remove()
+    int expectedModCount = modCount; // to support fast-fail
+    Iterator<Map.Entry<Object,Object>> overflowIterator; // once past the last slot
+    Map.Entry<Object,Object> overflowEntry; // last returned from overflow, to allow remove()
+
+    public boolean hasNext() {
+      final Object[] tab = this.tab;
+      int i = index;
+      while (i < tab.length >>> 1 && tab[i << 1] == null)
+        i++;
+      index = i;
+      if (i < tab.length >>> 1)
+        return true;
+      if (overflowIterator == null) {
+        final HashMap<Object,Object> overflow = overflowMap();
+        if (overflow == null)
+          return false;
+        overflowIterator = overflow.entrySet().iterator();
+      }
+      return overflowIterator.hasNext();
+    }
+
+    /**
+     * Returns the slot of the next mapping, or -1 if it is the next mapping of the overflow
+     * map, which is then in <tt>overflowEntry</tt>.
+     */
+    int nextIndex() {
+      if (modCount != expectedModCount)
+        throw new ConcurrentModificationException();
+      if (!hasNext())
+        throw new NoSuchElementException();
+      if (index == tab.length >>> 1) {
+        overflowEntry = overflowIterator.next();
+        lastReturnedIndex = -1;
+        return -1;
+      }
+      overflowEntry = null;
+      lastReturnedIndex = index++;
+      return lastReturnedIndex;
+    }
+
+    public void remove() {
+      if (overflowEntry != null) {
+        if (modCount != expectedModCount)
+          throw new ConcurrentModificationException();
+        overflowIterator.remove();
+        overflowEntry = null;
+        final HashMap<Object,Object> overflow = overflowMap();
+        if (overflow != null && overflow.isEmpty())
+          overflowEmptied();
+        size--;
+        expectedModCount = ++modCount;
+        return;
+      }
+      if (lastReturnedIndex < 0)
+        throw new IllegalStateException();
+      if (modCount != expectedModCount)
+        throw new ConcurrentModificationException();
+      removeAt(lastReturnedIndex, tab[lastReturnedIndex << 1]);
+      lastReturnedIndex = -1;
+      expectedModCount = modCount;
+    }
+  }
+
+  private final class KeyIterator extends SlotIterator<K> {
+    @SuppressWarnings("unchecked")
+    public K next() {
+      final int i = nextIndex();
+      return (K) OpenHashMap.unmaskNull(i >= 0 ? tab[i << 1] : overflowEntry.getKey());
+    }
+  }
+
+  private final class ValueIterator extends SlotIterator<V> {
+    @SuppressWarnings("unchecked")
+    public V next() {
+      final int i = nextIndex();
+      return (V) (i >= 0 ? tab[(i << 1) + 1] : overflowEntry.getValue());
+    }
+  }
+
+  private final class EntryIterator extends SlotIterator<Map.Entry<K,V>> {
+    public Map.Entry<K,V> next() {
+      final int i = nextIndex();
+      return i >= 0 ? new Entry(tab, i) : new OverflowEntry(overflowEntry);
+    }
+  }
+
+  /**
+   * An entry that reads and writes the value in the slot its mapping was in when the iterator
+   * returned it.
+   */
+  private final class Entry implements Map.Entry<K,V> {
+    private final Object[] tab;
+    private final int index;
+    private final K key;
+
+    @SuppressWarnings("unchecked")
+    Entry(Object[] tab, int index) {
+      this.tab = tab;
+      this.index = index;
+      this.key = (K) OpenHashMap.unmaskNull(tab[index << 1]);
+    }
+
+    public K getKey() {
+      return key;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V getValue() {
+      return (V) tab[(index << 1) + 1];
+    }
+
+    @SuppressWarnings("unchecked")
+    public V setValue(V value) {
+      final V oldValue = (V) tab[(index << 1) + 1];
+      tab[(index << 1) + 1] = value;
+      return oldValue;
+    }
+
+    public boolean equals(Object o) {
+      return o == this || o instanceof Map.Entry<?, ?> e
+          && Objects.equals(e.getKey(), key) && Objects.equals(e.getValue(), getValue());
+    }
+
+    public int hashCode() {
+      return Objects.hashCode(key) ^ Objects.hashCode(getValue());
+    }
+
+    public String toString() {
+      return key + "=" + getValue();
+    }
+  }
+
+  /**
+   * An entry of the overflow map as the user sees it, with the null key unmasked.
+   */
+  private final class OverflowEntry implements Map.Entry<K,V> {
+    private final Map.Entry<Object,Object> entry;
+
+    OverflowEntry(Map.Entry<Object,Object> entry) {
+      this.entry = entry;
+    }
+
+    @SuppressWarnings("unchecked")
+    public K getKey() {
+      return (K) OpenHashMap.unmaskNull(entry.getKey());
+    }
+
+    @SuppressWarnings("unchecked")
+    public V getValue() {
+      return (V) entry.getValue();
+    }
+
+    @SuppressWarnings("unchecked")
+    public V setValue(V value) {
+      return (V) entry.setValue(value);
+    }
+
+    public boolean equals(Object o) {
+      return o == this || o instanceof Map.Entry<?, ?> e
+          && Objects.equals(e.getKey(), getKey()) && Objects.equals(e.getValue(), getValue());
+    }
+
+    public int hashCode() {
+      return Objects.hashCode(getKey()) ^ Objects.hashCode(getValue());
+    }
+
+    public String toString() {
+      return getKey() + "=" + getValue();
+    }
+  }
+
+  private transient Set<Map.Entry<K,V>> entrySet;
+  private transient Set<K> keySet;
+  private transient Collection<V> values;
+
+  /**
+   * Returns a {@link Set} view of the keys contained in this map.  The set is backed by the
+   * map, and supports element removal, but not addition.
+   */
+  public Set<K> keySet() {
+    Set<K> ks = keySet;
+    if (ks == null)
+      keySet = ks = new KeySet();
+    return ks;
+  }
+
+  private final class KeySet extends AbstractSet<K> {
+    public Iterator<K> iterator() {
+      return new KeyIterator();
+    }
+    public int size() {
+      return size;
+    }
+    public boolean contains(Object o) {
+      return containsKey(o);
+    }
+    public boolean remove(Object o) {
+      final Object k = maskNull(o);
+      final int slot = slotOf(k, hashOf(k));
+      if (slot == NO_SLOT)
+        return false;
+      removeAt(slot, k);
+      return true;
+    }
+    public void clear() {
+      SlotHashMap.this.clear();
+    }
+    @SuppressWarnings("unchecked")
+    public void forEach(Consumer<? super K> action) {
+      Objects.requireNonNull(action);
+      final int expectedModCount = modCount;
+      final Object[] tab = table;
+      for (int i = 0; i < tab.length; i += 2) {
+        if (tab[i] != null) {
+          action.accept((K) OpenHashMap.unmaskNull(tab[i]));
+          if (modCount != expectedModCount)
+            throw new ConcurrentModificationException();
+        }
+      }
+      final HashMap<Object,Object> overflow = overflowMap();
+      if (overflow != null) {
+        for (Object k : overflow.keySet()) {
+          action.accept((K) OpenHashMap.unmaskNull(k));
+          if (modCount != expectedModCount)
+            throw new ConcurrentModificationException();
+        }
+      }
+    }
+  }
+
+  /**
+   * Returns a {@link Collection} view of the values contained in this map.  The collection is
+   * backed by the map, and supports element removal, but not addition.
+   */
+  public Collection<V> values() {
+    Collection<V> vs = values;
+    if (vs == null)
+      values = vs = new Values();
+    return vs;
+  }
+
+  private final class Values extends AbstractCollection<V> {
+    public Iterator<V> iterator() {
+      return new ValueIterator();
+    }
+    public int size() {
+      return size;
+    }
+    public boolean contains(Object o) {
+      return containsValue(o);
+    }
+    public void clear() {
+      SlotHashMap.this.clear();
+    }
+  }
+
+  /**
+   * Returns a {@link Set} view of the mappings contained in this map.  The set is backed by the
+   * map, and supports element removal, but not addition.  Setting the value of an entry
+   * returned by its iterator writes through to the map until the map is next modified by
+   * anything but the iterator itself.
+   */
+  public Set<Map.Entry<K,V>> entrySet() {
+    Set<Map.Entry<K,V>> es = entrySet;
+    if (es == null)
+      entrySet = es = new EntrySet();
+    return es;
+  }
+
+  private final class EntrySet extends AbstractSet<Map.Entry<K,V>> {
+    public Iterator<Map.Entry<K,V>> iterator() {
+      return new EntryIterator();
+    }
+    public int size() {
+      return size;
+    }
+    public boolean contains(Object o) {
+      return o instanceof Map.Entry<?, ?> e && slotOfMapping(e) != NO_SLOT;
+    }
+    public boolean remove(Object o) {
+      if (!(o instanceof Map.Entry<?, ?> e))
+        return false;
+      final int slot = slotOfMapping(e);
+      if (slot == NO_SLOT)
+        return false;
+      removeAt(slot, maskNull(e.getKey()));
+      return true;
+    }
+    public void clear() {
+      SlotHashMap.this.clear();
+    }
+  }
+
+  /**
+   * Returns where the key of an entry is if it is mapped to the entry's value, or
+   * {@link #NO_SLOT}.
+   */
+  private int slotOfMapping(Map.Entry<?, ?> e) {
+    final Object k = maskNull(e.getKey());
+    final int slot = slotOf(k, hashOf(k));
+    return slot != NO_SLOT && Objects.equals(valueAt(slot, k), e.getValue()) ? slot : NO_SLOT;
+  }
+
+  /**
+   * Writes the size of the map and then each of its keys and values, for the
+   * {@code writeObject} of each map after its own fields.
+   */
+  final void writeMappings(ObjectOutputStream s) throws java.io.IOException {
+    s.writeInt(size);
+
+    // Write out keys and values (alternating)
+    final Object[] tab = table;
+    for (int i = 0; i < tab.length; i += 2) {
+      final Object key = tab[i];
+      if (key != null) {
+        s.writeObject(OpenHashMap.unmaskNull(key));
+        s.writeObject(tab[i + 1]);
+      }
+    }
+    final HashMap<Object,Object> overflow = overflowMap();
+    if (overflow != null) {
+      for (Map.Entry<Object,Object> e : overflow.entrySet()) {
+        s.writeObject(OpenHashMap.unmaskNull(e.getKey()));
+        s.writeObject(e.getValue());
+      }
+    }
+  }
+
+  /**
+   * Reads the given number of keys and values written by {@link #writeMappings} into the map,
+   * whose table the {@code readObject} of the map has sized for them.
+   */
+  final void readMappings(ObjectInputStream s, int n)
+      throws java.io.IOException, ClassNotFoundException {
+    for (int i = 0; i < n; i++) {
+      final Object k = maskNull(s.readObject());
+      final Object value = s.readObject();
+      final long hash = hashOf(k);
+      if (slotOf(k, hash) != NO_SLOT)
+        throw new java.io.StreamCorruptedException();
+      insert(k, hash, value);
+    }
+  }
+}
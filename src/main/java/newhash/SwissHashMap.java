@@ -0,0 +1,469 @@
+package newhash;
+
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.*;
+
+/**
+ * Hash table based implementation of the {@code Map} interface in the style of Abseil's Swiss
+ * tables and Rust's hashbrown, as an alternative engine to the Robin Hood {@link OpenHashMap}.
+ * It permits null values and the null key, and makes no guarantees as to the order of the map.
+ *
+ * <p>Every slot has a control byte, which is {@link #EMPTY}, {@link #DELETED}, or for a slot
+ * holding a mapping 7 bits of its key's hash, its <i>tag</i>.  The control bytes of
+ * each <i>group</i> of 8 consecutive slots are packed into a {@code long}, so a lookup compares
+ * the tag of its key with those of 8 slots at once by SWAR ("SIMD within a register")
+ * arithmetic, and only compares the keys of the slots whose tags match.  It stops at the first
+ * group with an empty slot, so nearly every hit calls {@code equals} once and nearly every miss
+ * never.  The groups are probed by triangular numbers from the one the hash selects, which
+ * visits every group of a table whose length is a power of two.
+ *
+ * <p>As a probe looks at a whole group for the cost of one load, lookups stay fast at loads
+ * where the runs of a linear probing table grow long.  So by default the table is allowed to be
+ * 7/8 full, against 2/3 for {@code OpenHashMap}, and with a control byte and a key and a value
+ * reference for each slot it needs about 9 to 10 bytes per slot with compressed references,
+ * against 12 for {@code OpenHashMap}, which also keeps each key's hash.
+ *
+ * <p>Removing a mapping from a group that has an empty slot just empties its slot, since no
+ * lookup has gone past that group.  Otherwise the slot is marked {@link #DELETED}, a tombstone
+ * that lookups step over and insertions reuse.  When insertions have used up the empty slots the
+ * load factor allows, the table is rebuilt: at the same capacity if at most half of those slots
+ * hold mappings and the rest are tombstones, and otherwise at twice the capacity.  As only the
+ * tag of each hash is kept, rebuilding calls {@code hashCode()} on every key again.
+ *
+ * <p><strong>Note that this implementation is not synchronized.</strong> The iterators of its
+ * collection views are <i>fail-fast</i> in the same way as those of {@code OpenHashMap}.
+ *
+ * @param <K> the type of keys maintained by this map
+ * @param <V> the type of mapped values
+ *
+ * @see OpenHashMap
+ * @see HashMap
+ */
+public class SwissHashMap<K,V> extends SlotHashMap<K,V>
+    implements Map<K,V>, java.io.Serializable, Cloneable
+{
+  /**
+   * The load factor used when none is given, and the largest allowed.  A table at 7/8 load has
+   * an empty slot in about half its groups, so misses still stop after one or two groups.
+   */
+  public static final float DEFAULT_LOAD_FACTOR = 0.875f;
+
+  /**
+   * The initial capacity used by the no-args constructor.  MUST be a power of two.
+   */
+  private static final int DEFAULT_CAPACITY = 16;
+
+  /**
+   * The smallest capacity, a single group.
+   */
+  private static final int MINIMUM_CAPACITY = 8;
+
+  /**
+   * The largest capacity, the same as that of {@code OpenHashMap}.
+   */
+  private static final int MAXIMUM_CAPACITY = 1 << 28;
+
+  /**
+   * The log<sub>2</sub> of the number of slots in a group, whose control bytes fill a
+   * {@code long}.
+   */
+  static final int GROUP_SHIFT = 3;
+
+  /**
+   * The control byte of a slot that has never held a mapping since the table was last rebuilt,
+   * or was emptied in a group that had an empty slot.
+   */
+  static final int EMPTY = 0xFF;
+
+  /**
+   * The control byte of a tombstone: a slot whose mapping was removed from a group with no
+   * empty slot, which lookups must step over.
+   */
+  static final int DELETED = 0x80;
+
+  /**
+   * The lowest and the highest bit of each byte of a {@code long}.  A control byte has its
+   * highest bit set for {@link #EMPTY} and {@link #DELETED}, and also the next one for
+   * {@code EMPTY}, but neither for a tag.
+   */
+  private static final long LSBS = 0x0101010101010101L;
+  private static final long MSBS = 0x8080808080808080L;
+
+  /**
+   * A group of empty slots.
+   */
+  private static final long EMPTY_GROUP = -1L;
+
+  /**
+   * The control bytes, 8 slots to a {@code long}, with slot {@code i} in byte {@code i & 7}
+   * counted from the least significant.  Its length is a power of two.
+   */
+  transient long[] ctrl;
+
+  /**
+   * The number of empty slots that insertions may still fill before the table is rebuilt.
+   */
+  transient int growthLeft;
+
+  /**
+   * 64 less the log<sub>2</sub> of the number of groups, so that shifting a hash right by it
+   * leaves the bits that select the first group to probe.
+   */
+  transient int groupShift;
+
+  /**
+   * The proportion of the slots that may hold mappings and tombstones.
+   *
+   * @serial
+   */
+  private final float loadFactor;
+
+  /**
+   * Constructs a new, empty map with the default expected maximum size and load factor.
+   */
+  public SwissHashMap() {
+    this.loadFactor = DEFAULT_LOAD_FACTOR;
+    init(DEFAULT_CAPACITY);
+  }
+
+  /**
+   * Constructs a new, empty map that can hold the given number of mappings without rebuilding
+   * its table.
+   *
+   * @param expectedMaxSize the expected maximum size of the map
+   * @throws IllegalArgumentException if {@code expectedMaxSize} is negative
+   */
+  public SwissHashMap(int expectedMaxSize) {
+    this(expectedMaxSize, DEFAULT_LOAD_FACTOR);
+  }
+
+  /**
+   * Constructs a new, empty map with the given load factor, that can hold the given number of
+   * mappings without rebuilding its table.
+   *
+   * @param expectedMaxSize the expected maximum size of the map
+   * @param loadFactor the proportion of the slots that may hold mappings, from more than 0 up
+   *        to {@link #DEFAULT_LOAD_FACTOR}
+   * @throws IllegalArgumentException if {@code expectedMaxSize} is negative or
+   *         {@code loadFactor} is out of range
+   */
+  public SwissHashMap(int expectedMaxSize, float loadFactor) {
+    if (expectedMaxSize < 0)
+      throw new IllegalArgumentException("expectedMaxSize is negative: " + expectedMaxSize);
+    if (!(loadFactor > 0 && loadFactor <= DEFAULT_LOAD_FACTOR))
+      throw new IllegalArgumentException("Illegal load factor: " + loadFactor);
+    this.loadFactor = loadFactor;
+    init(capacityFor(expectedMaxSize));
+  }
+
+  /**
+   * Constructs a new map containing the mappings in the specified map.
+   *
+   * @param m the map whose mappings are to be placed into this map
+   * @throws NullPointerException if the specified map is null
+   */
+  @SuppressWarnings("this-escape") // putMappings and its hooks are final or package-private
+  public SwissHashMap(Map<? extends K, ? extends V> m) {
+    this(m.size());
+    putMappings(m);
+  }
+
+  /**
+   * Returns the smallest capacity whose load factor allows the given number of mappings.
+   */
+  private int capacityFor(int expectedMaxSize) {
+    int capacity = MINIMUM_CAPACITY;
+    while (capacity < MAXIMUM_CAPACITY && maxLoad(capacity) < expectedMaxSize)
+      capacity <<= 1;
+    return capacity;
+  }
+
+  /**
+   * Returns the number of slots of a table of the given capacity that may hold mappings and
+   * tombstones.  At least one slot is always left empty, so every probe ends.
+   */
+  private int maxLoad(int capacity) {
+    return Math.min(capacity - 1, (int) (capacity * (double) loadFactor));
+  }
+
+  /**
+   * Initializes an empty table of the given capacity, a power of two of at least
+   * {@link #MINIMUM_CAPACITY}.
+   */
+  private void init(int capacity) {
+    ctrl = new long[capacity >>> GROUP_SHIFT];
+    Arrays.fill(ctrl, EMPTY_GROUP);
+    groupShift = 64 - Integer.numberOfTrailingZeros(ctrl.length);
+    table = new Object[capacity << 1];
+    growthLeft = maxLoad(capacity);
+  }
+
+  /**
+   * Returns the load factor of this map.
+   *
+   * @return the proportion of the slots that may hold mappings
+   */
+  public float getLoadFactor() {
+    return loadFactor;
+  }
+
+  /**
+   * Returns the hash of a masked key: its hash code multiplied by 2<sup>64</sup> divided by the
+   * golden ratio, whose highest bits select the {@link #firstGroup(long, int, int) first group}
+   * to probe and whose next 7 bits are the {@link #tag(long, int) tag}.  The highest bits of such
+   * a product spread even runs of consecutive hash codes, like those of similar strings, evenly
+   * over the groups.  Bits from the middle of the product, such as those from bit 32, do not:
+   * they leave clusters of full groups for misses to probe through.
+   */
+  static long hash(Object maskedKey) {
+    return maskedKey.hashCode() * 0x9E3779B97F4A7C15L;
+  }
+
+  @Override
+  final long hashOf(Object maskedKey) {
+    return hash(maskedKey);
+  }
+
+  /**
+   * Returns the tag of a hash, the control byte of a slot holding its key: the 7 bits below
+   * those that select the group, which differ between the keys that share a first group.
+   */
+  static int tag(long hash, int groupShift) {
+    return (int) (hash >>> (groupShift - 7)) & 0x7F;
+  }
+
+  /**
+   * Returns the first group to probe for a hash.  The mask only matters for a single group,
+   * for which the shift is 64 and so leaves the hash as it is.
+   */
+  static int firstGroup(long hash, int groupShift, int groupMask) {
+    return (int) (hash >>> groupShift) & groupMask;
+  }
+
+  /**
+   * Returns a mask with the highest bit set of every byte of the group that may equal the tag.
+   * A set bit is exact except just above a byte that does equal it, so candidates must be
+   * checked, but the bit is never set for an {@link #EMPTY} or {@link #DELETED} byte.
+   */
+  private static long matchTag(long group, int tag) {
+    final long x = group ^ (LSBS * tag);
+    return (x - LSBS) & ~x & MSBS;
+  }
+
+  /**
+   * Returns a mask with the highest bit set of every {@link #EMPTY} byte of the group.
+   */
+  private static long matchEmpty(long group) {
+    return group & (group << 1) & MSBS;
+  }
+
+  /**
+   * Returns a mask with the highest bit set of every {@link #EMPTY} or {@link #DELETED} byte of
+   * the group.
+   */
+  private static long matchFree(long group) {
+    return group & MSBS;
+  }
+
+  /**
+   * Returns the slot of the first byte set in a non-zero match of the given group.
+   */
+  private static int firstSlot(int group, long match) {
+    return (group << GROUP_SHIFT) + (Long.numberOfTrailingZeros(match) >>> 3);
+  }
+
+  /**
+   * Returns the control byte of slot {@code i}.
+   */
+  private int ctrlAt(int i) {
+    return (int) (ctrl[i >>> GROUP_SHIFT] >>> ((i & 7) << 3)) & 0xFF;
+  }
+
+  /**
+   * Sets the control byte of slot {@code i}.
+   */
+  private void setCtrl(int i, int b) {
+    final int shift = (i & 7) << 3;
+    final int g = i >>> GROUP_SHIFT;
+    ctrl[g] = (ctrl[g] & ~(0xFFL << shift)) | ((long) b << shift);
+  }
+
+  /**
+   * Returns the slot holding the masked key, or {@link #NO_SLOT}.  This is the probe of every
+   * lookup.
+   */
+  @Override
+  final int slotOf(Object maskedKey, long hash) {
+    final long[] ctrl = this.ctrl;
+    final Object[] tab = table;
+    final int groupMask = ctrl.length - 1;
+    final int groupShift = this.groupShift;
+    final int tag = tag(hash, groupShift);
+    int g = firstGroup(hash, groupShift, groupMask);
+    for (int stride = 1; ; g = (g + stride++) & groupMask) {
+      final long group = ctrl[g];
+      for (long m = matchTag(group, tag); m != 0; m &= m - 1) {
+        final int i = firstSlot(g, m);
+        final Object item = tab[i << 1];
+        if (item == maskedKey || maskedKey.equals(item))
+          return i;
+      }
+      if (matchEmpty(group) != 0)
+        return NO_SLOT;
+    }
+  }
+
+  /**
+   * Returns the first empty slot or tombstone in the probe sequence of a hash, where an
+   * insertion of a key known to be absent goes.
+   */
+  private int insertionSlot(long hash) {
+    final long[] ctrl = this.ctrl;
+    final int groupMask = ctrl.length - 1;
+    int g = firstGroup(hash, groupShift, groupMask);
+    for (int stride = 1; ; g = (g + stride++) & groupMask) {
+      final long free = matchFree(ctrl[g]);
+      if (free != 0)
+        return firstSlot(g, free);
+    }
+  }
+
+  /**
+   * Inserts a mapping whose masked key is known not to be in the map, first rebuilding the table
+   * if that would fill an empty slot the load factor does not allow.
+   */
+  @Override
+  final void insert(Object maskedKey, long hash, Object value) {
+    int i = insertionSlot(hash);
+    if (ctrlAt(i) == EMPTY) {
+      if (growthLeft == 0) {
+        rebuild();
+        i = insertionSlot(hash);
+      }
+      growthLeft--;
+    }
+    setCtrl(i, tag(hash, groupShift));
+    table[i << 1] = maskedKey;
+    table[(i << 1) + 1] = value;
+    size++;
+    modCount++;
+  }
+
+  /**
+   * Empties slot {@code i}, leaving a tombstone unless its group has an empty slot, past which
+   * no lookup goes.
+   */
+  @Override
+  final void clearSlot(int i) {
+    table[i << 1] = null;
+    table[(i << 1) + 1] = null;
+    if (matchEmpty(ctrl[i >>> GROUP_SHIFT]) != 0) {
+      setCtrl(i, EMPTY);
+      growthLeft++;
+    } else {
+      setCtrl(i, DELETED);
+    }
+  }
+
+  /**
+   * Rebuilds the table once insertions have used up its empty slots: at the same capacity to
+   * clear the tombstones if they are at least half of the load, otherwise at twice the capacity.
+   */
+  private void rebuild() {
+    int capacity = table.length >>> 1;
+    if (size >= maxLoad(capacity) >>> 1) {
+      if (capacity == MAXIMUM_CAPACITY)
+        throw new IllegalStateException("Capacity exhausted.");
+      capacity <<= 1;
+    }
+    resize(capacity);
+  }
+
+  /**
+   * Moves every mapping into a new table of the given capacity, which has room for them all.
+   */
+  private void resize(int capacity) {
+    final Object[] oldTab = table;
+    init(capacity);
+    final Object[] tab = table;
+    for (int j = 0; j < oldTab.length; j += 2) {
+      final Object key = oldTab[j];
+      if (key != null) {
+        final long hash = hash(key);
+        final int i = insertionSlot(hash);
+        setCtrl(i, tag(hash, groupShift));
+        tab[i << 1] = key;
+        tab[(i << 1) + 1] = oldTab[j + 1];
+      }
+    }
+    growthLeft -= size;
+  }
+
+  @Override
+  final void reserve(int expectedMaxSize) {
+    if (expectedMaxSize > size + growthLeft) {
+      final int capacity = capacityFor(expectedMaxSize);
+      if (capacity > table.length >>> 1)
+        resize(capacity);
+    }
+  }
+
+  /**
+   * Removes all of the mappings from this map.  The map will be empty after this call returns.
+   */
+  public void clear() {
+    modCount++;
+    Arrays.fill(ctrl, EMPTY_GROUP);
+    Arrays.fill(table, null);
+    size = 0;
+    growthLeft = maxLoad(table.length >>> 1);
+  }
+
+  /**
+   * Returns a shallow copy of this map: the keys and values themselves are not cloned.
+   *
+   * @return a shallow copy of this map
+   */
+  public Object clone() {
+    SwissHashMap<?,?> m = (SwissHashMap<?,?>) super.clone();
+    m.ctrl = ctrl.clone();
+    return m;
+  }
+
+  @java.io.Serial
+  private static final long serialVersionUID = 1L;
+
+  /**
+   * Saves the state of the map to a stream (i.e., serializes it).
+   *
+   * @serialData The <i>size</i> of the map (the number of key-value mappings) is emitted
+   *          (int), followed by the key (Object) and value (Object) for each mapping, in no
+   *          particular order.
+   */
+  @java.io.Serial
+  private void writeObject(ObjectOutputStream s) throws java.io.IOException {
+    // Write out the load factor
+    s.defaultWriteObject();
+
+    writeMappings(s);
+  }
+
+  /**
+   * Reconstitutes the map from a stream (i.e., deserializes it).
+   */
+  @java.io.Serial
+  @SuppressWarnings("unchecked")
+  private void readObject(ObjectInputStream s)
+      throws java.io.IOException, ClassNotFoundException {
+    s.defaultReadObject();
+    if (!(loadFactor > 0 && loadFactor <= DEFAULT_LOAD_FACTOR))
+      throw new java.io.InvalidObjectException("Illegal load factor: " + loadFactor);
+    final int n = s.readInt();
+    if (n < 0)
+      throw new java.io.StreamCorruptedException("Illegal mappings count: " + n);
+    init(capacityFor(n));
+
+    readMappings(s, n);
+  }
+}
@@ -30,6 +30,10 @@ package Map;/*
  */
 
 import newhash.OpenHashMap;
+import newhash.CuckooHashMap;
+import newhash.HopscotchHashMap;
+import newhash.ProbingHashMap;
+import newhash.SwissHashMap;
 import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
 
@@ -180,6 +184,10 @@ public class BasicSerialization {
             // empty
             new Object[]{"HashMap", new HashMap()},
             new Object[]{"OpenHashMap", new OpenHashMap()},
+            new Object[]{"SwissHashMap", new SwissHashMap()},
+            new Object[]{"HopscotchHashMap", new HopscotchHashMap()},
+            new Object[]{"CuckooHashMap", new CuckooHashMap()},
+            new Object[]{"ProbingHashMap", new ProbingHashMap()},
             new Object[]{"LinkedHashMap", new LinkedHashMap()},
             new Object[]{"Collections.checkedMap(HashMap)", Collections.checkedMap(new HashMap(), IntegerEnum.class, String.class)},
             new Object[]{"Collections.synchronizedMap(HashMap)", Collections.synchronizedMap(new HashMap())},
@@ -194,6 +202,10 @@ public class BasicSerialization {
             // filled
             new Object[]{"HashMap", fillMap(new HashMap())},
             new Object[]{"OpenHashMap", fillMap(new OpenHashMap())},
+            new Object[]{"SwissHashMap", fillMap(new SwissHashMap())},
+            new Object[]{"HopscotchHashMap", fillMap(new HopscotchHashMap())},
+            new Object[]{"CuckooHashMap", fillMap(new CuckooHashMap())},
+            new Object[]{"ProbingHashMap", fillMap(new ProbingHashMap())},
             new Object[]{"LinkedHashMap", fillMap(new LinkedHashMap())},
             new Object[]{"Collections.checkedMap(HashMap)", Collections.checkedMap(fillMap(new HashMap()), IntegerEnum.class, String.class)},
             new Object[]{"Collections.synchronizedMap(HashMap)", Collections.synchronizedMap(fillMap(new HashMap()))},
@@ -30,6 +30,10 @@ package Map;/*
  */
 
 import newhash.OpenHashMap;
+import newhash.CuckooHashMap;
+import newhash.HopscotchHashMap;
+import newhash.ProbingHashMap;
+import newhash.SwissHashMap;
 import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
 
@@ -827,6 +831,10 @@ public class Defaults {
     private static Collection<Object[]> makeRWMaps(boolean nullKeys, boolean nullValues) {
         return Arrays.asList(
             new Object[]{"OpenHashMap", makeMap( () -> new OpenHashMap(4), nullKeys, nullValues)},
+            new Object[]{"SwissHashMap", makeMap( () -> new SwissHashMap(4), nullKeys, nullValues)},
+            new Object[]{"HopscotchHashMap", makeMap( () -> new HopscotchHashMap(4), nullKeys, nullValues)},
+            new Object[]{"CuckooHashMap", makeMap( () -> new CuckooHashMap(4), nullKeys, nullValues)},
+            new Object[]{"ProbingHashMap", makeMap( () -> new ProbingHashMap(4), nullKeys, nullValues)},
             new Object[]{"HashMap", makeMap(HashMap::new, nullKeys, nullValues)}
             );
     }
@@ -32,6 +32,10 @@ package Map;/*
  * @author ngmr
  */
 import newhash.OpenHashMap;
+import newhash.CuckooHashMap;
+import newhash.HopscotchHashMap;
+import newhash.ProbingHashMap;
+import newhash.SwissHashMap;
 
 import java.util.*;
 
@@ -46,7 +50,11 @@ public class EntryHashCode {
     @SuppressWarnings("unchecked")
     static final Map<Object,Object>[] maps = (Map<Object,Object>[])new Map[] {
         new HashMap<>(),
-        new OpenHashMap<>()
+        new OpenHashMap<>(),
+        new SwissHashMap<>(),
+        new HopscotchHashMap<>(),
+        new CuckooHashMap<>(),
+        new ProbingHashMap<>()
 //        new Hashtable<>(),
 //        new IdentityHashMap<>(),
 //        new LinkedHashMap<>(),
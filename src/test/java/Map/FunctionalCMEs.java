@@ -24,6 +24,10 @@ package Map;/*
  */
 
 import newhash.OpenHashMap;
+import newhash.CuckooHashMap;
+import newhash.HopscotchHashMap;
+import newhash.ProbingHashMap;
+import newhash.SwissHashMap;
 import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
 
@@ -46,7 +50,12 @@ public class FunctionalCMEs {
         return Arrays.asList(
                 // Test maps that CME
                 new Object[]{new HashMap<>(), true},
-                new Object[]{new Hashtable<>(), true}
+                new Object[]{new Hashtable<>(), true},
+                new Object[]{new OpenHashMap<>(), true},
+                new Object[]{new SwissHashMap<>(), true},
+                new Object[]{new HopscotchHashMap<>(), true},
+                new Object[]{new CuckooHashMap<>(), true},
+                new Object[]{new ProbingHashMap<>(), true}
 //                new Object[]{new LinkedHashMap<>(), true},
 //                // Test default Map methods - no CME
 //                new Object[]{new Defaults.ExtendsAbstractMap<>(), false}
@@ -29,6 +29,10 @@ package Map;/*
  */
 
 import newhash.OpenHashMap;
+import newhash.CuckooHashMap;
+import newhash.HopscotchHashMap;
+import newhash.ProbingHashMap;
+import newhash.SwissHashMap;
 
 import java.util.*;
 import java.util.concurrent.ConcurrentMap;
@@ -38,6 +42,10 @@ public class Get {
     private static void realMain(String[] args) throws Throwable {
         testMap(new HashMap<Character,Boolean>());
         testMap(new OpenHashMap<Character,Boolean>());
+        testMap(new SwissHashMap<Character,Boolean>());
+        testMap(new HopscotchHashMap<Character,Boolean>());
+        testMap(new CuckooHashMap<Character,Boolean>());
+        testMap(new ProbingHashMap<Character,Boolean>());
     }
 
     private static void put(Map<Character,Boolean> m,
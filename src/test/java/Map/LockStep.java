@@ -29,6 +29,10 @@ package Map;/*
  */
 
 import newhash.OpenHashMap;
+import newhash.CuckooHashMap;
+import newhash.HopscotchHashMap;
+import newhash.ProbingHashMap;
+import newhash.SwissHashMap;
 
 import java.util.*;
 
@@ -99,6 +103,10 @@ public class LockStep {
             List<Map> maps = List.of(
 //                new IdentityHashMap(11),
                 new OpenHashMap(1),
+                new SwissHashMap(1),
+                new HopscotchHashMap(1),
+                new CuckooHashMap(1),
+                new ProbingHashMap(1),
                 new HashMap(16)
 //                new LinkedHashMap(16),
 //                new WeakHashMap(16),
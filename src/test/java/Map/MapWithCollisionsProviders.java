@@ -22,6 +22,10 @@ package Map;/*
  */
 
 import newhash.OpenHashMap;
+import newhash.CuckooHashMap;
+import newhash.HopscotchHashMap;
+import newhash.ProbingHashMap;
+import newhash.SwissHashMap;
 import org.testng.annotations.DataProvider;
 
 import java.util.*;
@@ -182,6 +186,14 @@ public class MapWithCollisionsProviders {
                              new Hashtable<>(), keys, val));
         cases.add(createCase("OpenHashMap with " + desc,
             new OpenHashMap<>(), keys, val));
+        cases.add(createCase("SwissHashMap with " + desc,
+            new SwissHashMap<>(), keys, val));
+        cases.add(createCase("HopscotchHashMap with " + desc,
+            new HopscotchHashMap<>(), keys, val));
+        cases.add(createCase("CuckooHashMap with " + desc,
+            new CuckooHashMap<>(), keys, val));
+        cases.add(createCase("ProbingHashMap with " + desc,
+            new ProbingHashMap<>(), keys, val));
 //        cases.add(createCase("IdentityHashMap with " + desc,
 //                             new IdentityHashMap<>(), keys, val));
 //        cases.add(createCase("TreeMap with " + desc,
@@ -205,6 +217,14 @@ public class MapWithCollisionsProviders {
                              new HashMap<>(), keys, val));
         cases.add(createCase("OpenHashMap with " + desc,
                              new OpenHashMap<>(), keys, val));
+        cases.add(createCase("SwissHashMap with " + desc,
+                             new SwissHashMap<>(), keys, val));
+        cases.add(createCase("HopscotchHashMap with " + desc,
+                             new HopscotchHashMap<>(), keys, val));
+        cases.add(createCase("CuckooHashMap with " + desc,
+                             new CuckooHashMap<>(), keys, val));
+        cases.add(createCase("ProbingHashMap with " + desc,
+                             new ProbingHashMap<>(), keys, val));
         return cases;
     }
 
@@ -28,6 +28,10 @@ package Map;/*
  * @author Mike Duigou
  */
 import newhash.OpenHashMap;
+import newhash.CuckooHashMap;
+import newhash.HopscotchHashMap;
+import newhash.ProbingHashMap;
+import newhash.SwissHashMap;
 
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
@@ -44,6 +48,10 @@ public class ToArray {
         Map<Integer, Long>[] maps = (Map<Integer, Long>[]) new Map[]{
                     new HashMap<>(),
                     new OpenHashMap<>(),
+                    new SwissHashMap<>(),
+                    new HopscotchHashMap<>(),
+                    new CuckooHashMap<>(),
+                    new ProbingHashMap<>(),
                     new Hashtable<>(),
                     new IdentityHashMap<>(),
                     new LinkedHashMap<>(),
@@ -0,0 +1,176 @@
+package newhash;
+
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Random;
+
+import static org.testng.Assert.*;
+
+/**
+ * The checks that every {@link SlotHashMap} passes: against {@code HashMap} with keys whose hash
+ * codes collide, removal and {@code setValue} through the entry set iterator, serialization and
+ * cloning, and the constructor arguments it refuses.  Each subclass supplies the map, the
+ * parameter its constructor takes besides the expected size, and the check of its table.
+ */
+public abstract class AbstractSlotHashMapTest {
+
+  /**
+   * Returns an empty map for the given expected size and parameter.
+   */
+  abstract <K,V> SlotHashMap<K,V> newMap(int expectedMaxSize, Object parameter);
+
+  /**
+   * Returns the parameters each test runs with.
+   */
+  abstract Object[] parameterValues();
+
+  /**
+   * Returns the parameter a map was made with.
+   */
+  abstract Object parameter(SlotHashMap<?,?> map);
+
+  /**
+   * Returns a parameter the constructor refuses with {@code IllegalArgumentException}, or null
+   * if it refuses null with {@code NullPointerException}.
+   */
+  abstract Object illegalParameter();
+
+  /**
+   * Checks the table of a map against its mappings.
+   */
+  abstract void checkTable(SlotHashMap<?,?> map);
+
+  /**
+   * Returns true if the map keeps keys whose hash codes collide outright out of the table.
+   */
+  boolean hasOverflow() {
+    return false;
+  }
+
+  @DataProvider
+  public Object[][] parameters() {
+    Object[] values = parameterValues();
+    Object[][] parameters = new Object[values.length][];
+    for (int i = 0; i < values.length; i++)
+      parameters[i] = new Object[] {values[i]};
+    return parameters;
+  }
+
+  @Test(dataProvider = "parameters")
+  public void testAgainstHashMap(Object parameter) {
+    SlotHashMap<Object, Integer> map = newMap(0, parameter);
+    Map<Object, Integer> expected = new HashMap<>();
+    Random random = new Random(42);
+    for (int round = 0; round < 10; round++) {
+      for (int n = 0; n < 20_000; n++) {
+        int value = random.nextInt(5000);
+        // Every fourth key has one of a few hash codes, and the rest fill blocks of homes
+        Object key = value % 4 == 0
+            ? new LongProbePolicyTest.Key(value, value % 7) : (Object) (value << 3);
+        switch (random.nextInt(6)) {
+          case 0, 1 -> assertEquals(map.put(key, value), expected.put(key, value));
+          case 2 -> assertEquals(map.remove(key), expected.remove(key));
+          case 3 -> assertEquals(map.merge(key, 1, Integer::sum),
+              expected.merge(key, 1, Integer::sum));
+          case 4 -> assertEquals(map.containsKey(key), expected.containsKey(key));
+          default -> assertEquals(map.get(key), expected.get(key));
+        }
+      }
+      assertEquals(map, expected);
+      assertEquals(expected, map);
+      checkTable(map);
+    }
+  }
+
+  @Test(dataProvider = "parameters")
+  public void testIteratorRemoval(Object parameter) {
+    SlotHashMap<Object, Integer> map = newMap(0, parameter);
+    Map<Object, Integer> expected = new HashMap<>();
+    for (int i = 0; i < 3000; i++) {
+      // Keys from 2900 share a hash code, so some may be iterated from overflow
+      Object key = i == 0 ? null : i < 2900 ? (Object) i : new LongProbePolicyTest.Key(i, 5);
+      map.put(key, i);
+      expected.put(key, i);
+    }
+    if (hasOverflow())
+      assertNotNull(map.overflowMap());
+    int seen = 0;
+    for (Iterator<Map.Entry<Object, Integer>> it = map.entrySet().iterator(); it.hasNext(); ) {
+      Map.Entry<Object, Integer> e = it.next();
+      seen++;
+      if (e.getValue() % 3 == 0) {
+        expected.remove(e.getKey());
+        it.remove();
+      } else {
+        expected.put(e.getKey(), -e.getValue());
+        e.setValue(-e.getValue());
+      }
+    }
+    assertEquals(seen, 3000);
+    assertEquals(map, expected);
+    assertFalse(map.containsKey(null));
+    checkTable(map);
+  }
+
+  @Test(dataProvider = "parameters")
+  public void testSerializationAndClone(Object parameter) throws Exception {
+    SlotHashMap<Object, Object> map = newMap(0, parameter);
+    for (int i = 0; i < 1000; i++)
+      map.put("k" + i, i % 10 == 0 ? null : i);
+    for (int i = 0; i < 40; i++)
+      map.put(collidingString(i), i);
+    map.put(null, "null key");
+    if (hasOverflow())
+      assertNotNull(map.overflowMap());
+
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+      out.writeObject(map);
+    }
+    @SuppressWarnings("unchecked")
+    SlotHashMap<Object, Object> copy = (SlotHashMap<Object, Object>)
+        new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray())).readObject();
+    assertEquals(copy.getClass(), map.getClass());
+    assertEquals(copy, map);
+    assertEquals(parameter(copy), parameter);
+    checkTable(copy);
+
+    @SuppressWarnings("unchecked")
+    SlotHashMap<Object, Object> clone = (SlotHashMap<Object, Object>) map.clone();
+    clone.remove("k1");
+    clone.remove(collidingString(39));
+    assertTrue(map.containsKey("k1"));
+    assertTrue(map.containsKey(collidingString(39)));
+    assertEquals(clone.size(), map.size() - 2);
+    checkTable(map);
+    checkTable(clone);
+  }
+
+  @Test
+  public void testIllegalArguments() {
+    assertThrows(IllegalArgumentException.class, () -> newMap(-1, parameterValues()[0]));
+    Object illegal = illegalParameter();
+    Class<? extends Throwable> expected =
+        illegal == null ? NullPointerException.class : IllegalArgumentException.class;
+    assertThrows(expected, () -> newMap(10, illegal));
+  }
+
+  /**
+   * Returns one of 64 strings with the same hash code, made of "Aa" and "BB", which have the same
+   * hash code, in the order of the bits of {@code i}.
+   */
+  static String collidingString(int i) {
+    StringBuilder sb = new StringBuilder();
+    for (int bit = 0; bit < 6; bit++)
+      sb.append((i >>> bit & 1) == 0 ? "Aa" : "BB");
+    return sb.toString();
+  }
+}
@@ -0,0 +1,123 @@
+package newhash;
+
+import org.testng.annotations.Test;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.testng.Assert.*;
+
+/**
+ * Checks that removals keep the table in Robin Hood order with no gaps inside a run, and that
+ * iterators removing mappings from runs that wrap around the end of the table return every
+ * mapping exactly once.
+ */
+public class BackwardShiftDeletionTest {
+
+  private static final int SLOTS = 4096;
+
+  /**
+   * Returns a key whose home in a table of {@link #SLOTS} slots is {@code home}.
+   */
+  private static Object keyAt(int value, int home) {
+    return new LongProbePolicyTest.Key(value,
+        OpenHashMap.HashMixer.XOR_SHIFT.unmix((value << 12) | home));
+  }
+
+  /**
+   * Returns a map whose longest runs start in the last slots of the table and wrap around to
+   * the first ones.
+   */
+  private static OpenHashMap<Object, Integer> wrappingMap(Map<Object, Integer> expected) {
+    OpenHashMap<Object, Integer> map = new OpenHashMap<>(2000);
+    map.setMaxProbeLength(Integer.MAX_VALUE);
+    for (int i = 1; i <= 600; i++) {
+      Object key = i % 2 == 0 ? keyAt(i, SLOTS - 1 - i % 8) : keyAt(i, i % 64);
+      map.put(key, i);
+      expected.put(key, i);
+    }
+    assertEquals(map.hashedKeyTable.length, SLOTS);
+    assertRobinHoodOrder(map);
+    return map;
+  }
+
+  @Test
+  public void testIteratorRemovalAcrossWrap() {
+    Map<Object, Integer> expected = new HashMap<>();
+    OpenHashMap<Object, Integer> map = wrappingMap(expected);
+    Set<Object> seen = new HashSet<>();
+    for (Iterator<Map.Entry<Object, Integer>> it = map.entrySet().iterator(); it.hasNext(); ) {
+      Map.Entry<Object, Integer> e = it.next();
+      assertTrue(seen.add(e.getKey()), "returned twice: " + e);
+      assertEquals(e.getValue(), expected.get(e.getKey()));
+      if (e.getValue() % 3 != 0) {
+        expected.remove(e.getKey());
+        it.remove();
+      } else {
+        expected.put(e.getKey(), -e.getValue());
+        e.setValue(-e.getValue());
+      }
+    }
+    assertEquals(seen.size(), 600);
+    assertEquals(map, expected);
+    assertRobinHoodOrder(map);
+  }
+
+  @Test
+  public void testKeyIteratorRemovesEverything() {
+    Map<Object, Integer> expected = new HashMap<>();
+    OpenHashMap<Object, Integer> map = wrappingMap(expected);
+    Set<Object> seen = new HashSet<>();
+    for (Iterator<Object> it = map.keySet().iterator(); it.hasNext(); ) {
+      assertTrue(seen.add(it.next()));
+      it.remove();
+    }
+    assertEquals(seen, expected.keySet());
+    assertTrue(map.isEmpty());
+    for (int hash : map.hashedKeyTable)
+      assertEquals(hash, OpenHashMap.EMPTY_HASH);
+  }
+
+  @Test
+  public void testChurnAgainstHashMap() {
+    Map<Object, Integer> expected = new HashMap<>();
+    OpenHashMap<Object, Integer> map = wrappingMap(expected);
+    Random random = new Random(42);
+    for (int round = 0; round < 20; round++) {
+      for (int n = 0; n < 1000; n++) {
+        int value = 1 + random.nextInt(1200);
+        Object key = value % 2 == 0 ? keyAt(value, SLOTS - 1 - value % 8) : keyAt(value, value % 64);
+        if (random.nextBoolean())
+          assertEquals(map.remove(key), expected.remove(key));
+        else
+          assertEquals(map.put(key, value), expected.put(key, value));
+      }
+      assertEquals(map, expected);
+      assertRobinHoodOrder(map);
+    }
+  }
+
+  /**
+   * Checks that each displaced mapping follows one whose home is no later than its own, so that
+   * no run has a gap and lookups may stop at the first mapping nearer its home than the key.
+   */
+  private static void assertRobinHoodOrder(OpenHashMap<?, ?> map) {
+    int[] hashes = map.hashedKeyTable;
+    int len = hashes.length;
+    for (int i = 0; i < len; i++) {
+      if (hashes[i] == OpenHashMap.EMPTY_HASH)
+        continue;
+      int hops = OpenHashMap.getHops(i, len, OpenHashMap.getIndex(hashes[i], len));
+      if (hops == 0)
+        continue;
+      int prev = i == 0 ? len - 1 : i - 1;
+      assertNotEquals(hashes[prev], OpenHashMap.EMPTY_HASH, "gap before slot " + i);
+      int prevHops = OpenHashMap.getHops(prev, len, OpenHashMap.getIndex(hashes[prev], len));
+      assertTrue(prevHops >= hops - 1, "slot " + i + " out of Robin Hood order");
+    }
+  }
+}
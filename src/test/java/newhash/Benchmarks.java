@@ -0,0 +1,71 @@
+package newhash;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.function.LongSupplier;
+
+/**
+ * The measuring loop that the benchmarks share.  A benchmark runs a number of rounds whose times
+ * are dropped, while the JIT compiler settles, and then the rounds it measures, and reports the
+ * median of their times, which one round slowed by a collection or a compilation does not skew
+ * as it would a mean.
+ */
+final class Benchmarks {
+
+  private Benchmarks() {
+  }
+
+  /**
+   * A round of a benchmark, which times one or more parts of it.
+   */
+  interface Round {
+    /**
+     * Runs the round, storing in {@code times} the nanoseconds that each of its parts took.
+     */
+    void run(long[] times);
+  }
+
+  /**
+   * Runs {@code warmupRounds} rounds and then {@code measuredRounds} more, and returns the
+   * median time of each of the {@code parts} of the measured ones.
+   */
+  static double[] medians(int warmupRounds, int measuredRounds, int parts, Round round) {
+    long[][] samples = new long[parts][measuredRounds];
+    long[] times = new long[parts];
+    for (int r = -warmupRounds; r < measuredRounds; r++) {
+      round.run(times);
+      if (r >= 0) {
+        for (int part = 0; part < parts; part++)
+          samples[part][r] = times[part];
+      }
+    }
+    double[] medians = new double[parts];
+    for (int part = 0; part < parts; part++) {
+      Arrays.sort(samples[part]);
+      medians[part] = samples[part][measuredRounds / 2];
+    }
+    return medians;
+  }
+
+  /**
+   * Runs rounds as {@link #medians} does, each of which returns the nanoseconds it took, and
+   * returns the median of them.
+   */
+  static double median(int warmupRounds, int measuredRounds, LongSupplier round) {
+    return medians(warmupRounds, measuredRounds, 1, times -> times[0] = round.getAsLong())[0];
+  }
+
+  /**
+   * Shuffles an array with a generator of the given seed, so that every run looks the keys up
+   * in the same order.
+   */
+  static void shuffle(Object[] a, long seed) {
+    Random random = new Random(seed);
+    for (int i = a.length - 1; i > 0; i--) {
+      int j = random.nextInt(i + 1);
+      Object t = a[i];
+      a[i] = a[j];
+      a[j] = t;
+    }
+  }
+}
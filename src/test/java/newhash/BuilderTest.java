@@ -0,0 +1,216 @@
+package newhash;
+
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+import static org.testng.Assert.*;
+
+/**
+ * Checks that {@link OpenHashMap.Builder} builds the same map as a sequence of {@code put}s, in
+ * the calling thread and on a pool, with repeated and null keys and with runs piled up at the
+ * ends of the partitions, and that the table it lays out is a valid Robin Hood table, with no
+ * probe longer than the maximum even when the hash codes cluster.
+ */
+public class BuilderTest {
+
+  private static ForkJoinPool pool;
+
+  private static synchronized ForkJoinPool pool() {
+    if (pool == null)
+      pool = new ForkJoinPool(4);
+    return pool;
+  }
+
+  @DataProvider
+  public Object[][] sizes() {
+    return new Object[][] {{0}, {1}, {1000}, {100_000}, {300_000}};
+  }
+
+  /**
+   * Returns some keys, {@code n} of them with repeats, null among them, and some with one of a
+   * few hash codes.
+   */
+  private static Object[] keys(int n, long seed) {
+    Random random = new Random(seed);
+    Object[] keys = new Object[n];
+    for (int i = 0; i < n; i++) {
+      int value = random.nextInt(Math.max(1, n));
+      keys[i] = value == 0 ? null
+          : value % 50 == 0 ? new LongProbePolicyTest.Key(value, value % 7) : (Object) value;
+    }
+    return keys;
+  }
+
+  /**
+   * Checks that every key is in a slot at or after its home, with no empty slot between, that
+   * each run keeps its mappings in the order of their homes, and that the table and overflow
+   * hold the map's size.
+   */
+  static void checkRobinHood(OpenHashMap<?, ?> map) {
+    int[] hashes = map.hashedKeyTable;
+    int len = hashes.length;
+    int count = 0;
+    for (int i = 0; i < len; i++) {
+      if (hashes[i] == OpenHashMap.EMPTY_HASH)
+        continue;
+      count++;
+      int home = OpenHashMap.getIndex(hashes[i], len);
+      int hops = (i - home + len) % len;
+      for (int j = home; j != i; j = (j + 1) % len)
+        assertNotEquals(hashes[j], OpenHashMap.EMPTY_HASH, "gap before slot " + i);
+      int next = (i + 1) % len;
+      if (hashes[next] != OpenHashMap.EMPTY_HASH) {
+        int nextHops = (next - OpenHashMap.getIndex(hashes[next], len) + len) % len;
+        assertTrue(nextHops <= hops + 1, "slot " + next + " out of order");
+      }
+    }
+    assertEquals(count + (map.overflow == null ? 0 : map.overflow.size()), map.size());
+  }
+
+  /**
+   * Checks that no mapping in the table is further from its home than the maximum probe length.
+   */
+  static void checkProbeLengths(OpenHashMap<?, ?> map) {
+    int[] hashes = map.hashedKeyTable;
+    int len = hashes.length;
+    for (int i = 0; i < len; i++) {
+      if (hashes[i] != OpenHashMap.EMPTY_HASH) {
+        int hops = (i - OpenHashMap.getIndex(hashes[i], len) + len) % len;
+        assertTrue(hops <= map.getMaxProbeLength(), "slot " + i + " is " + hops + " from home");
+      }
+    }
+  }
+
+  @Test(dataProvider = "sizes")
+  public void testAgainstPut(int n) {
+    Object[] keys = keys(n, n);
+    Integer[] values = new Integer[n];
+    Map<Object, Integer> expected = new HashMap<>();
+    for (int i = 0; i < n; i++) {
+      values[i] = i % 11 == 0 ? null : i;
+      expected.put(keys[i], values[i]);
+    }
+
+    for (boolean parallel : new boolean[] {false, true}) {
+      OpenHashMap.Builder<Object, Integer> builder = OpenHashMap.builder(n / 2);
+      if (parallel)
+        builder.parallel(pool());
+      OpenHashMap<Object, Integer> map = builder.addAll(keys, values).build();
+      assertEquals(map.size(), expected.size(), "parallel " + parallel);
+      assertEquals(map, expected, "parallel " + parallel);
+      for (Map.Entry<Object, Integer> e : expected.entrySet())
+        assertEquals(map.get(e.getKey()), e.getValue());
+      checkRobinHood(map);
+
+      // The built map goes on working like any other
+      Map<Object, Integer> after = new HashMap<>(expected);
+      for (int i = 0; i < n; i += 3)
+        assertEquals(map.remove(keys[i]), after.remove(keys[i]));
+      for (int i = 0; i < n; i += 5)
+        assertEquals(map.put(keys[i], -i), after.put(keys[i], -i));
+      assertEquals(map, after);
+    }
+  }
+
+  @Test
+  public void testRunsAcrossPartitions() {
+    // With 4 threads the pool builds 16 partitions; pile keys up at the end of every range, and
+    // at the end of the table, so that runs cross into the next partition and wrap round
+    int n = 100_000;
+    int len = OpenHashMap.builder(n).build().hashedKeyTable.length;
+    List<Object> keys = new ArrayList<>();
+    for (int p = 1; p <= 16; p++) {
+      int home = p * (len / 16) - 1;
+      // The default mixer is its own inverse
+      int hash = home ^ (home >>> 16);
+      for (int j = 0; j < 300; j++)
+        keys.add(new LongProbePolicyTest.Key(home * 1000 + j, hash));
+    }
+    for (int i = 0; i < n - keys.size(); i++)
+      keys.add(i);
+    // The piled up keys again, after they have been pushed out of their ranges
+    for (int j = 0; j < 16 * 300; j += 7)
+      keys.add(keys.get(j));
+
+    Map<Object, Integer> expected = new HashMap<>();
+    OpenHashMap.Builder<Object, Integer> builder =
+        OpenHashMap.<Object, Integer>builder(n).parallel(pool());
+    for (int i = 0; i < keys.size(); i++) {
+      builder.add(keys.get(i), i);
+      expected.put(keys.get(i), i);
+    }
+    OpenHashMap<Object, Integer> map = builder.build();
+    assertEquals(map.hashedKeyTable.length, len);
+    assertEquals(map, expected);
+    for (Map.Entry<Object, Integer> e : expected.entrySet())
+      assertEquals(map.get(e.getKey()), e.getValue());
+    checkRobinHood(map);
+  }
+
+  @Test
+  public void testClusteredHashCodes() {
+    // Four keys to each of a run of consecutive hash codes, which the default mixer leaves
+    // consecutive: laid out as they come that is one run as long as the table is full
+    int n = 40_000;
+    Object[] keys = new Object[n];
+    Integer[] values = new Integer[n];
+    Map<Object, Integer> expected = new HashMap<>();
+    for (int i = 0; i < n; i++) {
+      keys[i] = new LongProbePolicyTest.Key(i, i / 4);
+      values[i] = i;
+      expected.put(keys[i], i);
+    }
+    for (boolean parallel : new boolean[] {false, true}) {
+      OpenHashMap.Builder<Object, Integer> builder = OpenHashMap.builder(n);
+      if (parallel)
+        builder.parallel(pool());
+      OpenHashMap<Object, Integer> map = builder.addAll(keys, values).build();
+      assertEquals(map, expected, "parallel " + parallel);
+      for (Map.Entry<Object, Integer> e : expected.entrySet())
+        assertEquals(map.get(e.getKey()), e.getValue());
+      assertTrue(map.getLongProbeCount() > 0, "parallel " + parallel);
+      checkProbeLengths(map);
+      checkRobinHood(map);
+    }
+  }
+
+  @Test
+  public void testAddFromMapsAndStreams() {
+    Map<Integer, String> m = new HashMap<>();
+    for (int i = 0; i < 50_000; i++)
+      m.put(i, "m" + i);
+    OpenHashMap<Integer, String> map = OpenHashMap.<Integer, String>builder(0)
+        .parallel(pool())
+        .addAll(m)
+        .addAll(IntStream.range(40_000, 90_000).parallel()
+            .mapToObj(i -> new AbstractMap.SimpleEntry<>(i, "s" + i)))
+        .add(7, "a")
+        .build();
+    Map<Integer, String> expected = new HashMap<>(m);
+    for (int i = 40_000; i < 90_000; i++)
+      expected.put(i, "s" + i);
+    expected.put(7, "a");
+    assertEquals(map, expected);
+    checkRobinHood(map);
+  }
+
+  @Test
+  public void testBuildsOnce() {
+    OpenHashMap.Builder<Integer, Integer> builder = OpenHashMap.builder(10);
+    builder.add(1, 1).build();
+    assertThrows(IllegalStateException.class, builder::build);
+    assertThrows(IllegalStateException.class, () -> builder.add(2, 2));
+    assertThrows(IllegalArgumentException.class, () -> OpenHashMap.builder(-1));
+    assertThrows(IllegalArgumentException.class,
+        () -> OpenHashMap.<Integer, Integer>builder(0).addAll(new Integer[2], new Integer[1]));
+  }
+}
@@ -0,0 +1,131 @@
+package newhash;
+
+/**
+ * Compares looking up keys one at a time with {@code get}, {@code containsKey} and {@code put}
+ * against looking them up in bulk with {@link OpenHashMap#getAll}, {@link OpenHashMap#containsAll}
+ * and {@link OpenHashMap#putAll(Object[], Object[])}, in a table far larger than the cache, so
+ * that nearly every lookup misses it.  The keys are scattered {@code Integer}s looked up in a
+ * random order, handed to the bulk operations 1024 at a time.  The put rows replace the value of
+ * every key present, which {@code putAll} does with one lookup of each key where {@code put}
+ * makes two.
+ *
+ * <p>A version of the bulk lookups that interleaved the keys of a batch of 16, loading the home
+ * slot of each in one pass, the key in each matching slot in a second, and finishing each
+ * lookup in a third, was no faster: the processor already overlaps the misses of consecutive
+ * independent lookups.
+ *
+ * <p>The number of mappings is the first argument, 16M by default, which makes a table of
+ * 2<sup>25</sup> slots.  The notes at the end of {@code OpenHashMap} suggest 201,326,592 mappings
+ * to be sure of missing the cache, which needs a heap of some 12 gigabytes.
+ *
+ * <p>Run with {@code java -Xmx3g -cp target/classes:target/test-classes newhash.BulkOpsBenchmark
+ * [mappings]}.
+ */
+public class BulkOpsBenchmark {
+
+  private static final int WARMUP_ROUNDS = 2;
+  private static final int MEASURED_ROUNDS = 5;
+  private static final int CHUNK = 1024;
+
+  private interface Workload {
+    long run(OpenHashMap<Integer, Integer> map, Integer[] keys);
+  }
+
+  public static void main(String[] args) {
+    int entries = args.length > 0 ? Integer.parseInt(args[0]) : 1 << 24;
+    OpenHashMap<Integer, Integer> map = new OpenHashMap<>(entries);
+    Integer[] present = new Integer[entries];
+    Integer[] absent = new Integer[entries];
+    for (int i = 0; i < entries; i++) {
+      // Multiplying by an odd number scatters the keys without repeating any
+      present[i] = i * 0x2545F491;
+      absent[i] = (entries + i) * 0x2545F491;
+      map.put(present[i], i);
+    }
+    Benchmarks.shuffle(present, 42);
+    System.out.printf("%d mappings in %d slots%n", entries, map.hashedKeyTable.length);
+    System.out.printf("%-26s %8s%n", "operation", "ns");
+
+    Workload get = (m, keys) -> {
+      long n = 0;
+      for (Integer key : keys)
+        n += m.get(key) != null ? 1 : 0;
+      return n;
+    };
+    Workload getAll = (m, keys) -> {
+      long n = 0;
+      Integer[] chunk = new Integer[CHUNK], values = new Integer[CHUNK];
+      for (int from = 0; from < keys.length; from += CHUNK) {
+        int len = Math.min(CHUNK, keys.length - from);
+        if (len < CHUNK)
+          chunk = values = new Integer[len];
+        System.arraycopy(keys, from, chunk, 0, len);
+        m.getAll(chunk, values);
+        for (int j = 0; j < len; j++)
+          n += values[j] != null ? 1 : 0;
+      }
+      return n;
+    };
+    Workload containsKey = (m, keys) -> {
+      long n = 0;
+      for (Integer key : keys)
+        n += m.containsKey(key) ? 1 : 0;
+      return n;
+    };
+    Workload containsAll = (m, keys) -> {
+      long n = 0;
+      Integer[] chunk = new Integer[CHUNK];
+      boolean[] found = new boolean[CHUNK];
+      for (int from = 0; from < keys.length; from += CHUNK) {
+        int len = Math.min(CHUNK, keys.length - from);
+        if (len < CHUNK) {
+          chunk = new Integer[len];
+          found = new boolean[len];
+        }
+        System.arraycopy(keys, from, chunk, 0, len);
+        m.containsAll(chunk, found);
+        for (int j = 0; j < len; j++)
+          n += found[j] ? 1 : 0;
+      }
+      return n;
+    };
+    Workload put = (m, keys) -> {
+      for (Integer key : keys)
+        m.put(key, key);
+      return m.size();
+    };
+    Workload putAll = (m, keys) -> {
+      Integer[] chunk = new Integer[CHUNK];
+      for (int from = 0; from < keys.length; from += CHUNK) {
+        int len = Math.min(CHUNK, keys.length - from);
+        if (len < CHUNK)
+          chunk = new Integer[len];
+        System.arraycopy(keys, from, chunk, 0, len);
+        m.putAll(chunk, chunk);
+      }
+      return m.size();
+    };
+
+    report("get, present", map, present, get, entries);
+    report("getAll, present", map, present, getAll, entries);
+    report("get, absent", map, absent, get, 0);
+    report("getAll, absent", map, absent, getAll, 0);
+    report("containsKey, present", map, present, containsKey, entries);
+    report("containsAll, present", map, present, containsAll, entries);
+    report("put, present", map, present, put, entries);
+    report("putAll, present", map, present, putAll, entries);
+  }
+
+  private static void report(String label, OpenHashMap<Integer, Integer> map, Integer[] keys,
+                             Workload workload, long expected) {
+    double median = Benchmarks.median(WARMUP_ROUNDS, MEASURED_ROUNDS, () -> {
+      long start = System.nanoTime();
+      long result = workload.run(map, keys);
+      long time = System.nanoTime() - start;
+      if (result != expected)
+        throw new AssertionError(label + ": " + result);
+      return time;
+    });
+    System.out.printf("%-26s %8.1f%n", label, median / keys.length);
+  }
+}
@@ -0,0 +1,115 @@
+package newhash;
+
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.testng.Assert.*;
+
+/**
+ * Checks {@link OpenHashMap#getAll}, {@link OpenHashMap#containsAll} and
+ * {@link OpenHashMap#putAll(Object[], Object[])} against {@code HashMap}, on batches of keys
+ * present and absent, repeated, null and with colliding hash codes, in a plain table, during an
+ * incremental resize and with mappings in the overflow.
+ */
+public class BulkOpsTest {
+
+  @DataProvider
+  public Object[][] maps() {
+    OpenHashMap<Object, Integer> incremental = new OpenHashMap<>();
+    incremental.setIncrementalResize(true);
+    OpenHashMap<Object, Integer> overflowing = new OpenHashMap<>();
+    overflowing.setLongProbePolicy(OpenHashMap.LongProbePolicy.OVERFLOW);
+    overflowing.setMaxProbeLength(2);
+    return new Object[][] {
+        {"default", new OpenHashMap<>()}, {"incremental", incremental}, {"overflow", overflowing}};
+  }
+
+  /**
+   * Returns a key between 0 and 3000: null, an {@code Integer}, or one of a few hash codes.
+   */
+  private static Object key(int value) {
+    if (value == 0)
+      return null;
+    return value % 4 == 0 ? new LongProbePolicyTest.Key(value, value % 5) : (Object) value;
+  }
+
+  @Test(dataProvider = "maps")
+  public void testAgainstHashMap(String desc, OpenHashMap<Object, Integer> map) {
+    Map<Object, Integer> expected = new HashMap<>();
+    Random random = new Random(7);
+    boolean resizing = false;
+    for (int round = 0; round < 200; round++) {
+      // Batches of every length, across several batches of the bulk operations
+      int n = random.nextInt(70);
+      Object[] keys = new Object[n];
+      Integer[] values = new Integer[n];
+      for (int j = 0; j < n; j++) {
+        keys[j] = key(random.nextInt(3000));
+        values[j] = random.nextInt(10) == 0 ? null : random.nextInt();
+      }
+
+      Integer[] got = new Integer[n + 1];
+      boolean[] found = new boolean[n];
+      map.getAll(keys, got);
+      map.containsAll(keys, found);
+      for (int j = 0; j < n; j++) {
+        assertEquals(got[j], expected.get(keys[j]), desc + " " + keys[j]);
+        assertEquals(found[j], expected.containsKey(keys[j]), desc + " " + keys[j]);
+      }
+
+      map.putAll(keys, values);
+      for (int j = 0; j < n; j++)
+        expected.put(keys[j], values[j]);
+      assertEquals(map, expected, desc);
+      resizing |= map.oldTable != null;
+
+      // Removals, so that later batches find empty home slots in a populated table
+      for (int j = 0; j < n; j += 3) {
+        Object key = key(random.nextInt(3000));
+        assertEquals(map.remove(key), expected.remove(key), desc);
+      }
+    }
+    if (desc.equals("incremental"))
+      assertTrue(resizing, desc);
+    if (desc.equals("overflow"))
+      assertNotNull(map.overflow, desc);
+  }
+
+  @Test
+  public void testRepeatedKeysTakeTheLastValue() {
+    OpenHashMap<Integer, Integer> map = new OpenHashMap<>();
+    map.put(1, 0);
+    map.putAll(new Integer[] {1, 2, 1, 2, 3}, new Integer[] {10, 20, 11, 21, 30});
+    assertEquals(map, Map.of(1, 11, 2, 21, 3, 30));
+  }
+
+  @Test
+  public void testPutAllHashesEachKeyOnce() {
+    OpenHashMap<Object, Integer> map = new OpenHashMap<>();
+    Object[] keys = new Object[1000];
+    Integer[] values = new Integer[1000];
+    for (int i = 0; i < keys.length; i++) {
+      keys[i] = new InPlaceOpsTest.CountingKey(i % 600, i % 600);
+      values[i] = i;
+    }
+    InPlaceOpsTest.CountingKey.hashCodeCalls = 0;
+    map.putAll(keys, values);
+    assertEquals(InPlaceOpsTest.CountingKey.hashCodeCalls, keys.length);
+    assertEquals(map.size(), 600);
+    assertEquals(map.get(keys[999]), Integer.valueOf(999));
+  }
+
+  @Test
+  public void testShortOutputArrays() {
+    OpenHashMap<Integer, Integer> map = new OpenHashMap<>();
+    Integer[] keys = {1, 2, 3};
+    assertThrows(IllegalArgumentException.class, () -> map.getAll(keys, new Integer[2]));
+    assertThrows(IllegalArgumentException.class, () -> map.containsAll(keys, new boolean[2]));
+    assertThrows(IllegalArgumentException.class, () -> map.putAll(keys, new Integer[2]));
+    assertTrue(map.isEmpty());
+  }
+}
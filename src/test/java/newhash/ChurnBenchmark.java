@@ -0,0 +1,89 @@
+package newhash;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Measures deletion-heavy workloads on maps held at a steady size: each step removes the oldest
+ * key and inserts a new one, like a cache or a sliding window, and each sweep removes every
+ * other mapping through an iterator and puts them back.
+ *
+ * <p>Both keep the table at 60% load, so most removals shift part of a run back one slot.  Times
+ * are per removal or insertion.
+ *
+ * <p>Run with {@code java -Xmx2g -cp target/classes:target/test-classes newhash.ChurnBenchmark}.
+ */
+public class ChurnBenchmark {
+
+  private static final int WARMUP_ROUNDS = 10;
+  private static final int MEASURED_ROUNDS = 11;
+
+  /** 60% of a table of 2<sup>20</sup> slots, which is not resized until 2/3 load. */
+  private static final int ENTRIES = (int) ((1 << 20) * 0.6);
+
+  private static final int STEPS = 2_000_000;
+
+  private interface Workload {
+    long run(Map<Object, Object> map, Object[] keys);
+  }
+
+  public static void main(String[] args) {
+    Object[] keys = new Object[ENTRIES + STEPS];
+    for (int i = 0; i < keys.length; i++)
+      // Multiplying by an odd number scatters the keys without repeating any
+      keys[i] = i * 0x2545F491;
+
+    // A window of ENTRIES keys that slides over the key array
+    Workload window = (map, ks) -> {
+      long n = 0;
+      for (int i = 0; i < STEPS; i++) {
+        n += map.remove(ks[i]) != null ? 1 : 0;
+        map.put(ks[ENTRIES + i], ks[ENTRIES + i]);
+      }
+      return n;
+    };
+    Workload sweep = (map, ks) -> {
+      long n = 0;
+      for (int round = 0; round < 4; round++) {
+        int i = 0;
+        for (Iterator<Object> it = map.keySet().iterator(); it.hasNext(); i++) {
+          it.next();
+          if ((i & 1) == 0) {
+            it.remove();
+            n++;
+          }
+        }
+        for (int k = 0; k < ENTRIES; k++)
+          map.putIfAbsent(ks[k], ks[k]);
+      }
+      return n;
+    };
+
+    System.out.printf("%-16s %-12s %10s%n", "workload", "map", "ns/op");
+    for (String mapName : new String[] {"OpenHashMap", "HashMap"}) {
+      Supplier<Map<Object, Object>> factory = mapName.equals("HashMap")
+          ? () -> new HashMap<>(1 << 20) : () -> new OpenHashMap<>(ENTRIES);
+      measure("sliding window", mapName, factory, keys, window);
+      measure("iterator sweep", mapName, factory, keys, sweep);
+    }
+  }
+
+  private static void measure(String label, String mapName, Supplier<Map<Object, Object>> factory,
+                              Object[] keys, Workload workload) {
+    long[] removed = new long[1];
+    double median = Benchmarks.median(WARMUP_ROUNDS, MEASURED_ROUNDS, () -> {
+      Map<Object, Object> map = factory.get();
+      for (int i = 0; i < ENTRIES; i++)
+        map.put(keys[i], keys[i]);
+      long start = System.nanoTime();
+      removed[0] = workload.run(map, keys);
+      long time = System.nanoTime() - start;
+      if (removed[0] == 0 || map.size() != ENTRIES)
+        throw new AssertionError(label + " left " + map.size() + " mappings");
+      return time;
+    });
+    System.out.printf("%-16s %-12s %10.1f%n", label, mapName, median / (2.0 * removed[0]));
+  }
+}
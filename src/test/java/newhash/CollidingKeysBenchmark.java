@@ -0,0 +1,96 @@
+package newhash;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Measures {@code get} and {@code put} for a few thousand keys that all share one hash code.
+ *
+ * <p>With the long probe policy effectively disabled (an unreachable maximum probe length) the
+ * keys form a single Robin Hood run, and every operation scans it, so the cost per operation
+ * grows linearly with the number of keys.  With the policy in force, keys beyond the maximum
+ * probe length move to the overflow map, whose bin for the shared hash is a tree ordered by
+ * {@link Comparable}, so the cost grows logarithmically, as it does for {@code HashMap}.
+ *
+ * <p>Run with {@code java -cp target/classes:target/test-classes newhash.CollidingKeysBenchmark}.
+ */
+public class CollidingKeysBenchmark {
+
+  private static final int WARMUP_ROUNDS = 20;
+  private static final int MEASURED_ROUNDS = 21;
+
+  /**
+   * A comparable key whose hash code is the same for every instance.
+   */
+  static final class CollidingKey implements Comparable<CollidingKey> {
+    private final int value;
+
+    CollidingKey(int value) {
+      this.value = value;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      return o instanceof CollidingKey k && k.value == value;
+    }
+
+    @Override
+    public int hashCode() {
+      return 42;
+    }
+
+    @Override
+    public int compareTo(CollidingKey o) {
+      return Integer.compare(value, o.value);
+    }
+  }
+
+  public static void main(String[] args) {
+    int[] sizes = {250, 500, 1000, 2000, 4000, 8000};
+    System.out.printf("%-22s %8s %14s %14s %14s%n",
+        "map", "keys", "put ns/op", "get ns/op", "miss ns/op");
+    for (int n : sizes) {
+      report("OpenHashMap unbounded", n, () -> {
+        OpenHashMap<CollidingKey, Integer> m = new OpenHashMap<>();
+        m.setMaxProbeLength(Integer.MAX_VALUE);
+        return m;
+      });
+      report("OpenHashMap", n, OpenHashMap::new);
+      report("HashMap", n, HashMap::new);
+    }
+  }
+
+  private static void report(String label, int n, Supplier<Map<CollidingKey, Integer>> factory) {
+    CollidingKey[] keys = new CollidingKey[n];
+    CollidingKey[] absent = new CollidingKey[n];
+    for (int i = 0; i < n; i++) {
+      keys[i] = new CollidingKey(i);
+      absent[i] = new CollidingKey(n + i);
+    }
+    Integer value = 1;
+
+    double[] medians = Benchmarks.medians(WARMUP_ROUNDS, MEASURED_ROUNDS, 3, times -> {
+      Map<CollidingKey, Integer> map = factory.get();
+      long start = System.nanoTime();
+      for (CollidingKey key : keys)
+        map.put(key, value);
+      times[0] = System.nanoTime() - start;
+
+      int found = 0;
+      start = System.nanoTime();
+      for (CollidingKey key : keys)
+        found += map.get(key);
+      times[1] = System.nanoTime() - start;
+
+      start = System.nanoTime();
+      for (CollidingKey key : absent)
+        found += map.containsKey(key) ? 1 : 0;
+      times[2] = System.nanoTime() - start;
+      if (found != n)
+        throw new AssertionError("wrong lookups");
+    });
+    System.out.printf("%-22s %8d %14.1f %14.1f %14.1f%n", label, n,
+        medians[0] / n, medians[1] / n, medians[2] / n);
+  }
+}
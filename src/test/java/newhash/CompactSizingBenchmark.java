@@ -0,0 +1,71 @@
+package newhash;
+
+/**
+ * Compares power of two sizing with {@link OpenHashMap#setCompactSizing(boolean) compact sizing}.
+ *
+ * <p>For each number of mappings a map of each sizing is filled from empty, and then looked up
+ * with keys that are present and keys that are absent.  The table length each sizing ends up
+ * with is printed with the time per {@code put}, per {@code get} and per miss.  The numbers of
+ * mappings are chosen on both sides of the load thresholds of power of two tables, where the
+ * difference in table length is largest and smallest.
+ *
+ * <p>Run with {@code java -Xmx2g -cp target/classes:target/test-classes
+ * newhash.CompactSizingBenchmark}.
+ */
+public class CompactSizingBenchmark {
+
+  private static final int WARMUP_ROUNDS = 5;
+  private static final int MEASURED_ROUNDS = 7;
+
+  public static void main(String[] args) {
+    int[] sizes = {
+        (2 << 17) / 3, (2 << 17) / 3 + 1,
+        (2 << 21) / 3, (2 << 21) / 3 + 1,
+        1_100_000, 3_000_000};
+    System.out.printf("%-14s %9s %10s %11s %9s %9s %9s%n",
+        "sizing", "mappings", "slots", "slots/map", "put ns", "get ns", "miss ns");
+    for (int n : sizes) {
+      Integer[] keys = new Integer[n];
+      Integer[] absent = new Integer[n];
+      for (int i = 0; i < n; i++) {
+        // Multiplying by an odd number scatters the keys without repeating any
+        keys[i] = i * 0x2545F491;
+        absent[i] = (n + i) * 0x2545F491;
+      }
+      report("power of two", keys, absent, false);
+      report("compact", keys, absent, true);
+    }
+  }
+
+  private static void report(String label, Integer[] keys, Integer[] absent, boolean compact) {
+    double[] medians = Benchmarks.medians(WARMUP_ROUNDS, MEASURED_ROUNDS, 3, times -> {
+      OpenHashMap<Integer, Integer> map = new OpenHashMap<>();
+      map.setCompactSizing(compact);
+      long start = System.nanoTime();
+      for (Integer key : keys)
+        map.put(key, key);
+      times[0] = System.nanoTime() - start;
+
+      int found = 0;
+      start = System.nanoTime();
+      for (Integer key : keys)
+        found += map.get(key) != null ? 1 : 0;
+      times[1] = System.nanoTime() - start;
+
+      start = System.nanoTime();
+      for (Integer key : absent)
+        found += map.containsKey(key) ? 1 : 0;
+      times[2] = System.nanoTime() - start;
+      if (found != keys.length)
+        throw new AssertionError("wrong lookups");
+    });
+    OpenHashMap<Integer, Integer> map = new OpenHashMap<>();
+    map.setCompactSizing(compact);
+    for (Integer key : keys)
+      map.put(key, key);
+    int slots = map.hashedKeyTable.length;
+    System.out.printf("%-14s %9d %10d %11.2f %9.1f %9.1f %9.1f%n", label, keys.length, slots,
+        (double) slots / map.size(), medians[0] / keys.length, medians[1] / keys.length,
+        medians[2] / keys.length);
+  }
+}
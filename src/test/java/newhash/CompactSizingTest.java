@@ -0,0 +1,173 @@
+package newhash;
+
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import static org.testng.Assert.*;
+
+/**
+ * Checks that {@link OpenHashMap#setCompactSizing(boolean) compact sizing} gives tables whose
+ * lengths are not powers of two, and that such tables behave like any other.
+ */
+public class CompactSizingTest {
+
+  @Test
+  public void testEnsureCapacityAllocatesWhatTheMappingsNeed() {
+    OpenHashMap<Integer, Integer> map = new OpenHashMap<>();
+    map.setCompactSizing(true);
+    assertTrue(map.isCompactSizing());
+    map.ensureCapacity(1_100_000);
+    assertEquals(map.hashedKeyTable.length, 1_650_001);
+
+    int len = map.hashedKeyTable.length;
+    for (int i = 0; i < 1_100_000; i++)
+      map.put(i, i);
+    assertEquals(map.hashedKeyTable.length, len, "grew although sized for the mappings");
+  }
+
+  @Test
+  public void testPutAllAllocatesWhatTheMappingsNeed() {
+    Map<Integer, Integer> source = new HashMap<>();
+    for (int i = 0; i < 1000; i++)
+      source.put(i, i);
+    OpenHashMap<Integer, Integer> map = new OpenHashMap<>();
+    map.setCompactSizing(true);
+    map.putAll(source);
+    assertEquals(map.hashedKeyTable.length, 1501);
+    assertEquals(map, source);
+  }
+
+  @Test
+  public void testPutAllArraysAllocatesWhatTheMappingsNeed() {
+    Integer[] keys = new Integer[1000];
+    for (int i = 0; i < keys.length; i++)
+      keys[i] = i;
+    OpenHashMap<Integer, Integer> map = new OpenHashMap<>();
+    map.setCompactSizing(true);
+    map.putAll(keys, keys);
+    assertEquals(map.hashedKeyTable.length, 1501);
+    assertEquals(map.size(), 1000);
+  }
+
+  @Test
+  public void testPutAllFromOpenHashMapAllocatesWhatTheMappingsNeed() {
+    OpenHashMap<Integer, Integer> source = new OpenHashMap<>();
+    for (int i = 0; i < 1000; i++)
+      source.put(i, i);
+    OpenHashMap<Integer, Integer> map = new OpenHashMap<>();
+    map.setCompactSizing(true);
+    // A mapping already in the map keeps the source's table from being copied as it is
+    map.put(0, -1);
+    map.putAll(source);
+    assertEquals(map.hashedKeyTable.length, 1501);
+    assertEquals(map, source);
+  }
+
+  @Test
+  public void testMergeAllAllocatesWhatTheMappingsNeed() {
+    OpenHashMap<Integer, Integer> source = new OpenHashMap<>();
+    for (int i = 0; i < 1000; i++)
+      source.put(i, i);
+    OpenHashMap<Integer, Integer> map = new OpenHashMap<>();
+    map.setCompactSizing(true);
+    map.put(0, 1);
+    map.mergeAll(source, (k, oldValue, value) -> oldValue + value);
+    assertEquals(map.hashedKeyTable.length, 1501);
+    assertEquals(map.get(0), Integer.valueOf(1));
+    assertEquals(map.get(999), Integer.valueOf(999));
+  }
+
+  @Test
+  public void testGrowsByHalf() {
+    OpenHashMap<Integer, Integer> map = new OpenHashMap<>();
+    map.setCompactSizing(true);
+    int len = map.hashedKeyTable.length;
+    for (int i = 0; i < 10_000; i++) {
+      map.put(i, i);
+      int newLen = map.hashedKeyTable.length;
+      if (newLen != len) {
+        assertEquals(newLen, len + (len >> 1));
+        len = newLen;
+      }
+    }
+    for (int i = 0; i < 10_000; i++)
+      assertEquals(map.get(i), Integer.valueOf(i));
+  }
+
+  @Test
+  public void testIndexesCoverTheTable() {
+    int len = 1_000_003;
+    int[] counts = new int[len];
+    for (int h = 1; h <= 3 * len; h++) {
+      int i = OpenHashMap.getIndex(h, len);
+      assertTrue(i >= 0 && i < len, "index " + i);
+      counts[i]++;
+    }
+    // Sequential hashes are spread evenly, where random ones would leave about 5% of the slots
+    // empty
+    for (int i = 0; i < len; i++)
+      assertTrue(counts[i] > 0, "slot " + i + " empty");
+  }
+
+  @Test
+  public void testMapOperations() {
+    OpenHashMap<Object, Integer> map = new OpenHashMap<>();
+    map.setCompactSizing(true);
+    map.setShrinkLoadFactor(0.25f);
+    Map<Object, Integer> expected = new HashMap<>();
+    for (int i = 0; i < 50_000; i++) {
+      Object key = (i % 2 == 0) ? "k" + i : (Object) (i << 12);
+      assertEquals(map.put(key, i), expected.put(key, i));
+    }
+    map.put(null, -1);
+    expected.put(null, -1);
+    assertNotEquals(Integer.bitCount(map.hashedKeyTable.length), 1);
+
+    for (Iterator<Object> it = map.keySet().iterator(); it.hasNext(); ) {
+      Object key = it.next();
+      if (key instanceof Integer n && n % 3 == 0) {
+        it.remove();
+        expected.remove(key);
+      }
+    }
+    for (int i = 0; i < 50_000; i += 4)
+      assertEquals(map.remove("k" + i), expected.remove("k" + i));
+    assertEquals(map, expected);
+
+    map.trimToSize();
+    assertEquals(map.hashedKeyTable.length, 3 * map.size() / 2 + 1);
+    assertEquals(map, expected);
+    map.rehash(2);
+    assertEquals(map, expected);
+    assertEquals(expected, map);
+    assertEquals(map.hashCode(), expected.hashCode());
+    for (Object key : expected.keySet())
+      assertEquals(map.get(key), expected.get(key));
+  }
+
+  @Test
+  public void testSerializationKeepsSizing() throws Exception {
+    OpenHashMap<Integer, Integer> map = new OpenHashMap<>();
+    map.setCompactSizing(true);
+    for (int i = 0; i < 1000; i++)
+      map.put(i, i);
+
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+      out.writeObject(map);
+    }
+    @SuppressWarnings("unchecked")
+    OpenHashMap<Integer, Integer> copy = (OpenHashMap<Integer, Integer>)
+        new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray())).readObject();
+    assertTrue(copy.isCompactSizing());
+    assertEquals(copy.hashedKeyTable.length, 1501);
+    assertEquals(copy, map);
+  }
+}
@@ -0,0 +1,90 @@
+package newhash;
+
+import java.util.Map;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+
+/**
+ * Compares the ways of copying an {@link OpenHashMap} of 2 million mappings into another, per
+ * mapping copied: a loop of {@code put} over the source's entry set, which is what
+ * {@code putAll} used to do and asks every key for its hash code, against {@code putAll} and the
+ * copy constructor, which reuse the stored hashes.  Into an empty map of the same table length
+ * the table is copied whole; into a larger empty one it is moved as a resize would; into a
+ * populated one, or one seeded differently, the mappings are inserted one at a time with the
+ * stored hash, translated for the seeded map.  {@code clone()} is shown for comparison.  Keys
+ * with an expensive {@code hashCode()} show what not asking for it saves.
+ *
+ * <p>Run with {@code java -Xmx3g -cp target/classes:target/test-classes newhash.CopyBenchmark}.
+ */
+public class CopyBenchmark {
+
+  private static final int WARMUP_ROUNDS = 3;
+  private static final int MEASURED_ROUNDS = 7;
+  private static final int ENTRIES = 2_000_000;
+
+  private interface Copy {
+    Map<Object, Integer> run(OpenHashMap<Object, Integer> source);
+  }
+
+  public static void main(String[] args) {
+    System.out.printf("%-18s %-28s %8s%n", "keys", "copy", "ns");
+    report("Integer", Integer::valueOf);
+    report("ExpensiveHashKey", ResizeBenchmark.ExpensiveHashKey::new);
+  }
+
+  private static void report(String keys, IntFunction<Object> keyFactory) {
+    OpenHashMap<Object, Integer> source = new OpenHashMap<>();
+    for (int i = 0; i < ENTRIES; i++)
+      source.put(keyFactory.apply(i * 0x2545F491), i);
+    // A second map as large again, with keys of its own and half of the source's
+    OpenHashMap<Object, Integer> other = new OpenHashMap<>();
+    for (int i = ENTRIES / 2; i < ENTRIES * 3 / 2; i++)
+      other.put(keyFactory.apply(i * 0x2545F491), i);
+    int length = source.hashedKeyTable.length;
+
+    report(keys, "entrySet and put", source, s -> {
+      OpenHashMap<Object, Integer> m = new OpenHashMap<>(s.size());
+      for (Map.Entry<Object, Integer> e : s.entrySet())
+        m.put(e.getKey(), e.getValue());
+      return m;
+    });
+    report(keys, "copy constructor", source, OpenHashMap::new);
+    report(keys, "putAll, same length", source, into(() -> new OpenHashMap<>(length / 2)));
+    report(keys, "putAll, larger", source, into(() -> new OpenHashMap<>(length)));
+    report(keys, "entrySet and put, populated", source, s -> {
+      OpenHashMap<Object, Integer> m = (OpenHashMap<Object, Integer>) other.clone();
+      for (Map.Entry<Object, Integer> e : s.entrySet())
+        m.put(e.getKey(), e.getValue());
+      return m;
+    });
+    report(keys, "putAll, populated", source,
+        into(() -> (OpenHashMap<Object, Integer>) other.clone()));
+    report(keys, "putAll, seeded", source, into(() -> {
+      OpenHashMap<Object, Integer> m = new OpenHashMap<>(length / 2);
+      m.setHashSeeding(OpenHashMap.HashSeeding.PER_INSTANCE);
+      return m;
+    }));
+    report(keys, "clone", source, s -> (OpenHashMap<Object, Integer>) s.clone());
+  }
+
+  private static Copy into(Supplier<OpenHashMap<Object, Integer>> target) {
+    return s -> {
+      OpenHashMap<Object, Integer> m = target.get();
+      m.putAll(s);
+      return m;
+    };
+  }
+
+  private static void report(String keys, String label, OpenHashMap<Object, Integer> source,
+                             Copy copy) {
+    double median = Benchmarks.median(WARMUP_ROUNDS, MEASURED_ROUNDS, () -> {
+      long start = System.nanoTime();
+      Map<Object, Integer> m = copy.run(source);
+      long time = System.nanoTime() - start;
+      if (m.size() < ENTRIES)
+        throw new AssertionError(label + ": " + m.size());
+      return time;
+    });
+    System.out.printf("%-18s %-28s %8.1f%n", keys, label, median / ENTRIES);
+  }
+}
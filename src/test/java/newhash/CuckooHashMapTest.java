@@ -0,0 +1,127 @@
+package newhash;
+
+import org.testng.annotations.Test;
+
+import java.util.Random;
+
+import static org.testng.Assert.*;
+
+/**
+ * Checks {@link CuckooHashMap} against {@code HashMap} at low and high load factors, fills tables
+ * to the highest load factor by moving mappings between their buckets, and sends keys whose hash
+ * codes collide outright to <tt>stash</tt> rather than growing the table.
+ */
+public class CuckooHashMapTest extends AbstractSlotHashMapTest {
+
+  @Override
+  <K,V> SlotHashMap<K,V> newMap(int expectedMaxSize, Object loadFactor) {
+    return new CuckooHashMap<>(expectedMaxSize, (Float) loadFactor);
+  }
+
+  @Override
+  Object[] parameterValues() {
+    return new Object[] {0.5f, 0.9f, 0.97f};
+  }
+
+  @Override
+  Object parameter(SlotHashMap<?,?> map) {
+    return ((CuckooHashMap<?,?>) map).getLoadFactor();
+  }
+
+  @Override
+  Object illegalParameter() {
+    return 0.98f;
+  }
+
+  @Override
+  void checkTable(SlotHashMap<?,?> map) {
+    assertTableConsistent((CuckooHashMap<?,?>) map);
+  }
+
+  @Override
+  boolean hasOverflow() {
+    return true;
+  }
+
+  @Test
+  public void testHighLoadFillsTable() {
+    float loadFactor = CuckooHashMap.MAXIMUM_LOAD_FACTOR;
+    CuckooHashMap<Integer, Integer> map = new CuckooHashMap<>(0, loadFactor);
+    Random random = new Random(7);
+    int capacity = map.hashes.length;
+    for (int i = 0; i < 500_000; i++) {
+      int key = random.nextInt();
+      map.put(key, key);
+      // The table only grows when the load factor says so
+      if (map.hashes.length != capacity) {
+        assertTrue(map.size() - 1 >= (int) (capacity * (double) loadFactor),
+            "grew from " + capacity + " at " + (map.size() - 1));
+        capacity = map.hashes.length;
+      }
+    }
+    assertNull(map.stash);
+    assertTableConsistent(map);
+    for (Integer key : map.keySet())
+      assertEquals(map.get(key), key);
+  }
+
+  @Test
+  public void testCollidingKeysStash() {
+    CuckooHashMap<Object, Integer> map = new CuckooHashMap<>();
+    for (int i = 0; i < 100; i++)
+      map.put(new LongProbePolicyTest.Key(i, 42), i);
+    // Two buckets of them fit, and growing would not have placed the others
+    assertEquals(map.size(), 100);
+    assertEquals(map.stash.size(), 100 - 2 * CuckooHashMap.BUCKET_SLOTS);
+    assertTrue(map.hashes.length <= 256, "capacity " + map.hashes.length);
+    assertTableConsistent(map);
+    for (int i = 0; i < 100; i++)
+      assertEquals(map.get(new LongProbePolicyTest.Key(i, 42)), Integer.valueOf(i));
+    for (int i = 0; i < 100; i += 2)
+      assertEquals(map.remove(new LongProbePolicyTest.Key(i, 42)), Integer.valueOf(i));
+    assertFalse(map.containsKey(new LongProbePolicyTest.Key(0, 42)));
+    assertEquals(map.size(), 50);
+    assertTableConsistent(map);
+  }
+
+  /**
+   * Checks that every mapping has its hash stored with it and is in one of the two buckets of
+   * that hash, that every key in <tt>stash</tt> has its first bucket marked, and that the count
+   * of mappings is right.
+   */
+  private static void assertTableConsistent(CuckooHashMap<?, ?> map) {
+    int capacity = map.hashes.length;
+    int buckets = capacity / CuckooHashMap.BUCKET_SLOTS;
+    int shift = 32 - Integer.numberOfTrailingZeros(buckets);
+    int mappings = 0;
+    for (int i = 0; i < capacity; i++) {
+      Object key = map.table[i << 1];
+      if (key == null) {
+        assertEquals(map.hashes[i], OpenHashMap.EMPTY_HASH, "slot " + i);
+        assertNull(map.table[(i << 1) + 1], "slot " + i);
+        continue;
+      }
+      mappings++;
+      int hash = CuckooHashMap.hash(key);
+      assertEquals(map.hashes[i], hash, "slot " + i);
+      int first = hash >>> shift;
+      int bucket = i / CuckooHashMap.BUCKET_SLOTS;
+      // The other bucket differs from the first in the bits the hash picks
+      int flipped = ((hash * 0x85EBCA6B) >>> shift) | 1;
+      assertTrue(bucket == first || bucket == (first ^ flipped), "slot " + i);
+    }
+    if (map.stash != null) {
+      assertFalse(map.stash.isEmpty());
+      for (Object key : map.stash.keySet()) {
+        int first = CuckooHashMap.hash(key) >>> shift;
+        assertTrue((map.stashed[first >>> 6] & (1L << first)) != 0, key.toString());
+      }
+      mappings += map.stash.size();
+    } else {
+      assertNull(map.stashed);
+    }
+    assertEquals(mappings, map.size());
+    for (Object key : map.keySet())
+      assertTrue(map.containsKey(key));
+  }
+}
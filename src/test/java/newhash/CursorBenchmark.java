@@ -0,0 +1,79 @@
+package newhash;
+
+import java.lang.management.ManagementFactory;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.function.ToLongFunction;
+
+/**
+ * Compares the ways of visiting every mapping of an {@link OpenHashMap} of 4 million mappings:
+ * its entry set's iterator, which returns a new entry for each mapping, and its spliterator,
+ * which hands a new immutable entry to each action, with {@link OpenHashMap#cursor()} and
+ * {@link OpenHashMap#flyweightEntrySpliterator()}, which allocate nothing per mapping, and with
+ * {@code forEach}.  Each traversal sums the values, and the bytes column is what it allocated
+ * per mapping, as the thread's allocation counter reports it.  Entries that do not escape the
+ * loop may be scalar replaced by the JIT, so the bytes an iterator allocates depend on the
+ * caller.
+ *
+ * <p>Run with {@code java -Xmx3g -cp target/classes:target/test-classes newhash.CursorBenchmark}.
+ */
+public class CursorBenchmark {
+
+  private static final int WARMUP_ROUNDS = 5;
+  private static final int MEASURED_ROUNDS = 7;
+  private static final int ENTRIES = 4_000_000;
+
+  public static void main(String[] args) {
+    OpenHashMap<Integer, Integer> map = new OpenHashMap<>();
+    for (int i = 0; i < ENTRIES; i++)
+      map.put(i * 0x2545F491, i);
+    long expected = (long) ENTRIES * (ENTRIES - 1) / 2;
+
+    System.out.printf("%-26s %8s %8s%n", "traversal", "ns", "bytes");
+    report("entrySet().iterator()", map, expected, m -> {
+      long sum = 0;
+      for (Iterator<Map.Entry<Integer, Integer>> it = m.entrySet().iterator(); it.hasNext(); )
+        sum += it.next().getValue();
+      return sum;
+    });
+    report("entrySet().spliterator()", map, expected, m -> {
+      long[] sum = new long[1];
+      m.entrySet().spliterator().forEachRemaining(e -> sum[0] += e.getValue());
+      return sum[0];
+    });
+    report("flyweightEntrySpliterator", map, expected, m -> {
+      long[] sum = new long[1];
+      m.flyweightEntrySpliterator().forEachRemaining(e -> sum[0] += e.getValue());
+      return sum[0];
+    });
+    report("cursor()", map, expected, m -> {
+      long sum = 0;
+      OpenHashMap.MapCursor<Integer, Integer> c = m.cursor();
+      while (c.advance())
+        sum += c.value();
+      return sum;
+    });
+    report("forEach", map, expected, m -> {
+      long[] sum = new long[1];
+      m.forEach((k, v) -> sum[0] += v);
+      return sum[0];
+    });
+  }
+
+  private static void report(String label, OpenHashMap<Integer, Integer> map, long expected,
+                             ToLongFunction<OpenHashMap<Integer, Integer>> traversal) {
+    com.sun.management.ThreadMXBean bean =
+        (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    double[] medians = Benchmarks.medians(WARMUP_ROUNDS, MEASURED_ROUNDS, 2, times -> {
+      long allocated = bean.getCurrentThreadAllocatedBytes();
+      long start = System.nanoTime();
+      long sum = traversal.applyAsLong(map);
+      times[0] = System.nanoTime() - start;
+      // The allocated bytes are a sample too, whose median is taken the same way
+      times[1] = bean.getCurrentThreadAllocatedBytes() - allocated;
+      if (sum != expected)
+        throw new AssertionError("sum " + sum);
+    });
+    System.out.printf("%-26s %8.1f %8.1f%n", label, medians[0] / ENTRIES, medians[1] / ENTRIES);
+  }
+}
@@ -0,0 +1,166 @@
+package newhash;
+
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.AbstractMap;
+import java.util.Collections;
+import java.util.ConcurrentModificationException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.stream.StreamSupport;
+
+import static org.testng.Assert.*;
+
+/**
+ * Checks {@link OpenHashMap#cursor()} and {@link OpenHashMap#flyweightEntrySpliterator()}
+ * against {@code HashMap}, over tables with and without overflow mappings, and that traversing
+ * a map with either allocates nothing per mapping.
+ */
+public class CursorTest {
+
+  @DataProvider
+  public Object[][] maps() {
+    return new Object[][] {{"table", filled(false)}, {"overflow", filled(true)}};
+  }
+
+  /**
+   * Returns a map of 5000 mappings, including the null key and null values, of which some go to
+   * <tt>overflow</tt> if asked.
+   */
+  private static OpenHashMap<Object, Integer> filled(boolean overflow) {
+    OpenHashMap<Object, Integer> map = new OpenHashMap<>();
+    if (overflow) {
+      map.setLongProbePolicy(OpenHashMap.LongProbePolicy.OVERFLOW);
+      map.setMaxProbeLength(4);
+    }
+    for (int i = 1; i < 5000; i++) {
+      // Every tenth key has one of a few hash codes, so builds long runs
+      Object key = i % 10 == 0 ? new LongProbePolicyTest.Key(i, i % 3) : (Object) i;
+      map.put(key, i % 7 == 0 ? null : i);
+    }
+    map.put(null, -1);
+    return map;
+  }
+
+  @Test(dataProvider = "maps")
+  public void testCursorAgainstHashMap(String label, OpenHashMap<Object, Integer> map) {
+    if (label.equals("overflow"))
+      assertTrue(map.getLongProbeCount() > 0);
+    Map<Object, Integer> expected = new HashMap<>(map);
+    Set<Object> seen = new HashSet<>();
+    OpenHashMap.MapCursor<Object, Integer> c = map.cursor();
+    while (c.advance()) {
+      Object key = c.key();
+      assertTrue(seen.add(key), "twice " + key);
+      Integer value = c.value();
+      assertEquals(value, expected.get(key));
+      if (value == null || value % 3 == 0) {
+        c.remove();
+        expected.remove(key);
+      } else {
+        assertEquals(c.setValue(-value), value);
+        assertEquals(c.value(), Integer.valueOf(-value));
+        expected.put(key, -value);
+      }
+    }
+    assertFalse(c.advance());
+    assertEquals(seen.size(), 5000);
+    assertEquals(map, expected);
+    for (Object key : expected.keySet())
+      assertEquals(map.get(key), expected.get(key));
+  }
+
+  @Test
+  public void testCursorStates() {
+    OpenHashMap<Integer, Integer> map = new OpenHashMap<>();
+    map.put(1, 1);
+    map.put(2, 2);
+    OpenHashMap.MapCursor<Integer, Integer> c = map.cursor();
+    assertThrows(IllegalStateException.class, c::key);
+    assertThrows(IllegalStateException.class, c::remove);
+    assertTrue(c.advance());
+    c.remove();
+    assertThrows(IllegalStateException.class, c::value);
+    assertThrows(IllegalStateException.class, c::remove);
+    assertTrue(c.advance());
+    assertFalse(c.advance());
+    assertThrows(IllegalStateException.class, () -> c.setValue(3));
+    assertEquals(map.size(), 1);
+
+    OpenHashMap.MapCursor<Integer, Integer> d = map.cursor();
+    assertTrue(d.advance());
+    map.put(3, 3);
+    assertThrows(ConcurrentModificationException.class, d::key);
+    assertThrows(ConcurrentModificationException.class, d::advance);
+  }
+
+  @Test(dataProvider = "maps")
+  public void testFlyweightEntrySpliterator(String label, OpenHashMap<Object, Integer> map) {
+    Map<Object, Integer> expected = new HashMap<>(map);
+    Map<Object, Integer> seen = new HashMap<>();
+    Set<Map.Entry<Object, Integer>> entries = Collections.newSetFromMap(new IdentityHashMap<>());
+    Consumer<Map.Entry<Object, Integer>> action = e -> {
+      entries.add(e);
+      assertFalse(seen.containsKey(e.getKey()), "twice " + e.getKey());
+      seen.put(e.getKey(), e.getValue());
+      Map.Entry<Object, Integer> copy = new AbstractMap.SimpleEntry<>(e.getKey(), e.getValue());
+      assertEquals(e, copy);
+      assertEquals(e.hashCode(), copy.hashCode());
+      if (e.getValue() != null)
+        assertEquals(e.setValue(e.getValue() + 1), copy.getValue());
+    };
+    Spliterator<Map.Entry<Object, Integer>> s = map.flyweightEntrySpliterator();
+    assertTrue(s.tryAdvance(action));
+    s.forEachRemaining(action);
+    // Every mapping was handed out in the same entry
+    assertEquals(entries.size(), 1);
+    assertEquals(seen, expected);
+    for (Map.Entry<Object, Integer> e : expected.entrySet())
+      assertEquals(map.get(e.getKey()), e.getValue() == null ? null : e.getValue() + 1);
+
+    // Split in parallel, each part has an entry of its own
+    long sum = StreamSupport.stream(map.flyweightEntrySpliterator(), true)
+        .mapToLong(e -> e.getValue() == null ? 0 : e.getValue()).sum();
+    long expectedSum = 0;
+    for (Integer value : map.values())
+      expectedSum += value == null ? 0 : value;
+    assertEquals(sum, expectedSum);
+  }
+
+  @Test
+  public void testTraversalAllocatesNothingPerMapping() {
+    com.sun.management.ThreadMXBean bean =
+        (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    OpenHashMap<Integer, Integer> map = new OpenHashMap<>();
+    for (int i = 0; i < 100_000; i++)
+      map.put(i, i);
+    for (int round = 0; round < 3; round++) {
+      long before = bean.getCurrentThreadAllocatedBytes();
+      long sum = 0;
+      OpenHashMap.MapCursor<Integer, Integer> c = map.cursor();
+      while (c.advance())
+        sum += c.value();
+      long cursorBytes = bean.getCurrentThreadAllocatedBytes() - before;
+
+      long[] total = new long[1];
+      before = bean.getCurrentThreadAllocatedBytes();
+      map.flyweightEntrySpliterator().forEachRemaining(e -> total[0] += e.getValue());
+      long spliteratorBytes = bean.getCurrentThreadAllocatedBytes() - before;
+
+      assertEquals(sum, 100_000L * 99_999 / 2);
+      assertEquals(total[0], sum);
+      // An entry per mapping would be over a megabyte; the first round also loads classes
+      if (round == 0)
+        continue;
+      assertTrue(cursorBytes < 10_000, "cursor allocated " + cursorBytes);
+      assertTrue(spliteratorBytes < 10_000, "spliterator allocated " + spliteratorBytes);
+    }
+  }
+}
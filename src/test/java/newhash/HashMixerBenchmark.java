@@ -0,0 +1,102 @@
+package newhash;
+
+import java.util.Random;
+import java.util.function.IntFunction;
+
+/**
+ * Compares the {@link OpenHashMap.HashMixer}s on random Integers, Strings and sequential ids.
+ *
+ * <p>For each kind of key and mixer a map is filled to its maximum load, and the distribution
+ * of how far each mapping is from its home slot is printed along with the time per
+ * {@code put} and per {@code get}.  The long probe policy is kept out of the way with an
+ * unreachable maximum probe length, so the histograms show what the mixer alone does.
+ *
+ * <p>Run with {@code java -Xmx2g -cp target/classes:target/test-classes
+ * newhash.HashMixerBenchmark [entries]}.
+ */
+public class HashMixerBenchmark {
+
+  private static final int WARMUP_ROUNDS = 5;
+  private static final int MEASURED_ROUNDS = 7;
+
+  /** Upper bounds of the probe length histogram buckets, the last one open ended. */
+  private static final int[] BUCKETS = {0, 1, 2, 3, 7, 15, 31, Integer.MAX_VALUE};
+
+  public static void main(String[] args) {
+    // Just below the resize threshold of a 2^20 slot table
+    final int entries = args.length > 0 ? Integer.parseInt(args[0]) : ((1 << 21) / 3) - 1;
+    System.out.printf("%-10s %-10s %6s %6s %6s %6s %6s %6s %6s %6s %8s %6s %9s %9s%n",
+        "keys", "mixer", "0%", "1%", "2%", "3%", "4-7%", "8-15%", "16-31%", "32+%",
+        "mean", "max", "put ns", "get ns");
+    Random random = new Random(42);
+    report("random", entries, i -> random.nextInt());
+    report("String", entries, i -> "k" + i);
+    report("sequence", entries, i -> i);
+  }
+
+  private static void report(String label, int entries, IntFunction<Object> keyFactory) {
+    Object[] keys = new Object[entries];
+    for (int i = 0; i < entries; i++)
+      keys[i] = keyFactory.apply(i);
+    // Look the keys up in a different order from the one they went in
+    Object[] lookups = keys.clone();
+    Benchmarks.shuffle(lookups, 7);
+
+    for (OpenHashMap.HashMixer mixer : OpenHashMap.HashMixer.values()) {
+      double[] medians = Benchmarks.medians(WARMUP_ROUNDS, MEASURED_ROUNDS, 2, times -> {
+        OpenHashMap<Object, Object> map = newMap(entries, mixer);
+        long start = System.nanoTime();
+        for (Object key : keys)
+          map.put(key, key);
+        times[0] = System.nanoTime() - start;
+
+        int found = 0;
+        start = System.nanoTime();
+        for (Object key : lookups) {
+          if (map.get(key) != null)
+            found++;
+        }
+        times[1] = System.nanoTime() - start;
+        if (found != lookups.length)
+          throw new AssertionError("lost a mapping");
+      });
+      OpenHashMap<Object, Object> map = newMap(entries, mixer);
+      for (Object key : keys)
+        map.put(key, key);
+      printHistogram(label, mixer, map);
+      System.out.printf(" %9.1f %9.1f%n", medians[0] / map.size(), medians[1] / map.size());
+    }
+  }
+
+  private static OpenHashMap<Object, Object> newMap(int entries, OpenHashMap.HashMixer mixer) {
+    OpenHashMap<Object, Object> map = new OpenHashMap<>(entries);
+    map.setHashMixer(mixer);
+    map.setMaxProbeLength(Integer.MAX_VALUE);
+    return map;
+  }
+
+  private static void printHistogram(String label, OpenHashMap.HashMixer mixer,
+                                     OpenHashMap<?, ?> map) {
+    int[] hashes = map.hashedKeyTable;
+    int len = hashes.length;
+    long[] counts = new long[BUCKETS.length];
+    long total = 0;
+    int max = 0;
+    for (int i = 0; i < len; i++) {
+      if (hashes[i] == OpenHashMap.EMPTY_HASH)
+        continue;
+      int hops = OpenHashMap.getHops(i, len, OpenHashMap.getIndex(hashes[i], len));
+      int b = 0;
+      while (hops > BUCKETS[b])
+        b++;
+      counts[b]++;
+      total += hops;
+      max = Math.max(max, hops);
+    }
+    int size = map.size();
+    System.out.printf("%-10s %-10s", label, mixer);
+    for (long count : counts)
+      System.out.printf(" %6.2f", 100.0 * count / size);
+    System.out.printf(" %8.3f %6d", (double) total / size, max);
+  }
+}
@@ -0,0 +1,95 @@
+package newhash;
+
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Random;
+
+import static org.testng.Assert.*;
+
+/**
+ * Checks each {@link OpenHashMap.HashMixer} for invertibility and for giving the same map
+ * behaviour, including when the mixer of a populated map is changed.
+ */
+public class HashMixerTest {
+
+  @DataProvider
+  public Object[][] mixers() {
+    OpenHashMap.HashMixer[] mixers = OpenHashMap.HashMixer.values();
+    Object[][] cases = new Object[mixers.length][];
+    for (int i = 0; i < mixers.length; i++)
+      cases[i] = new Object[] {mixers[i]};
+    return cases;
+  }
+
+  @Test(dataProvider = "mixers")
+  public void testUnmixInvertsMix(OpenHashMap.HashMixer mixer) {
+    Random random = new Random(1);
+    int[] edges = {0, 1, -1, Integer.MIN_VALUE, Integer.MAX_VALUE, 0x10000, 0xFFFF};
+    for (int h : edges)
+      assertEquals(mixer.unmix(mixer.mix(h)), h, mixer + " " + h);
+    for (int i = 0; i < 100_000; i++) {
+      int h = random.nextInt();
+      assertEquals(mixer.unmix(mixer.mix(h)), h, mixer + " " + h);
+      assertEquals(mixer.mix(mixer.unmix(h)), h, mixer + " " + h);
+    }
+  }
+
+  @Test(dataProvider = "mixers")
+  public void testMapOperations(OpenHashMap.HashMixer mixer) {
+    OpenHashMap<Object, Integer> map = new OpenHashMap<>();
+    map.setHashMixer(mixer);
+    Map<Object, Integer> expected = new HashMap<>();
+    for (int i = 0; i < 20_000; i++) {
+      Object key = (i % 3 == 0) ? "k" + i : (i % 3 == 1) ? Integer.valueOf(i << 16) : (Object) i;
+      assertEquals(map.put(key, i), expected.put(key, i));
+    }
+    map.put(null, -1);
+    expected.put(null, -1);
+    for (Iterator<Object> it = map.keySet().iterator(); it.hasNext(); ) {
+      Object key = it.next();
+      if (key instanceof Integer n && n % 7 == 0) {
+        it.remove();
+        expected.remove(key);
+      }
+    }
+    for (int i = 0; i < 20_000; i += 5)
+      assertEquals(map.remove("k" + i), expected.remove("k" + i));
+
+    assertEquals(map, expected);
+    assertEquals(expected, map);
+    assertEquals(map.hashCode(), expected.hashCode());
+    for (Object key : expected.keySet())
+      assertEquals(map.get(key), expected.get(key));
+  }
+
+  @Test(dataProvider = "mixers")
+  public void testChangingMixerRehashes(OpenHashMap.HashMixer mixer) {
+    OpenHashMap<Object, Integer> map = new OpenHashMap<>();
+    Map<Object, Integer> expected = new HashMap<>();
+    for (int i = 0; i < 5_000; i++) {
+      map.put("k" + i, i);
+      expected.put("k" + i, i);
+    }
+    int hashCode = map.hashCode();
+    map.setHashMixer(mixer);
+    assertEquals(map.getHashMixer(), mixer);
+    assertEquals(map, expected);
+    assertEquals(map.hashCode(), hashCode);
+
+    int len = map.hashedKeyTable.length;
+    for (int i = 0; i < len; i++) {
+      Object key = map.table[i << 1];
+      if (key != null)
+        assertEquals(map.hashedKeyTable[i], map.maskHash(key), "stored hash of " + key);
+    }
+  }
+
+  @Test(expectedExceptions = NullPointerException.class)
+  public void testMixerMustNotBeNull() {
+    new OpenHashMap<>().setHashMixer(null);
+  }
+}
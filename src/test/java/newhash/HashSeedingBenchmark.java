@@ -0,0 +1,69 @@
+package newhash;
+
+import java.util.Random;
+import java.util.function.IntFunction;
+
+/**
+ * Measures what a {@link OpenHashMap.HashSeeding hash seed} costs on keys that were not chosen to
+ * collide.
+ *
+ * <p>For each kind of key a map with each seeding is filled from empty, and then looked up with
+ * keys that are present and keys that are absent.  Seeding scrambles each hash code with two
+ * more multiplications when it is stored and when a key is looked up, and spreads sequential
+ * hash codes that an unseeded map would put in consecutive slots.
+ *
+ * <p>Run with {@code java -Xmx2g -cp target/classes:target/test-classes
+ * newhash.HashSeedingBenchmark [entries]}.
+ */
+public class HashSeedingBenchmark {
+
+  private static final int WARMUP_ROUNDS = 5;
+  private static final int MEASURED_ROUNDS = 7;
+
+  public static void main(String[] args) {
+    final int entries = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+    System.out.printf("%-10s %-13s %9s %9s %9s%n", "keys", "seeding", "put ns", "get ns",
+        "miss ns");
+    Random random = new Random(42);
+    // Random keys are even, so that odd ones are certainly absent
+    report("random", entries, i -> random.nextInt() & ~1, i -> random.nextInt() | 1);
+    report("String", entries, i -> "k" + i, i -> "absent" + i);
+    report("sequence", entries, i -> i, i -> -1 - i);
+  }
+
+  private static void report(String label, int entries, IntFunction<Object> keyFactory,
+                             IntFunction<Object> absentFactory) {
+    Object[] keys = new Object[entries];
+    Object[] absent = new Object[entries];
+    for (int i = 0; i < entries; i++) {
+      keys[i] = keyFactory.apply(i);
+      absent[i] = absentFactory.apply(i);
+    }
+
+    for (OpenHashMap.HashSeeding seeding : OpenHashMap.HashSeeding.values()) {
+      double[] medians = Benchmarks.medians(WARMUP_ROUNDS, MEASURED_ROUNDS, 3, times -> {
+        OpenHashMap<Object, Object> map = new OpenHashMap<>();
+        map.setHashSeeding(seeding);
+        long start = System.nanoTime();
+        for (Object key : keys)
+          map.put(key, key);
+        times[0] = System.nanoTime() - start;
+
+        int found = 0;
+        start = System.nanoTime();
+        for (Object key : keys)
+          found += map.get(key) != null ? 1 : 0;
+        times[1] = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (Object key : absent)
+          found += map.containsKey(key) ? 1 : 0;
+        times[2] = System.nanoTime() - start;
+        if (found != entries)
+          throw new AssertionError("wrong lookups");
+      });
+      System.out.printf("%-10s %-13s %9.1f %9.1f %9.1f%n", label, seeding,
+          medians[0] / entries, medians[1] / entries, medians[2] / entries);
+    }
+  }
+}
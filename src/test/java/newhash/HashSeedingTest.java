@@ -0,0 +1,140 @@
+package newhash;
+
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import static org.testng.Assert.*;
+
+/**
+ * Checks that each {@link OpenHashMap.HashSeeding} seeds maps as documented, that seeded maps
+ * behave like unseeded ones, and that a seed spreads keys chosen to collide without one.
+ */
+public class HashSeedingTest {
+
+  @DataProvider
+  public Object[][] seedings() {
+    OpenHashMap.HashSeeding[] seedings = OpenHashMap.HashSeeding.values();
+    Object[][] cases = new Object[seedings.length][];
+    for (int i = 0; i < seedings.length; i++)
+      cases[i] = new Object[] {seedings[i]};
+    return cases;
+  }
+
+  @Test
+  public void testSeeds() {
+    OpenHashMap<Object, Object> a = new OpenHashMap<>();
+    OpenHashMap<Object, Object> b = new OpenHashMap<>();
+    assertEquals(a.getHashSeeding(), OpenHashMap.HashSeeding.NONE);
+    assertEquals(a.hashSeed, 0);
+
+    a.setHashSeeding(OpenHashMap.HashSeeding.PER_PROCESS);
+    b.setHashSeeding(OpenHashMap.HashSeeding.PER_PROCESS);
+    assertNotEquals(a.hashSeed, 0);
+    assertEquals(a.hashSeed, b.hashSeed);
+
+    a.setHashSeeding(OpenHashMap.HashSeeding.PER_INSTANCE);
+    b.setHashSeeding(OpenHashMap.HashSeeding.PER_INSTANCE);
+    assertEquals(a.getHashSeeding(), OpenHashMap.HashSeeding.PER_INSTANCE);
+    assertNotEquals(a.hashSeed, 0);
+    assertNotEquals(a.hashSeed, b.hashSeed);
+
+    a.setHashSeeding(OpenHashMap.HashSeeding.NONE);
+    assertEquals(a.hashSeed, 0);
+  }
+
+  @Test
+  public void testSeedSpreadsCollidingKeys() {
+    // Hash codes that the default mixer sends to slot 0 of any table of up to 2^12 slots
+    int keys = 2000;
+    OpenHashMap<Object, Integer> unseeded = new OpenHashMap<>();
+    OpenHashMap<Object, Integer> seeded = new OpenHashMap<>();
+    seeded.setHashSeeding(OpenHashMap.HashSeeding.PER_INSTANCE);
+    for (OpenHashMap<Object, Integer> map : List.of(unseeded, seeded)) {
+      map.setMaxProbeLength(Integer.MAX_VALUE);
+      for (int i = 0; i < keys; i++)
+        map.put(new LongProbePolicyTest.Key(i, OpenHashMap.HashMixer.XOR_SHIFT.unmix(i << 12)), i);
+      assertEquals(map.hashedKeyTable.length, 4096);
+    }
+    assertTrue(longestProbe(unseeded) > keys / 2, "keys did not collide");
+    assertTrue(longestProbe(seeded) < 32, "probe length " + longestProbe(seeded));
+  }
+
+  @Test(dataProvider = "seedings")
+  public void testMapOperations(OpenHashMap.HashSeeding seeding) {
+    OpenHashMap<Object, Integer> map = new OpenHashMap<>();
+    map.setHashSeeding(seeding);
+    Map<Object, Integer> expected = new HashMap<>();
+    for (int i = 0; i < 20_000; i++) {
+      Object key = (i % 2 == 0) ? "k" + i : (Object) (i << 16);
+      assertEquals(map.put(key, i), expected.put(key, i));
+    }
+    map.put(null, -1);
+    expected.put(null, -1);
+    for (Iterator<Object> it = map.keySet().iterator(); it.hasNext(); ) {
+      Object key = it.next();
+      if (key instanceof Integer n && n % 3 == 0) {
+        it.remove();
+        expected.remove(key);
+      }
+    }
+    for (int i = 0; i < 20_000; i += 4)
+      assertEquals(map.remove("k" + i), expected.remove("k" + i));
+    assertEquals(map, expected);
+
+    int hashCode = map.hashCode();
+    map.setHashSeeding(OpenHashMap.HashSeeding.PER_INSTANCE);
+    assertEquals(map.hashCode(), hashCode);
+    assertEquals(map, expected);
+    assertEquals(expected, map);
+    for (Object key : expected.keySet())
+      assertEquals(map.get(key), expected.get(key));
+  }
+
+  @Test
+  public void testDeserializedMapIsSeededAfresh() throws Exception {
+    OpenHashMap<String, Integer> map = new OpenHashMap<>();
+    map.setHashSeeding(OpenHashMap.HashSeeding.PER_INSTANCE);
+    for (int i = 0; i < 1000; i++)
+      map.put("k" + i, i);
+
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+      out.writeObject(map);
+    }
+    @SuppressWarnings("unchecked")
+    OpenHashMap<String, Integer> copy = (OpenHashMap<String, Integer>)
+        new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray())).readObject();
+    assertEquals(copy.getHashSeeding(), OpenHashMap.HashSeeding.PER_INSTANCE);
+    assertNotEquals(copy.hashSeed, 0);
+    assertNotEquals(copy.hashSeed, map.hashSeed);
+    assertEquals(copy, map);
+  }
+
+  @Test(expectedExceptions = NullPointerException.class)
+  public void testSeedingMustNotBeNull() {
+    new OpenHashMap<>().setHashSeeding(null);
+  }
+
+  /**
+   * Returns the largest number of slots any mapping in the table is from its home.
+   */
+  private static int longestProbe(OpenHashMap<?, ?> map) {
+    int[] hashes = map.hashedKeyTable;
+    int len = hashes.length, longest = 0;
+    for (int i = 0; i < len; i++) {
+      if (hashes[i] != OpenHashMap.EMPTY_HASH)
+        longest = Math.max(longest,
+            OpenHashMap.getHops(i, len, OpenHashMap.getIndex(hashes[i], len)));
+    }
+    return longest;
+  }
+}
@@ -0,0 +1,109 @@
+package newhash;
+
+import java.util.Map;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+
+/**
+ * Compares {@link HopscotchHashMap} with the Robin Hood {@link OpenHashMap} on read-heavy work,
+ * holding from half to 9/10 as many mappings as a table of 2<sup>20</sup> slots.  The hopscotch
+ * table is allowed a load factor of 9/10, so holds them all in that table unless a key finds no
+ * room in its neighbourhood.  {@code OpenHashMap} keeps its load under 2/3, so above that it
+ * doubles its table, and the bytes column shows what that costs in memory, counting 4 bytes for
+ * a compressed reference: 16 bytes a slot for the hopscotch table, with its bitmaps and hashes,
+ * and 12 for {@code OpenHashMap}.
+ *
+ * <p>Each map is filled with its expected size given, then looked up with every key present,
+ * with as many keys absent, and with a mix of 19 lookups of present keys to each removal and
+ * reinsertion of one.
+ *
+ * <p>Run with {@code java -Xmx3g -cp target/classes:target/test-classes
+ * newhash.HopscotchBenchmark}.
+ */
+public class HopscotchBenchmark {
+
+  private static final int WARMUP_ROUNDS = 5;
+  private static final int MEASURED_ROUNDS = 7;
+  private static final int SLOTS = 1 << 20;
+
+  private interface Workload {
+    int run(Map<Object, Object> map, Object[] keys);
+  }
+
+  public static void main(String[] args) {
+    System.out.printf("%-6s %-8s %-17s %8s %6s %8s %8s %8s %8s%n", "load", "keys", "map", "slots",
+        "used", "B/entry", "hit ns", "miss ns", "mixed ns");
+    for (double load : new double[] {0.5, 0.66, 0.8, 0.9}) {
+      int entries = (int) (SLOTS * load);
+      // Multiplying by an odd number scatters the keys without repeating any
+      report(load, "Integer", entries, i -> i * 0x2545F491);
+      report(load, "String", entries, i -> "key" + i);
+    }
+  }
+
+  private static void report(double load, String label, int entries,
+                             IntFunction<Object> keyFactory) {
+    Object[] present = new Object[entries];
+    Object[] absent = new Object[entries];
+    for (int i = 0; i < entries; i++) {
+      present[i] = keyFactory.apply(i);
+      absent[i] = keyFactory.apply(entries + i);
+    }
+    Workload get = (map, keys) -> {
+      int n = 0;
+      for (Object key : keys)
+        n += map.get(key) != null ? 1 : 0;
+      return n;
+    };
+    Workload mixed = (map, keys) -> {
+      int n = 0;
+      for (int i = 0; i < keys.length; i++) {
+        if (i % 20 == 19) {
+          map.remove(keys[i]);
+          map.put(keys[i], keys[i]);
+          n++;
+        } else {
+          n += map.get(keys[i]) != null ? 1 : 0;
+        }
+      }
+      return n;
+    };
+
+    for (String mapName : new String[] {"HopscotchHashMap", "OpenHashMap"}) {
+      Supplier<Map<Object, Object>> newMap = mapName.equals("HopscotchHashMap")
+          ? () -> new HopscotchHashMap<>(entries, 0.9f) : () -> new OpenHashMap<>(entries);
+      double[] medians = Benchmarks.medians(WARMUP_ROUNDS, MEASURED_ROUNDS, 3, times -> {
+        Map<Object, Object> map = newMap.get();
+        for (Object key : present)
+          map.put(key, key);
+        times[0] = time(map, present, get, entries);
+        times[1] = time(map, absent, get, 0);
+        times[2] = time(map, present, mixed, entries);
+      });
+      Map<Object, Object> map = newMap.get();
+      for (Object key : present)
+        map.put(key, key);
+      int slots, slotBytes;
+      if (map instanceof HopscotchHashMap<Object, Object> m) {
+        slots = m.hops.length;
+        slotBytes = 16;
+      } else {
+        slots = ((OpenHashMap<Object, Object>) map).hashedKeyTable.length;
+        slotBytes = 12;
+      }
+      System.out.printf("%-6.2f %-8s %-17s %8d %6.3f %8.1f %8.1f %8.1f %8.1f%n", load, label,
+          mapName, slots, entries / (double) slots, slots * (double) slotBytes / entries,
+          medians[0] / entries, medians[1] / entries, medians[2] / entries);
+    }
+  }
+
+  private static long time(Map<Object, Object> map, Object[] keys, Workload workload,
+                           int expected) {
+    long start = System.nanoTime();
+    int found = workload.run(map, keys);
+    long time = System.nanoTime() - start;
+    if (found != expected)
+      throw new AssertionError("found " + found);
+    return time;
+  }
+}
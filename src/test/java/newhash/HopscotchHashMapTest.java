@@ -0,0 +1,117 @@
+package newhash;
+
+import org.testng.annotations.Test;
+
+import java.util.Random;
+
+import static org.testng.Assert.*;
+
+/**
+ * Checks {@link HopscotchHashMap} against {@code HashMap} at low and high load factors, keeps
+ * every key within the neighbourhood of its home while insertions move mappings about, and sends
+ * keys whose hash codes collide outright to <tt>overflow</tt> rather than growing the table.
+ */
+public class HopscotchHashMapTest extends AbstractSlotHashMapTest {
+
+  @Override
+  <K,V> SlotHashMap<K,V> newMap(int expectedMaxSize, Object loadFactor) {
+    return new HopscotchHashMap<>(expectedMaxSize, (Float) loadFactor);
+  }
+
+  @Override
+  Object[] parameterValues() {
+    return new Object[] {0.5f, 0.8f, 0.95f};
+  }
+
+  @Override
+  Object parameter(SlotHashMap<?,?> map) {
+    return ((HopscotchHashMap<?,?>) map).getLoadFactor();
+  }
+
+  @Override
+  Object illegalParameter() {
+    return 0.96f;
+  }
+
+  @Override
+  void checkTable(SlotHashMap<?,?> map) {
+    assertTableConsistent((HopscotchHashMap<?,?>) map);
+  }
+
+  @Override
+  boolean hasOverflow() {
+    return true;
+  }
+
+  @Test
+  public void testHighLoadStaysInNeighbourhoods() {
+    HopscotchHashMap<Integer, Integer> map =
+        new HopscotchHashMap<>(0, HopscotchHashMap.MAXIMUM_LOAD_FACTOR);
+    Random random = new Random(7);
+    for (int i = 0; i < 200_000; i++) {
+      int key = random.nextInt();
+      map.put(key, key);
+    }
+    assertNull(map.overflow);
+    assertTableConsistent(map);
+    for (Integer key : map.keySet())
+      assertEquals(map.get(key), key);
+  }
+
+  @Test
+  public void testCollidingKeysOverflow() {
+    HopscotchHashMap<Object, Integer> map = new HopscotchHashMap<>();
+    for (int i = 0; i < 100; i++)
+      map.put(new LongProbePolicyTest.Key(i, 42), i);
+    // A neighbourhood of them fits, and growing would not have placed the others
+    assertEquals(map.size(), 100);
+    assertEquals(map.overflow.size(), 100 - HopscotchHashMap.NEIGHBOURHOOD);
+    assertTrue(map.hops.length <= 256, "capacity " + map.hops.length);
+    assertTableConsistent(map);
+    for (int i = 0; i < 100; i++)
+      assertEquals(map.get(new LongProbePolicyTest.Key(i, 42)), Integer.valueOf(i));
+    for (int i = 0; i < 100; i += 2)
+      assertEquals(map.remove(new LongProbePolicyTest.Key(i, 42)), Integer.valueOf(i));
+    assertFalse(map.containsKey(new LongProbePolicyTest.Key(0, 42)));
+    assertEquals(map.size(), 50);
+    assertTableConsistent(map);
+  }
+
+  /**
+   * Checks that every mapping has its hash stored with it, is within the neighbourhood of its
+   * home and marked in its hop bitmap, that no bitmap marks an empty slot, and that every key in
+   * <tt>overflow</tt> has its home marked.
+   */
+  private static void assertTableConsistent(HopscotchHashMap<?, ?> map) {
+    int capacity = map.hops.length;
+    int shift = 32 - Integer.numberOfTrailingZeros(capacity);
+    int[] marked = new int[capacity];
+    int mappings = 0;
+    for (int i = 0; i < capacity; i++) {
+      Object key = map.table[i << 1];
+      if (key == null) {
+        assertNull(map.table[(i << 1) + 1], "slot " + i);
+        continue;
+      }
+      mappings++;
+      int hash = HopscotchHashMap.hash(key);
+      assertEquals((int) (map.hops[i] >>> 32), hash, "slot " + i);
+      int home = hash >>> shift;
+      int offset = (i - home) & (capacity - 1);
+      assertTrue(offset < HopscotchHashMap.NEIGHBOURHOOD, "slot " + i + " offset " + offset);
+      assertTrue((map.hops[home] & (1L << offset)) != 0, "slot " + i);
+      marked[home] |= 1 << offset;
+    }
+    for (int i = 0; i < capacity; i++)
+      assertEquals((int) map.hops[i] & ~HopscotchHashMap.OVERFLOW_HOME, marked[i], "bitmap " + i);
+    if (map.overflow != null) {
+      assertFalse(map.overflow.isEmpty());
+      for (Object key : map.overflow.keySet())
+        assertTrue((int) map.hops[HopscotchHashMap.hash(key) >>> shift] < 0, key.toString());
+      mappings += map.overflow.size();
+    }
+    assertEquals(mappings, map.size());
+    for (Object key : map.keySet())
+      assertTrue(map.containsKey(key));
+  }
+}
@@ -0,0 +1,134 @@
+package newhash;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.Supplier;
+
+/**
+ * Compares the single probe {@code merge}, {@code computeIfAbsent}, {@code putIfAbsent} and
+ * {@code getOrDefault} of {@link OpenHashMap} with the {@code Map} defaults it used to inherit,
+ * and with {@code HashMap}.
+ *
+ * <p>The defaults are measured on an {@code OpenHashMap} behind a wrapper that only forwards
+ * {@code get}, {@code put}, {@code remove} and {@code containsKey}, so that they probe the table
+ * and hash the key once for each of those calls.  Each workload runs a million operations on
+ * String keys drawn from a skewed distribution over 100,000 distinct keys, like the word counts
+ * and group-bys that motivated the change.
+ *
+ * <p>Run with {@code java -cp target/classes:target/test-classes newhash.InPlaceOpsBenchmark}.
+ */
+public class InPlaceOpsBenchmark {
+
+  private static final int WARMUP_ROUNDS = 10;
+  private static final int MEASURED_ROUNDS = 11;
+  private static final int OPERATIONS = 1_000_000;
+  private static final int DISTINCT_KEYS = 100_000;
+
+  /**
+   * A map whose {@code merge}, {@code compute*}, {@code putIfAbsent} and {@code getOrDefault} are
+   * the {@code Map} defaults, built on those of the map it wraps.
+   */
+  static final class InheritedDefaults<K, V> extends AbstractMap<K, V> {
+    private final Map<K, V> map;
+
+    InheritedDefaults(Map<K, V> map) {
+      this.map = map;
+    }
+
+    @Override
+    public V get(Object key) {
+      return map.get(key);
+    }
+
+    @Override
+    public V put(K key, V value) {
+      return map.put(key, value);
+    }
+
+    @Override
+    public V remove(Object key) {
+      return map.remove(key);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+      return map.containsKey(key);
+    }
+
+    @Override
+    public Set<Entry<K, V>> entrySet() {
+      return map.entrySet();
+    }
+  }
+
+  private interface Workload {
+    int run(Map<String, Object> map, String[] keys);
+  }
+
+  public static void main(String[] args) {
+    Random random = new Random(42);
+    String[] keys = new String[OPERATIONS];
+    for (int i = 0; i < OPERATIONS; i++) {
+      // Squaring a uniform variate makes the low ranks much more frequent
+      double u = random.nextDouble();
+      keys[i] = "key" + (int) (u * u * DISTINCT_KEYS);
+    }
+
+    System.out.printf("%-16s %-22s %10s%n", "operation", "map", "ns/op");
+    report("merge", keys, (map, ks) -> {
+      for (String k : ks)
+        map.merge(k, 1, (a, b) -> (Integer) a + (Integer) b);
+      return map.size();
+    });
+    report("computeIfAbsent", keys, (map, ks) -> {
+      for (String k : ks)
+        asList(map.computeIfAbsent(k, x -> new ArrayList<>())).add(k);
+      return map.size();
+    });
+    report("putIfAbsent", keys, (map, ks) -> {
+      int n = 0;
+      for (String k : ks)
+        n += map.putIfAbsent(k, k) == null ? 1 : 0;
+      return n;
+    });
+    report("getOrDefault", keys, (map, ks) -> {
+      for (int i = 0; i < ks.length; i += 2)
+        map.put(ks[i], ks[i]);
+      int n = 0;
+      for (String k : ks)
+        n += map.getOrDefault(k, k) == k ? 1 : 0;
+      return n;
+    });
+  }
+
+  @SuppressWarnings("unchecked")
+  private static List<String> asList(Object value) {
+    return (List<String>) value;
+  }
+
+  private static void report(String label, String[] keys, Workload workload) {
+    measure(label, "OpenHashMap", keys, workload, OpenHashMap::new);
+    measure(label, "OpenHashMap defaults", keys, workload,
+        () -> new InheritedDefaults<>(new OpenHashMap<>()));
+    measure(label, "HashMap", keys, workload, HashMap::new);
+  }
+
+  private static void measure(String label, String mapName, String[] keys, Workload workload,
+                              Supplier<Map<String, Object>> factory) {
+    double median = Benchmarks.median(WARMUP_ROUNDS, MEASURED_ROUNDS, () -> {
+      Map<String, Object> map = factory.get();
+      long start = System.nanoTime();
+      long done = workload.run(map, keys);
+      long time = System.nanoTime() - start;
+      if (done == 0)
+        throw new AssertionError("nothing done");
+      return time;
+    });
+    System.out.printf("%-16s %-22s %10.1f%n", label, mapName, median / OPERATIONS);
+  }
+}
@@ -0,0 +1,126 @@
+package newhash;
+
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiFunction;
+
+import static org.testng.Assert.*;
+
+/**
+ * Checks the {@code compute*}, {@code merge}, {@code putIfAbsent} and {@code getOrDefault}
+ * overrides against {@code HashMap} where the JDK tests do not reach: during an incremental
+ * resize and with mappings in the overflow.  Also checks that each call hashes the key once.
+ */
+public class InPlaceOpsTest {
+
+  /** A key that counts the calls to its {@code hashCode()}, with a hash chosen by the test. */
+  static final class CountingKey {
+    static int hashCodeCalls;
+    final int value, hash;
+
+    CountingKey(int value, int hash) {
+      this.value = value;
+      this.hash = hash;
+    }
+
+    public int hashCode() {
+      hashCodeCalls++;
+      return hash;
+    }
+
+    public boolean equals(Object o) {
+      return o instanceof CountingKey k && k.value == value;
+    }
+  }
+
+  @DataProvider
+  public Object[][] maps() {
+    OpenHashMap<Object, Integer> incremental = new OpenHashMap<>();
+    incremental.setIncrementalResize(true);
+    OpenHashMap<Object, Integer> overflowing = new OpenHashMap<>();
+    overflowing.setLongProbePolicy(OpenHashMap.LongProbePolicy.OVERFLOW);
+    overflowing.setMaxProbeLength(2);
+    return new Object[][] {
+        {"default", new OpenHashMap<>()}, {"incremental", incremental}, {"overflow", overflowing}};
+  }
+
+  @Test(dataProvider = "maps")
+  public void testAgainstHashMap(String desc, OpenHashMap<Object, Integer> map) {
+    Map<Object, Integer> expected = new HashMap<>();
+    for (int round = 0; round < 4; round++) {
+      for (int n = 0; n < 5000; n++) {
+        final int i = n;
+        // Few distinct hash codes, so the overflow map gets used
+        Object key = new CountingKey(i % 3000, i % 300);
+        int op = (i + round) % 6;
+        switch (op) {
+          case 0 -> assertEquals(map.merge(key, 1, Integer::sum),
+              expected.merge(key, 1, Integer::sum), desc);
+          case 1 -> assertEquals(map.computeIfAbsent(key, k -> i),
+              expected.computeIfAbsent(key, k -> i), desc);
+          case 2 -> assertEquals(map.computeIfPresent(key, InPlaceOpsTest::incrementOdd),
+              expected.computeIfPresent(key, InPlaceOpsTest::incrementOdd), desc);
+          case 3 -> {
+            BiFunction<Object, Integer, Integer> f =
+                (k, v) -> v == null ? Integer.valueOf(i) : negateOrRemove(v);
+            assertEquals(map.compute(key, f), expected.compute(key, f), desc);
+          }
+          case 4 -> assertEquals(map.putIfAbsent(key, i), expected.putIfAbsent(key, i), desc);
+          default -> assertEquals(map.getOrDefault(key, -1), expected.getOrDefault(key, -1), desc);
+        }
+      }
+      assertEquals(map, expected, desc);
+    }
+    if (desc.equals("overflow"))
+      assertNotNull(map.overflow, desc);
+  }
+
+  private static Integer incrementOdd(Object key, Integer v) {
+    return v % 2 == 0 ? null : v + 1;
+  }
+
+  private static Integer negateOrRemove(Integer v) {
+    return v % 3 == 0 ? null : -v;
+  }
+
+  @Test
+  public void testNullValuesCountAsAbsent() {
+    OpenHashMap<String, Integer> map = new OpenHashMap<>();
+    map.put("a", null);
+    assertNull(map.putIfAbsent("a", 1));
+    assertEquals(map.get("a"), Integer.valueOf(1));
+    map.put("b", null);
+    assertEquals(map.merge("b", 2, Integer::sum), Integer.valueOf(2));
+    map.put("c", null);
+    assertNull(map.computeIfPresent("c", (k, v) -> 3));
+    assertTrue(map.containsKey("c"));
+    assertNull(map.compute("c", (k, v) -> null));
+    assertFalse(map.containsKey("c"));
+    assertEquals(map.getOrDefault("c", 4), Integer.valueOf(4));
+    map.put("d", null);
+    assertNull(map.getOrDefault("d", 5));
+  }
+
+  @Test
+  public void testKeyIsHashedOnce() {
+    OpenHashMap<CountingKey, List<Integer>> map = new OpenHashMap<>();
+    OpenHashMap<CountingKey, Integer> counts = new OpenHashMap<>(1000);
+    int calls = 0;
+    for (int i = 0; i < 1000; i++) {
+      CountingKey key = new CountingKey(i % 100, i % 100);
+      CountingKey.hashCodeCalls = 0;
+      map.computeIfAbsent(key, k -> new ArrayList<>()).add(i);
+      counts.merge(key, 1, Integer::sum);
+      calls += CountingKey.hashCodeCalls;
+    }
+    // Growing the table rehashes from the stored hashes, not by calling hashCode()
+    assertEquals(calls, 2000);
+    assertEquals(map.size(), 100);
+    assertEquals(counts.get(new CountingKey(7, 7)), Integer.valueOf(10));
+  }
+}
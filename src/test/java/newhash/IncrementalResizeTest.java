@@ -0,0 +1,148 @@
+package newhash;
+
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Random;
+
+import static org.testng.Assert.*;
+
+/**
+ * Checks {@link OpenHashMap#setIncrementalResize(boolean) incremental resizing}: that lookups,
+ * insertions and removals made while the old table is still being migrated, and iteration,
+ * cloning and serialization started then, agree with a {@code HashMap}, and that every put or
+ * remove moves its share of the old table so that the migration finishes in a bounded number of
+ * them.
+ */
+public class IncrementalResizeTest {
+
+  /**
+   * Puts keys from {@code next} on until a put starts an incremental resize, and returns the
+   * next key.
+   */
+  private static int startResize(OpenHashMap<Integer, Integer> map, Map<Integer, Integer> expected,
+                                 int next) {
+    assertNull(map.oldHashedKeyTable);
+    while (map.oldHashedKeyTable == null) {
+      assertEquals(map.put(next, next), expected.put(next, next));
+      next++;
+    }
+    return next;
+  }
+
+  private static void check(OpenHashMap<Integer, Integer> map, Map<Integer, Integer> expected,
+                            String desc) {
+    assertEquals(map.size(), expected.size(), desc);
+    for (Map.Entry<Integer, Integer> e : expected.entrySet())
+      assertEquals(map.get(e.getKey()), e.getValue(), desc);
+    assertEquals(map, expected, desc);
+  }
+
+  @SuppressWarnings("unchecked")
+  private static OpenHashMap<Integer, Integer> serialCopy(OpenHashMap<Integer, Integer> map)
+      throws IOException, ClassNotFoundException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+      out.writeObject(map);
+    }
+    return (OpenHashMap<Integer, Integer>)
+        new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray())).readObject();
+  }
+
+  @Test
+  public void testOperationsDuringMigration() throws Exception {
+    Random random = new Random(3);
+    OpenHashMap<Integer, Integer> map = new OpenHashMap<>();
+    map.setIncrementalResize(true);
+    Map<Integer, Integer> expected = new HashMap<>();
+    int next = 0;
+    for (int resize = 0; resize < 12; resize++) {
+      next = startResize(map, expected, next);
+      int oldLength = map.oldHashedKeyTable.length;
+      assertEquals(map.hashedKeyTable.length, oldLength << 1);
+
+      // Lookups find the mappings in either table, and only puts and removes migrate
+      for (int i = 0; i < next; i += 7)
+        assertEquals(map.get(i), expected.get(i));
+      assertNotNull(map.oldHashedKeyTable);
+
+      int mutations = 0;
+      while (map.oldHashedKeyTable != null) {
+        int key = random.nextInt(next + 100);
+        switch (random.nextInt(4)) {
+          case 0 -> assertEquals(map.put(key, -key), expected.put(key, -key));
+          case 1 -> assertEquals(map.remove(key), expected.remove(key));
+          case 2 -> assertEquals(map.put(next, next), expected.put(next, next++));
+          default -> assertEquals(map.putIfAbsent(key, key), expected.putIfAbsent(key, key));
+        }
+        mutations++;
+        assertEquals(map.get(key), expected.get(key));
+      }
+      // Each put or remove moves at least 16 slots of the old table
+      assertTrue(mutations <= (oldLength + 15) / 16, mutations + " mutations for " + oldLength);
+      check(map, expected, "after resize " + resize);
+    }
+  }
+
+  @Test
+  public void testWholeMapOperationsFinishTheMigration() throws Exception {
+    for (int op = 0; op < 4; op++) {
+      OpenHashMap<Integer, Integer> map = new OpenHashMap<>();
+      map.setIncrementalResize(true);
+      Map<Integer, Integer> expected = new HashMap<>();
+      for (int i = 0; i < 1000; i++)
+        map.put(i, i);
+      expected.putAll(map);
+      int next = startResize(map, expected, 1000);
+      // Some mappings moved and some not
+      for (int i = 0; i < 10; i++)
+        assertEquals(map.remove(i), expected.remove(i));
+      assertNotNull(map.oldHashedKeyTable);
+
+      String desc = "op " + op;
+      switch (op) {
+        case 0 -> {
+          for (Iterator<Integer> it = map.keySet().iterator(); it.hasNext(); ) {
+            Integer key = it.next();
+            if (key % 3 == 0) {
+              it.remove();
+              expected.remove(key);
+            }
+          }
+        }
+        case 1 -> {
+          @SuppressWarnings("unchecked")
+          OpenHashMap<Integer, Integer> copy = (OpenHashMap<Integer, Integer>) map.clone();
+          check(copy, expected, desc + " clone");
+          // The clone is independent of the map and grows incrementally too
+          assertTrue(copy.isIncrementalResize());
+          startResize(copy, new HashMap<>(expected), next);
+          assertNull(map.oldHashedKeyTable);
+        }
+        case 2 -> {
+          OpenHashMap<Integer, Integer> copy = serialCopy(map);
+          check(copy, expected, desc + " serialization");
+          assertTrue(copy.isIncrementalResize());
+        }
+        default -> {
+          assertTrue(map.containsValue(next - 1));
+          map.replaceAll((k, v) -> v + 1);
+          expected.replaceAll((k, v) -> v + 1);
+        }
+      }
+      assertNull(map.oldHashedKeyTable, desc);
+      check(map, expected, desc);
+      BuilderTest.checkRobinHood(map);
+      // And the map goes on growing incrementally
+      startResize(map, expected, next);
+      check(map, expected, desc);
+    }
+  }
+}
@@ -0,0 +1,264 @@
+package newhash;
+
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.Consumer;
+
+import static org.testng.Assert.*;
+
+/**
+ * Checks {@link OpenHashMap#beginLazyInsert(OpenHashMap.DuplicateKeyPolicy) lazy insert mode}:
+ * that the index built from the log holds what a sequence of {@code put}s or
+ * {@code putIfAbsent}s would have left, under each duplicate key policy, with repeated and null
+ * keys and mappings already in the map, that every operation that reads the map first builds
+ * it, that the build applies the long probe policy, and that loading asks no key for its hash
+ * code more than once.
+ */
+public class LazyInsertTest {
+
+  @DataProvider
+  public Object[][] policies() {
+    List<Object[]> cases = new ArrayList<>();
+    for (OpenHashMap.DuplicateKeyPolicy policy : OpenHashMap.DuplicateKeyPolicy.values())
+      for (int n : new int[] {0, 1, 1000, 100_000})
+        cases.add(new Object[] {policy, n});
+    return cases.toArray(new Object[0][]);
+  }
+
+  /**
+   * Returns some keys, {@code n} of them with repeats, null among them, and some with one of a
+   * few hash codes.
+   */
+  private static Object[] keys(int n, long seed) {
+    Random random = new Random(seed);
+    Object[] keys = new Object[n];
+    for (int i = 0; i < n; i++) {
+      int value = random.nextInt(Math.max(1, n));
+      keys[i] = value == 0 ? null
+          : value % 50 == 0 ? new LongProbePolicyTest.Key(value, value % 7) : (Object) value;
+    }
+    return keys;
+  }
+
+  @Test(dataProvider = "policies")
+  public void testAgainstPut(OpenHashMap.DuplicateKeyPolicy policy, int n) {
+    Object[] keys = keys(n, n);
+    OpenHashMap<Object, Integer> map = new OpenHashMap<>();
+    Map<Object, Integer> expected = new HashMap<>();
+    // Mappings already in the map count as put first
+    for (int i = 0; i < n / 10; i++) {
+      map.put(keys[i], -i);
+      expected.put(keys[i], -i);
+    }
+    map.beginLazyInsert(policy);
+    assertTrue(map.isLazyInsert());
+    boolean repeated = false;
+    for (int i = 0; i < n; i++) {
+      Integer value = i % 11 == 0 ? null : i;
+      assertNull(map.put(keys[i], value));
+      if (policy == OpenHashMap.DuplicateKeyPolicy.LAST_WINS)
+        expected.put(keys[i], value);
+      else if (expected.containsKey(keys[i]))
+        repeated = true;
+      else
+        expected.put(keys[i], value);
+    }
+    assertTrue(map.isLazyInsert());
+
+    if (policy == OpenHashMap.DuplicateKeyPolicy.REJECT && repeated) {
+      IllegalStateException e = expectThrows(IllegalStateException.class, () -> map.get(-1));
+      assertTrue(e.getMessage().startsWith("Duplicate key"), e.getMessage());
+    } else {
+      assertNull(map.get(-1));
+    }
+    // Built all the same, with the first value of each key
+    assertFalse(map.isLazyInsert());
+    assertEquals(map.size(), expected.size());
+    assertEquals(map, expected);
+    for (Map.Entry<Object, Integer> e : expected.entrySet())
+      assertEquals(map.get(e.getKey()), e.getValue());
+    BuilderTest.checkRobinHood(map);
+
+    // The built map goes on working like any other
+    for (int i = 0; i < n; i += 3)
+      assertEquals(map.remove(keys[i]), expected.remove(keys[i]));
+    for (int i = 0; i < n; i += 5)
+      assertEquals(map.put(keys[i], -i), expected.put(keys[i], -i));
+    assertEquals(map, expected);
+  }
+
+  @Test
+  public void testEveryReadBuildsTheIndex() {
+    Map<String, Consumer<OpenHashMap<Integer, String>>> reads = new HashMap<>();
+    reads.put("get", m -> assertEquals(m.get(7), "7"));
+    reads.put("getOrDefault", m -> assertEquals(m.getOrDefault(7, "x"), "7"));
+    reads.put("containsKey", m -> assertTrue(m.containsKey(7)));
+    reads.put("containsValue", m -> assertTrue(m.containsValue("7")));
+    reads.put("size", m -> assertEquals(m.size(), 100));
+    reads.put("isEmpty", m -> assertFalse(m.isEmpty()));
+    reads.put("keySet().size", m -> assertEquals(m.keySet().size(), 100));
+    reads.put("iterator", m -> assertEquals(m.entrySet().stream().count(), 100));
+    reads.put("keySet().stream().forEach", m -> {
+      Set<Integer> keys = new HashSet<>();
+      m.keySet().stream().forEach(keys::add);
+      assertEquals(keys, expected().keySet());
+    });
+    reads.put("entrySet().spliterator().forEachRemaining", m -> {
+      Map<Integer, String> entries = new HashMap<>();
+      m.entrySet().spliterator().forEachRemaining(e -> entries.put(e.getKey(), e.getValue()));
+      assertEquals(entries, expected());
+    });
+    reads.put("values().spliterator().forEachRemaining", m -> {
+      List<String> values = new ArrayList<>();
+      m.values().spliterator().forEachRemaining(values::add);
+      assertEquals(values.size(), 100);
+    });
+    reads.put("keySet().spliterator().tryAdvance",
+        m -> assertTrue(m.keySet().spliterator().tryAdvance(k -> assertNotNull(k))));
+    reads.put("values().spliterator().tryAdvance",
+        m -> assertTrue(m.values().spliterator().tryAdvance(v -> assertNotNull(v))));
+    reads.put("entrySet().spliterator().tryAdvance", m -> assertTrue(m.entrySet().spliterator()
+        .tryAdvance(e -> assertEquals(e.getValue(), e.getKey().toString()))));
+    reads.put("flyweightEntrySpliterator().tryAdvance", m -> assertTrue(
+        m.flyweightEntrySpliterator()
+            .tryAdvance(e -> assertEquals(e.getValue(), e.getKey().toString()))));
+    reads.put("forEach", m -> m.forEach((k, v) -> assertEquals(v, k.toString())));
+    reads.put("cursor", m -> assertTrue(m.cursor().advance()));
+    reads.put("hashCode", m -> assertEquals(m.hashCode(), expected().hashCode()));
+    reads.put("equals", m -> assertEquals(m, expected()));
+    reads.put("toString", m -> assertTrue(m.toString().contains("7=7")));
+    reads.put("clone", m -> assertEquals(m.clone(), expected()));
+    reads.put("remove", m -> assertEquals(m.remove(7), "7"));
+    reads.put("putIfAbsent", m -> assertEquals(m.putIfAbsent(7, "x"), "7"));
+    reads.put("merge", m -> assertEquals(m.merge(7, "x", String::concat), "7x"));
+    reads.put("compute", m -> assertEquals(m.compute(7, (k, v) -> v + "x"), "7x"));
+    reads.put("trimToSize", OpenHashMap::trimToSize);
+    reads.put("endLazyInsert", OpenHashMap::endLazyInsert);
+    for (Map.Entry<String, Consumer<OpenHashMap<Integer, String>>> read : reads.entrySet()) {
+      OpenHashMap<Integer, String> map = new OpenHashMap<>();
+      map.beginLazyInsert(OpenHashMap.DuplicateKeyPolicy.LAST_WINS);
+      for (int i = 0; i < 100; i++)
+        map.put(i, "x");
+      for (int i = 0; i < 100; i++)
+        map.put(i, Integer.toString(i));
+      read.getValue().accept(map);
+      assertFalse(map.isLazyInsert(), read.getKey());
+      assertEquals(map.get(8), "8", read.getKey());
+      BuilderTest.checkRobinHood(map);
+    }
+  }
+
+  private static Map<Integer, String> expected() {
+    Map<Integer, String> expected = new HashMap<>();
+    for (int i = 0; i < 100; i++)
+      expected.put(i, Integer.toString(i));
+    return expected;
+  }
+
+  @Test
+  public void testLoadingHashesEachKeyOnce() {
+    List<InPlaceOpsTest.CountingKey> keys = new ArrayList<>();
+    for (int i = 0; i < 20_000; i++)
+      keys.add(new InPlaceOpsTest.CountingKey(i, i * 31 + 1));
+    OpenHashMap<InPlaceOpsTest.CountingKey, Integer> source = new OpenHashMap<>();
+    for (int i = 10_000; i < 20_000; i++)
+      source.put(keys.get(i), -i);
+
+    InPlaceOpsTest.CountingKey.hashCodeCalls = 0;
+    OpenHashMap<InPlaceOpsTest.CountingKey, Integer> map = new OpenHashMap<>();
+    map.beginLazyInsert(OpenHashMap.DuplicateKeyPolicy.FIRST_WINS);
+    for (int i = 0; i < 15_000; i++)
+      map.put(keys.get(i), i);
+    // Appended with the stored hashes of the source, and kept only where not put before
+    map.putAll(source);
+    assertTrue(map.isLazyInsert());
+    assertEquals(map.size(), 20_000);
+    assertEquals(InPlaceOpsTest.CountingKey.hashCodeCalls, 15_000);
+    for (int i = 0; i < 20_000; i++)
+      assertEquals(map.get(keys.get(i)), Integer.valueOf(i < 15_000 ? i : -i));
+  }
+
+  @Test
+  public void testBulkPutsClearAndSizing() {
+    OpenHashMap<Integer, Integer> map = new OpenHashMap<>();
+    map.beginLazyInsert(OpenHashMap.DuplicateKeyPolicy.LAST_WINS);
+    map.ensureCapacity(100_000);
+    Integer[] keys = new Integer[1000];
+    for (int i = 0; i < keys.length; i++)
+      keys[i] = i;
+    map.putAll(keys, keys);
+    Map<Integer, Integer> other = new HashMap<>();
+    for (int i = 500; i < 1500; i++)
+      other.put(i, -i);
+    map.putAll(other);
+    assertTrue(map.isLazyInsert());
+    assertEquals(map.size(), 1500);
+    assertEquals(map.get(700), Integer.valueOf(-700));
+    assertEquals(map.get(300), Integer.valueOf(300));
+    assertEquals(map.hashedKeyTable.length, new OpenHashMap<>(100_000).hashedKeyTable.length);
+
+    // Clearing empties the log and stays in the mode
+    map.beginLazyInsert(OpenHashMap.DuplicateKeyPolicy.REJECT);
+    map.put(1, 1);
+    map.clear();
+    assertTrue(map.isLazyInsert());
+    map.put(1, 2);
+    assertEquals(map, Map.of(1, 2));
+    assertFalse(map.isLazyInsert());
+    assertThrows(NullPointerException.class, () -> map.beginLazyInsert(null));
+  }
+
+  @Test
+  public void testOverflowAfterBuild() {
+    OpenHashMap<Object, Integer> map = new OpenHashMap<>();
+    map.setLongProbePolicy(OpenHashMap.LongProbePolicy.OVERFLOW);
+    map.setMaxProbeLength(2);
+    Map<Object, Integer> expected = new HashMap<>();
+    for (int i = 0; i < 200; i++) {
+      Object key = i % 2 == 0 ? new LongProbePolicyTest.Key(i, i % 5) : (Object) i;
+      map.put(key, i);
+      expected.put(key, i);
+    }
+    map.beginLazyInsert(OpenHashMap.DuplicateKeyPolicy.LAST_WINS);
+    for (int i = 100; i < 300; i++) {
+      Object key = i % 2 == 0 ? new LongProbePolicyTest.Key(i, i % 5) : (Object) i;
+      map.put(key, -i);
+      expected.put(key, -i);
+    }
+    assertEquals(map, expected);
+    assertNotNull(map.overflow);
+    for (Map.Entry<Object, Integer> e : expected.entrySet())
+      assertEquals(map.get(e.getKey()), e.getValue());
+  }
+
+  @Test
+  public void testLongProbePolicyAfterBuild() {
+    // Consecutive hash codes, four keys to each, laid out in one long run unless the build
+    // reseeds or grows
+    for (OpenHashMap.LongProbePolicy policy : OpenHashMap.LongProbePolicy.values()) {
+      OpenHashMap<Object, Integer> map = new OpenHashMap<>();
+      map.setLongProbePolicy(policy);
+      Map<Object, Integer> expected = new HashMap<>();
+      map.beginLazyInsert(OpenHashMap.DuplicateKeyPolicy.LAST_WINS);
+      for (int i = 0; i < 40_000; i++) {
+        Object key = new LongProbePolicyTest.Key(i, i / 4);
+        map.put(key, i);
+        expected.put(key, i);
+      }
+      assertEquals(map, expected, policy.toString());
+      assertTrue(map.getLongProbeCount() > 0, policy.toString());
+      for (Map.Entry<Object, Integer> e : expected.entrySet())
+        assertEquals(map.get(e.getKey()), e.getValue());
+      BuilderTest.checkProbeLengths(map);
+      BuilderTest.checkRobinHood(map);
+    }
+  }
+}
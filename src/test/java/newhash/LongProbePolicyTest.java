@@ -0,0 +1,169 @@
+package newhash;
+
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.IntFunction;
+
+import static org.testng.Assert.*;
+
+/**
+ * Inserts pathological hash sequences under each {@link OpenHashMap.LongProbePolicy} and checks
+ * that the map stays correct, reports the long probes, and keeps probe lengths bounded where the
+ * policy can.
+ */
+public class LongProbePolicyTest {
+
+  private static final int KEYS = 4000;
+  private static final int MAX_PROBE_LENGTH = 8;
+
+  /** A key whose hash code is chosen by the test. */
+  static final class Key {
+    final int value, hash;
+
+    Key(int value, int hash) {
+      this.value = value;
+      this.hash = hash;
+    }
+
+    public int hashCode() {
+      return hash;
+    }
+
+    public boolean equals(Object o) {
+      return o instanceof Key k && k.value == value;
+    }
+
+    public String toString() {
+      return "Key" + value;
+    }
+  }
+
+  @DataProvider
+  public Object[][] sequences() {
+    List<Object[]> cases = new ArrayList<>();
+    for (OpenHashMap.LongProbePolicy policy : OpenHashMap.LongProbePolicy.values()) {
+      // Growing only shortens the runs it was asked to when it happens, and is rationed
+      boolean bounded = policy != OpenHashMap.LongProbePolicy.GROW;
+      // Hash codes that differ only in their high bits
+      cases.add(new Object[] {policy, "high bits", bounded,
+          (IntFunction<Object>) i -> new Key(i, i << 20)});
+      // Hash codes that agree in their low bits
+      cases.add(new Object[] {policy, "low bits", bounded,
+          (IntFunction<Object>) i -> new Key(i, i << 10)});
+      // Strings differing in their last characters, which have clustered hash codes
+      cases.add(new Object[] {policy, "strings", bounded, (IntFunction<Object>) i -> "k" + i});
+      // Every key has the same hash code, so only the overflow bounds the probes
+      cases.add(new Object[] {policy, "one hash", bounded,
+          (IntFunction<Object>) i -> new Key(i, 42)});
+    }
+    return cases.toArray(new Object[0][]);
+  }
+
+  @Test(dataProvider = "sequences")
+  public void testPathologicalHashes(OpenHashMap.LongProbePolicy policy, String desc,
+                                     boolean bounded, IntFunction<Object> keys) {
+    OpenHashMap<Object, Integer> map = new OpenHashMap<>();
+    map.setLongProbePolicy(policy);
+    map.setMaxProbeLength(MAX_PROBE_LENGTH);
+    long[] reported = new long[1];
+    map.setLongProbeListener(probeLength -> {
+      assertTrue(probeLength > MAX_PROBE_LENGTH, desc + ": reported " + probeLength);
+      reported[0]++;
+    });
+    Map<Object, Integer> expected = new HashMap<>();
+
+    for (int i = 0; i < KEYS; i++) {
+      Object key = keys.apply(i);
+      assertEquals(map.put(key, i), expected.put(key, i), desc);
+    }
+    for (int i = 0; i < KEYS; i += 3) {
+      Object key = keys.apply(i);
+      assertEquals(map.remove(key), expected.remove(key), desc);
+    }
+    for (int i = 0; i < KEYS; i += 2) {
+      Object key = keys.apply(i);
+      assertEquals(map.put(key, -i), expected.put(key, -i), desc);
+    }
+
+    assertEquals(map, expected, desc);
+    assertEquals(expected, map, desc);
+    assertEquals(map.hashCode(), expected.hashCode(), desc);
+    for (int i = 0; i < KEYS; i++) {
+      Object key = keys.apply(i);
+      assertEquals(map.get(key), expected.get(key), desc);
+      assertEquals(map.containsKey(key), expected.containsKey(key), desc);
+    }
+    assertEquals(new HashMap<>(map), expected, desc);
+    assertEquals(map.keySet().stream().filter(expected::containsKey).count(), expected.size(),
+        desc);
+
+    assertTrue(map.getLongProbeCount() > 0, desc + ": no long probes reported");
+    assertEquals(reported[0], map.getLongProbeCount(), desc);
+    if (bounded) {
+      int longest = longestProbe(map);
+      assertTrue(longest <= MAX_PROBE_LENGTH * 2,
+          desc + ": probe length " + longest + " with " + policy);
+    }
+    if (policy == OpenHashMap.LongProbePolicy.OVERFLOW)
+      assertTrue(longestProbe(map) <= MAX_PROBE_LENGTH, desc);
+    if (policy == OpenHashMap.LongProbePolicy.GROW)
+      assertTrue(map.hashedKeyTable.length > 2 * map.size(), desc + ": did not grow early");
+  }
+
+  @Test
+  public void testIteratorRemovesFromOverflow() {
+    OpenHashMap<Object, Integer> map = new OpenHashMap<>();
+    map.setLongProbePolicy(OpenHashMap.LongProbePolicy.OVERFLOW);
+    map.setMaxProbeLength(2);
+    for (int i = 0; i < 100; i++)
+      map.put(new Key(i, 7), i);
+    assertNotNull(map.overflow);
+
+    for (Iterator<Map.Entry<Object, Integer>> it = map.entrySet().iterator(); it.hasNext(); ) {
+      Map.Entry<Object, Integer> e = it.next();
+      if (e.getValue() % 2 == 0)
+        it.remove();
+      else
+        e.setValue(-e.getValue());
+    }
+    assertEquals(map.size(), 50);
+    for (int i = 0; i < 100; i++)
+      assertEquals(map.get(new Key(i, 7)), i % 2 == 0 ? null : Integer.valueOf(-i));
+
+    map.keySet().removeIf(Objects::nonNull);
+    assertTrue(map.isEmpty());
+    assertNull(map.overflow);
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testMaxProbeLengthMustBePositive() {
+    new OpenHashMap<>().setMaxProbeLength(0);
+  }
+
+  @Test(expectedExceptions = NullPointerException.class)
+  public void testPolicyMustNotBeNull() {
+    new OpenHashMap<>().setLongProbePolicy(null);
+  }
+
+  /**
+   * Returns the largest number of slots any mapping in the table is from its home.
+   */
+  private static int longestProbe(OpenHashMap<?, ?> map) {
+    map.completeResize();
+    int[] hashes = map.hashedKeyTable;
+    int len = hashes.length, longest = 0;
+    for (int i = 0; i < len; i++) {
+      if (hashes[i] != OpenHashMap.EMPTY_HASH)
+        longest = Math.max(longest,
+            OpenHashMap.getHops(i, len, OpenHashMap.getIndex(hashes[i], len)));
+    }
+    return longest;
+  }
+}
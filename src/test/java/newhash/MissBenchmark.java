@@ -0,0 +1,102 @@
+package newhash;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Measures lookups of absent keys in a table at 60% load, where the Robin Hood runs are long
+ * enough for a probe that runs on to the end of the run to cost noticeably more than one that
+ * stops at the first mapping nearer its home than the wanted key.
+ *
+ * <p>Every lookup method shares the one probe, so {@code containsKey}, {@code get} and
+ * {@code remove} of absent keys should cost about the same, and about as much as a hit.
+ *
+ * <p>Run with {@code java -Xmx2g -cp target/classes:target/test-classes newhash.MissBenchmark}.
+ */
+public class MissBenchmark {
+
+  private static final int WARMUP_ROUNDS = 10;
+  private static final int MEASURED_ROUNDS = 11;
+
+  /** 60% of a table of 2<sup>20</sup> slots, which is not resized until 2/3 load. */
+  private static final int ENTRIES = (int) ((1 << 20) * 0.6);
+
+  private interface Lookup {
+    int run(Map<Object, Object> map, Object[] keys);
+  }
+
+  public static void main(String[] args) {
+    Object[] present = new Object[ENTRIES];
+    Object[] absent = new Object[ENTRIES];
+    for (int i = 0; i < ENTRIES; i++) {
+      // Multiplying by an odd number scatters the keys without repeating any
+      present[i] = i * 0x2545F491;
+      absent[i] = (ENTRIES + i) * 0x2545F491;
+    }
+    Object[] presentStrings = new Object[ENTRIES];
+    Object[] absentStrings = new Object[ENTRIES];
+    for (int i = 0; i < ENTRIES; i++) {
+      presentStrings[i] = "present" + i;
+      absentStrings[i] = "absent" + i;
+    }
+
+    System.out.printf("%-8s %-22s %-12s %10s%n", "keys", "operation", "map", "ns/op");
+    report("Integer", present, absent);
+    report("String", presentStrings, absentStrings);
+  }
+
+  private static void report(String label, Object[] present, Object[] absent) {
+    Lookup containsKey = (map, keys) -> {
+      int n = 0;
+      for (Object key : keys)
+        n += map.containsKey(key) ? 1 : 0;
+      return n;
+    };
+    Lookup get = (map, keys) -> {
+      int n = 0;
+      for (Object key : keys)
+        n += map.get(key) != null ? 1 : 0;
+      return n;
+    };
+    Lookup remove = (map, keys) -> {
+      int n = 0;
+      for (Object key : keys)
+        n += map.remove(key) != null ? 1 : 0;
+      return n;
+    };
+    Lookup removeMapping = (map, keys) -> {
+      int n = 0;
+      for (Object key : keys)
+        n += map.remove(key, key) ? 1 : 0;
+      return n;
+    };
+    for (String mapName : new String[] {"OpenHashMap", "HashMap"}) {
+      Supplier<Map<Object, Object>> factory = mapName.equals("HashMap")
+          ? () -> new HashMap<>(1 << 20) : () -> new OpenHashMap<>(ENTRIES);
+      Map<Object, Object> map = factory.get();
+      for (Object key : present)
+        map.put(key, key);
+      measure(label, "containsKey hit", mapName, map, present, containsKey, ENTRIES);
+      measure(label, "containsKey miss", mapName, map, absent, containsKey, 0);
+      measure(label, "get miss", mapName, map, absent, get, 0);
+      measure(label, "remove miss", mapName, map, absent, remove, 0);
+      measure(label, "remove(k, v) miss", mapName, map, absent, removeMapping, 0);
+    }
+  }
+
+  private static void measure(String label, String operation, String mapName,
+                              Map<Object, Object> map, Object[] keys, Lookup lookup,
+                              int expected) {
+    double median = Benchmarks.median(WARMUP_ROUNDS, MEASURED_ROUNDS, () -> {
+      long start = System.nanoTime();
+      int found = lookup.run(map, keys);
+      long time = System.nanoTime() - start;
+      if (found != expected)
+        throw new AssertionError(operation + " found " + found);
+      return time;
+    });
+    System.out.printf("%-8s %-22s %-12s %10.1f%n", label, operation, mapName,
+        median / keys.length);
+  }
+}
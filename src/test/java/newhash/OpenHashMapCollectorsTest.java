@@ -0,0 +1,143 @@
+package newhash;
+
+import org.testng.annotations.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.testng.Assert.*;
+
+/**
+ * Checks {@link OpenHashMapCollectors} against the {@link Collectors} they stand in for, in
+ * sequential and parallel streams, and {@code OpenHashMap.mergeAll}, which merges the partial
+ * results without asking the keys for their hash codes.
+ */
+public class OpenHashMapCollectorsTest {
+
+  private static final int ELEMENTS = 200_000;
+
+  private static IntStream elements(boolean parallel) {
+    IntStream s = IntStream.range(0, ELEMENTS);
+    return parallel ? s.parallel() : s;
+  }
+
+  @Test
+  public void testAgainstCollectors() {
+    Function<Integer, Integer> group = i -> i % 5003;
+    for (boolean parallel : new boolean[] {false, true}) {
+      String desc = parallel ? "parallel" : "sequential";
+      // String concatenation shows that values are merged in encounter order
+      assertEquals(elements(parallel).boxed().collect(
+              OpenHashMapCollectors.toOpenHashMap(group, String::valueOf, (a, b) -> a + "," + b)),
+          elements(false).boxed().collect(
+              Collectors.toMap(group, String::valueOf, (a, b) -> a + "," + b)), desc);
+      assertEquals(elements(parallel).boxed().collect(
+              OpenHashMapCollectors.toOpenHashMap(i -> i, i -> -i)),
+          elements(false).boxed().collect(Collectors.toMap(i -> i, i -> -i)), desc);
+      assertEquals(elements(parallel).boxed().collect(OpenHashMapCollectors.groupingBy(group)),
+          elements(false).boxed().collect(Collectors.groupingBy(group)), desc);
+      assertEquals(elements(parallel).boxed().collect(
+              OpenHashMapCollectors.groupingBy(group, Collectors.toSet(), 6000)),
+          elements(false).boxed().collect(Collectors.groupingBy(group, Collectors.toSet())), desc);
+      assertEquals(elements(parallel).boxed().collect(OpenHashMapCollectors.counting(group)),
+          elements(false).boxed().collect(Collectors.groupingBy(group, Collectors.counting())),
+          desc);
+      assertEquals(elements(parallel).boxed().collect(
+              OpenHashMapCollectors.summingInt(group, i -> i)),
+          elements(false).boxed().collect(
+              Collectors.groupingBy(group, Collectors.summingInt(i -> i))), desc);
+      assertEquals(elements(parallel).boxed().collect(
+              OpenHashMapCollectors.summingLong(group, i -> (long) i * i)),
+          elements(false).boxed().collect(
+              Collectors.groupingBy(group, Collectors.summingLong(i -> (long) i * i))), desc);
+      assertEquals(elements(parallel).boxed().collect(
+              OpenHashMapCollectors.summingDouble(group, i -> 0.5)),
+          elements(false).boxed().collect(
+              Collectors.groupingBy(group, Collectors.summingDouble(i -> 0.5))), desc);
+    }
+  }
+
+  @Test
+  public void testDuplicateKeys() {
+    for (boolean parallel : new boolean[] {false, true}) {
+      Stream<Integer> s = elements(parallel).boxed();
+      IllegalStateException e = expectThrows(IllegalStateException.class,
+          () -> s.collect(OpenHashMapCollectors.toOpenHashMap(i -> i % 100_000, i -> i)));
+      // Thrown in another thread, it is rethrown as a copy whose message starts with its class.
+      // No leaf of the parallel stream holds a key twice, so the combiner finds the duplicate,
+      // and names it as the accumulator does
+      assertTrue(e.getMessage().matches(
+          "(?s).*Duplicate key \\d+ \\(attempted merging values \\d+ and \\d+\\)"),
+          e.getMessage());
+    }
+    assertThrows(NullPointerException.class, () -> Stream.of(1, 2).collect(
+        OpenHashMapCollectors.groupingBy(i -> i == 2 ? null : i)));
+    assertThrows(IllegalArgumentException.class, () -> OpenHashMapCollectors.counting(i -> i, -1));
+  }
+
+  @Test
+  public void testSizedFromExpectedSize() {
+    OpenHashMap<Integer, Long> map = IntStream.range(0, 10).boxed()
+        .collect(OpenHashMapCollectors.counting(i -> i, 100_000));
+    assertEquals(map.hashedKeyTable.length, new OpenHashMap<>(100_000).hashedKeyTable.length);
+    assertEquals(map.size(), 10);
+  }
+
+  @Test
+  public void testPartialResultsAreMergedWithoutHashing() {
+    List<InPlaceOpsTest.CountingKey> keys = IntStream.range(0, ELEMENTS)
+        .mapToObj(i -> new InPlaceOpsTest.CountingKey(i % 20_000, (i % 20_000) * 31 + 1))
+        .toList();
+    InPlaceOpsTest.CountingKey.hashCodeCalls = 0;
+    // Each element is hashed once as it is accumulated, and never again
+    OpenHashMap<InPlaceOpsTest.CountingKey, Long> counts = keys.stream()
+        .collect(OpenHashMapCollectors.counting(k -> k));
+    assertEquals(InPlaceOpsTest.CountingKey.hashCodeCalls, ELEMENTS);
+    assertEquals(counts.size(), 20_000);
+
+    // The counter is not thread safe, so the partial maps are built here
+    OpenHashMap<InPlaceOpsTest.CountingKey, Long> left = new OpenHashMap<>();
+    OpenHashMap<InPlaceOpsTest.CountingKey, Long> right = new OpenHashMap<>();
+    for (int i = 0; i < 30_000; i++)
+      left.put(keys.get(i), 1L);
+    for (int i = 10_000; i < 60_000; i++)
+      right.put(keys.get(i), 2L);
+    InPlaceOpsTest.CountingKey.hashCodeCalls = 0;
+    left.mergeAll(right, (k, a, b) -> a + b);
+    assertEquals(InPlaceOpsTest.CountingKey.hashCodeCalls, 0);
+    assertEquals(left.size(), 20_000);
+    for (int i = 0; i < 20_000; i++)
+      assertEquals(left.get(keys.get(i)), Long.valueOf(3), "key " + i);
+  }
+
+  @Test
+  public void testMergeAll() {
+    OpenHashMap<Integer, String> map = new OpenHashMap<>();
+    OpenHashMap<Integer, String> other = new OpenHashMap<>();
+    Map<Integer, String> expected = new HashMap<>();
+    for (int i = 0; i < 3000; i++) {
+      map.put(i, "a" + i);
+      expected.put(i, "a" + i);
+    }
+    for (int i = 2000; i < 6000; i++)
+      other.put(i, "b" + i);
+    other.setHashSeeding(OpenHashMap.HashSeeding.PER_INSTANCE);
+    // Merged differently seeded, and dropping the keys whose value in this map ends in 0
+    map.mergeAll(other, (k, a, b) -> {
+      assertEquals(a.substring(1), k.toString());
+      return a.endsWith("0") ? null : a + b;
+    });
+    for (int i = 2000; i < 6000; i++)
+      expected.merge(i, "b" + i, (a, b) -> a.endsWith("0") ? null : a + b);
+    assertEquals(map, expected);
+
+    OpenHashMap<Integer, String> empty = new OpenHashMap<>();
+    empty.mergeAll(other, (k, a, b) -> { throw new AssertionError(); });
+    assertEquals(empty, other);
+  }
+}
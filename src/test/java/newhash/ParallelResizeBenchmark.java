@@ -0,0 +1,67 @@
+package newhash;
+
+import java.util.Arrays;
+
+/**
+ * Measures {@link OpenHashMap#rehash(int)} of a large table at increasing parallelism.
+ *
+ * <p>Each sample fills a map to just below its resize threshold and times one call of
+ * {@code rehash}, which doubles the table.  Parallelism goes up in powers of two to the number of
+ * available processors.
+ *
+ * <p>Run with a large heap, eg {@code java -Xmx8g -cp target/classes:target/test-classes
+ * newhash.ParallelResizeBenchmark [capacity]}.
+ */
+public class ParallelResizeBenchmark {
+
+  private static final int WARMUP_ROUNDS = 3;
+  private static final int MEASURED_ROUNDS = 7;
+
+  public static void main(String[] args) {
+    final int capacity = args.length > 0 ? Integer.parseInt(args[0]) : 1 << 23;
+    final int entries = (capacity << 1) / 3;
+    Integer[] keys = new Integer[entries];
+    for (int i = 0; i < entries; i++)
+      keys[i] = i * 0x9E3779B9;
+    OpenHashMap<Integer, Integer> map = new OpenHashMap<>((capacity - 1) / 3 * 2);
+    for (Integer key : keys)
+      map.put(key, key);
+    if (map.hashedKeyTable.length != capacity)
+      throw new AssertionError("unexpected capacity " + map.hashedKeyTable.length);
+    final int[] hashes = map.hashedKeyTable;
+    final Object[] table = map.table;
+
+    System.out.printf("%-12s %10s %10s %12s%n", "parallelism", "capacity", "entries", "ms");
+    int processors = Runtime.getRuntime().availableProcessors();
+    for (int parallelism = 1; ; parallelism <<= 1) {
+      parallelism = Math.min(parallelism, processors);
+      for (int round = 0; round < WARMUP_ROUNDS; round++)
+        timeRehash(map, hashes, table, parallelism);
+      long[] samples = new long[MEASURED_ROUNDS];
+      for (int round = 0; round < MEASURED_ROUNDS; round++)
+        samples[round] = timeRehash(map, hashes, table, parallelism);
+      Arrays.sort(samples);
+      System.out.printf("%-12d %10d %10d %12.2f%n",
+          parallelism, capacity, entries, samples[MEASURED_ROUNDS / 2] / 1e6);
+      if (parallelism == processors)
+        break;
+    }
+  }
+
+  /**
+   * Returns the time in nanoseconds to rehash the map after restoring its original table.
+   */
+  private static long timeRehash(OpenHashMap<Integer, Integer> map, int[] hashes, Object[] table,
+                                 int parallelism) {
+    map.hashedKeyTable = hashes;
+    map.table = table;
+    // Keep collection of the previous sample out of the measurement
+    System.gc();
+    long start = System.nanoTime();
+    map.rehash(parallelism);
+    long elapsed = System.nanoTime() - start;
+    if (map.hashedKeyTable.length != hashes.length << 1)
+      throw new AssertionError("rehash did not grow the table");
+    return elapsed;
+  }
+}
@@ -0,0 +1,110 @@
+package newhash;
+
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.testng.Assert.*;
+
+/**
+ * Checks that migrating the mappings on a pool, with {@link OpenHashMap#rehash(int)} or once
+ * the table reaches the {@link OpenHashMap#setParallelResizeThreshold(int) parallel resize
+ * threshold}, leaves the same valid Robin Hood table that migrating in the calling thread does,
+ * with runs piled up across the chunk boundaries and round the end of the table.
+ */
+public class ParallelTransferTest {
+
+  /**
+   * Returns {@code n} keys for a table of length {@code len}: runs of keys with one hash code
+   * whose homes are just before each sixteenth of the table and its end, so that they cross the
+   * chunk boundaries and wrap round, and integers for the rest.
+   */
+  private static List<Object> keys(int n, int len) {
+    List<Object> keys = new ArrayList<>();
+    for (int c = 1; c <= 16; c++) {
+      int home = c * (len / 16) - 5;
+      // The default mixer is its own inverse
+      int hash = home ^ (home >>> 16);
+      for (int j = 0; j < 20; j++)
+        keys.add(new LongProbePolicyTest.Key(home * 100 + j, hash));
+    }
+    for (int i = keys.size(); i < n; i++)
+      keys.add(i);
+    return keys;
+  }
+
+  @Test
+  public void testRehashInParallel() {
+    int n = 500_000;
+    OpenHashMap<Object, Integer> map = new OpenHashMap<>(n);
+    int len = map.hashedKeyTable.length;
+    // Enough chunks of the old table for every task of 4 threads
+    assertTrue(len >= 16 * (1 << 16), "table of " + len);
+    Map<Object, Integer> expected = new HashMap<>();
+    for (Object key : keys(n, len)) {
+      map.put(key, expected.size());
+      expected.put(key, expected.size());
+    }
+    assertEquals(map.hashedKeyTable.length, len);
+    @SuppressWarnings("unchecked")
+    OpenHashMap<Object, Integer> serial = (OpenHashMap<Object, Integer>) map.clone();
+
+    map.rehash(4);
+    serial.rehash(1);
+    assertEquals(map.hashedKeyTable.length, len << 1);
+    assertTrue(Arrays.equals(map.hashedKeyTable, serial.hashedKeyTable));
+    assertTrue(Arrays.equals(map.table, serial.table));
+    BuilderTest.checkRobinHood(map);
+    assertEquals(map, expected);
+    for (Map.Entry<Object, Integer> e : expected.entrySet())
+      assertEquals(map.get(e.getKey()), e.getValue());
+
+    // And again from the doubled table
+    map.rehash(4);
+    BuilderTest.checkRobinHood(map);
+    assertEquals(map, expected);
+  }
+
+  @Test
+  public void testLowParallelResizeThreshold() {
+    // On a machine whose common pool has a single thread the resizes still migrate in the calling
+    // thread, and this only checks that the threshold changes nothing
+    int n = 600_000;
+    OpenHashMap<Object, Integer> map = new OpenHashMap<>();
+    map.setParallelResizeThreshold(1);
+    assertEquals(map.getParallelResizeThreshold(), 1);
+    OpenHashMap<Object, Integer> serial = new OpenHashMap<>();
+    serial.setParallelResizeThreshold(Integer.MAX_VALUE);
+    // The piled up keys make long probes while the table is small; with a random seed for each
+    // reseed the two tables would differ
+    map.setLongProbePolicy(OpenHashMap.LongProbePolicy.OVERFLOW);
+    serial.setLongProbePolicy(OpenHashMap.LongProbePolicy.OVERFLOW);
+    Map<Object, Integer> expected = new HashMap<>();
+    List<Object> keys = keys(n, 1 << 20);
+    for (int i = 0; i < n; i++) {
+      Object key = keys.get(i);
+      assertEquals(map.put(key, i), expected.put(key, i));
+      serial.put(key, i);
+      if (i % 3 == 0) {
+        Object removed = keys.get(i / 2);
+        assertEquals(map.remove(removed), expected.remove(removed));
+        serial.remove(removed);
+      }
+    }
+    assertTrue(map.hashedKeyTable.length > 2 << 16, "parallel resizes need more than one chunk");
+    assertTrue(Arrays.equals(map.hashedKeyTable, serial.hashedKeyTable), "parallelism "
+        + ForkJoinPool.getCommonPoolParallelism());
+    assertTrue(Arrays.equals(map.table, serial.table));
+    BuilderTest.checkRobinHood(map);
+    assertEquals(map, expected);
+    for (Map.Entry<Object, Integer> e : expected.entrySet())
+      assertEquals(map.get(e.getKey()), e.getValue());
+
+    assertThrows(IllegalArgumentException.class, () -> map.setParallelResizeThreshold(0));
+  }
+}
@@ -0,0 +1,67 @@
+package newhash;
+
+/**
+ * Measures hits and misses on tables at several loads, with the largest and the mean number of
+ * slots a mapping is from its home.  A lookup bounded only by the largest displacement would
+ * compare stored hashes without working out the displacement of each mapping it passes, but a
+ * miss would then probe up to one slot more than the largest, or to the end of its run, where
+ * the Robin Hood bound stops it after about the mean.
+ *
+ * <p>The table has 2<sup>22</sup> slots, or 2 to the power of the argument.  Run with
+ * {@code java -Xmx3g -cp target/classes:target/test-classes newhash.ProbeBoundBenchmark [bits]}.
+ */
+public class ProbeBoundBenchmark {
+
+  private static final int WARMUP_ROUNDS = 10;
+  private static final int MEASURED_ROUNDS = 11;
+
+  public static void main(String[] args) {
+    final int slots = 1 << (args.length > 0 ? Integer.parseInt(args[0]) : 22);
+    System.out.printf("%-6s %8s %8s %9s %9s %9s%n", "load", "max", "mean", "hit ns",
+        "miss ns", "String ns");
+    for (double load : new double[] {0.4, 0.5, 0.6, 0.66}) {
+      int entries = (int) (slots * load);
+      Object[] present = new Object[entries];
+      Object[] absent = new Object[entries];
+      Object[] strings = new Object[entries];
+      for (int i = 0; i < entries; i++) {
+        // Multiplying by an odd number scatters the keys without repeating any
+        present[i] = i * 0x2545F491;
+        absent[i] = (entries + i) * 0x2545F491;
+        strings[i] = "absent" + i;
+      }
+      OpenHashMap<Object, Object> map = new OpenHashMap<>(slots * 5 / 8);
+      for (Object key : present)
+        map.put(key, key);
+      if (map.hashedKeyTable.length != slots)
+        throw new AssertionError("table of " + map.hashedKeyTable.length + " slots");
+
+      int[] hashes = map.hashedKeyTable;
+      long total = 0;
+      int longest = 0;
+      for (int i = 0; i < slots; i++) {
+        if (hashes[i] != OpenHashMap.EMPTY_HASH) {
+          int hops = OpenHashMap.getHops(i, slots, OpenHashMap.getIndex(hashes[i], slots));
+          total += hops;
+          longest = Math.max(longest, hops);
+        }
+      }
+      System.out.printf("%-6.2f %8d %8.2f %9.1f %9.1f %9.1f%n", load, longest,
+          total / (double) entries, measure(map, present, entries), measure(map, absent, 0),
+          measure(map, strings, 0));
+    }
+  }
+
+  private static double measure(OpenHashMap<Object, Object> map, Object[] keys, int expected) {
+    return Benchmarks.median(WARMUP_ROUNDS, MEASURED_ROUNDS, () -> {
+      long start = System.nanoTime();
+      int found = 0;
+      for (Object key : keys)
+        found += map.get(key) != null ? 1 : 0;
+      long time = System.nanoTime() - start;
+      if (found != expected)
+        throw new AssertionError("found " + found);
+      return time;
+    }) / keys.length;
+  }
+}
@@ -0,0 +1,130 @@
+package newhash;
+
+import newhash.ProbingHashMap.ProbeSequence;
+
+import java.util.Map;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+
+/**
+ * Compares the probe sequences of {@link ProbingHashMap} with the Robin Hood linear probing of
+ * {@link OpenHashMap}, on keys whose hash codes are scattered and on keys whose hash codes
+ * cluster, with 600,000 mappings in a table of 2<sup>20</sup> slots, a little under the load at
+ * which both would grow.
+ *
+ * <ul>
+ * <li><i>random</i>: integers scattered by multiplying by an odd constant.
+ * <li><i>blocks</i>: sequential ids from 64 ranges 2<sup>24</sup> apart, whose homes, after the
+ *     high half of the hash code is folded onto the low half, are 64 overlapping blocks of
+ *     consecutive slots 256 apart.
+ * <li><i>timestamps</i>: {@code Long} timestamps in nanoseconds from a clock that ticks every
+ *     microsecond, whose low 3 bits are all the same, so only every 8<sup>th</sup> slot is a
+ *     home.
+ * </ul>
+ *
+ * <p>For each, the maps are looked up with every key present, and with as many keys absent,
+ * and churned by removing the oldest key and inserting a new one as many times as there are
+ * mappings, which leaves tombstones in {@code ProbingHashMap} but not in {@code OpenHashMap},
+ * which shifts the rest of the run back.  The probe columns are the mean and the largest number
+ * of probes after the first that finding a key present takes, once the maps are filled.
+ *
+ * <p>{@code OpenHashMap} runs with its default long probe policy, so keys that build a run past
+ * its maximum probe length reseed its hashes; its long probes column counts how often.
+ *
+ * <p>Run with {@code java -Xmx3g -cp target/classes:target/test-classes
+ * newhash.ProbeSequenceBenchmark}.
+ */
+public class ProbeSequenceBenchmark {
+
+  private static final int WARMUP_ROUNDS = 3;
+  private static final int MEASURED_ROUNDS = 5;
+  private static final int ENTRIES = 150_000;
+
+  private static final String[] MAPS = {"OpenHashMap", "LINEAR", "TRIANGULAR", "DOUBLE_HASHING"};
+
+  public static void main(String[] args) {
+    System.out.printf("%-11s %-15s %9s %9s %8s %8s %9s %11s%n", "keys", "map", "mean probe",
+        "max probe", "hit ns", "miss ns", "churn ns", "long probes");
+    // Multiplying by an odd number scatters the keys without repeating any
+    report("random", i -> i * 0x2545F491);
+    report("blocks", i -> ((i & 127) << 12) + (i >>> 7));
+    report("timestamps", i -> 1_700_000_000_000_000_000L + i * 1000L);
+  }
+
+  private static void report(String label, IntFunction<Object> keyFactory) {
+    Object[] present = new Object[ENTRIES];
+    Object[] absent = new Object[ENTRIES];
+    for (int i = 0; i < ENTRIES; i++) {
+      present[i] = keyFactory.apply(i);
+      absent[i] = keyFactory.apply(ENTRIES + i);
+    }
+
+    for (String mapName : MAPS) {
+      Supplier<Map<Object, Object>> newMap = mapName.equals("OpenHashMap")
+          ? () -> new OpenHashMap<>(ENTRIES)
+          : () -> new ProbingHashMap<>(ENTRIES, ProbeSequence.valueOf(mapName));
+      Map<Object, Object> filled = newMap.get();
+      for (Object key : present)
+        filled.put(key, key);
+      int[] probes = probes(filled);
+      long longProbes = filled instanceof OpenHashMap<Object, Object> m
+          ? m.getLongProbeCount() : 0;
+
+      double[] medians = Benchmarks.medians(WARMUP_ROUNDS, MEASURED_ROUNDS, 3, times -> {
+        Map<Object, Object> map = newMap.get();
+        for (Object key : present)
+          map.put(key, key);
+
+        long start = System.nanoTime();
+        int found = 0;
+        for (Object key : present)
+          found += map.get(key) != null ? 1 : 0;
+        times[0] = System.nanoTime() - start;
+        start = System.nanoTime();
+        for (Object key : absent)
+          found += map.get(key) != null ? 1 : 0;
+        times[1] = System.nanoTime() - start;
+        start = System.nanoTime();
+        for (int i = 0; i < ENTRIES; i++) {
+          map.remove(present[i]);
+          map.put(absent[i], absent[i]);
+        }
+        times[2] = System.nanoTime() - start;
+        if (found != ENTRIES || map.size() != ENTRIES)
+          throw new AssertionError("found " + found + " of " + map.size());
+      });
+      System.out.printf("%-11s %-15s %9.2f %9d %8.1f %8.1f %9.1f %11d%n", label, mapName,
+          probes[0] / (double) ENTRIES, probes[1], medians[0] / ENTRIES, medians[1] / ENTRIES,
+          medians[2] / ENTRIES, longProbes);
+    }
+  }
+
+  /**
+   * Returns the total and the largest number of probes after the first that finding each key of
+   * the table takes.
+   */
+  private static int[] probes(Map<Object, Object> map) {
+    int total = 0, max = 0;
+    if (map instanceof OpenHashMap<Object, Object> m) {
+      int[] hashes = m.hashedKeyTable;
+      for (int i = 0; i < hashes.length; i++) {
+        if (hashes[i] != OpenHashMap.EMPTY_HASH) {
+          int hops = OpenHashMap.getHops(i, hashes.length,
+              OpenHashMap.getIndex(hashes[i], hashes.length));
+          total += hops;
+          max = Math.max(max, hops);
+        }
+      }
+    } else {
+      ProbingHashMap<Object, Object> m = (ProbingHashMap<Object, Object>) map;
+      for (int i = 0; i < m.hashes.length; i++) {
+        if (m.table[i << 1] != null) {
+          int probes = m.probeLength(i);
+          total += probes;
+          max = Math.max(max, probes);
+        }
+      }
+    }
+    return new int[] {total, max};
+  }
+}
@@ -0,0 +1,142 @@
+package newhash;
+
+import newhash.ProbingHashMap.ProbeSequence;
+import org.testng.annotations.Test;
+
+import java.util.Random;
+
+import static org.testng.Assert.*;
+
+/**
+ * Checks {@link ProbingHashMap} against {@code HashMap} with each probe sequence, that every key
+ * is found along its sequence before an empty slot and that the probe count of each sequence
+ * is right, and that tombstones are reused or cleared by rebuilding rather than growing the
+ * table.
+ */
+public class ProbingHashMapTest extends AbstractSlotHashMapTest {
+
+  @Override
+  <K,V> SlotHashMap<K,V> newMap(int expectedMaxSize, Object probeSequence) {
+    return new ProbingHashMap<>(expectedMaxSize, (ProbeSequence) probeSequence);
+  }
+
+  @Override
+  Object[] parameterValues() {
+    return ProbeSequence.values();
+  }
+
+  @Override
+  Object parameter(SlotHashMap<?,?> map) {
+    return ((ProbingHashMap<?,?>) map).getProbeSequence();
+  }
+
+  @Override
+  Object illegalParameter() {
+    return null;
+  }
+
+  @Override
+  void checkTable(SlotHashMap<?,?> map) {
+    assertTableConsistent((ProbingHashMap<?,?>) map);
+  }
+
+  @Test(dataProvider = "parameters")
+  public void testChurnReusesTombstones(ProbeSequence probeSequence) {
+    ProbingHashMap<Integer, Integer> map = new ProbingHashMap<>(1000, probeSequence);
+    int capacity = map.hashes.length;
+    // A sliding window of keys at a steady size, under half the load: removals leave
+    // tombstones that later insertions and same-capacity rebuilds clear
+    for (int i = 0; i < 200_000; i++) {
+      map.put(i * 37, i);
+      if (i >= 500)
+        assertEquals(map.remove((i - 500) * 37), Integer.valueOf(i - 500));
+    }
+    assertEquals(map.size(), 500);
+    assertEquals(map.hashes.length, capacity);
+    for (int i = 199_500; i < 200_000; i++)
+      assertEquals(map.get(i * 37), Integer.valueOf(i));
+    assertTableConsistent(map);
+  }
+
+  @Test
+  public void testLinearRemovalEmptiesRunEnd() {
+    ProbingHashMap<Integer, Integer> map = new ProbingHashMap<>(100, ProbeSequence.LINEAR);
+    int empty = map.growthLeft;
+    // Keys 1 to 10 fill slots 1 to 10, so removing them from the end leaves no tombstones
+    for (int i = 1; i <= 10; i++)
+      map.put(i, i);
+    for (int i = 5; i >= 1; i -= 2)
+      map.remove(i);
+    assertEquals(map.hashes[5], ProbingHashMap.DELETED_HASH);
+    for (int i = 10; i >= 6; i--)
+      map.remove(i);
+    assertEquals(map.hashes[5], OpenHashMap.EMPTY_HASH);
+    assertEquals(map.hashes[4], 4);
+    assertEquals(map.hashes[3], ProbingHashMap.DELETED_HASH);
+    assertEquals(map.hashes[1], ProbingHashMap.DELETED_HASH);
+    map.remove(4);
+    map.remove(2);
+    assertEquals(map.growthLeft, empty);
+    assertTableConsistent(map);
+  }
+
+  @Test
+  public void testProbeCounts() {
+    int mask = 1023, shift = 22;
+    for (ProbeSequence probeSequence : ProbeSequence.values()) {
+      Random random = new Random(3);
+      for (int n = 0; n < 100; n++) {
+        int hash = random.nextInt();
+        int home = hash & mask;
+        int i = home;
+        int stride = probeSequence.firstStride(hash, shift);
+        // Every slot is visited once in the first 1024 probes
+        boolean[] seen = new boolean[mask + 1];
+        for (int k = 0; k <= mask; k++) {
+          assertFalse(seen[i], probeSequence + " revisits " + i);
+          seen[i] = true;
+          assertEquals(probeSequence.probes(home, i, hash, shift, mask), k, probeSequence.name());
+          i = (i + stride) & mask;
+          stride += probeSequence.strideIncrement;
+        }
+      }
+    }
+  }
+
+  /**
+   * Checks that every mapping has its hash stored with it and that no slot its probe sequence
+   * passes on the way from its home is empty, with as many probes as the sequence counts, that
+   * empty and deleted slots hold nothing, and that the counts of mappings and of the empty slots
+   * left are right.
+   */
+  private static void assertTableConsistent(ProbingHashMap<?, ?> map) {
+    int capacity = map.hashes.length;
+    int mask = capacity - 1;
+    ProbeSequence probeSequence = map.getProbeSequence();
+    int mappings = 0, used = 0;
+    for (int i = 0; i < capacity; i++) {
+      Object key = map.table[i << 1];
+      int hash = map.hashes[i];
+      if (key == null) {
+        assertTrue(hash == OpenHashMap.EMPTY_HASH || hash == ProbingHashMap.DELETED_HASH,
+            "slot " + i);
+        assertNull(map.table[(i << 1) + 1], "slot " + i);
+        if (hash == ProbingHashMap.DELETED_HASH)
+          used++;
+        continue;
+      }
+      mappings++;
+      used++;
+      assertEquals(hash, ProbingHashMap.hash(key), "slot " + i);
+      int j = hash & mask, probes = 0;
+      for (int stride = probeSequence.firstStride(hash, map.strideShift); j != i;
+           j = (j + stride) & mask, stride += probeSequence.strideIncrement, probes++)
+        assertNotEquals(map.hashes[j], OpenHashMap.EMPTY_HASH, "slot " + j + " before " + i);
+      assertEquals(map.probeLength(i), probes, "slot " + i);
+    }
+    assertEquals(mappings, map.size());
+    assertEquals(map.growthLeft, capacity * 2L / 3 - used);
+    for (Object key : map.keySet())
+      assertTrue(map.containsKey(key));
+  }
+}
@@ -0,0 +1,173 @@
+package newhash;
+
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import static org.testng.Assert.*;
+
+/**
+ * Checks {@link OpenHashMap#putAll(Map)} and the copy constructor from one {@code OpenHashMap}
+ * to another against {@code HashMap}, between maps seeded, mixed and sized alike and
+ * differently, into empty and populated maps, with overflow mappings and during an incremental
+ * resize, and that no key is asked for its hash code.
+ */
+public class PutAllTest {
+
+  /**
+   * Returns a key: null for 0, an {@code Integer}, or one of a few hash codes.
+   */
+  private static Object key(int value) {
+    if (value == 0)
+      return null;
+    return value % 10 == 0 ? new LongProbePolicyTest.Key(value, value % 3) : (Object) value;
+  }
+
+  private static OpenHashMap<Object, Integer> fill(OpenHashMap<Object, Integer> map, int from,
+                                                   int to) {
+    for (int i = from; i < to; i++)
+      map.put(key(i), i % 7 == 0 ? null : i);
+    return map;
+  }
+
+  private static List<Object[]> sources() {
+    List<Object[]> sources = new ArrayList<>();
+    sources.add(new Object[] {"default", (Supplier<OpenHashMap<Object, Integer>>) OpenHashMap::new});
+    sources.add(new Object[] {"seeded", (Supplier<OpenHashMap<Object, Integer>>) () -> {
+      OpenHashMap<Object, Integer> map = new OpenHashMap<>();
+      map.setHashSeeding(OpenHashMap.HashSeeding.PER_INSTANCE);
+      return map;
+    }});
+    sources.add(new Object[] {"fibonacci", (Supplier<OpenHashMap<Object, Integer>>) () -> {
+      OpenHashMap<Object, Integer> map = new OpenHashMap<>();
+      map.setHashMixer(OpenHashMap.HashMixer.FIBONACCI);
+      return map;
+    }});
+    sources.add(new Object[] {"compact", (Supplier<OpenHashMap<Object, Integer>>) () -> {
+      OpenHashMap<Object, Integer> map = new OpenHashMap<>();
+      map.setCompactSizing(true);
+      return map;
+    }});
+    sources.add(new Object[] {"overflow", (Supplier<OpenHashMap<Object, Integer>>) () -> {
+      OpenHashMap<Object, Integer> map = new OpenHashMap<>();
+      map.setLongProbePolicy(OpenHashMap.LongProbePolicy.OVERFLOW);
+      map.setMaxProbeLength(2);
+      return map;
+    }});
+    return sources;
+  }
+
+  private static List<Object[]> targets() {
+    List<Object[]> targets = new ArrayList<>();
+    targets.add(new Object[] {"empty", (Supplier<OpenHashMap<Object, Integer>>) OpenHashMap::new});
+    targets.add(new Object[] {"empty large",
+        (Supplier<OpenHashMap<Object, Integer>>) () -> new OpenHashMap<>(100_000)});
+    targets.add(new Object[] {"populated",
+        (Supplier<OpenHashMap<Object, Integer>>) () -> fill(new OpenHashMap<>(), 2000, 4000)});
+    targets.add(new Object[] {"seeded", (Supplier<OpenHashMap<Object, Integer>>) () -> {
+      OpenHashMap<Object, Integer> map = new OpenHashMap<>();
+      map.setHashSeeding(OpenHashMap.HashSeeding.PER_INSTANCE);
+      return map;
+    }});
+    targets.add(new Object[] {"compact", (Supplier<OpenHashMap<Object, Integer>>) () -> {
+      OpenHashMap<Object, Integer> map = new OpenHashMap<>();
+      map.setCompactSizing(true);
+      return map;
+    }});
+    targets.add(new Object[] {"resizing", (Supplier<OpenHashMap<Object, Integer>>) () -> {
+      OpenHashMap<Object, Integer> map = new OpenHashMap<>();
+      map.setIncrementalResize(true);
+      for (int i = 2000; map.oldTable == null; i++)
+        map.put(key(i), i);
+      return map;
+    }});
+    return targets;
+  }
+
+  @DataProvider
+  public Object[][] pairs() {
+    List<Object[]> pairs = new ArrayList<>();
+    for (Object[] source : sources())
+      for (Object[] target : targets())
+        pairs.add(new Object[] {source[0] + " into " + target[0], source[1], target[1]});
+    return pairs.toArray(new Object[0][]);
+  }
+
+  @Test(dataProvider = "pairs")
+  public void testPutAllAgainstHashMap(String desc, Supplier<OpenHashMap<Object, Integer>> source,
+                                       Supplier<OpenHashMap<Object, Integer>> target) {
+    // Small and large sources, overlapping the keys of a populated target
+    for (int n : new int[] {1, 100, 3000}) {
+      OpenHashMap<Object, Integer> src = fill(source.get(), 0, n);
+      Map<Object, Integer> srcCopy = new HashMap<>(src);
+      OpenHashMap<Object, Integer> map = target.get();
+      Map<Object, Integer> expected = new HashMap<>(map);
+      map.putAll(src);
+      expected.putAll(srcCopy);
+      assertEquals(map, expected, desc + " " + n);
+      assertEquals(map.size(), expected.size(), desc + " " + n);
+      for (Map.Entry<Object, Integer> e : expected.entrySet())
+        assertEquals(map.get(e.getKey()), e.getValue(), desc + " " + e.getKey());
+
+      // The copy and the source are independent
+      map.put(key(1), -5);
+      map.remove(key(2));
+      for (int i = 0; i < 500; i++)
+        map.put(key(10_000 + i), i);
+      assertEquals(src, srcCopy, desc);
+      src.clear();
+      expected.put(key(1), -5);
+      expected.remove(key(2));
+      for (int i = 0; i < 500; i++)
+        expected.put(key(10_000 + i), i);
+      assertEquals(map, expected, desc);
+    }
+  }
+
+  @Test(dataProvider = "pairs")
+  public void testCopyConstructor(String desc, Supplier<OpenHashMap<Object, Integer>> source,
+                                  Supplier<OpenHashMap<Object, Integer>> target) {
+    if (!desc.endsWith("into empty"))
+      return;
+    for (int n : new int[] {1, 620, 700, 3000}) {
+      OpenHashMap<Object, Integer> src = fill(source.get(), 0, n);
+      OpenHashMap<Object, Integer> copy = new OpenHashMap<>(src);
+      assertEquals(copy, new HashMap<>(src), desc + " " + n);
+      copy.put(key(n + 1), -1);
+      assertFalse(src.containsKey(key(n + 1)), desc);
+    }
+  }
+
+  @Test
+  public void testNoKeyIsHashed() {
+    OpenHashMap<Object, Integer> src = new OpenHashMap<>();
+    for (int i = 0; i < 2000; i++)
+      src.put(new InPlaceOpsTest.CountingKey(i, (i + 1) * 31), i); // a hash code of 0 is asked for again
+
+    InPlaceOpsTest.CountingKey.hashCodeCalls = 0;
+    OpenHashMap<Object, Integer> copy = new OpenHashMap<>(src);
+    OpenHashMap<Object, Integer> large = new OpenHashMap<>(100_000);
+    large.putAll(src);
+    OpenHashMap<Object, Integer> seeded = new OpenHashMap<>();
+    seeded.setHashSeeding(OpenHashMap.HashSeeding.PER_INSTANCE);
+    seeded.putAll(src);
+    OpenHashMap<Object, Integer> populated = new OpenHashMap<>();
+    for (int i = 1000; i < 3000; i++)
+      populated.put(i, i);
+    int populatingCalls = InPlaceOpsTest.CountingKey.hashCodeCalls;
+    populated.putAll(src);
+    assertEquals(InPlaceOpsTest.CountingKey.hashCodeCalls, populatingCalls);
+    assertEquals(populatingCalls, 0);
+
+    for (OpenHashMap<Object, Integer> map : List.of(copy, large, seeded))
+      assertEquals(map, src);
+    assertEquals(populated.size(), 4000);
+    for (Map.Entry<Object, Integer> e : src.entrySet())
+      assertEquals(populated.get(e.getKey()), e.getValue());
+  }
+}
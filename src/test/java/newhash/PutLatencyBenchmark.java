@@ -0,0 +1,93 @@
+package newhash;
+
+import java.util.Arrays;
+
+/**
+ * Measures the latency of individual {@code put} calls while an {@link OpenHashMap} grows from
+ * empty, with and without {@link OpenHashMap#setIncrementalResize(boolean) incremental
+ * resizing}.
+ *
+ * <p>Throughput hides resizing: a growing map's average {@code put} is cheap, but the put that
+ * crosses the load threshold pays for rehashing every mapping.  The tail percentiles show that
+ * pause, and how far spreading the migration over later operations cuts it.
+ *
+ * <p>Run with a large, pre-touched heap so that growing the heap does not show up as put
+ * latency, eg {@code java -Xms4g -Xmx4g -XX:+AlwaysPreTouch
+ * -cp target/classes:target/test-classes newhash.PutLatencyBenchmark [entries]}.  What is left of
+ * the worst case with incremental resizing is mostly allocating the new table.
+ */
+public class PutLatencyBenchmark {
+
+  private static final int WARMUP_ROUNDS = 5;
+  private static final int MEASURED_ROUNDS = 5;
+
+  public static void main(String[] args) {
+    final int entries = args.length > 0 ? Integer.parseInt(args[0]) : 1 << 22;
+    Integer[] keys = new Integer[entries];
+    for (int i = 0; i < entries; i++)
+      keys[i] = i * 0x9E3779B9; // spread the keys without making them sequential
+
+    System.out.printf("%-12s %10s %10s %10s %10s %12s %8s %10s%n",
+        "resize", "p50 ns", "p99 ns", "p99.9 ns", "p99.99 ns", "max ns", ">100us", "total ms");
+    for (boolean incremental : new boolean[] {false, true}) {
+      long[] latencies = new long[entries];
+      for (int round = 0; round < WARMUP_ROUNDS; round++)
+        fill(keys, incremental, latencies);
+      // Keep the worst round, as a pause that only shows up sometimes still matters
+      long[] worst = null;
+      long worstTotal = 0;
+      for (int round = 0; round < MEASURED_ROUNDS; round++) {
+        System.gc();
+        long total = fill(keys, incremental, latencies);
+        Arrays.sort(latencies);
+        if (worst == null || latencies[entries - 1] > worst[entries - 1]) {
+          worst = latencies.clone();
+          worstTotal = total;
+        }
+      }
+      int slow = entries - slowerThan(worst, 100_000);
+      System.out.printf("%-12s %10d %10d %10d %10d %12d %8d %10.1f%n",
+          incremental ? "incremental" : "all-at-once",
+          percentile(worst, 50), percentile(worst, 99), percentile(worst, 99.9),
+          percentile(worst, 99.99), worst[entries - 1], slow, worstTotal / 1e6);
+    }
+  }
+
+  /**
+   * Puts every key into an empty map, recording the latency of each put, and returns the total
+   * time taken.
+   */
+  private static long fill(Integer[] keys, boolean incremental, long[] latencies) {
+    OpenHashMap<Integer, Integer> map = new OpenHashMap<>();
+    map.setIncrementalResize(incremental);
+    long total = 0;
+    for (int i = 0; i < keys.length; i++) {
+      long start = System.nanoTime();
+      map.put(keys[i], keys[i]);
+      long elapsed = System.nanoTime() - start;
+      latencies[i] = elapsed;
+      total += elapsed;
+    }
+    if (map.size() != keys.length)
+      throw new AssertionError("lost a mapping");
+    return total;
+  }
+
+  /**
+   * Returns the index of the first latency in the sorted array above the given number of
+   * nanoseconds.
+   */
+  private static int slowerThan(long[] sorted, long nanos) {
+    int i = Arrays.binarySearch(sorted, nanos + 1);
+    if (i < 0)
+      return -i - 1;
+    while (i > 0 && sorted[i - 1] > nanos)
+      i--;
+    return i;
+  }
+
+  private static long percentile(long[] sorted, double p) {
+    int i = (int) Math.ceil(p / 100 * sorted.length) - 1;
+    return sorted[Math.max(0, Math.min(i, sorted.length - 1))];
+  }
+}
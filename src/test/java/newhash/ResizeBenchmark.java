@@ -0,0 +1,91 @@
+package newhash;
+
+import java.util.Arrays;
+import java.util.function.IntFunction;
+
+/**
+ * Measures the cost of growing an {@link OpenHashMap}, per entry moved.
+ *
+ * <p>Each sample fills a map up to just below its resize threshold and then times the single
+ * {@code put} that doubles the table.  Keys whose {@code hashCode()} is recomputed on every call
+ * show what re-hashing during a resize costs, compared with keys that have a cheap hash.
+ *
+ * <p>Run with a large heap, eg {@code java -Xmx4g -cp target/classes:target/test-classes
+ * newhash.ResizeBenchmark}.
+ */
+public class ResizeBenchmark {
+
+  private static final int WARMUP_ROUNDS = 10;
+  private static final int MEASURED_ROUNDS = 11;
+
+  /**
+   * A key which, like many composite keys, computes its hash each time it is asked.
+   */
+  static final class ExpensiveHashKey {
+    private final int[] data;
+
+    ExpensiveHashKey(int seed) {
+      data = new int[16];
+      for (int i = 0; i < data.length; i++)
+        data[i] = seed * 31 + i;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      return o instanceof ExpensiveHashKey k && Arrays.equals(data, k.data);
+    }
+
+    @Override
+    public int hashCode() {
+      return Arrays.hashCode(data);
+    }
+  }
+
+  public static void main(String[] args) {
+    int[] capacities = {1 << 12, 1 << 16, 1 << 20, 1 << 22};
+    System.out.printf("%-18s %10s %10s %14s%n", "keys", "capacity", "entries", "ns/entry");
+    for (int capacity : capacities) {
+      report("Integer", capacity, Integer::valueOf);
+      report("ExpensiveHashKey", capacity, ExpensiveHashKey::new);
+    }
+  }
+
+  private static void report(String label, int capacity, IntFunction<Object> keyFactory) {
+    // The largest size that does not trigger a resize for this capacity
+    final int entries = (capacity << 1) / 3;
+    Object[] keys = new Object[entries + 1];
+    for (int i = 0; i < keys.length; i++)
+      keys[i] = keyFactory.apply(i);
+
+    for (int round = 0; round < WARMUP_ROUNDS; round++)
+      timeResize(capacity, keys);
+    long[] samples = new long[MEASURED_ROUNDS];
+    for (int round = 0; round < MEASURED_ROUNDS; round++)
+      samples[round] = timeResize(capacity, keys);
+    Arrays.sort(samples);
+    double nsPerEntry = (double) samples[MEASURED_ROUNDS / 2] / entries;
+    System.out.printf("%-18s %10d %10d %14.2f%n", label, capacity, entries, nsPerEntry);
+  }
+
+  /**
+   * Returns the time in nanoseconds of the {@code put} which makes a map of the given capacity
+   * grow.
+   */
+  private static long timeResize(int capacity, Object[] keys) {
+    // expectedMaxSize gives a table of exactly this capacity
+    OpenHashMap<Object, Object> map = new OpenHashMap<>((capacity - 1) / 3 * 2);
+    final int last = keys.length - 1;
+    for (int i = 0; i < last; i++)
+      map.put(keys[i], keys[i]);
+    if (map.hashedKeyTable.length != capacity)
+      throw new AssertionError("unexpected capacity " + map.hashedKeyTable.length);
+    // Keep collection of the previous sample out of the measurement
+    System.gc();
+    long start = System.nanoTime();
+    map.put(keys[last], keys[last]);
+    long elapsed = System.nanoTime() - start;
+    if (map.hashedKeyTable.length != capacity << 1 || map.size() != keys.length)
+      throw new AssertionError("put did not resize");
+    return elapsed;
+  }
+}
@@ -0,0 +1,140 @@
+package newhash;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.ToLongFunction;
+
+/**
+ * Measures the operations that visit every slot of the table: iteration, {@code forEach}, the
+ * spliterators, {@code toArray}, {@code containsValue} of an absent value and {@code hashCode}.
+ * Each runs over a table of 2<sup>20</sup> slots at 5%, 30% and 66% load, the last just under the
+ * load at which the table is resized.  At 5% load nearly all the time goes on passing over
+ * empty slots.
+ *
+ * <p>The last three columns sum the values with loops written here over the table's arrays, so
+ * that the choice of scan loop noted on {@code OpenHashMapSpliterator} can be checked again: the
+ * scalar loop over the keys that the map uses, a scalar loop over the stored hashes, and a loop
+ * that ORs the stored hashes of eight slots together and passes the block on one branch when
+ * they are all empty.
+ *
+ * <p>Times are microseconds per pass over the whole table.
+ *
+ * <p>Run with {@code java -Xmx2g -cp target/classes:target/test-classes newhash.ScanBenchmark}.
+ */
+public class ScanBenchmark {
+
+  private static final int WARMUP_ROUNDS = 20;
+  private static final int MEASURED_ROUNDS = 21;
+  private static final int SLOTS = 1 << 20;
+
+  public static void main(String[] args) {
+    String[] names = {"iterator", "forEach", "spliterator", "toArray", "containsValue",
+        "hashCode", "key loop", "hash loop", "block skip"};
+    List<ToLongFunction<OpenHashMap<Integer, Integer>>> scans = List.of(
+        m -> {
+          long n = 0;
+          for (Iterator<Integer> it = m.keySet().iterator(); it.hasNext(); )
+            n += it.next();
+          return n;
+        },
+        m -> {
+          long[] n = {0};
+          m.forEach((k, v) -> n[0] += v);
+          return n[0];
+        },
+        m -> {
+          long[] n = {0};
+          m.values().spliterator().forEachRemaining(v -> n[0] += v);
+          return n[0];
+        },
+        m -> m.values().toArray().length,
+        m -> m.containsValue(-1) ? 1 : 0,
+        OpenHashMap::hashCode,
+        ScanBenchmark::keyLoop,
+        ScanBenchmark::hashLoop,
+        ScanBenchmark::blockSkip);
+
+    System.out.printf("%-6s", "load");
+    for (String name : names)
+      System.out.printf(" %13s", name);
+    System.out.println();
+    for (double load : new double[] {0.05, 0.30, 0.66}) {
+      int entries = (int) (SLOTS * load);
+      OpenHashMap<Integer, Integer> map = new OpenHashMap<>(SLOTS * 5 / 8);
+      for (int i = 0; i < entries; i++)
+        // Multiplying by an odd number scatters the keys without repeating any
+        map.put(i * 0x2545F491, i);
+      if (map.hashedKeyTable.length != SLOTS)
+        throw new AssertionError("table of " + map.hashedKeyTable.length + " slots");
+      System.out.printf("%-6.2f", load);
+      for (ToLongFunction<OpenHashMap<Integer, Integer>> scan : scans)
+        System.out.printf(" %13.1f", measure(map, scan));
+      System.out.println();
+    }
+  }
+
+  /**
+   * Sums the values of the slots whose keys are not null, as the map's own scans do.
+   */
+  private static long keyLoop(OpenHashMap<Integer, Integer> m) {
+    final Object[] tab = m.table;
+    long n = 0;
+    for (int i = 0; i < tab.length; i += 2) {
+      if (tab[i] != null)
+        n += (Integer) tab[i + 1];
+    }
+    return n;
+  }
+
+  /**
+   * Sums the values of the slots whose stored hashes are not empty.
+   */
+  private static long hashLoop(OpenHashMap<Integer, Integer> m) {
+    final int[] hashes = m.hashedKeyTable;
+    final Object[] tab = m.table;
+    long n = 0;
+    for (int i = 0; i < hashes.length; i++) {
+      if (hashes[i] != OpenHashMap.EMPTY_HASH)
+        n += (Integer) tab[(i << 1) + 1];
+    }
+    return n;
+  }
+
+  /**
+   * Sums the values of the slots whose stored hashes are not empty, eight slots at a time: an
+   * empty slot's hash is 0, so if the OR of the eight is 0 the block is skipped.
+   */
+  private static long blockSkip(OpenHashMap<Integer, Integer> m) {
+    final int[] hashes = m.hashedKeyTable;
+    final Object[] tab = m.table;
+    final int blocks = hashes.length & ~7;
+    long n = 0;
+    for (int b = 0; b < blocks; b += 8) {
+      if ((hashes[b] | hashes[b + 1] | hashes[b + 2] | hashes[b + 3]
+          | hashes[b + 4] | hashes[b + 5] | hashes[b + 6] | hashes[b + 7]) == 0)
+        continue;
+      for (int i = b; i < b + 8; i++) {
+        if (hashes[i] != OpenHashMap.EMPTY_HASH)
+          n += (Integer) tab[(i << 1) + 1];
+      }
+    }
+    for (int i = blocks; i < hashes.length; i++) {
+      if (hashes[i] != OpenHashMap.EMPTY_HASH)
+        n += (Integer) tab[(i << 1) + 1];
+    }
+    return n;
+  }
+
+  private static double measure(OpenHashMap<Integer, Integer> map,
+                                ToLongFunction<OpenHashMap<Integer, Integer>> scan) {
+    long[] check = new long[1];
+    double median = Benchmarks.median(WARMUP_ROUNDS, MEASURED_ROUNDS, () -> {
+      long start = System.nanoTime();
+      check[0] += scan.applyAsLong(map);
+      return System.nanoTime() - start;
+    });
+    if (check[0] == Long.MIN_VALUE)
+      System.out.println(check[0]);
+    return median / 1000.0;
+  }
+}
@@ -0,0 +1,129 @@
+package newhash;
+
+import org.testng.annotations.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.testng.Assert.*;
+
+/**
+ * Checks the table lengths that {@link OpenHashMap#ensureCapacity(int)},
+ * {@link OpenHashMap#trimToSize()} and a {@link OpenHashMap#setShrinkLoadFactor(float) shrink
+ * load factor} leave, that a map emptied by removals gives its power of two table back, and that
+ * a map whose size goes up and down across a threshold does not resize each time.
+ */
+public class ShrinkTest {
+
+  @Test
+  public void testRemovalsShrinkTheTable() {
+    OpenHashMap<Integer, Integer> map = new OpenHashMap<>();
+    map.setShrinkLoadFactor(0.25f);
+    Map<Integer, Integer> expected = new HashMap<>();
+    for (int i = 0; i < 1_000_000; i++) {
+      map.put(i, i);
+      expected.put(i, i);
+    }
+    assertEquals(map.hashedKeyTable.length, 1 << 21);
+
+    for (int i = 0; i < 999_000; i++)
+      assertEquals(map.remove(i), expected.remove(i));
+    // Halved while fewer than a quarter of the slots are full: 1000 of 2048 is not
+    assertEquals(map.hashedKeyTable.length, 2048);
+    assertEquals(map, expected);
+    for (Map.Entry<Integer, Integer> e : expected.entrySet())
+      assertEquals(map.get(e.getKey()), e.getValue());
+    BuilderTest.checkRobinHood(map);
+
+    // Without a shrink load factor the table is kept
+    OpenHashMap<Integer, Integer> kept = new OpenHashMap<>();
+    for (int i = 0; i < 100_000; i++)
+      kept.put(i, i);
+    int len = kept.hashedKeyTable.length;
+    for (int i = 0; i < 99_000; i++)
+      kept.remove(i);
+    assertEquals(kept.hashedKeyTable.length, len);
+  }
+
+  @Test
+  public void testNoResizeOnEachCrossing() {
+    OpenHashMap<Integer, Integer> map = new OpenHashMap<>();
+    map.setShrinkLoadFactor(0.25f);
+    for (int i = 0; i < 10_000; i++)
+      map.put(i, i);
+
+    // Put and remove a key across the grow threshold: the first put grows the table, and the
+    // doubled table is still well above the shrink load factor
+    int[] before = map.hashedKeyTable;
+    int next = 10_000;
+    while (map.hashedKeyTable == before)
+      map.put(next, next++);
+    map.remove(--next);
+    int[] grown = map.hashedKeyTable;
+    assertEquals(grown.length, before.length << 1);
+    for (int i = 0; i < 1000; i++) {
+      map.put(next, next);
+      map.remove(next);
+    }
+    assertSame(map.hashedKeyTable, grown);
+
+    // Remove and put a key across the shrink threshold: the first removal halves the table, and
+    // the halved table is still well below the grow threshold
+    int size = map.size();
+    int low = 0;
+    while (map.hashedKeyTable == grown)
+      map.remove(low++);
+    assertEquals(map.size(), size - low);
+    int[] shrunk = map.hashedKeyTable;
+    assertEquals(shrunk.length, grown.length >> 1);
+    for (int i = 0; i < 1000; i++) {
+      map.put(--low, low);
+      map.remove(low++);
+    }
+    assertSame(map.hashedKeyTable, shrunk);
+    for (int i = low; i < next; i++)
+      assertEquals(map.get(i), Integer.valueOf(i));
+  }
+
+  @Test
+  public void testTrimToSizeAndEnsureCapacityLengths() {
+    OpenHashMap<Integer, Integer> map = new OpenHashMap<>();
+    assertEquals(map.hashedKeyTable.length, 32);
+    // The smallest power of two above one and a half times the expected size
+    map.ensureCapacity(1000);
+    assertEquals(map.hashedKeyTable.length, 2048);
+    map.ensureCapacity(100);
+    assertEquals(map.hashedKeyTable.length, 2048);
+    int[] sized = map.hashedKeyTable;
+    for (int i = 0; i < 1000; i++)
+      map.put(i, i);
+    assertSame(map.hashedKeyTable, sized);
+    map.ensureCapacity(1_000_000);
+    assertEquals(map.hashedKeyTable.length, 1 << 21);
+
+    map.trimToSize();
+    assertEquals(map.hashedKeyTable.length, 2048);
+    for (int i = 100; i < 1000; i++)
+      map.remove(i);
+    map.trimToSize();
+    assertEquals(map.hashedKeyTable.length, 256);
+    int[] trimmed = map.hashedKeyTable;
+    map.trimToSize();
+    assertSame(map.hashedKeyTable, trimmed);
+    for (int i = 0; i < 100; i++)
+      assertEquals(map.get(i), Integer.valueOf(i));
+    BuilderTest.checkRobinHood(map);
+
+    map.clear();
+    map.trimToSize();
+    assertEquals(map.hashedKeyTable.length, 4);
+    assertThrows(IllegalArgumentException.class, () -> map.ensureCapacity(-1));
+
+    // A map with a shrink load factor falls back to the default capacity when cleared
+    map.setShrinkLoadFactor(0.25f);
+    map.ensureCapacity(1000);
+    map.put(1, 1);
+    map.clear();
+    assertEquals(map.hashedKeyTable.length, 32);
+  }
+}
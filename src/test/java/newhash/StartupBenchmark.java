@@ -0,0 +1,65 @@
+package newhash;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
+
+/**
+ * Measures building a lookup map of {@code String} keys at startup, per mapping: one
+ * {@code put} at a time into a map left to grow, which pays for every resize on the way, and
+ * into a map sized in advance, against {@link OpenHashMap.Builder}, in the calling thread and
+ * in parallel on the common pool.  Each key is mapped to itself.  A {@code String} caches its
+ * hash code once computed, so the keys are made afresh for each round, outside the timing, to
+ * leave the first hashing of each key to the map.
+ *
+ * <p>The number of mappings is the first argument, 50 million by default, which needs a heap
+ * of some 10 gigabytes; a few million show the same differences.
+ *
+ * <p>Run with {@code java -Xmx12g -cp target/classes:target/test-classes newhash.StartupBenchmark
+ * [mappings]}.
+ */
+public class StartupBenchmark {
+
+  private static final int WARMUP_ROUNDS = 2;
+  private static final int MEASURED_ROUNDS = 5;
+
+  public static void main(String[] args) {
+    int entries = args.length > 0 ? Integer.parseInt(args[0]) : 50_000_000;
+    System.out.printf("%d mappings, %d threads in the common pool%n", entries,
+        ForkJoinPool.getCommonPoolParallelism());
+    System.out.printf("%-24s %8s%n", "build", "ns");
+
+    report("put, growing", entries, keys -> {
+      OpenHashMap<String, String> map = new OpenHashMap<>();
+      for (String key : keys)
+        map.put(key, key);
+      return map;
+    });
+    report("put, presized", entries, keys -> {
+      OpenHashMap<String, String> map = new OpenHashMap<>(keys.length);
+      for (String key : keys)
+        map.put(key, key);
+      return map;
+    });
+    report("builder", entries,
+        keys -> OpenHashMap.<String, String>builder(keys.length).addAll(keys, keys).build());
+    report("builder, parallel", entries,
+        keys -> OpenHashMap.<String, String>builder(keys.length).parallel().addAll(keys, keys)
+            .build());
+  }
+
+  private static void report(String label, int entries,
+                             Function<String[], OpenHashMap<String, String>> build) {
+    double median = Benchmarks.median(WARMUP_ROUNDS, MEASURED_ROUNDS, () -> {
+      String[] keys = new String[entries];
+      for (int i = 0; i < entries; i++)
+        keys[i] = "key-" + i;
+      long start = System.nanoTime();
+      OpenHashMap<String, String> map = build.apply(keys);
+      long time = System.nanoTime() - start;
+      if (map.size() != entries)
+        throw new AssertionError(label + ": " + map.size());
+      return time;
+    });
+    System.out.printf("%-24s %8.1f%n", label, median / entries);
+  }
+}
@@ -0,0 +1,87 @@
+package newhash;
+
+import java.util.Map;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+
+/**
+ * Compares {@link SwissHashMap} with the Robin Hood {@link OpenHashMap} head to head, holding
+ * from half to 7/8 as many mappings as a table of 2<sup>20</sup> slots.  The Swiss table holds
+ * them all in that table.  {@code OpenHashMap} keeps its load under 2/3, so from 3/4 it doubles
+ * its table, and the table bytes column shows what that costs in memory, counting 4 bytes for a
+ * compressed reference.
+ *
+ * <p>Each map is filled with its expected size given, then looked up with every key present,
+ * and with as many keys absent.
+ *
+ * <p>Run with {@code java -Xmx3g -cp target/classes:target/test-classes newhash.SwissBenchmark}.
+ */
+public class SwissBenchmark {
+
+  private static final int WARMUP_ROUNDS = 5;
+  private static final int MEASURED_ROUNDS = 7;
+  private static final int SLOTS = 1 << 20;
+
+  private interface Probe {
+    int run(Map<Object, Object> map, Object[] keys);
+  }
+
+  public static void main(String[] args) {
+    System.out.printf("%-6s %-8s %-13s %8s %6s %9s %8s %8s %8s%n", "load", "keys", "map", "slots",
+        "used", "B/entry", "put ns", "hit ns", "miss ns");
+    for (double load : new double[] {0.5, 0.625, 0.75, 0.875}) {
+      int entries = (int) (SLOTS * load);
+      // Multiplying by an odd number scatters the keys without repeating any
+      report(load, "Integer", entries, i -> i * 0x2545F491);
+      report(load, "String", entries, i -> "key" + i);
+    }
+  }
+
+  private static void report(double load, String label, int entries,
+                             IntFunction<Object> keyFactory) {
+    Object[] present = new Object[entries];
+    Object[] absent = new Object[entries];
+    for (int i = 0; i < entries; i++) {
+      present[i] = keyFactory.apply(i);
+      absent[i] = keyFactory.apply(entries + i);
+    }
+    Probe get = (map, keys) -> {
+      int n = 0;
+      for (Object key : keys)
+        n += map.get(key) != null ? 1 : 0;
+      return n;
+    };
+
+    for (String mapName : new String[] {"SwissHashMap", "OpenHashMap"}) {
+      boolean swiss = mapName.equals("SwissHashMap");
+      Supplier<Map<Object, Object>> newMap =
+          swiss ? () -> new SwissHashMap<>(entries) : () -> new OpenHashMap<>(entries);
+      int slots = swiss
+          ? new SwissHashMap<>(entries).table.length >>> 1
+          : new OpenHashMap<>(entries).hashedKeyTable.length;
+      int tableBytesPerSlot = swiss ? 1 + 4 + 4 : 4 + 4 + 4;
+      double[] medians = Benchmarks.medians(WARMUP_ROUNDS, MEASURED_ROUNDS, 3, times -> {
+        Map<Object, Object> map = newMap.get();
+        long start = System.nanoTime();
+        for (Object key : present)
+          map.put(key, key);
+        times[0] = System.nanoTime() - start;
+        times[1] = time(map, present, get, entries);
+        times[2] = time(map, absent, get, 0);
+      });
+      System.out.printf("%-6.3f %-8s %-13s %8d %6.3f %9.1f %8.1f %8.1f %8.1f%n", load, label,
+          mapName, slots, entries / (double) slots,
+          slots * (double) tableBytesPerSlot / entries, medians[0] / entries,
+          medians[1] / entries, medians[2] / entries);
+    }
+  }
+
+  private static long time(Map<Object, Object> map, Object[] keys, Probe probe, int expected) {
+    long start = System.nanoTime();
+    int found = probe.run(map, keys);
+    long time = System.nanoTime() - start;
+    if (found != expected)
+      throw new AssertionError("found " + found);
+    return time;
+  }
+}
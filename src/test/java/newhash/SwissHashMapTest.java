@@ -0,0 +1,97 @@
+package newhash;
+
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.*;
+
+/**
+ * Checks {@link SwissHashMap} against {@code HashMap} at each load factor, with keys whose tags
+ * and groups collide, through the tombstones and rebuilds of heavy churn, and where the JDK
+ * tests do not reach its table.
+ */
+public class SwissHashMapTest extends AbstractSlotHashMapTest {
+
+  @Override
+  <K,V> SlotHashMap<K,V> newMap(int expectedMaxSize, Object loadFactor) {
+    return new SwissHashMap<>(expectedMaxSize, (Float) loadFactor);
+  }
+
+  @Override
+  Object[] parameterValues() {
+    return new Object[] {0.5f, 0.625f, 0.75f, 0.875f};
+  }
+
+  @Override
+  Object parameter(SlotHashMap<?,?> map) {
+    return ((SwissHashMap<?,?>) map).getLoadFactor();
+  }
+
+  @Override
+  Object illegalParameter() {
+    return 0.9f;
+  }
+
+  @Override
+  void checkTable(SlotHashMap<?,?> map) {
+    assertTableConsistent((SwissHashMap<?,?>) map);
+  }
+
+  @Test
+  public void testChurnReusesTombstones() {
+    SwissHashMap<Integer, Integer> map = new SwissHashMap<>(1000);
+    int capacity = map.table.length >>> 1;
+    // A sliding window of keys at a steady size: removals leave tombstones that later
+    // insertions and same-capacity rebuilds clear
+    for (int i = 0; i < 200_000; i++) {
+      map.put(i, i);
+      if (i >= 1000)
+        assertEquals(map.remove(i - 1000), Integer.valueOf(i - 1000));
+    }
+    assertEquals(map.size(), 1000);
+    assertEquals(map.table.length >>> 1, capacity);
+    for (int i = 199_000; i < 200_000; i++)
+      assertEquals(map.get(i), Integer.valueOf(i));
+    assertTableConsistent(map);
+  }
+
+  @Test
+  public void testLoadFactorBoundsTable() {
+    for (float loadFactor : new float[] {0.5f, 0.875f}) {
+      SwissHashMap<Integer, Integer> map = new SwissHashMap<>(0, loadFactor);
+      for (int i = 0; i < 100_000; i++) {
+        map.put(i, i);
+        assertTrue(map.size() <= (map.table.length >>> 1) * loadFactor);
+      }
+      // Growing doubles the table, so it is at least half the load factor full
+      assertTrue(map.size() >= (map.table.length >>> 1) * loadFactor / 2);
+    }
+  }
+
+  /**
+   * Checks that each control byte agrees with its slot, that the count of mappings is right,
+   * and that every key is found from its hash.
+   */
+  private static void assertTableConsistent(SwissHashMap<?, ?> map) {
+    int capacity = map.table.length >>> 1;
+    int mappings = 0, empty = 0;
+    for (int i = 0; i < capacity; i++) {
+      int b = (int) (map.ctrl[i >>> SwissHashMap.GROUP_SHIFT] >>> ((i & 7) << 3)) & 0xFF;
+      Object key = map.table[i << 1];
+      if (b == SwissHashMap.EMPTY || b == SwissHashMap.DELETED) {
+        assertNull(key, "slot " + i);
+        assertNull(map.table[(i << 1) + 1], "slot " + i);
+        if (b == SwissHashMap.EMPTY)
+          empty++;
+      } else {
+        assertNotNull(key, "slot " + i);
+        assertEquals(b, SwissHashMap.tag(SwissHashMap.hash(key), map.groupShift), "slot " + i);
+        mappings++;
+      }
+    }
+    assertEquals(mappings, map.size());
+    assertTrue(empty > 0);
+    assertTrue(map.growthLeft >= 0 && map.growthLeft <= empty);
+    for (Object key : map.keySet())
+      assertTrue(map.containsKey(key));
+  }
+}
@@ -0,0 +1,105 @@
+package newhash;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
+import java.util.stream.Collector;
+import java.util.stream.Collectors;
+
+/**
+ * Counts the words of a large corpus with {@code Collectors.groupingBy} into a {@code HashMap}
+ * and with {@link OpenHashMapCollectors#counting}, in parallel and sequential streams, per word.
+ * A third parallel row counts as {@code counting} does but merges the partial maps by
+ * re-putting each entry, to show what merging with the stored hashes saves.  With the hash codes
+ * of the words cached it saves little: on one core both merges took the same time, and the
+ * gain over {@code HashMap} came from the accumulation.
+ *
+ * <p>The corpus is the first argument, 20 million words by default, drawn from a vocabulary of
+ * 500,000 words with Zipf's law, so that a few words are very common and most are rare, as in
+ * text.  The words are {@code String}s, whose hash codes are cached after the first round.
+ *
+ * <p>Run with {@code java -Xmx3g -cp target/classes:target/test-classes newhash.WordCountBenchmark
+ * [words]}.
+ */
+public class WordCountBenchmark {
+
+  private static final int WARMUP_ROUNDS = 3;
+  private static final int MEASURED_ROUNDS = 7;
+  private static final int VOCABULARY = 500_000;
+
+  public static void main(String[] args) {
+    int words = args.length > 0 ? Integer.parseInt(args[0]) : 20_000_000;
+    String[] corpus = corpus(words);
+    System.out.printf("%d words, %d threads in the common pool%n", words,
+        ForkJoinPool.getCommonPoolParallelism());
+    System.out.printf("%-34s %8s%n", "collector", "ns");
+
+    // Counting as OpenHashMapCollectors.counting does, in a long[1] for each word
+    Function<String, long[]> newCount = w -> new long[1];
+    Collector<String, OpenHashMap<String, long[]>, Map<String, Long>> reputting = Collector.of(
+        OpenHashMap::new,
+        (m, w) -> m.computeIfAbsent(w, newCount)[0]++,
+        (a, b) -> {
+          b.forEach((w, n) -> a.merge(w, n, (x, y) -> {
+            x[0] += y[0];
+            return x;
+          }));
+          return a;
+        },
+        m -> {
+          Map<String, Long> counts = new OpenHashMap<>(m.size());
+          m.forEach((w, n) -> counts.put(w, n[0]));
+          return counts;
+        });
+
+    report("groupingBy, HashMap, parallel", corpus, true,
+        Collectors.groupingBy(Function.identity(), Collectors.counting()));
+    report("counting, parallel", corpus, true, OpenHashMapCollectors.counting(Function.identity()));
+    report("counting, re-putting, parallel", corpus, true, reputting);
+    report("groupingBy, HashMap", corpus, false,
+        Collectors.groupingBy(Function.identity(), Collectors.counting()));
+    report("counting", corpus, false, OpenHashMapCollectors.counting(Function.identity()));
+  }
+
+  /**
+   * Returns the given number of words drawn from the vocabulary with Zipf's law, the word of rank
+   * r having a probability proportional to 1/r.
+   */
+  private static String[] corpus(int words) {
+    String[] vocabulary = new String[VOCABULARY];
+    double[] cumulative = new double[VOCABULARY];
+    double sum = 0;
+    for (int r = 0; r < VOCABULARY; r++) {
+      vocabulary[r] = "w" + Integer.toString(r * 0x2545F491 >>> 1, 36);
+      sum += 1.0 / (r + 1);
+      cumulative[r] = sum;
+    }
+    Random random = new Random(42);
+    String[] corpus = new String[words];
+    for (int i = 0; i < words; i++) {
+      int r = Arrays.binarySearch(cumulative, random.nextDouble() * sum);
+      corpus[i] = vocabulary[Math.min(r < 0 ? -r - 1 : r, VOCABULARY - 1)];
+    }
+    return corpus;
+  }
+
+  private static void report(String label, String[] corpus, boolean parallel,
+                             Collector<String, ?, ? extends Map<String, Long>> collector) {
+    double median = Benchmarks.median(WARMUP_ROUNDS, MEASURED_ROUNDS, () -> {
+      long start = System.nanoTime();
+      Map<String, Long> counts = parallel
+          ? Arrays.stream(corpus).parallel().collect(collector)
+          : Arrays.stream(corpus).collect(collector);
+      long time = System.nanoTime() - start;
+      long total = 0;
+      for (long n : counts.values())
+        total += n;
+      if (total != corpus.length)
+        throw new AssertionError(label + ": " + total);
+      return time;
+    });
+    System.out.printf("%-34s %8.1f%n", label, median / corpus.length);
+  }
+}